@@ -23,11 +23,15 @@ import com.dynatrace.openkit.api.OpenKitConstants;
 import com.dynatrace.openkit.api.SSLTrustManager;
 import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
+import com.dynatrace.openkit.core.configuration.HTTPRequestConfiguration;
 import com.dynatrace.openkit.core.configuration.PrivacyConfiguration;
 import com.dynatrace.openkit.core.objects.OpenKitImpl;
 import com.dynatrace.openkit.core.util.DefaultLogger;
+import com.dynatrace.openkit.protocol.BeaconCompressor;
 import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
 
+import java.util.zip.Deflater;
+
 /**
  * Abstract base class for concrete builder. Using the builder a OpenKit instance can be created
  */
@@ -48,6 +52,19 @@ public abstract class AbstractOpenKitBuilder {
     private long beaconCacheMaxRecordAge = BeaconCacheConfiguration.DEFAULT_MAX_RECORD_AGE_IN_MILLIS;
     private long beaconCacheLowerMemoryBoundary = BeaconCacheConfiguration.DEFAULT_LOWER_MEMORY_BOUNDARY_IN_BYTES;
     private long beaconCacheUpperMemoryBoundary = BeaconCacheConfiguration.DEFAULT_UPPER_MEMORY_BOUNDARY_IN_BYTES;
+    private boolean beaconCacheOffHeapStorage = false;
+    private String beaconCachePersistenceDirectory = null;
+    private boolean beaconCacheWriteAheadLog = false;
+    private long beaconCacheSendThreshold = BeaconCacheConfiguration.SEND_THRESHOLD_DISABLED;
+    private boolean chunkedBeaconStreaming = false;
+    private int beaconCompressionLevel = BeaconCompressor.DEFAULT_COMPRESSION_LEVEL;
+    private int beaconSenderWorkers = Configuration.DEFAULT_BEACON_SENDER_WORKERS;
+    private boolean asyncBeaconTransport = false;
+    private int httpConnectTimeout = HTTPRequestConfiguration.DEFAULT_CONNECT_TIMEOUT_IN_MILLIS;
+    private int httpReadTimeout = HTTPRequestConfiguration.DEFAULT_READ_TIMEOUT_IN_MILLIS;
+    private int httpMaxRetries = HTTPRequestConfiguration.DEFAULT_MAX_RETRIES;
+    private long httpInitialRetryDelay = HTTPRequestConfiguration.DEFAULT_INITIAL_RETRY_DELAY_IN_MILLIS;
+    private long sendCycleBudget = Configuration.NO_SEND_CYCLE_BUDGET;
     private DataCollectionLevel dataCollectionLevel = PrivacyConfiguration.DEFAULT_DATA_COLLECTION_LEVEL;
     private CrashReportingLevel crashReportLevel = PrivacyConfiguration.DEFAULT_CRASH_REPORTING_LEVEL;
 
@@ -208,6 +225,267 @@ public abstract class AbstractOpenKitBuilder {
         return this;
     }
 
+    /**
+     * Sets whether the beacon cache stores its data outside the Java heap.
+     *
+     * <p>
+     * When enabled, cached beacon data is kept in pooled direct buffers, so that a large cache,
+     * e.g. during a longer backend outage, does not put pressure on the garbage collector.
+     * Note that the JVM's direct memory limit ({@code -XX:MaxDirectMemorySize}) must be large
+     * enough to hold the upper memory boundary of the beacon cache.
+     * </p>
+     *
+     * <p>
+     * Default value: {@code false}
+     * </p>
+     *
+     * @param offHeapStorage {@code true} to store beacon cache data off-heap, {@code false} to store it on the heap.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withBeaconCacheOffHeapStorage(boolean offHeapStorage) {
+        this.beaconCacheOffHeapStorage = offHeapStorage;
+        return this;
+    }
+
+    /**
+     * Sets the directory where the beacon cache persists its data.
+     *
+     * <p>
+     * When set, cached beacon data is additionally written to memory mapped files in this directory.
+     * Data which has not been sent, when the process terminates or crashes, is sent after the next start.
+     * The directory must not be shared by multiple OpenKit instances running at the same time.
+     * Persisted data is kept on the heap, therefore this setting takes precedence over
+     * {@link #withBeaconCacheOffHeapStorage(boolean)}.
+     * </p>
+     *
+     * <p>
+     * Default value: {@code null} (data is not persisted)
+     * </p>
+     *
+     * @param directory The directory path or {@code null} to not persist beacon cache data.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withBeaconCachePersistenceDirectory(String directory) {
+        this.beaconCachePersistenceDirectory = directory;
+        return this;
+    }
+
+    /**
+     * Enables or disables the write-ahead log mode of the persistent beacon cache.
+     *
+     * <p>
+     * When enabled, reporting a crash or an error only returns after the data has been forced to the storage device,
+     * so that it is not lost, even if the device loses power right afterwards.
+     * Concurrent reports share a single force operation.
+     * Other data is still written lazily by the operating system.
+     * This setting only has an effect, if a directory has been set with {@link #withBeaconCachePersistenceDirectory(String)}.
+     * </p>
+     *
+     * <p>
+     * Default value: {@code false}
+     * </p>
+     *
+     * @param writeAheadLog {@code true} to force crashes and errors to the storage device, {@code false} otherwise.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withBeaconCacheWriteAheadLog(boolean writeAheadLog) {
+        this.beaconCacheWriteAheadLog = writeAheadLog;
+        return this;
+    }
+
+    /**
+     * Sets the beacon cache size at which open sessions are sent before their send interval elapsed.
+     *
+     * <p>
+     * When the cache grows to this size, the open sessions holding the most data are sent right away,
+     * until the cache size falls below this setting again. Set it below the upper memory boundary,
+     * so that data is sent, before the memory based eviction strategy starts clearing it.
+     * </p>
+     *
+     * <p>
+     * Default value: {@link BeaconCacheConfiguration#SEND_THRESHOLD_DISABLED} (open sessions are only sent in the send interval)
+     * </p>
+     *
+     * @param sendThresholdInBytes The cache size in bytes or negative to disable sending early.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withBeaconCacheSendThreshold(long sendThresholdInBytes) {
+        this.beaconCacheSendThreshold = sendThresholdInBytes < 0 ? BeaconCacheConfiguration.SEND_THRESHOLD_DISABLED : sendThresholdInBytes;
+        return this;
+    }
+
+    /**
+     * Enables or disables chunked streaming of beacon data.
+     *
+     * <p>
+     * When enabled, beacon data is compressed directly into the HTTP request body, which is sent
+     * using chunked transfer encoding. This avoids buffering the compressed data in memory, but requires
+     * the server and all proxies in between to accept chunked requests.
+     * </p>
+     *
+     * <p>
+     * Default value: {@code false}
+     * </p>
+     *
+     * @param chunkedStreaming {@code true} to stream beacon data, {@code false} to send it with a fixed length.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withChunkedBeaconStreaming(boolean chunkedStreaming) {
+        this.chunkedBeaconStreaming = chunkedStreaming;
+        return this;
+    }
+
+    /**
+     * Sets the compression level used for sending beacon data.
+     *
+     * <p>
+     * Valid levels range from {@link Deflater#NO_COMPRESSION} to {@link Deflater#BEST_COMPRESSION}.
+     * Lower levels need less CPU time, higher levels reduce the amount of data sent.
+     * Invalid levels are ignored.
+     * </p>
+     *
+     * <p>
+     * Default value: {@link Deflater#DEFAULT_COMPRESSION}
+     * </p>
+     *
+     * @param compressionLevel The compression level.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withBeaconCompressionLevel(int compressionLevel) {
+        if (compressionLevel == Deflater.DEFAULT_COMPRESSION
+            || (compressionLevel >= Deflater.NO_COMPRESSION && compressionLevel <= Deflater.BEST_COMPRESSION)) {
+            this.beaconCompressionLevel = compressionLevel;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of sessions, whose beacons are sent in parallel.
+     *
+     * <p>
+     * With more than one worker, open and finished sessions are sent by a pool of worker threads,
+     * so that a high latency of the server does not limit the number of sessions sent per second.
+     * This is also the maximum number of beacon requests in flight. Values less than one are ignored.
+     * </p>
+     *
+     * <p>
+     * Default value: {@code 1}, sessions are sent one after the other by the beacon sender thread.
+     * </p>
+     *
+     * @param numWorkers The maximum number of sessions sent in parallel.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withBeaconSenderWorkers(int numWorkers) {
+        if (numWorkers > 0) {
+            this.beaconSenderWorkers = numWorkers;
+        }
+        return this;
+    }
+
+    /**
+     * Enables or disables the non-blocking transport for beacon data.
+     *
+     * <p>
+     * If enabled, beacons are sent to plain HTTP endpoints by a single I/O thread, which keeps the requests
+     * of many sessions in flight, without blocking the beacon sender thread until the server responds.
+     * The number of sessions in flight is limited by {@link #withBeaconSenderWorkers(int)}, if set to more than one.
+     * Status and new session requests are still sent blocking.
+     * </p>
+     *
+     * <p>
+     * TLS is not supported by the non-blocking transport. If the endpoint URL uses HTTPS, beacons are sent
+     * blocking, like without this option, and a warning is logged.
+     * </p>
+     *
+     * <p>
+     * Default value: {@code false}
+     * </p>
+     *
+     * @param asyncTransport {@code true} to send beacon data without blocking, {@code false} otherwise.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withAsyncBeaconTransport(boolean asyncTransport) {
+        this.asyncBeaconTransport = asyncTransport;
+        return this;
+    }
+
+    /**
+     * Sets the timeouts of HTTP requests.
+     *
+     * <p>
+     * Non-positive values are ignored.
+     * </p>
+     *
+     * <p>
+     * Default values: {@link HTTPRequestConfiguration#DEFAULT_CONNECT_TIMEOUT_IN_MILLIS} and
+     * {@link HTTPRequestConfiguration#DEFAULT_READ_TIMEOUT_IN_MILLIS}
+     * </p>
+     *
+     * @param connectTimeoutInMilliseconds Timeout for establishing a connection.
+     * @param readTimeoutInMilliseconds    Timeout for reading the server's response.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withHttpTimeouts(int connectTimeoutInMilliseconds, int readTimeoutInMilliseconds) {
+        if (connectTimeoutInMilliseconds > 0) {
+            this.httpConnectTimeout = connectTimeoutInMilliseconds;
+        }
+        if (readTimeoutInMilliseconds > 0) {
+            this.httpReadTimeout = readTimeoutInMilliseconds;
+        }
+        return this;
+    }
+
+    /**
+     * Sets how often HTTP requests are retried, if connecting to the server fails.
+     *
+     * <p>
+     * The delay before the first retry is doubled for every further retry, up to
+     * {@link HTTPRequestConfiguration#DEFAULT_MAX_RETRY_DELAY_IN_MILLIS}, and randomized,
+     * so that many clients do not retry at the same time. Negative values are ignored.
+     * </p>
+     *
+     * <p>
+     * Default values: {@link HTTPRequestConfiguration#DEFAULT_MAX_RETRIES} and
+     * {@link HTTPRequestConfiguration#DEFAULT_INITIAL_RETRY_DELAY_IN_MILLIS}
+     * </p>
+     *
+     * @param maxRetries                      Number of retries after the first attempt.
+     * @param initialRetryDelayInMilliseconds Delay before the first retry.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withHttpRetries(int maxRetries, long initialRetryDelayInMilliseconds) {
+        if (maxRetries >= 0) {
+            this.httpMaxRetries = maxRetries;
+        }
+        if (initialRetryDelayInMilliseconds >= 0) {
+            this.httpInitialRetryDelay = initialRetryDelayInMilliseconds;
+        }
+        return this;
+    }
+
+    /**
+     * Sets the time budget for sending sessions in one send cycle.
+     *
+     * <p>
+     * Once the budget is used up, no further sessions are started and the remaining ones are sent in the next cycle,
+     * so that an unresponsive server does not stall the beacon sender for a long time.
+     * Requests already started are not aborted. Negative values are ignored.
+     * </p>
+     *
+     * <p>
+     * Default value: {@link Configuration#NO_SEND_CYCLE_BUDGET}, all sessions are sent in each cycle.
+     * </p>
+     *
+     * @param budgetInMilliseconds The time budget of one send cycle.
+     * @return {@code this}
+     */
+    public AbstractOpenKitBuilder withBeaconSendCycleBudget(long budgetInMilliseconds) {
+        if (budgetInMilliseconds >= 0) {
+            this.sendCycleBudget = budgetInMilliseconds;
+        }
+        return this;
+    }
+
     /**
      * Sets the data collection level.
      *
@@ -423,6 +701,97 @@ public abstract class AbstractOpenKitBuilder {
         return beaconCacheUpperMemoryBoundary;
     }
 
+    /**
+     * Get the flag that has been set with {@link #withBeaconCacheOffHeapStorage(boolean)}.
+     *
+     * @return {@code true} if beacon cache data is stored off-heap, {@code false} otherwise.
+     */
+    public boolean isBeaconCacheOffHeapStorageEnabled() {
+        return beaconCacheOffHeapStorage;
+    }
+
+    /**
+     * Get the directory that has been set with {@link #withBeaconCachePersistenceDirectory(String)}.
+     *
+     * @return The directory where beacon cache data is persisted or {@code null} if data is not persisted.
+     */
+    public String getBeaconCachePersistenceDirectory() {
+        return beaconCachePersistenceDirectory;
+    }
+
+    /**
+     * Get the flag that has been set with {@link #withBeaconCacheWriteAheadLog(boolean)}.
+     *
+     * @return {@code true} if crashes and errors are forced to the storage device, {@code false} otherwise.
+     */
+    public boolean isBeaconCacheWriteAheadLogEnabled() {
+        return beaconCacheWriteAheadLog;
+    }
+
+    /**
+     * Get the beacon cache send threshold that has been set with {@link #withBeaconCacheSendThreshold(long)}.
+     *
+     * @return The cache size in bytes at which open sessions are sent early, or a negative value if disabled.
+     */
+    public long getBeaconCacheSendThreshold() {
+        return beaconCacheSendThreshold;
+    }
+
+    /**
+     * Get the flag that has been set with {@link #withChunkedBeaconStreaming(boolean)}.
+     *
+     * @return {@code true} if beacon data is sent using chunked transfer encoding, {@code false} otherwise.
+     */
+    public boolean isChunkedBeaconStreamingEnabled() {
+        return chunkedBeaconStreaming;
+    }
+
+    /**
+     * Get the compression level that has been set with {@link #withBeaconCompressionLevel(int)}.
+     *
+     * @return The compression level used for sending beacon data.
+     */
+    public int getBeaconCompressionLevel() {
+        return beaconCompressionLevel;
+    }
+
+    /**
+     * Get the number of workers that has been set with {@link #withBeaconSenderWorkers(int)}.
+     *
+     * @return The maximum number of sessions sent in parallel.
+     */
+    public int getBeaconSenderWorkers() {
+        return beaconSenderWorkers;
+    }
+
+    /**
+     * Get the flag that has been set with {@link #withAsyncBeaconTransport(boolean)}.
+     *
+     * @return {@code true} if beacon data is sent without blocking, {@code false} otherwise.
+     */
+    public boolean isAsyncBeaconTransportEnabled() {
+        return asyncBeaconTransport;
+    }
+
+    /**
+     * Get the HTTP request settings that have been set with {@link #withHttpTimeouts(int, int)}
+     * and {@link #withHttpRetries(int, long)}.
+     *
+     * @return The timeouts and retry settings of HTTP requests.
+     */
+    public HTTPRequestConfiguration getHttpRequestConfiguration() {
+        return new HTTPRequestConfiguration(httpConnectTimeout, httpReadTimeout, httpMaxRetries, httpInitialRetryDelay);
+    }
+
+    /**
+     * Get the time budget that has been set with {@link #withBeaconSendCycleBudget(long)}.
+     *
+     * @return The time budget of one send cycle in milliseconds.
+     */
+    public long getBeaconSendCycleBudget() {
+        return sendCycleBudget;
+    }
+
     /**
      * Get data collection level that has been set with {@link #withDataCollectionLevel(DataCollectionLevel)}.
      *
@@ -75,7 +75,11 @@ public class AppMonOpenKitBuilder extends AbstractOpenKitBuilder {
 
         BeaconCacheConfiguration beaconCacheConfiguration = new BeaconCacheConfiguration(getBeaconCacheMaxRecordAge(),
             getBeaconCacheLowerMemoryBoundary(),
-            getBeaconCacheUpperMemoryBoundary());
+            getBeaconCacheUpperMemoryBoundary(),
+            isBeaconCacheOffHeapStorageEnabled(),
+            getBeaconCachePersistenceDirectory(),
+            isBeaconCacheWriteAheadLogEnabled(),
+            getBeaconCacheSendThreshold());
         BeaconConfiguration beaconConfiguration = new BeaconConfiguration();
         PrivacyConfiguration privacyConfiguration = new PrivacyConfiguration(getDataCollectionLevel(), getCrashReportLevel());
         return new Configuration(
@@ -90,7 +94,13 @@ public class AppMonOpenKitBuilder extends AbstractOpenKitBuilder {
             getApplicationVersion(),
             beaconCacheConfiguration,
             beaconConfiguration,
-            privacyConfiguration);
+            privacyConfiguration,
+            isChunkedBeaconStreamingEnabled(),
+            getBeaconCompressionLevel(),
+            getBeaconSenderWorkers(),
+            isAsyncBeaconTransportEnabled(),
+            getHttpRequestConfiguration(),
+            getBeaconSendCycleBudget());
     }
 
     @Override
@@ -89,7 +89,11 @@ public class DynatraceOpenKitBuilder extends AbstractOpenKitBuilder {
 
         BeaconCacheConfiguration beaconCacheConfiguration = new BeaconCacheConfiguration(getBeaconCacheMaxRecordAge(),
             getBeaconCacheLowerMemoryBoundary(),
-            getBeaconCacheUpperMemoryBoundary());
+            getBeaconCacheUpperMemoryBoundary(),
+            isBeaconCacheOffHeapStorageEnabled(),
+            getBeaconCachePersistenceDirectory(),
+            isBeaconCacheWriteAheadLogEnabled(),
+            getBeaconCacheSendThreshold());
         BeaconConfiguration beaconConfiguration = new BeaconConfiguration();
         PrivacyConfiguration privacyConfiguration = new PrivacyConfiguration(getDataCollectionLevel(), getCrashReportLevel());
         return new Configuration(
@@ -104,7 +108,13 @@ public class DynatraceOpenKitBuilder extends AbstractOpenKitBuilder {
             getApplicationVersion(),
             beaconCacheConfiguration,
             beaconConfiguration,
-            privacyConfiguration);
+            privacyConfiguration,
+            isChunkedBeaconStreamingEnabled(),
+            getBeaconCompressionLevel(),
+            getBeaconSenderWorkers(),
+            isAsyncBeaconTransportEnabled(),
+            getHttpRequestConfiguration(),
+            getBeaconSendCycleBudget());
     }
 
     @Override
@@ -17,9 +17,11 @@
 package com.dynatrace.openkit.core;
 
 import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.caching.BeaconCache;
 import com.dynatrace.openkit.core.communication.BeaconSendingContext;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.core.objects.SessionImpl;
+import com.dynatrace.openkit.core.util.CoalescingSignal;
 import com.dynatrace.openkit.providers.HTTPClientProvider;
 import com.dynatrace.openkit.providers.TimingProvider;
 
@@ -57,10 +59,12 @@ public class BeaconSender {
      * @param configuration  OpenKit configuration.
      * @param clientProvider Used for retrieving an {@link com.dynatrace.openkit.protocol.HTTPClient} instance.
      * @param timingProvider Used for some timing related things.
+     * @param beaconCache The cache holding the data of all sessions.
      */
-    public BeaconSender(Logger logger, Configuration configuration, HTTPClientProvider clientProvider, TimingProvider timingProvider) {
+    public BeaconSender(Logger logger, Configuration configuration, HTTPClientProvider clientProvider, TimingProvider timingProvider,
+                        BeaconCache beaconCache) {
         this.logger = logger;
-        context = new BeaconSendingContext(logger, configuration, clientProvider, timingProvider);
+        context = new BeaconSendingContext(logger, configuration, clientProvider, timingProvider, beaconCache);
     }
 
     /**
@@ -148,6 +152,15 @@ public class BeaconSender {
         }
     }
 
+    /**
+     * Get the signal waking up the beacon sender thread, so that data is sent without waiting for the next send cycle.
+     *
+     * @return The signal.
+     */
+    public CoalescingSignal getSendSignal() {
+        return context.getSendSignal();
+    }
+
     /**
      * When starting a new Session, put it into open Sessions.
      * <p>
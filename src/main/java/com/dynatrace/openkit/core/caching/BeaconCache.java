@@ -16,7 +16,10 @@
 
 package com.dynatrace.openkit.core.caching;
 
-import java.util.Observer;
+import com.dynatrace.openkit.core.util.CoalescingSignal;
+
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Set;
 
 /**
@@ -25,17 +28,43 @@ import java.util.Set;
 public interface BeaconCache {
 
     /**
-     * Add an {@link Observer} which gets notified after a new event data or action data got inserted.
+     * Add a {@link CoalescingSignal} which gets signalled after a new event data or action data got inserted.
+     *
+     * <p>
+     * Signalling never blocks the inserting thread. Multiple inserts happening before the
+     * waiting thread consumes the signal result in a single wake up.
+     * </p>
+     *
+     * @param signal Signal to add.
+     */
+    void addDataAddedSignal(CoalescingSignal signal);
+
+    /**
+     * Add a {@link CoalescingSignal} which gets signalled when inserting data makes the cache size
+     * grow from below {@code thresholdInBytes} to {@code thresholdInBytes} or above.
+     *
+     * <p>
+     * The signal is not signalled again, until the cache size dropped below the threshold.
+     * </p>
+     *
+     * @param thresholdInBytes The cache size in bytes.
+     * @param signal Signal to add.
+     */
+    void addCacheSizeThresholdSignal(long thresholdInBytes, CoalescingSignal signal);
+
+    /**
+     * Add a {@link CoalescingSignal} which gets signalled after event data which must not get lost,
+     * like crashes and errors, got inserted.
      *
-     * @param o Observer to add.
+     * @param signal Signal to add.
      */
-    void addObserver(Observer o);
+    void addCriticalDataAddedSignal(CoalescingSignal signal);
 
     /**
      * Add event data for a given {@code beaconID} to this cache.
      *
      * <p>
-     * All registered observers are notified, after the event data has been added.
+     * All registered signals are signalled, after the event data has been added.
      * </p>
      *
      * @param beaconID The beacon's ID (aka Session ID) for which to add event data.
@@ -69,13 +98,57 @@ public interface BeaconCache {
      *
      * @param beaconID The beacon id for which to get the next chunk.
      * @param chunkPrefix Prefix to append to the beginning of the chunk.
-     * @param maxSize Maximum chunk size. As soon as chunk's size is greater than or equal to maxSize result is returned.
+     * @param maxSize Maximum chunk size in bytes. As soon as chunk's size is greater than or equal to maxSize result is returned.
+     * @param delimiter Delimiter between consecutive chunks.
+     *
+     * @return {@code null} if given {@code beaconID} does not exist, an empty array, if there is no more data to send
+     * or the next UTF-8 encoded chunk to send.
+     */
+    byte[] getNextBeaconChunk(Integer beaconID, String chunkPrefix, int maxSize, char delimiter);
+
+    /**
+     * Write the next chunk for sending to the backend to the given stream.
+     *
+     * <p>
+     * This behaves like {@link #getNextBeaconChunk(Integer, String, int, char)}, but the records are written
+     * directly to {@code chunk}, e.g. a compressing stream, without materializing the uncompressed chunk first.
+     * </p>
+     *
+     * <p>
+     * Note: This method must only be invoked from the beacon sending thread.
+     * </p>
+     *
+     * @param beaconID The beacon id for which to write the next chunk.
+     * @param chunkPrefix Prefix to append to the beginning of the chunk.
+     * @param maxSize Maximum chunk size in bytes. As soon as chunk's size is greater than or equal to maxSize writing stops.
      * @param delimiter Delimiter between consecutive chunks.
+     * @param chunk The stream to which the UTF-8 encoded chunk is written.
+     *
+     * @return The number of bytes written, which is {@code 0} if given {@code beaconID} does not exist
+     * or if there is no more data to send.
+     * @throws IOException If writing to {@code chunk} fails. The records are then still marked for sending,
+     * so {@link #resetChunkedData(Integer)} must be called.
+     */
+    int writeNextBeaconChunk(Integer beaconID, String chunkPrefix, int maxSize, char delimiter, OutputStream chunk) throws IOException;
+
+    /**
+     * Test if there is a next chunk for sending to the backend.
+     *
+     * <p>
+     * This allows to test for data, before the stream passed to
+     * {@link #writeNextBeaconChunk(Integer, String, int, char, OutputStream)} is opened.
+     * If {@code false} is returned, the beacon's data is prepared for sending again.
+     * </p>
      *
-     * @return {@code null} if given {@code beaconID} does not exist, an empty string, if there is no more data to send
-     * or the next chunk to send.
+     * <p>
+     * Note: This method must only be invoked from the beacon sending thread.
+     * </p>
+     *
+     * @param beaconID The beacon id for which to test for the next chunk.
+     * @return {@code true} if the next chunk contains data, {@code false} if given {@code beaconID} does not exist
+     * or if there is no more data to send.
      */
-    String getNextBeaconChunk(Integer beaconID, String chunkPrefix, int maxSize, char delimiter);
+    boolean hasNextBeaconChunk(Integer beaconID);
 
     /**
      * Remove all data that was previously included in chunks.
@@ -137,6 +210,22 @@ public interface BeaconCache {
      */
     int evictRecordsByNumber(Integer beaconID, int numRecords);
 
+    /**
+     * Evict the oldest {@link BeaconCacheRecord beacon cache records} of all beacons,
+     * until the number of bytes stored in the cache is less than or equal to {@code maxNumBytes}.
+     *
+     * <p>
+     * Records are evicted globally oldest first, regardless of the beacon they belong to.
+     * Records which are currently being sent are not evicted.
+     * Eviction stops early, if the calling thread is interrupted.
+     * </p>
+     *
+     * @param maxNumBytes The number of bytes the cache shall not exceed after eviction.
+     *
+     * @return Returns the number of evicted cache records.
+     */
+    int evictRecordsBySize(long maxNumBytes);
+
     /**
      * Get number of bytes currently stored in cache.
      *
@@ -144,6 +233,18 @@ public interface BeaconCache {
      */
     long getNumBytesInCache();
 
+    /**
+     * Get number of bytes currently stored in cache for the given {@code beaconID}.
+     *
+     * <p>
+     * This does not lock the beacon's cache entry, data added concurrently might not be included yet.
+     * </p>
+     *
+     * @param beaconID The beacon's identifier.
+     * @return Number of bytes stored for the beacon, or {@code 0} if there is no entry for {@code beaconID}.
+     */
+    long getNumBytesInCache(Integer beaconID);
+
     /**
      * Tests if an cached entry for {@code beaconID} is empty.
      *
@@ -16,9 +16,9 @@
 
 package com.dynatrace.openkit.core.caching;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collections;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -33,15 +33,25 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 class BeaconCacheEntry {
 
+    /**
+     * Pool providing direct buffers for storing record data off-heap, or {@code null} if data is stored on the heap.
+     */
+    private final DirectByteBufferPool bufferPool;
+
+    /**
+     * Beacon persisting the records in a journal, or {@code null} if records are not persisted.
+     */
+    private final JournaledBeacon journaledBeacon;
+
     /**
      * List storing all active event data.
      */
-    private LinkedList<BeaconCacheRecord> eventData = new LinkedList<BeaconCacheRecord>();
+    private BeaconCacheRecordList eventData;
 
     /**
      * List storing all active session data.
      */
-    private LinkedList<BeaconCacheRecord> actionData = new LinkedList<BeaconCacheRecord>();
+    private BeaconCacheRecordList actionData;
 
     /**
      * Lock object for locking access to session & event data.
@@ -51,15 +61,58 @@ class BeaconCacheEntry {
     /**
      * List storing all event data being sent.
      */
-    private LinkedList<BeaconCacheRecord> eventDataBeingSent;
+    private BeaconCacheRecordList eventDataBeingSent;
     /**
      * List storing all action data being sent.
      */
-    private LinkedList<BeaconCacheRecord> actionDataBeingSent;
+    private BeaconCacheRecordList actionDataBeingSent;
+
+    /**
+     * Candidate registered for this entry in the cache's eviction index, or {@code null} if none is registered.
+     */
+    private EvictionCandidate evictionCandidate = null;
+
+    /**
+     * Flag indicating whether this entry has been released.
+     */
+    private boolean released = false;
+
+    /**
+     * Total number of bytes as of the last call to {@link #publishTotalNumberOfBytes()}, readable without the lock.
+     */
+    private volatile long publishedNumberOfBytes = 0;
+
+    /**
+     * Create an entry storing record data on the heap.
+     */
+    BeaconCacheEntry() {
+        this((DirectByteBufferPool) null);
+    }
+
+    /**
+     * Create an entry.
+     *
+     * @param bufferPool Pool providing direct buffers for storing record data off-heap,
+     *                   or {@code null} to store record data on the heap.
+     */
+    BeaconCacheEntry(DirectByteBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+        journaledBeacon = null;
+        eventData = newEventDataList();
+        actionData = newActionDataList();
+    }
+
     /**
-     * Total number of bytes consumed by this entry.
+     * Create an entry storing record data on the heap and persisting it in a journal.
+     *
+     * @param journaledBeacon The beacon used to persist the records.
      */
-    private long totalNumBytes = 0;
+    BeaconCacheEntry(JournaledBeacon journaledBeacon) {
+        bufferPool = null;
+        this.journaledBeacon = journaledBeacon;
+        eventData = newEventDataList();
+        actionData = newActionDataList();
+    }
 
     /**
      * Lock this {@link BeaconCacheEntry} for reading & writing.
@@ -86,21 +139,47 @@ class BeaconCacheEntry {
     /**
      * Add new event data record to cache.
      *
-     * @param record The new record to add.
+     * @param timestamp The timestamp of the new record.
+     * @param data      The UTF-8 encoded data of the new record.
+     * @throws IllegalStateException If the entry has already been released.
      */
-    void addEventData(BeaconCacheRecord record) {
-        eventData.add(record);
-        totalNumBytes += record.getDataSizeInBytes();
+    void addEventData(long timestamp, byte[] data) {
+        checkNotReleased();
+        eventData.add(timestamp, data);
     }
 
     /**
      * Add new action data record to the cache.
      *
-     * @param record The new record to add.
+     * @param timestamp The timestamp of the new record.
+     * @param data      The UTF-8 encoded data of the new record.
+     * @throws IllegalStateException If the entry has already been released.
      */
-    void addActionData(BeaconCacheRecord record) {
-        actionData.add(record);
-        totalNumBytes += record.getDataSizeInBytes();
+    void addActionData(long timestamp, byte[] data) {
+        checkNotReleased();
+        actionData.add(timestamp, data);
+    }
+
+    /**
+     * Add an event data record, which has been recovered from the journal.
+     *
+     * @param timestamp The timestamp of the record.
+     * @param data      The UTF-8 encoded data of the record.
+     * @param entryID   The id of the journal entry storing the record.
+     */
+    void addRecoveredEventData(long timestamp, byte[] data, long entryID) {
+        eventData.addJournaled(timestamp, data, entryID);
+    }
+
+    /**
+     * Add an action data record, which has been recovered from the journal.
+     *
+     * @param timestamp The timestamp of the record.
+     * @param data      The UTF-8 encoded data of the record.
+     * @param entryID   The id of the journal entry storing the record.
+     */
+    void addRecoveredActionData(long timestamp, byte[] data, long entryID) {
+        actionData.addJournaled(timestamp, data, entryID);
     }
 
     /**
@@ -118,33 +197,64 @@ class BeaconCacheEntry {
     void copyDataForChunking() {
         actionDataBeingSent = actionData;
         eventDataBeingSent = eventData;
-        actionData = new LinkedList<BeaconCacheRecord>();
-        eventData = new LinkedList<BeaconCacheRecord>();
-        totalNumBytes = 0; // data which is being sent is not counted
+        actionData = newActionDataList();
+        eventData = newEventDataList(); // data which is being sent is not counted
+    }
+
+    private BeaconCacheRecordList newEventDataList() {
+        return journaledBeacon == null
+            ? new BeaconCacheRecordList(bufferPool)
+            : new BeaconCacheRecordList(journaledBeacon, BeaconCacheJournal.TYPE_EVENT);
+    }
+
+    private BeaconCacheRecordList newActionDataList() {
+        return journaledBeacon == null
+            ? new BeaconCacheRecordList(bufferPool)
+            : new BeaconCacheRecordList(journaledBeacon, BeaconCacheJournal.TYPE_ACTION);
     }
 
     /**
-     * Get next data chunk to send to the Dynatrace backend system.
+     * Write the next data chunk to send to the Dynatrace backend system.
      *
      * <p>
      * This method is called from beacon sending thread.
      * </p>
      *
      * @param chunkPrefix The prefix to add to each chunk.
-     * @param maxSize     The maximum size in characters for one chunk.
+     * @param maxSize     The maximum size in bytes for one chunk.
      * @param delimiter   The delimiter between data chunks.
+     * @param chunk       The stream to which the UTF-8 encoded chunk is written.
      *
-     * @return The string to send or an empty string if there is no more data to send.
+     * @return The number of bytes written or {@code 0} if there is no more data to send.
+     * @throws IOException If writing to {@code chunk} fails.
      */
-    String getChunk(String chunkPrefix, int maxSize, char delimiter) {
+    int writeChunk(String chunkPrefix, int maxSize, char delimiter, OutputStream chunk) throws IOException {
+
+        if (!hasNextChunk()) {
+            return 0;
+        }
+        return writeNextChunk(chunkPrefix, maxSize, delimiter, chunk);
+    }
+
+    /**
+     * Test if there is a chunk to send to the Dynatrace backend system.
+     *
+     * <p>
+     * This method is called from beacon sending thread.
+     * </p>
+     *
+     * @return {@code true} if the next call to {@link #writeChunk(String, int, char, OutputStream)} writes a chunk,
+     * {@code false} otherwise.
+     */
+    boolean hasNextChunk() {
 
         if (!hasDataToSend()) {
             // nothing to send - reset to null, so next time lists get copied again
             eventDataBeingSent = null;
             actionDataBeingSent = null;
-            return "";
+            return false;
         }
-        return getNextChunk(chunkPrefix, maxSize, delimiter);
+        return true;
     }
 
     /**
@@ -159,46 +269,31 @@ class BeaconCacheEntry {
     }
 
     /**
-     * Get the next chunk.
+     * Write the next chunk.
      *
      * @param chunkPrefix The prefix to add to each chunk.
-     * @param maxSize     The maximum size in characters for one chunk.
+     * @param maxSize     The maximum size in bytes for one chunk.
      * @param delimiter   The delimiter between data chunks.
+     * @param chunk       The stream to which the UTF-8 encoded chunk is written.
      *
-     * @return The string to send or an empty string if there is no more data to send.
+     * @return The number of bytes written.
+     * @throws IOException If writing to {@code chunk} fails.
      */
-    private String getNextChunk(String chunkPrefix, int maxSize, char delimiter) {
-
-        // create the string builder
-        StringBuilder beaconBuilder = new StringBuilder(maxSize);
+    private int writeNextChunk(String chunkPrefix, int maxSize, char delimiter, OutputStream chunk) throws IOException {
 
-        // append the chunk prefix
-        beaconBuilder.append(chunkPrefix);
+        // write the chunk prefix
+        byte[] encodedPrefix = BeaconCacheRecord.encodeData(chunkPrefix);
+        chunk.write(encodedPrefix, 0, encodedPrefix.length);
 
-        // append data from both lists
+        // write data from both lists
         // note the order is currently important -> event data goes first, then action data
-        chunkifyDataList(beaconBuilder, eventDataBeingSent, maxSize, delimiter);
-        chunkifyDataList(beaconBuilder, actionDataBeingSent, maxSize, delimiter);
-
-        return beaconBuilder.toString();
-    }
-
-    private static void chunkifyDataList(StringBuilder chunkBuilder, LinkedList<BeaconCacheRecord> dataBeingSent, int maxSize, char delimiter) {
-
-        Iterator<BeaconCacheRecord> iterator = dataBeingSent.iterator();
-        while (iterator.hasNext() && chunkBuilder.length() <= maxSize) {
-
-            // mark the record for sending
-            BeaconCacheRecord record = iterator.next();
-            record.markForSending();
-
-            // append delimiter & data
-            chunkBuilder.append(delimiter).append(record.getData());
-        }
+        byte[] encodedDelimiter = BeaconCacheRecord.encodeData(String.valueOf(delimiter));
+        int chunkSize = eventDataBeingSent.appendToChunk(chunk, encodedPrefix.length, maxSize, encodedDelimiter);
+        return actionDataBeingSent.appendToChunk(chunk, chunkSize, maxSize, encodedDelimiter);
     }
 
     /**
-     * Remove data that was previously marked for sending when {@link #getNextChunk(String, int, char)} was called.
+     * Remove data that was previously marked for sending when {@link #writeChunk(String, int, char, OutputStream)} was called.
      */
     void removeDataMarkedForSending() {
 
@@ -207,17 +302,11 @@ class BeaconCacheEntry {
             return;
         }
 
-        Iterator<BeaconCacheRecord> iterator = eventDataBeingSent.iterator();
-        while (iterator.hasNext() && iterator.next().isMarkedForSending()) {
-            iterator.remove();
-        }
+        eventDataBeingSent.removeRecordsMarkedForSending();
 
-        if (!iterator.hasNext()) {
-            // only check action data, if all event data has been traversed, otherwise it's just waste of cpu time
-            iterator = actionDataBeingSent.iterator();
-            while (iterator.hasNext() && iterator.next().isMarkedForSending()) {
-                iterator.remove();
-            }
+        if (eventDataBeingSent.isEmpty()) {
+            // only check action data, if all event data has been removed, since event data is chunked first
+            actionDataBeingSent.removeRecordsMarkedForSending();
         }
     }
 
@@ -231,27 +320,17 @@ class BeaconCacheEntry {
             return;
         }
 
-        // reset the "sending marks" and in the same traversal count the bytes which are added back
-        long numBytes = 0;
-        for (BeaconCacheRecord record : eventDataBeingSent) {
-            record.unsetSending();
-            numBytes += record.getDataSizeInBytes();
-        }
-
-        for (BeaconCacheRecord record : actionDataBeingSent) {
-            record.unsetSending();
-            numBytes += record.getDataSizeInBytes();
-        }
+        // reset the "sending marks"
+        eventDataBeingSent.unsetSendingMarks();
+        actionDataBeingSent.unsetSendingMarks();
 
         // merge data
-        eventDataBeingSent.addAll(eventData);
-        actionDataBeingSent.addAll(actionData);
+        eventDataBeingSent.moveAllFrom(eventData);
+        actionDataBeingSent.moveAllFrom(actionData);
         eventData = eventDataBeingSent;
         actionData = actionDataBeingSent;
         eventDataBeingSent = null;
         actionDataBeingSent = null;
-
-        totalNumBytes += numBytes;
     }
 
 
@@ -268,7 +347,81 @@ class BeaconCacheEntry {
      */
     long getTotalNumberOfBytes() {
 
-        return totalNumBytes;
+        return eventData.getNumBytes() + actionData.getNumBytes();
+    }
+
+    /**
+     * Publish the current total number of bytes, so that other threads can read it without locking.
+     *
+     * <p>
+     * The caller must hold the entry's lock.
+     * </p>
+     */
+    void publishTotalNumberOfBytes() {
+        publishedNumberOfBytes = getTotalNumberOfBytes();
+    }
+
+    /**
+     * Get the total number of bytes as of the last time it was published, without locking.
+     *
+     * @return Total number of bytes, as returned by {@link #getTotalNumberOfBytes()} when it was published.
+     */
+    long getPublishedNumberOfBytes() {
+        return publishedNumberOfBytes;
+    }
+
+    /**
+     * Test if there are any records, which are not being sent.
+     *
+     * @return {@code true} if there are event or action records, {@code false} otherwise.
+     */
+    boolean hasRecords() {
+        return !eventData.isEmpty() || !actionData.isEmpty();
+    }
+
+    /**
+     * Get the timestamp of the oldest record, which is not being sent.
+     *
+     * <p>
+     * Like in {@link #removeOldestRecords(int)}, the first event and the first action are considered
+     * the oldest ones. This method must only be called if {@link #hasRecords()} returns {@code true}.
+     * </p>
+     *
+     * @return The timestamp of the oldest record.
+     */
+    long getOldestTimestamp() {
+        if (eventData.isEmpty()) {
+            return actionData.getFirstTimestamp();
+        }
+        if (actionData.isEmpty()) {
+            return eventData.getFirstTimestamp();
+        }
+        return Math.min(eventData.getFirstTimestamp(), actionData.getFirstTimestamp());
+    }
+
+    /**
+     * Get the candidate registered for this entry in the cache's eviction index.
+     *
+     * @return The registered candidate or {@code null} if none is registered.
+     */
+    EvictionCandidate getEvictionCandidate() {
+        return evictionCandidate;
+    }
+
+    /**
+     * Set the candidate registered for this entry in the cache's eviction index.
+     *
+     * @param evictionCandidate The registered candidate or {@code null} if none is registered.
+     */
+    void setEvictionCandidate(EvictionCandidate evictionCandidate) {
+        this.evictionCandidate = evictionCandidate;
+    }
+
+    /**
+     * Test if this entry has been released by {@link #release()}.
+     */
+    boolean isReleased() {
+        return released;
     }
 
     /**
@@ -285,97 +438,130 @@ class BeaconCacheEntry {
      */
     int removeRecordsOlderThan(long minTimestamp) {
 
-
-        int numRecordsRemoved = removeRecordsOlderThan(eventData, minTimestamp);
-        numRecordsRemoved += removeRecordsOlderThan(actionData, minTimestamp);
+        int numRecordsRemoved = eventData.removeRecordsOlderThan(minTimestamp);
+        numRecordsRemoved += actionData.removeRecordsOlderThan(minTimestamp);
 
         return numRecordsRemoved;
     }
 
     /**
-     * Remove all {@link BeaconCacheRecord beacon cache records} from {@code records}.
+     * Remove up to {@code numRecords} records from event & action data, compared by their age.
      *
-     * @param minTimestamp The minimum timestamp allowed.
+     * <p>
+     * Note not all event/action data entries are traversed, only the first action data & first event
+     * data is removed and compared against each other, which one to remove first. If the first action's timestamp and
+     * first event's timestamp are equal, the first event is removed.
+     * </p>
+     *
+     * @param numRecords The number of records.
      *
-     * @return The number of records removed from {@code records}.
+     * @return Number of actually removed records.
      */
-    private static int removeRecordsOlderThan(List<BeaconCacheRecord> records, long minTimestamp) {
+    int removeOldestRecords(int numRecords) {
 
         int numRecordsRemoved = 0;
 
-        Iterator<BeaconCacheRecord> iterator = records.iterator();
-        while (iterator.hasNext()) {
-            BeaconCacheRecord record = iterator.next();
-            if (record.getTimestamp() < minTimestamp) {
-                iterator.remove();
-                numRecordsRemoved++;
-            }
+        while (numRecordsRemoved < numRecords && hasRecords()) {
+            removeOldestRecord();
+            numRecordsRemoved++;
         }
 
         return numRecordsRemoved;
     }
 
     /**
-     * Remove up to {@code numRecords} records from event & action data, compared by their age.
+     * Remove the oldest records from event & action data, until at least {@code numBytes} bytes have been removed
+     * or the oldest remaining record is newer than {@code maxTimestamp}.
      *
      * <p>
-     * Note not all event/action data entries are traversed, only the first action data & first event
-     * data is removed and compared against each other, which one to remove first. If the first action's timestamp and
-     * first event's timestamp are equal, the first event is removed.
+     * The records are compared the same way as in {@link #removeOldestRecords(int)}.
      * </p>
      *
-     * @param numRecords The number of records.
+     * @param numBytes     The number of bytes to remove.
+     * @param maxTimestamp The maximum timestamp of a removed record.
      *
      * @return Number of actually removed records.
      */
-    int removeOldestRecords(int numRecords) {
+    int removeOldestRecords(long numBytes, long maxTimestamp) {
 
+        long minNumBytes = getTotalNumberOfBytes() - numBytes;
         int numRecordsRemoved = 0;
 
-        Iterator<BeaconCacheRecord> eventsIterator = eventData.iterator();
-        Iterator<BeaconCacheRecord> actionsIterator = actionData.iterator();
-        BeaconCacheRecord currentEvent = eventsIterator.hasNext() ? eventsIterator.next() : null;
-        BeaconCacheRecord currentAction = actionsIterator.hasNext() ? actionsIterator.next() : null;
+        while (hasRecords() && getTotalNumberOfBytes() > minNumBytes && getOldestTimestamp() <= maxTimestamp) {
+            removeOldestRecord();
+            numRecordsRemoved++;
+        }
 
-        while (numRecordsRemoved < numRecords && (currentEvent != null || currentAction != null)) {
+        return numRecordsRemoved;
+    }
 
-            if (currentEvent == null) {
-                // actions is not null -> remove action
-                currentAction = removeAndAdvanceIterator(actionsIterator);
-            } else if (currentAction == null) {
-                // events is not null -> remove event
-                currentEvent = removeAndAdvanceIterator(eventsIterator);
+    /**
+     * Remove either the first event or the first action, whichever is older.
+     *
+     * <p>
+     * This method must only be called if {@link #hasRecords()} returns {@code true}.
+     * </p>
+     */
+    private void removeOldestRecord() {
+
+        if (eventData.isEmpty()) {
+            // actions is not empty -> remove action
+            actionData.removeFirst();
+        } else if (actionData.isEmpty()) {
+            // events is not empty -> remove event
+            eventData.removeFirst();
+        } else {
+            // both are not empty -> compare by timestamp and take the older one
+            if (actionData.getFirstTimestamp() < eventData.getFirstTimestamp()) {
+                // first action is older than first event
+                actionData.removeFirst();
             } else {
-                // both are not null -> compare by timestamp and take the older one
-                if (currentAction.getTimestamp() < currentEvent.getTimestamp()) {
-                    // first action is older than first event
-                    currentAction = removeAndAdvanceIterator(actionsIterator);
-                } else {
-                    // first event is older than first action
-                    currentEvent = removeAndAdvanceIterator(eventsIterator);
-                }
+                // first event is older than first action
+                eventData.removeFirst();
             }
-
-            numRecordsRemoved++;
         }
+    }
 
-        return numRecordsRemoved;
+    /**
+     * Ensure that no records are added to a released entry, since they would never be sent, nor freed.
+     */
+    private void checkNotReleased() {
+        if (released) {
+            throw new IllegalStateException("cache entry has already been released");
+        }
     }
 
-    private static <E> E removeAndAdvanceIterator(Iterator<E> iterator) {
-        iterator.remove();
-        return iterator.hasNext() ? iterator.next() : null;
+    /**
+     * Remove all data, including data being sent, discard it from the journal and give any direct buffers back to the pool.
+     *
+     * <p>
+     * This method is called when the entry is deleted from the cache.
+     * </p>
+     */
+    void release() {
+        released = true;
+        eventData.release();
+        actionData.release();
+        if (eventDataBeingSent != null) {
+            eventDataBeingSent.release();
+        }
+        if (actionDataBeingSent != null) {
+            actionDataBeingSent.release();
+        }
+        if (journaledBeacon != null) {
+            journaledBeacon.discard();
+        }
     }
 
     /**
-     * Get a shallow copy of event data.
+     * Get a snapshot of event data.
      *
      * <p>
      * This method shall only be used for testing purposes.
      * </p>
      */
     List<BeaconCacheRecord> getEventData() {
-        return new LinkedList<BeaconCacheRecord>(eventData);
+        return eventData.toRecords();
     }
 
     /**
@@ -386,28 +572,28 @@ class BeaconCacheEntry {
      * </p>
      */
     List<BeaconCacheRecord> getActionData() {
-        return new LinkedList<BeaconCacheRecord>(actionData);
+        return actionData.toRecords();
     }
 
     /**
-     * Get a readonly list of event data being sent.
+     * Get a readonly snapshot of event data being sent.
      *
      * <p>
      * This method shall only be used for testing purposes.
      * </p>
      */
     List<BeaconCacheRecord> getEventDataBeingSent() {
-        return eventDataBeingSent == null ? null : Collections.unmodifiableList(eventDataBeingSent);
+        return eventDataBeingSent == null ? null : Collections.unmodifiableList(eventDataBeingSent.toRecords());
     }
 
     /**
-     * Get a readonly list of action data being sent.
+     * Get a readonly snapshot of action data being sent.
      *
      * <p>
      * This method shall only be used for testing purposes.
      * </p>
      */
     List<BeaconCacheRecord> getActionDataBeingSent() {
-        return actionDataBeingSent == null ? null : Collections.unmodifiableList(actionDataBeingSent);
+        return actionDataBeingSent == null ? null : Collections.unmodifiableList(actionDataBeingSent.toRecords());
     }
 }
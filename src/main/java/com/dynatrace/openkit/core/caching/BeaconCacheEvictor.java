@@ -18,10 +18,9 @@ package com.dynatrace.openkit.core.caching;
 
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
+import com.dynatrace.openkit.core.util.CoalescingSignal;
 import com.dynatrace.openkit.providers.TimingProvider;
 
-import java.util.Observable;
-import java.util.Observer;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -131,11 +130,10 @@ public class BeaconCacheEvictor {
     /**
      * Beacon cache eviction thread runnable.
      */
-    private static final class CacheEvictionRunnable implements Runnable, Observer {
+    private static final class CacheEvictionRunnable implements Runnable {
 
         private final Logger logger;
-        private final Object lockObject = new Object();
-        private boolean recordAdded = false;
+        private final CoalescingSignal recordAdded = new CoalescingSignal();
         private final BeaconCache beaconCache;
         private final BeaconCacheEvictionStrategy[] strategies;
 
@@ -152,23 +150,17 @@ public class BeaconCacheEvictor {
             }
 
             // first register ourselves
-            beaconCache.addObserver(this);
+            beaconCache.addDataAddedSignal(recordAdded);
 
             // run
             while (!Thread.currentThread().isInterrupted()) {
-                synchronized (lockObject) {
-                    try {
-                        while (!recordAdded) {
-                            lockObject.wait();
-                        }
-                    } catch (InterruptedException e) {
-                        // re-interrupt the current thread
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-
-                    // reset the added flag
-                    recordAdded = false;
+                try {
+                    // wait until at least one record was added and reset the signal
+                    recordAdded.await();
+                } catch (InterruptedException e) {
+                    // re-interrupt the current thread
+                    Thread.currentThread().interrupt();
+                    break;
                 }
 
                 // a new record has been added to the cache
@@ -182,13 +174,5 @@ public class BeaconCacheEvictor {
                 logger.debug(getClass().getSimpleName() + " run() - thread is stopped");
             }
         }
-
-        @Override
-        public void update(Observable o, Object arg) {
-            synchronized (lockObject) {
-                recordAdded = true;
-                lockObject.notifyAll();
-            }
-        }
     }
 }
@@ -17,18 +17,28 @@
 package com.dynatrace.openkit.core.caching;
 
 import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.util.CoalescingSignal;
+import com.dynatrace.openkit.core.util.LazyLog;
 import com.dynatrace.openkit.protocol.Beacon;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Observable;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * Class used in OpenKit to cache serialized {@link Beacon} data.
@@ -39,13 +49,42 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  *
  * Furthermore two OpenKit internal threads are also accessing the cache.
  * </p>
+ *
+ * <p>
+ * Cache entries are stored in a {@link ConcurrentHashMap}, therefore looking up an existing entry
+ * does not require any locking and inserting a new entry only contends with threads inserting
+ * into the same segment of the map. Access to the records of a single entry is guarded by
+ * the entry's own lock.
+ * </p>
+ *
+ * <p>
+ * The number of bytes is tracked per entry and for the whole cache, so none of them needs to be computed
+ * by iterating over records. Additionally, the cache keeps an index of {@link EvictionCandidate eviction candidates},
+ * sorted by the timestamp of each entry's oldest record, so that the globally oldest records can be found
+ * without visiting all entries. A candidate is only replaced when the oldest record of an entry changes,
+ * which is not the case when records are appended to an entry that already has records.
+ * </p>
+ *
+ * <p>
+ * Interested parties are informed about inserted data via {@link CoalescingSignal coalescing signals},
+ * which never block the inserting threads.
+ * </p>
  */
-public class BeaconCacheImpl extends Observable implements BeaconCache {
+public class BeaconCacheImpl implements BeaconCache {
 
     private final Logger logger;
-    private final ReadWriteLock globalCacheLock;
-    private final Map<Integer, BeaconCacheEntry> beacons;
+    private final ConcurrentMap<Integer, BeaconCacheEntry> beacons;
     private final AtomicLong cacheSizeInBytes;
+    private final ConcurrentSkipListSet<EvictionCandidate> evictionCandidates;
+    private final AtomicLong lastEvictionCandidateSequenceNumber;
+    private final List<CoalescingSignal> dataAddedSignals;
+    private final List<CacheSizeThresholdSignal> cacheSizeThresholdSignals;
+    private final List<CoalescingSignal> criticalDataAddedSignals;
+    private final DirectByteBufferPool bufferPool;
+    private final BeaconCacheJournal journal;
+    private final ConcurrentMap<Integer, BeaconRegistration> registeredBeacons;
+    private final boolean writeAheadLogEnabled;
+    private final AtomicInteger lastRecoveredBeaconID = new AtomicInteger(0);
 
     /**
      * Create BeaconCache.
@@ -53,36 +92,251 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
      * @param logger
      */
     public BeaconCacheImpl(Logger logger) {
+        this(logger, null);
+    }
+
+    /**
+     * Create BeaconCache.
+     *
+     * @param logger     Logger for logging messages.
+     * @param bufferPool Pool providing direct buffers for storing record data off-heap,
+     *                   or {@code null} to store record data on the heap.
+     */
+    BeaconCacheImpl(Logger logger, DirectByteBufferPool bufferPool) {
+        this(logger, bufferPool, null);
+    }
+
+    /**
+     * Create BeaconCache.
+     *
+     * @param logger     Logger for logging messages.
+     * @param bufferPool Pool providing direct buffers for storing record data off-heap,
+     *                   or {@code null} to store record data on the heap.
+     * @param journal    Journal persisting the records of registered beacons, or {@code null} to not persist records.
+     */
+    BeaconCacheImpl(Logger logger, DirectByteBufferPool bufferPool, BeaconCacheJournal journal) {
+        this(logger, bufferPool, journal, false);
+    }
+
+    /**
+     * Create BeaconCache.
+     *
+     * @param logger               Logger for logging messages.
+     * @param bufferPool           Pool providing direct buffers for storing record data off-heap,
+     *                             or {@code null} to store record data on the heap.
+     * @param journal              Journal persisting the records of registered beacons, or {@code null} to not persist records.
+     * @param writeAheadLogEnabled {@code true} if {@link #addCriticalEventData(Integer, long, String)} shall wait
+     *                             until the record is forced to the storage device.
+     */
+    BeaconCacheImpl(Logger logger, DirectByteBufferPool bufferPool, BeaconCacheJournal journal, boolean writeAheadLogEnabled) {
         this.logger = logger;
-        globalCacheLock = new ReentrantReadWriteLock();
-        beacons = new HashMap<Integer, BeaconCacheEntry>();
+        this.bufferPool = bufferPool;
+        this.journal = journal;
+        registeredBeacons = new ConcurrentHashMap<Integer, BeaconRegistration>();
+        this.writeAheadLogEnabled = journal != null && writeAheadLogEnabled;
+        beacons = new ConcurrentHashMap<Integer, BeaconCacheEntry>();
         cacheSizeInBytes = new AtomicLong(0L);
+        evictionCandidates = new ConcurrentSkipListSet<EvictionCandidate>();
+        lastEvictionCandidateSequenceNumber = new AtomicLong(0L);
+        dataAddedSignals = new CopyOnWriteArrayList<CoalescingSignal>();
+        cacheSizeThresholdSignals = new CopyOnWriteArrayList<CacheSizeThresholdSignal>();
+        criticalDataAddedSignals = new CopyOnWriteArrayList<CoalescingSignal>();
+    }
+
+    @Override
+    public void addDataAddedSignal(CoalescingSignal signal) {
+        dataAddedSignals.add(signal);
+    }
+
+    @Override
+    public void addCacheSizeThresholdSignal(long thresholdInBytes, CoalescingSignal signal) {
+        cacheSizeThresholdSignals.add(new CacheSizeThresholdSignal(thresholdInBytes, signal));
+    }
+
+    @Override
+    public void addCriticalDataAddedSignal(CoalescingSignal signal) {
+        criticalDataAddedSignals.add(signal);
+    }
+
+    /**
+     * Register a beacon, so that its records can be sent after a restart.
+     *
+     * <p>
+     * This does nothing, unless the cache persists records. Records of beacons which are not
+     * registered are only kept in memory.
+     * The registration outlives the beacon's cache entry, so records added after {@link #deleteCacheEntry(Integer)}
+     * are persisted again, until the beacon is {@link #unregisterBeacon(Integer) unregistered}.
+     * </p>
+     *
+     * @param beaconID            The beacon id.
+     * @param sessionStartTime    The session start time of the beacon.
+     * @param clientIPAddress     The client IP address used when sending the beacon.
+     * @param immutableBeaconData The beacon data which does not change over time, used as chunk prefix.
+     */
+    public void registerBeacon(Integer beaconID, long sessionStartTime, String clientIPAddress, String immutableBeaconData) {
+        if (journal == null) {
+            return;
+        }
+
+        registeredBeacons.putIfAbsent(beaconID, new BeaconRegistration(sessionStartTime, clientIPAddress, immutableBeaconData));
+    }
+
+    /**
+     * Unregister a beacon registered with {@link #registerBeacon(Integer, long, String, String)}.
+     *
+     * <p>
+     * Records already added are still persisted, until they are sent or the cache entry is deleted.
+     * Records added afterwards are only kept in memory.
+     * </p>
+     *
+     * @param beaconID The beacon id.
+     */
+    public void unregisterBeacon(Integer beaconID) {
+        registeredBeacons.remove(beaconID);
+    }
+
+    /**
+     * Recover beacons persisted by a previous process.
+     *
+     * <p>
+     * The recovered records are added to this cache, under the {@link RecoveredBeacon#getBeaconID() ids}
+     * of the returned beacons. Recovery is only done once, subsequent calls return an empty list,
+     * as does a cache not persisting records.
+     * </p>
+     *
+     * @return The recovered beacons.
+     */
+    public List<RecoveredBeacon> recoverBeacons() {
+        if (journal == null) {
+            return Collections.emptyList();
+        }
+
+        final List<RecoveredBeacon> recoveredBeacons = new ArrayList<RecoveredBeacon>();
+        final Map<Long, Integer> recoveredBeaconIDs = new HashMap<Long, Integer>();
+        journal.recover(new BeaconCacheJournal.RecoveryVisitor() {
+            @Override
+            public void onBeacon(JournaledBeacon beacon) {
+                int beaconID = lastRecoveredBeaconID.decrementAndGet();
+                beacons.put(beaconID, new BeaconCacheEntry(beacon));
+                recoveredBeaconIDs.put(beacon.getBeaconID(), beaconID);
+                recoveredBeacons.add(new RecoveredBeacon(beaconID, beacon.getSessionStartTime(),
+                    beacon.getClientIPAddress(), beacon.getImmutableBeaconData()));
+            }
+
+            @Override
+            public void onRecord(JournaledBeacon beacon, byte type, long timestamp, byte[] data, long entryID) {
+                Integer beaconID = recoveredBeaconIDs.get(beacon.getBeaconID());
+                BeaconCacheEntry entry = beacons.get(beaconID);
+                try {
+                    entry.lock();
+                    if (type == BeaconCacheJournal.TYPE_EVENT) {
+                        entry.addRecoveredEventData(timestamp, data, entryID);
+                    } else {
+                        entry.addRecoveredActionData(timestamp, data, entryID);
+                    }
+                    onEntryChanged(beaconID, entry);
+                } finally {
+                    entry.unlock();
+                }
+                cacheSizeInBytes.addAndGet(data.length);
+            }
+        });
+
+        LazyLog.info(logger, "{} recoverBeacons() - recovered {} beacons", getClass(), recoveredBeacons.size());
+        if (!recoveredBeacons.isEmpty()) {
+            onDataAdded(0L);
+        }
+
+        return recoveredBeacons;
+    }
+
+    /**
+     * Force persisted records to the storage device.
+     *
+     * <p>
+     * This does nothing, unless the cache persists records.
+     * </p>
+     */
+    public void flush() {
+        if (journal != null) {
+            journal.force();
+        }
     }
 
 
     @Override
     public void addEventData(Integer beaconID, long timestamp, String data) {
+        // explicit level checks on the insert path, so that not even the timestamp is boxed
         if (logger.isDebugEnabled()) {
             logger.debug(getClass().getSimpleName() + " addEventData(sn=" + beaconID + ", timestamp=" + timestamp + ", data='" + data + "')");
         }
-        // get a reference to the cache entry
-        BeaconCacheEntry entry = getCachedEntryOrInsert(beaconID);
+        insertEventData(beaconID, timestamp, data);
+    }
 
-        BeaconCacheRecord record = new BeaconCacheRecord(timestamp, data);
+    /**
+     * Add event data which must not get lost, like crashes and errors.
+     *
+     * <p>
+     * If the cache persists records in write-ahead log mode, this method returns only after the record
+     * has been forced to the storage device. The cost of forcing is shared by all threads adding critical
+     * event data at the same time (group commit). Otherwise this is the same as {@link #addEventData(Integer, long, String)}.
+     * </p>
+     *
+     * @param beaconID  The beacon's ID (aka Session ID) for which to add event data.
+     * @param timestamp The data's timestamp.
+     * @param data      serialized event data to add.
+     */
+    public void addCriticalEventData(Integer beaconID, long timestamp, String data) {
+        addCriticalEventData(beaconID, timestamp, data, null);
+    }
+
+    /**
+     * Add event data which must not get lost, like crashes and errors, and set the given flag.
+     *
+     * <p>
+     * The flag is set after the record has been added, but before anyone waiting for critical data is signalled.
+     * A thread woken up by the signal is thus guaranteed to observe the flag.
+     * </p>
+     *
+     * @param beaconID            The beacon's ID (aka Session ID) for which to add event data.
+     * @param timestamp           The data's timestamp.
+     * @param data                serialized event data to add.
+     * @param criticalDataPending Flag set to {@code true} before signalling, may be {@code null}.
+     */
+    public void addCriticalEventData(Integer beaconID, long timestamp, String data, AtomicBoolean criticalDataPending) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(getClass().getSimpleName() + " addCriticalEventData(sn=" + beaconID + ", timestamp=" + timestamp + ", data='" + data + "')");
+        }
+        insertEventData(beaconID, timestamp, data);
+        if (criticalDataPending != null) {
+            criticalDataPending.set(true);
+        }
 
+        // signal before syncing, the record is already available for sending
+        for (CoalescingSignal signal : criticalDataAddedSignals) {
+            signal.signal();
+        }
+
+        if (writeAheadLogEnabled) {
+            journal.sync();
+        }
+    }
+
+    private void insertEventData(Integer beaconID, long timestamp, String data) {
+        byte[] encodedData = BeaconCacheRecord.encodeData(data);
+
+        // get a reference to the locked cache entry
+        BeaconCacheEntry entry = lockCachedEntryOrInsert(beaconID);
         try {
-            // lock and add the data
-            entry.lock();
-            entry.addEventData(record);
+            // add the data
+            entry.addEventData(timestamp, encodedData);
+            onEntryChanged(beaconID, entry);
         } finally {
             entry.unlock();
         }
 
-        // update cache stats
-        cacheSizeInBytes.addAndGet(record.getDataSizeInBytes());
-
-        // notify observers
-        onDataAdded();
+        // update cache stats and signal listeners
+        onDataAdded(encodedData.length);
     }
 
     @Override
@@ -90,52 +344,90 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
         if (logger.isDebugEnabled()) {
             logger.debug(getClass().getSimpleName() + " addActionData(sn=" + beaconID + ", timestamp=" + timestamp + ", data='" + data + "')");
         }
-        BeaconCacheEntry entry = getCachedEntryOrInsert(beaconID);
-
-        // add event data for that beacon
-        BeaconCacheRecord record = new BeaconCacheRecord(timestamp, data);
+        byte[] encodedData = BeaconCacheRecord.encodeData(data);
 
+        // get a reference to the locked cache entry
+        BeaconCacheEntry entry = lockCachedEntryOrInsert(beaconID);
         try {
-            // lock and add the data
-            entry.lock();
-            entry.addActionData(record);
+            // add action data for that beacon
+            entry.addActionData(timestamp, encodedData);
+            onEntryChanged(beaconID, entry);
         } finally {
             entry.unlock();
         }
 
-        // update cache stats
-        cacheSizeInBytes.addAndGet(record.getDataSizeInBytes());
-
-        // notify observers
-        onDataAdded();
+        // update cache stats and signal listeners
+        onDataAdded(encodedData.length);
     }
 
     @Override
     public void deleteCacheEntry(Integer beaconID) {
-        if (logger.isDebugEnabled()) {
-            logger.debug(getClass().getSimpleName() + " deleteCacheEntry(sn=" + beaconID + ")");
+        LazyLog.debug(logger, "{} deleteCacheEntry(sn={})", getClass(), beaconID);
+        BeaconCacheEntry entry = beacons.remove(beaconID);
+        if (entry != null) {
+            long numBytes;
+            try {
+                entry.lock();
+                numBytes = entry.getTotalNumberOfBytes();
+                entry.release();
+                onEntryChanged(beaconID, entry);
+            } finally {
+                entry.unlock();
+            }
+            cacheSizeInBytes.addAndGet(-1L * numBytes);
         }
-        BeaconCacheEntry entry;
-        try {
-            globalCacheLock.writeLock().lock();
-            entry = beacons.remove(beaconID);
+    }
 
-        } finally {
-            globalCacheLock.writeLock().unlock();
+
+    @Override
+    public byte[] getNextBeaconChunk(Integer beaconID, String chunkPrefix, int maxSize, char delimiter) {
+
+        BeaconCacheEntry entry = getEntryForChunking(beaconID);
+        if (entry == null) {
+            // a cache entry for the given beaconID does not exist
+            return null;
         }
 
-        if (entry != null) {
-            cacheSizeInBytes.addAndGet(-1L * entry.getTotalNumberOfBytes());
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream(maxSize);
+        try {
+            entry.writeChunk(chunkPrefix, maxSize, delimiter, chunk);
+        } catch (IOException e) {
+            // writing to a ByteArrayOutputStream does not fail
+            throw new IllegalStateException(e);
         }
+        return chunk.toByteArray();
     }
 
+    @Override
+    public int writeNextBeaconChunk(Integer beaconID, String chunkPrefix, int maxSize, char delimiter, OutputStream chunk) throws IOException {
+
+        BeaconCacheEntry entry = getEntryForChunking(beaconID);
+        if (entry == null) {
+            // a cache entry for the given beaconID does not exist
+            return 0;
+        }
+
+        // data for chunking is available
+        return entry.writeChunk(chunkPrefix, maxSize, delimiter, chunk);
+    }
 
     @Override
-    public String getNextBeaconChunk(Integer beaconID, String chunkPrefix, int maxSize, char delimiter) {
+    public boolean hasNextBeaconChunk(Integer beaconID) {
+
+        BeaconCacheEntry entry = getEntryForChunking(beaconID);
+        return entry != null && entry.hasNextChunk();
+    }
+
+    /**
+     * Get the cache entry for given {@code beaconID} and prepare its data for chunking if necessary.
+     *
+     * @param beaconID The beacon's ID.
+     * @return The prepared cache entry or {@code null} if it does not exist.
+     */
+    private BeaconCacheEntry getEntryForChunking(Integer beaconID) {
 
         BeaconCacheEntry entry = getCachedEntry(beaconID);
         if (entry == null) {
-            // a cache entry for the given beaconID does not exist
             return null;
         }
 
@@ -146,7 +438,7 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
                 entry.lock();
                 numBytes = entry.getTotalNumberOfBytes();
                 entry.copyDataForChunking();
-
+                onEntryChanged(beaconID, entry);
             } finally {
                 entry.unlock();
             }
@@ -154,8 +446,7 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
             cacheSizeInBytes.addAndGet(-1L * numBytes);
         }
 
-        // data for chunking is available
-        return entry.getChunk(chunkPrefix, maxSize, delimiter);
+        return entry;
     }
 
     @Override
@@ -183,18 +474,44 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
         long numBytes;
         try {
             entry.lock();
+            if (entry.isReleased()) {
+                // deleted in the mean time, the chunk is gone as well
+                return;
+            }
             long oldSize = entry.getTotalNumberOfBytes();
             entry.resetDataMarkedForSending();
+            onEntryChanged(beaconID, entry);
             long newSize = entry.getTotalNumberOfBytes();
             numBytes = newSize - oldSize;
         } finally {
             entry.unlock();
         }
 
-        cacheSizeInBytes.addAndGet(numBytes);
+        // update cache stats and signal listeners
+        onDataAdded(numBytes);
+    }
 
-        // notify observers
-        onDataAdded();
+    /**
+     * Get cached {@link BeaconCacheEntry} or insert new one if nothing exists for given {@code beaconID} and lock it.
+     *
+     * <p>
+     * If the entry is deleted by {@link #deleteCacheEntry(Integer)} before it could be locked,
+     * it's released and a new entry is inserted instead.
+     * </p>
+     *
+     * @param beaconID The beacon id to search for.
+     *
+     * @return The already cached entry or newly created one, locked by the calling thread.
+     */
+    private BeaconCacheEntry lockCachedEntryOrInsert(Integer beaconID) {
+        while (true) {
+            BeaconCacheEntry entry = getCachedEntryOrInsert(beaconID);
+            entry.lock();
+            if (!entry.isReleased()) {
+                return entry;
+            }
+            entry.unlock();
+        }
     }
 
     /**
@@ -210,24 +527,33 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
         BeaconCacheEntry entry = getCachedEntry(beaconID);
 
         if (entry == null) {
-            try {
-                // does not exist, and needs to be inserted
-                globalCacheLock.writeLock().lock();
-                if (!beacons.containsKey(beaconID)) {
-                    // double check since this could have been added in the mean time
-                    entry = new BeaconCacheEntry();
-                    beacons.put(beaconID, entry);
-                } else {
-                    entry = beacons.get(beaconID);
-                }
-            } finally {
-                globalCacheLock.writeLock().unlock();
+            // does not exist, and needs to be inserted
+            // if another thread inserted an entry in the mean time, that one wins and is returned
+            BeaconCacheEntry newEntry = newEntry(beaconID);
+            entry = beacons.putIfAbsent(beaconID, newEntry);
+            if (entry == null) {
+                entry = newEntry;
+            } else {
+                // nothing has been written for the losing entry yet, but its journal beacon must not be kept
+                newEntry.release();
             }
         }
 
         return entry;
     }
 
+    /**
+     * Create a new entry, which persists its records, if the beacon is registered.
+     */
+    private BeaconCacheEntry newEntry(Integer beaconID) {
+        BeaconRegistration registration = journal == null ? null : registeredBeacons.get(beaconID);
+        if (registration == null) {
+            return new BeaconCacheEntry(bufferPool);
+        }
+        return new BeaconCacheEntry(journal.newBeacon(registration.sessionStartTime, registration.clientIPAddress,
+            registration.immutableBeaconData));
+    }
+
     /**
      * Get a shallow copy of events collected so far.
      *
@@ -334,31 +660,13 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
      */
     private BeaconCacheEntry getCachedEntry(Integer beaconID) {
 
-        BeaconCacheEntry entry;
-
-        // acquire read lock and get the entry
-        try {
-            globalCacheLock.readLock().lock();
-            entry = beacons.get(beaconID);
-        } finally {
-            globalCacheLock.readLock().unlock();
-        }
-
-        return entry;
+        return beacons.get(beaconID);
     }
 
     @Override
     public Set<Integer> getBeaconIDs() {
 
-        Set<Integer> result;
-        try {
-            globalCacheLock.readLock().lock();
-            result = new HashSet<Integer>(beacons.keySet());
-        } finally {
-            globalCacheLock.readLock().unlock();
-        }
-
-        return result;
+        return new HashSet<Integer>(beacons.keySet());
     }
 
 
@@ -372,17 +680,22 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
         }
 
         int numRecordsRemoved;
+        long numBytesRemoved;
         try {
             entry.lock();
+            long oldSize = entry.getTotalNumberOfBytes();
             numRecordsRemoved = entry.removeRecordsOlderThan(minTimestamp);
+            onEntryChanged(beaconID, entry);
+            numBytesRemoved = oldSize - entry.getTotalNumberOfBytes();
         } finally {
             entry.unlock();
         }
 
-        if (logger.isDebugEnabled()) {
-            logger.debug(getClass().getSimpleName() + " evictRecordsByAge(sn=" + beaconID + ", minTimestamp=" + minTimestamp + ") has evicted "
-                    + numRecordsRemoved + " records");
-        }
+        // update cache stats
+        cacheSizeInBytes.addAndGet(-1L * numBytesRemoved);
+
+        LazyLog.debug(logger, "{} evictRecordsByAge(sn={}, minTimestamp={}) has evicted {} records",
+            getClass(), beaconID, minTimestamp, numRecordsRemoved);
         return numRecordsRemoved;
     }
 
@@ -397,17 +710,68 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
         }
 
         int numRecordsRemoved;
+        long numBytesRemoved;
         try {
             entry.lock();
+            long oldSize = entry.getTotalNumberOfBytes();
             numRecordsRemoved = entry.removeOldestRecords(numRecords);
+            onEntryChanged(beaconID, entry);
+            numBytesRemoved = oldSize - entry.getTotalNumberOfBytes();
         } finally {
             entry.unlock();
         }
 
-        if (logger.isDebugEnabled()) {
-            logger.debug(getClass().getSimpleName() + " evictRecordsByNumber(sn=" + beaconID + ", numRecords=" + numRecords + ") has evicted "
-                    + numRecordsRemoved + " records");
+        // update cache stats
+        cacheSizeInBytes.addAndGet(-1L * numBytesRemoved);
+
+        LazyLog.debug(logger, "{} evictRecordsByNumber(sn={}, numRecords={}) has evicted {} records",
+            getClass(), beaconID, numRecords, numRecordsRemoved);
+        return numRecordsRemoved;
+    }
+
+    @Override
+    public int evictRecordsBySize(long maxNumBytes) {
+
+        int numRecordsRemoved = 0;
+        while (!Thread.currentThread().isInterrupted() && cacheSizeInBytes.get() > maxNumBytes) {
+
+            Iterator<EvictionCandidate> iterator = evictionCandidates.iterator();
+            if (!iterator.hasNext()) {
+                // only data being sent is left
+                break;
+            }
+            EvictionCandidate candidate = iterator.next();
+            // records of the candidate are evicted, as long as they are older than the oldest record of any other beacon
+            long maxTimestamp = iterator.hasNext() ? iterator.next().getOldestTimestamp() : Long.MAX_VALUE;
+
+            BeaconCacheEntry entry = getCachedEntry(candidate.getBeaconID());
+            if (entry == null) {
+                // entry has been deleted concurrently
+                evictionCandidates.remove(candidate);
+                continue;
+            }
+
+            long numBytesRemoved = 0;
+            try {
+                entry.lock();
+                if (entry.getEvictionCandidate() == candidate) {
+                    long oldSize = entry.getTotalNumberOfBytes();
+                    numRecordsRemoved += entry.removeOldestRecords(cacheSizeInBytes.get() - maxNumBytes, maxTimestamp);
+                    onEntryChanged(candidate.getBeaconID(), entry);
+                    numBytesRemoved = oldSize - entry.getTotalNumberOfBytes();
+                } else {
+                    // oldest record has changed concurrently, a stale candidate is dropped, if not yet done
+                    evictionCandidates.remove(candidate);
+                }
+            } finally {
+                entry.unlock();
+            }
+
+            // update cache stats
+            cacheSizeInBytes.addAndGet(-1L * numBytesRemoved);
         }
+
+        LazyLog.debug(logger, "{} evictRecordsBySize(maxNumBytes={}) has evicted {} records", getClass(), maxNumBytes, numRecordsRemoved);
         return numRecordsRemoved;
     }
 
@@ -416,12 +780,87 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
         return cacheSizeInBytes.get();
     }
 
+    /**
+     * Get the eviction candidate of the beacon holding the globally oldest record.
+     *
+     * <p>
+     * Records which are currently being sent are not taken into account.
+     * </p>
+     *
+     * @return The candidate with the oldest record or {@code null} if there are no records.
+     */
+    EvictionCandidate getOldestEvictionCandidate() {
+        Iterator<EvictionCandidate> iterator = evictionCandidates.iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    /**
+     * Publish the entry's size and replace its eviction candidate, if its oldest record changed.
+     *
+     * <p>
+     * The caller must hold the entry's lock.
+     * </p>
+     *
+     * @param beaconID The beacon id of the entry.
+     * @param entry    The entry whose records have been changed.
+     */
+    private void onEntryChanged(Integer beaconID, BeaconCacheEntry entry) {
+        entry.publishTotalNumberOfBytes();
+        updateEvictionCandidate(beaconID, entry);
+    }
+
+    /**
+     * Replace the eviction candidate of the given entry, if its oldest record changed.
+     */
+    private void updateEvictionCandidate(Integer beaconID, BeaconCacheEntry entry) {
+        EvictionCandidate oldCandidate = entry.getEvictionCandidate();
+        EvictionCandidate newCandidate = null;
+        if (!entry.isReleased() && entry.hasRecords()) {
+            long oldestTimestamp = entry.getOldestTimestamp();
+            if (oldCandidate != null && oldCandidate.getOldestTimestamp() == oldestTimestamp) {
+                // oldest record did not change
+                return;
+            }
+            newCandidate = new EvictionCandidate(oldestTimestamp, beaconID, lastEvictionCandidateSequenceNumber.incrementAndGet());
+            evictionCandidates.add(newCandidate);
+        }
+        if (oldCandidate != null) {
+            evictionCandidates.remove(oldCandidate);
+        }
+        entry.setEvictionCandidate(newCandidate);
+    }
+
     /**
      * Call this method when something was added (size of cache increased).
+     *
+     * @param numBytesAdded The number of bytes added, which are not yet accounted in the cache size.
      */
-    private void onDataAdded() {
-        setChanged();
-        notifyObservers();
+    private void onDataAdded(long numBytesAdded) {
+        long newCacheSize = cacheSizeInBytes.addAndGet(numBytesAdded);
+        long oldCacheSize = newCacheSize - numBytesAdded;
+
+        for (CoalescingSignal signal : dataAddedSignals) {
+            signal.signal();
+        }
+        for (CacheSizeThresholdSignal thresholdSignal : cacheSizeThresholdSignals) {
+            // exactly one insert crosses the threshold, even if many threads insert concurrently
+            if (oldCacheSize < thresholdSignal.thresholdInBytes && newCacheSize >= thresholdSignal.thresholdInBytes) {
+                thresholdSignal.signal.signal();
+            }
+        }
+    }
+
+    @Override
+    public long getNumBytesInCache(Integer beaconID) {
+
+        BeaconCacheEntry entry = getCachedEntry(beaconID);
+        if (entry == null) {
+            // already removed
+            return 0L;
+        }
+
+        // published by every change, so ranking sessions by size does not contend with adding data
+        return entry.getPublishedNumberOfBytes();
     }
 
     @Override
@@ -443,4 +882,34 @@ public class BeaconCacheImpl extends Observable implements BeaconCache {
 
         return isEmpty;
     }
+
+    /**
+     * Signal which is signalled when the cache size grows to or above a threshold.
+     */
+    private static final class CacheSizeThresholdSignal {
+
+        private final long thresholdInBytes;
+        private final CoalescingSignal signal;
+
+        CacheSizeThresholdSignal(long thresholdInBytes, CoalescingSignal signal) {
+            this.thresholdInBytes = thresholdInBytes;
+            this.signal = signal;
+        }
+    }
+
+    /**
+     * Data of a registered beacon, needed to persist its records in the journal.
+     */
+    private static final class BeaconRegistration {
+
+        private final long sessionStartTime;
+        private final String clientIPAddress;
+        private final String immutableBeaconData;
+
+        BeaconRegistration(long sessionStartTime, String clientIPAddress, String immutableBeaconData) {
+            this.sessionStartTime = sessionStartTime;
+            this.clientIPAddress = clientIPAddress;
+            this.immutableBeaconData = immutableBeaconData;
+        }
+    }
 }
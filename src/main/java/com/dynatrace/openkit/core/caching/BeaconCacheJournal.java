@@ -0,0 +1,713 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+import com.dynatrace.openkit.api.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal persisting beacon cache records in memory mapped segment files.
+ *
+ * <p>
+ * Each beacon writing into the journal is represented by a {@link JournaledBeacon}, identified by a
+ * journal wide unique id. The first record of a beacon is preceded by a beacon entry, storing the data
+ * required to send the records after a restart. Entries are never moved or rewritten, except the tiny beacon
+ * entries of long living beacons, which are copied to the active segment, when they are the only remaining
+ * reason to keep an old segment.
+ *
+ * Records removed from the cache are marked as discarded in place, by flipping the entry's state byte.
+ * A segment file is deleted as soon as all entries in it have been discarded.
+ * </p>
+ *
+ * <p>
+ * Each segment starts with a header ({@link #SEGMENT_MAGIC}, {@link #SEGMENT_VERSION}),
+ * followed by entries with the following layout:
+ * <pre>
+ *     int  size       - total number of entry bytes, written last and therefore marking the entry as complete
+ *     byte state      - {@link #STATE_LIVE} or {@link #STATE_DISCARDED}
+ *     byte type       - {@link #TYPE_BEACON}, {@link #TYPE_EVENT} or {@link #TYPE_ACTION}
+ *     long beaconID   - the journal wide unique beacon id
+ *     long timestamp  - the record's timestamp or the session start time for beacon entries
+ *     int  checksum   - CRC32 over type, beacon id, timestamp and body
+ *     byte[] body     - the record's data, or the client IP address and beacon prefix for beacon entries
+ * </pre>
+ * An entry with a size of {@code 0} marks the end of a segment.
+ * </p>
+ *
+ * <p>
+ * Data written into a mapped file survives a crash of the process, since it's kept by the operating system.
+ * The segments are only forced to the storage device when {@link #force()} or {@link #sync()} is called,
+ * which batches the expensive synchronization for many records, instead of doing it per record.
+ * Segments which became full in the mean time are forced along with the active one.
+ *
+ * Writers which must not return before their records are durable call {@link #sync()}. Concurrent
+ * callers are served by a group commit: one of them forces everything appended so far, while the others wait
+ * and return without forcing again, if their records were covered.
+ * </p>
+ *
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+class BeaconCacheJournal {
+
+    /**
+     * Default size of a segment file.
+     */
+    static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+    static final byte TYPE_BEACON = 1;
+    static final byte TYPE_EVENT = 2;
+    static final byte TYPE_ACTION = 3;
+
+    static final byte STATE_LIVE = 1;
+    static final byte STATE_DISCARDED = 2;
+
+    static final int SEGMENT_MAGIC = 0x4F4B4243;
+    static final int SEGMENT_VERSION = 1;
+    static final int SEGMENT_HEADER_SIZE = 8;
+    static final int ENTRY_HEADER_SIZE = 26;
+
+    private static final String SEGMENT_FILE_PREFIX = "beacon-cache-";
+    private static final String SEGMENT_FILE_SUFFIX = ".seg";
+
+    private static final int STATE_OFFSET = 4;
+    private static final int TYPE_OFFSET = 5;
+    private static final int BEACON_ID_OFFSET = 6;
+    private static final int TIMESTAMP_OFFSET = 14;
+    private static final int CHECKSUM_OFFSET = 22;
+
+    private final Logger logger;
+    private final File directory;
+    private final int segmentSize;
+    /**
+     * All open segments, ordered by segment number; only modified while holding the journal's lock,
+     * but read without it by {@link #read(long, int)}.
+     */
+    private final ConcurrentMap<Integer, Segment> segments = new ConcurrentSkipListMap<Integer, Segment>();
+    /**
+     * Full segments which have not been forced to the storage device since they were rolled.
+     */
+    private final List<Segment> rolledSegmentsToForce = new ArrayList<Segment>();
+    /**
+     * Location of the beacon entry for each beacon having written at least one record.
+     */
+    private final Map<Long, Long> beaconEntries = new HashMap<Long, Long>();
+    /**
+     * Numbers of the segment files found when opening the journal, which are not yet recovered.
+     */
+    private final List<Integer> segmentNumbersToRecover = new ArrayList<Integer>();
+
+    private Segment activeSegment = null;
+    private int nextSegmentNumber;
+    private long nextBeaconID = 1;
+
+    /**
+     * Number of entries appended so far.
+     */
+    private long numEntriesAppended = 0;
+    /**
+     * Number of appended entries, which are known to be forced to the storage device.
+     */
+    private long numEntriesForced = 0;
+    /**
+     * Flag indicating whether a thread is currently forcing the active segment in {@link #sync()}.
+     */
+    private boolean syncInProgress = false;
+    /**
+     * Number of times {@link #sync()} forced the active segment.
+     */
+    private long numSyncs = 0;
+
+    /**
+     * Create a journal.
+     *
+     * @param logger      Logger for logging messages.
+     * @param directory   The directory storing the segment files, which is created if it does not exist.
+     * @param segmentSize The size of a single segment file.
+     * @throws IOException If the directory cannot be created or read.
+     */
+    BeaconCacheJournal(Logger logger, File directory, int segmentSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create beacon cache directory " + directory);
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            throw new IOException("Failed to list beacon cache directory " + directory);
+        }
+
+        this.logger = logger;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        int maxSegmentNumber = 0;
+        for (File file : files) {
+            int segmentNumber = parseSegmentNumber(file.getName());
+            if (segmentNumber > 0) {
+                segmentNumbersToRecover.add(segmentNumber);
+                maxSegmentNumber = Math.max(maxSegmentNumber, segmentNumber);
+            }
+        }
+        nextSegmentNumber = maxSegmentNumber + 1;
+    }
+
+    /**
+     * Create a beacon, whose records are written to this journal.
+     *
+     * <p>
+     * Nothing is written, until the first record is appended.
+     * </p>
+     *
+     * @param sessionStartTime    The session start time of the beacon.
+     * @param clientIPAddress     The client IP address used when sending the beacon.
+     * @param immutableBeaconData The beacon prefix, which does not change over time.
+     */
+    synchronized JournaledBeacon newBeacon(long sessionStartTime, String clientIPAddress, String immutableBeaconData) {
+        return new JournaledBeacon(this, nextBeaconID++, sessionStartTime, clientIPAddress, immutableBeaconData);
+    }
+
+    /**
+     * Read all live entries from segment files written by a previous process.
+     *
+     * <p>
+     * Beacons are passed to the {@code visitor} first, followed by the records in the order they have been written.
+     * Records of beacons whose beacon entry was lost, as well as beacons without any live record, are discarded. Segments which do not contain any live entry
+     * are deleted. Recovery is only done once, subsequent calls do not read anything.
+     * </p>
+     *
+     * @param visitor The visitor receiving the recovered entries.
+     */
+    synchronized void recover(RecoveryVisitor visitor) {
+        List<Integer> segmentNumbers = new ArrayList<Integer>(segmentNumbersToRecover);
+        segmentNumbersToRecover.clear();
+        Collections.sort(segmentNumbers);
+
+        Map<Long, JournaledBeacon> recoveredBeacons = new TreeMap<Long, JournaledBeacon>();
+        List<Long> recordEntries = new ArrayList<Long>();
+        for (Integer segmentNumber : segmentNumbers) {
+            Segment segment = openSegment(segmentNumber);
+            if (segment == null) {
+                continue;
+            }
+            segments.put(segmentNumber, segment);
+
+            int offset = SEGMENT_HEADER_SIZE;
+            while (segment.isValidEntry(offset)) {
+                long entryID = entryID(segmentNumber, offset);
+                if (segment.buffer.get(offset + STATE_OFFSET) == STATE_LIVE) {
+                    segment.numLiveEntries++;
+                    long beaconID = segment.buffer.getLong(offset + BEACON_ID_OFFSET);
+                    nextBeaconID = Math.max(nextBeaconID, beaconID + 1);
+                    if (segment.buffer.get(offset + TYPE_OFFSET) == TYPE_BEACON) {
+                        segment.numLiveBeaconEntries++;
+                        JournaledBeacon beacon = readBeacon(segment, offset, beaconID);
+                        JournaledBeacon previous = recoveredBeacons.put(beaconID, beacon);
+                        if (previous != null) {
+                            // the beacon entry was copied, but the process died before the old one was discarded
+                            discard(beaconEntries.get(beaconID));
+                        }
+                        beaconEntries.put(beaconID, entryID);
+                    } else {
+                        recordEntries.add(entryID);
+                    }
+                }
+                offset += segment.buffer.getInt(offset);
+            }
+            segment.writePosition = offset;
+        }
+
+        Set<Long> beaconsWithRecords = new HashSet<Long>();
+        for (Long entryID : recordEntries) {
+            beaconsWithRecords.add(segments.get(segmentNumber(entryID)).buffer.getLong(offset(entryID) + BEACON_ID_OFFSET));
+        }
+        Iterator<JournaledBeacon> beaconIterator = recoveredBeacons.values().iterator();
+        while (beaconIterator.hasNext()) {
+            JournaledBeacon beacon = beaconIterator.next();
+            if (beaconsWithRecords.contains(beacon.getBeaconID())) {
+                visitor.onBeacon(beacon);
+            } else {
+                beaconIterator.remove();
+                discardBeacon(beacon);
+            }
+        }
+
+        for (Long entryID : recordEntries) {
+            Segment segment = segments.get(segmentNumber(entryID));
+            int offset = offset(entryID);
+            JournaledBeacon beacon = recoveredBeacons.get(segment.buffer.getLong(offset + BEACON_ID_OFFSET));
+            if (beacon == null) {
+                discard(entryID);
+            } else {
+                visitor.onRecord(beacon, segment.buffer.get(offset + TYPE_OFFSET),
+                    segment.buffer.getLong(offset + TIMESTAMP_OFFSET), read(entryID, segment.bodyLength(offset)), entryID);
+            }
+        }
+
+        deleteUnusedSegments();
+    }
+
+    /**
+     * Append a record.
+     *
+     * <p>
+     * If the record cannot be written, because a new segment file cannot be created,
+     * {@link JournaledBeacon#NO_ENTRY} is returned and the record is only kept in memory.
+     * </p>
+     *
+     * @param beacon    The beacon to which the record belongs.
+     * @param type      The record type, either {@link #TYPE_EVENT} or {@link #TYPE_ACTION}.
+     * @param timestamp The record's timestamp.
+     * @param data      The record's UTF-8 encoded data.
+     * @return The id of the written entry or {@link JournaledBeacon#NO_ENTRY}.
+     */
+    synchronized long appendRecord(JournaledBeacon beacon, byte type, long timestamp, byte[] data) {
+        try {
+            if (!beaconEntries.containsKey(beacon.getBeaconID())) {
+                byte[] body = beacon.encode();
+                beaconEntries.put(beacon.getBeaconID(), append(TYPE_BEACON, beacon.getBeaconID(), beacon.getSessionStartTime(), body));
+            }
+            return append(type, beacon.getBeaconID(), timestamp, data);
+        } catch (IOException e) {
+            logger.error(getClass().getSimpleName() + " appendRecord() - failed to write record to " + directory, e);
+            return JournaledBeacon.NO_ENTRY;
+        }
+    }
+
+    /**
+     * Mark the entry with the given {@code entryID} as discarded.
+     *
+     * @param entryID The id of the entry as returned by {@link #appendRecord(JournaledBeacon, byte, long, byte[])}.
+     */
+    synchronized void discard(long entryID) {
+        Segment segment = segments.get(segmentNumber(entryID));
+        int offset = offset(entryID);
+        if (segment == null || segment.buffer.get(offset + STATE_OFFSET) != STATE_LIVE) {
+            return;
+        }
+
+        segment.buffer.put(offset + STATE_OFFSET, STATE_DISCARDED);
+        segment.numLiveEntries--;
+        if (segment.buffer.get(offset + TYPE_OFFSET) == TYPE_BEACON) {
+            segment.numLiveBeaconEntries--;
+        }
+        if (segment.numLiveEntries == 0 && segment != activeSegment) {
+            deleteSegment(segment);
+        }
+    }
+
+    /**
+     * Discard the beacon entry of the given {@code beacon}.
+     *
+     * <p>
+     * Records of the beacon are discarded separately.
+     * </p>
+     *
+     * @param beacon The beacon which is no longer needed.
+     */
+    synchronized void discardBeacon(JournaledBeacon beacon) {
+        Long entryID = beaconEntries.remove(beacon.getBeaconID());
+        if (entryID != null) {
+            discard(entryID);
+        }
+    }
+
+    /**
+     * Read the body of a live entry.
+     *
+     * <p>
+     * This does not take the journal's lock, so reading does not wait for other threads appending records.
+     * The caller must own the entry, so that it's neither discarded nor its segment deleted while reading.
+     * </p>
+     *
+     * @param entryID The id of the entry.
+     * @param length  The body length.
+     * @return The entry's body.
+     */
+    byte[] read(long entryID, int length) {
+        Segment segment = segments.get(segmentNumber(entryID));
+        ByteBuffer view = segment.buffer.duplicate();
+        view.position(offset(entryID) + ENTRY_HEADER_SIZE);
+        byte[] body = new byte[length];
+        view.get(body);
+        return body;
+    }
+
+    /**
+     * Force all segments to the storage device.
+     */
+    synchronized void force() {
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+        }
+        rolledSegmentsToForce.clear();
+        numEntriesForced = numEntriesAppended;
+    }
+
+    /**
+     * Wait until all entries appended before calling this method are forced to the storage device.
+     *
+     * <p>
+     * If another thread is already forcing, this waits for it and only forces again,
+     * if that did not cover all entries appended by the caller. Forcing is done without holding the
+     * journal's lock, therefore other threads can append meanwhile and are covered by the next sync.
+     *
+     * If the calling thread is interrupted while waiting, this method returns early and the thread's
+     * interrupted status is set.
+     * </p>
+     */
+    void sync() {
+        List<Segment> segmentsToForce;
+        long numEntriesToForce;
+        synchronized (this) {
+            long numEntriesRequired = numEntriesAppended;
+            while (syncInProgress && numEntriesForced < numEntriesRequired) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (numEntriesForced >= numEntriesRequired) {
+                // another thread has already forced this caller's entries
+                return;
+            }
+
+            // the active segment and the ones rolled since the last sync hold all entries not yet forced
+            syncInProgress = true;
+            segmentsToForce = new ArrayList<Segment>(rolledSegmentsToForce);
+            rolledSegmentsToForce.clear();
+            segmentsToForce.add(activeSegment);
+            numEntriesToForce = numEntriesAppended;
+        }
+
+        boolean forced = false;
+        try {
+            // a segment deleted meanwhile stays mapped, so forcing it is still safe
+            for (Segment segment : segmentsToForce) {
+                segment.buffer.force();
+            }
+            forced = true;
+        } finally {
+            synchronized (this) {
+                if (forced) {
+                    numEntriesForced = Math.max(numEntriesForced, numEntriesToForce);
+                    numSyncs++;
+                } else {
+                    // the next sync has to force the rolled segments, which are still in use, again
+                    List<Segment> rolledSegments = segmentsToForce.subList(0, segmentsToForce.size() - 1);
+                    for (int i = rolledSegments.size() - 1; i >= 0; i--) {
+                        Segment segment = rolledSegments.get(i);
+                        if (segments.get(segment.number) == segment) {
+                            rolledSegmentsToForce.add(0, segment);
+                        }
+                    }
+                }
+                syncInProgress = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Get the number of times {@link #sync()} actually forced data to the storage device.
+     */
+    synchronized long getNumSyncs() {
+        return numSyncs;
+    }
+
+    /**
+     * Get the number of segment files currently in use.
+     */
+    synchronized int getNumSegments() {
+        return segments.size();
+    }
+
+    private long append(byte type, long beaconID, long timestamp, byte[] body) throws IOException {
+        int entrySize = ENTRY_HEADER_SIZE + body.length;
+        if (activeSegment == null || activeSegment.remaining() < entrySize) {
+            rollSegment(entrySize);
+        }
+
+        int offset = activeSegment.writePosition;
+        activeSegment.write(offset, type, beaconID, timestamp, body);
+        activeSegment.writePosition += entrySize;
+        activeSegment.numLiveEntries++;
+        if (type == TYPE_BEACON) {
+            activeSegment.numLiveBeaconEntries++;
+        }
+        numEntriesAppended++;
+
+        return entryID(activeSegment.number, offset);
+    }
+
+    private void rollSegment(int minEntrySize) throws IOException {
+        Segment previous = activeSegment;
+        int size = Math.max(segmentSize, SEGMENT_HEADER_SIZE + minEntrySize + ENTRY_HEADER_SIZE);
+        activeSegment = createSegment(nextSegmentNumber++, size);
+        segments.put(activeSegment.number, activeSegment);
+
+        if (previous != null) {
+            // forced by the next sync, without holding the lock, or by force
+            rolledSegmentsToForce.add(previous);
+        }
+        relocateBeaconEntries(minEntrySize);
+        deleteUnusedSegments();
+    }
+
+    /**
+     * Copy beacon entries, which are the only live entries in an old segment, into the active segment.
+     *
+     * @param reservedSize The number of bytes which must be left for the entry causing the segment roll.
+     */
+    private void relocateBeaconEntries(int reservedSize) throws IOException {
+        for (Map.Entry<Long, Long> beaconEntry : beaconEntries.entrySet()) {
+            long entryID = beaconEntry.getValue();
+            Segment segment = segments.get(segmentNumber(entryID));
+            if (segment == activeSegment || segment.numLiveEntries != segment.numLiveBeaconEntries) {
+                continue;
+            }
+            int offset = offset(entryID);
+            byte[] body = read(entryID, segment.bodyLength(offset));
+            if (activeSegment.remaining() < ENTRY_HEADER_SIZE + body.length + reservedSize) {
+                // keep the remaining ones, they are copied with the next segment
+                return;
+            }
+            beaconEntry.setValue(append(TYPE_BEACON, beaconEntry.getKey(), segment.buffer.getLong(offset + TIMESTAMP_OFFSET), body));
+            discard(entryID);
+        }
+    }
+
+    private void deleteUnusedSegments() {
+        for (Segment segment : new ArrayList<Segment>(segments.values())) {
+            if (segment.numLiveEntries == 0 && segment != activeSegment) {
+                deleteSegment(segment);
+            }
+        }
+    }
+
+    private void deleteSegment(Segment segment) {
+        segments.remove(segment.number);
+        rolledSegmentsToForce.remove(segment);
+        segment.close();
+        // the mapping is released by the garbage collector, deleting might fail on some platforms until then
+        if (!segment.file.delete()) {
+            segment.file.deleteOnExit();
+        }
+    }
+
+    private Segment createSegment(int number, int size) throws IOException {
+        File file = new File(directory, SEGMENT_FILE_PREFIX + number + SEGMENT_FILE_SUFFIX);
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            randomAccessFile.setLength(size);
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, SEGMENT_MAGIC);
+            buffer.putInt(4, SEGMENT_VERSION);
+            return new Segment(number, file, randomAccessFile, buffer);
+        } catch (IOException e) {
+            randomAccessFile.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Open an existing segment file or return {@code null}, if it's not a valid segment.
+     */
+    private Segment openSegment(int number) {
+        File file = new File(directory, SEGMENT_FILE_PREFIX + number + SEGMENT_FILE_SUFFIX);
+        RandomAccessFile randomAccessFile = null;
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            long size = randomAccessFile.length();
+            if (size >= SEGMENT_HEADER_SIZE && size <= Integer.MAX_VALUE) {
+                MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+                if (buffer.getInt(0) == SEGMENT_MAGIC && buffer.getInt(4) == SEGMENT_VERSION) {
+                    return new Segment(number, file, randomAccessFile, buffer);
+                }
+            }
+        } catch (IOException e) {
+            // unreadable segment - treated like an invalid one
+        }
+
+        if (randomAccessFile != null) {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+        return null;
+    }
+
+    private JournaledBeacon readBeacon(Segment segment, int offset, long beaconID) {
+        ByteBuffer view = segment.buffer.duplicate();
+        view.position(offset + ENTRY_HEADER_SIZE);
+        byte[] body = new byte[segment.bodyLength(offset)];
+        view.get(body);
+        return JournaledBeacon.decode(this, beaconID, segment.buffer.getLong(offset + TIMESTAMP_OFFSET), body);
+    }
+
+    private static int parseSegmentNumber(String fileName) {
+        if (!fileName.startsWith(SEGMENT_FILE_PREFIX) || !fileName.endsWith(SEGMENT_FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(fileName.substring(SEGMENT_FILE_PREFIX.length(), fileName.length() - SEGMENT_FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long entryID(int segmentNumber, int offset) {
+        return ((long) segmentNumber << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static int segmentNumber(long entryID) {
+        return (int) (entryID >>> 32);
+    }
+
+    private static int offset(long entryID) {
+        return (int) entryID;
+    }
+
+    /**
+     * Callback receiving the entries read by {@link #recover(RecoveryVisitor)}.
+     */
+    interface RecoveryVisitor {
+
+        /**
+         * Called for every recovered beacon.
+         */
+        void onBeacon(JournaledBeacon beacon);
+
+        /**
+         * Called for every recovered record.
+         *
+         * @param beacon    The beacon to which the record belongs.
+         * @param type      The record type, either {@link #TYPE_EVENT} or {@link #TYPE_ACTION}.
+         * @param timestamp The record's timestamp.
+         * @param data      The record's UTF-8 encoded data.
+         * @param entryID   The id of the entry.
+         */
+        void onRecord(JournaledBeacon beacon, byte type, long timestamp, byte[] data, long entryID);
+    }
+
+    /**
+     * A single memory mapped segment file.
+     */
+    private static final class Segment {
+
+        private final int number;
+        private final File file;
+        private final RandomAccessFile randomAccessFile;
+        private final MappedByteBuffer buffer;
+        private int writePosition = SEGMENT_HEADER_SIZE;
+        private int numLiveEntries = 0;
+        private int numLiveBeaconEntries = 0;
+
+        private Segment(int number, File file, RandomAccessFile randomAccessFile, MappedByteBuffer buffer) {
+            this.number = number;
+            this.file = file;
+            this.randomAccessFile = randomAccessFile;
+            this.buffer = buffer;
+        }
+
+        /**
+         * Get the number of bytes left, keeping space for the terminating empty entry header.
+         */
+        private int remaining() {
+            return buffer.capacity() - writePosition - ENTRY_HEADER_SIZE;
+        }
+
+        private void write(int offset, byte type, long beaconID, long timestamp, byte[] body) {
+            buffer.put(offset + STATE_OFFSET, STATE_LIVE);
+            buffer.put(offset + TYPE_OFFSET, type);
+            buffer.putLong(offset + BEACON_ID_OFFSET, beaconID);
+            buffer.putLong(offset + TIMESTAMP_OFFSET, timestamp);
+            buffer.putInt(offset + CHECKSUM_OFFSET, checksum(type, beaconID, timestamp, body, 0, body.length));
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + ENTRY_HEADER_SIZE);
+            view.put(body);
+
+            // writing the size completes the entry
+            buffer.putInt(offset, ENTRY_HEADER_SIZE + body.length);
+        }
+
+        private int bodyLength(int offset) {
+            return buffer.getInt(offset) - ENTRY_HEADER_SIZE;
+        }
+
+        private boolean isValidEntry(int offset) {
+            if (offset + ENTRY_HEADER_SIZE > buffer.capacity()) {
+                return false;
+            }
+            int size = buffer.getInt(offset);
+            if (size < ENTRY_HEADER_SIZE || size > buffer.capacity() - offset) {
+                return false;
+            }
+            int length = size - ENTRY_HEADER_SIZE;
+
+            byte[] body = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset + ENTRY_HEADER_SIZE);
+            view.get(body);
+            int checksum = checksum(buffer.get(offset + TYPE_OFFSET), buffer.getLong(offset + BEACON_ID_OFFSET),
+                buffer.getLong(offset + TIMESTAMP_OFFSET), body, 0, length);
+
+            return checksum == buffer.getInt(offset + CHECKSUM_OFFSET);
+        }
+
+        private void close() {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                // nothing to do, the file is deleted anyway
+            }
+        }
+
+        private static int checksum(byte type, long beaconID, long timestamp, byte[] body, int offset, int length) {
+            CRC32 crc = new CRC32();
+            ByteBuffer header = ByteBuffer.allocate(17);
+            header.put(type).putLong(beaconID).putLong(timestamp);
+            crc.update(header.array());
+            crc.update(body, offset, length);
+            return (int) crc.getValue();
+        }
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.dynatrace.openkit.core.caching;
 
+import java.nio.charset.Charset;
 import java.util.Arrays;
 
 /**
@@ -31,7 +32,12 @@ import java.util.Arrays;
  */
 class BeaconCacheRecord {
 
-    private static final long CHAR_SIZE_BYTES = 2L;
+    /**
+     * Charset used to encode record data, when it's stored in the cache.
+     */
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private static final byte[] EMPTY_DATA = new byte[0];
 
     private final long timestamp;
     private final String data;
@@ -63,22 +69,33 @@ class BeaconCacheRecord {
     }
 
     /**
-     * Get data size estimation of this record.
+     * Get data size of this record.
      *
      * <p>
-     * Note that this is just a very rough estimation required for cache eviction.
+     * The size is the number of bytes required by the UTF-8 encoded data, which is
+     * the representation stored in the cache and sent to the backend.
      *
-     * It's sufficient to approximate the bytes required by the string and omit any other information like
-     * the timestamp, any references and so on.
+     * Any other information like the timestamp, any references and so on are omitted.
      * </p>
      *
      * @return Data size in bytes.
      */
     long getDataSizeInBytes() {
-        if (getData() == null) {
-            return 0;
+        return encodeData(getData()).length;
+    }
+
+    /**
+     * Encode the given serialized record data into the representation stored in the cache.
+     *
+     * @param data The record's serialized data.
+     *
+     * @return UTF-8 encoded data, or an empty array if {@code data} is {@code null}.
+     */
+    static byte[] encodeData(String data) {
+        if (data == null) {
+            return EMPTY_DATA;
         }
-        return getData().length() * CHAR_SIZE_BYTES;
+        return data.getBytes(CHARSET);
     }
 
     /**
@@ -0,0 +1,740 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Segmented, array backed list of beacon cache records.
+ *
+ * <p>
+ * Records are stored column wise in a chain of segments, timestamps in a {@code long[]} column
+ * and the UTF-8 encoded data either in a {@code byte[][]} column on the heap or, if the list was created
+ * with a {@link DirectByteBufferPool}, in a direct buffer indexed by on-heap offset and length columns.
+ * Lists of a {@link JournaledBeacon} additionally persist each record and keep the journal entry ids
+ * in a {@code long[]} column, so that removed records can be discarded from the journal.
+ * Compared to a linked list of {@link BeaconCacheRecord} objects this avoids two objects per record
+ * and allows removing records from the beginning by simply advancing a segment's start index.
+ *
+ * Segments start small and grow up to {@link #MAX_SEGMENT_CAPACITY} records, so that
+ * short sessions do not pay for large arrays.
+ * </p>
+ *
+ * <p>
+ * Each segment also serves as a time bucket: it keeps the number of bytes and bounds of the timestamps
+ * of its records. Since records are appended in nearly timestamp order, age based eviction can
+ * drop segments with only expired records and skip segments without any expired record as a whole,
+ * and only needs to look at the records of segments spanning the eviction timestamp.
+ * </p>
+ *
+ * <p>
+ * Records are marked for sending in insertion order, when chunks are created, therefore the
+ * sending marks always form a prefix of this list and are stored as a simple counter.
+ * </p>
+ *
+ * <p>
+ * This class is not thread safe, access is guarded by the lock of the owning {@link BeaconCacheEntry}.
+ * </p>
+ */
+class BeaconCacheRecordList {
+
+    /**
+     * Capacity of the first segment.
+     */
+    static final int MIN_SEGMENT_CAPACITY = 8;
+    /**
+     * Maximum capacity of a segment.
+     */
+    static final int MAX_SEGMENT_CAPACITY = 128;
+
+    /**
+     * Pool providing direct buffers for off-heap segments or {@code null} if data is stored on the heap.
+     */
+    private final DirectByteBufferPool bufferPool;
+    /**
+     * Beacon persisting the records or {@code null} if records are not persisted.
+     */
+    private final JournaledBeacon journaledBeacon;
+    /**
+     * Journal record type of the records stored in this list.
+     */
+    private final byte recordType;
+    /**
+     * First segment or {@code null} if no record was added so far.
+     */
+    private Segment head = null;
+    /**
+     * Last segment or {@code null} if no record was added so far.
+     */
+    private Segment tail = null;
+    /**
+     * Number of records stored in this list.
+     */
+    private int size = 0;
+    /**
+     * Number of bytes used by all records stored in this list.
+     */
+    private long numBytes = 0;
+    /**
+     * Number of records, starting at the beginning, which are marked for sending.
+     */
+    private int numRecordsMarkedForSending = 0;
+
+    /**
+     * Create a list storing record data on the heap.
+     */
+    BeaconCacheRecordList() {
+        this(null);
+    }
+
+    /**
+     * Create a list.
+     *
+     * @param bufferPool Pool providing direct buffers for storing record data off-heap,
+     *                   or {@code null} to store record data on the heap.
+     */
+    BeaconCacheRecordList(DirectByteBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+        journaledBeacon = null;
+        recordType = 0;
+    }
+
+    /**
+     * Create a list storing record data on the heap and persisting it in a journal.
+     *
+     * @param journaledBeacon The beacon used to persist the records.
+     * @param recordType      Journal record type of the records,
+     *                        either {@link BeaconCacheJournal#TYPE_EVENT} or {@link BeaconCacheJournal#TYPE_ACTION}.
+     */
+    BeaconCacheRecordList(JournaledBeacon journaledBeacon, byte recordType) {
+        bufferPool = null;
+        this.journaledBeacon = journaledBeacon;
+        this.recordType = recordType;
+    }
+
+    /**
+     * Append a record at the end of this list.
+     *
+     * @param timestamp The record's timestamp.
+     * @param data      The record's UTF-8 encoded data.
+     */
+    void add(long timestamp, byte[] data) {
+        long entryID = journaledBeacon == null
+            ? JournaledBeacon.NO_ENTRY
+            : journaledBeacon.appendRecord(recordType, timestamp, data);
+        add(timestamp, data, entryID);
+    }
+
+    /**
+     * Append a record, which has already been persisted, at the end of this list.
+     *
+     * @param timestamp The record's timestamp.
+     * @param data      The record's UTF-8 encoded data.
+     * @param entryID   The id of the journal entry storing the record.
+     */
+    void addJournaled(long timestamp, byte[] data, long entryID) {
+        add(timestamp, data, entryID);
+    }
+
+    private void add(long timestamp, byte[] data, long entryID) {
+        if (tail == null || !tail.canAppend(data.length)) {
+            appendSegment(newSegment(data.length));
+        }
+
+        tail.append(timestamp, data, entryID);
+
+        size++;
+        numBytes += data.length;
+    }
+
+    /**
+     * Append all records from {@code other} to this list and clear {@code other}.
+     *
+     * <p>
+     * The segments are moved, not copied. Sending marks of {@code other} are discarded.
+     * Both lists must store their data in the same way.
+     * </p>
+     *
+     * @param other The list whose records are moved to the end of this list.
+     */
+    void moveAllFrom(BeaconCacheRecordList other) {
+        if (other.head == null) {
+            return;
+        }
+
+        if (head == null) {
+            head = other.head;
+        } else {
+            tail.next = other.head;
+        }
+        tail = other.tail;
+        size += other.size;
+        numBytes += other.numBytes;
+
+        other.clear();
+    }
+
+    /**
+     * Get the number of records stored in this list.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Test if this list does not contain any record.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Get the number of bytes used by all records in this list.
+     */
+    long getNumBytes() {
+        return numBytes;
+    }
+
+    /**
+     * Get the timestamp of the first record.
+     *
+     * <p>
+     * This method must only be called if the list is not empty.
+     * </p>
+     */
+    long getFirstTimestamp() {
+        return head.timestamps[head.start];
+    }
+
+    /**
+     * Remove the first record.
+     *
+     * <p>
+     * This method must only be called if the list is not empty.
+     * </p>
+     */
+    void removeFirst() {
+        removeFirst(1);
+    }
+
+    /**
+     * Remove up to {@code numRecords} from the beginning of this list.
+     *
+     * @param numRecords The number of records to remove.
+     * @return The number of records actually removed.
+     */
+    int removeFirst(int numRecords) {
+        int numRecordsRemoved = 0;
+        while (head != null && numRecordsRemoved < numRecords) {
+            int numToRemoveFromSegment = Math.min(numRecords - numRecordsRemoved, head.end - head.start);
+            for (int i = head.start; i < head.start + numToRemoveFromSegment; i++) {
+                numBytes -= head.length(i);
+                head.numBytes -= head.length(i);
+                head.discard(i);
+                head.clear(i);
+            }
+            head.start += numToRemoveFromSegment;
+            numRecordsRemoved += numToRemoveFromSegment;
+
+            if (head.start == head.end) {
+                removeHeadSegment();
+            }
+        }
+
+        size -= numRecordsRemoved;
+        numRecordsMarkedForSending = Math.max(0, numRecordsMarkedForSending - numRecordsRemoved);
+
+        return numRecordsRemoved;
+    }
+
+    /**
+     * Remove all records which have a timestamp less than {@code minTimestamp}.
+     *
+     * <p>
+     * This method must not be called on a list containing records marked for sending.
+     * </p>
+     *
+     * @param minTimestamp The minimum timestamp allowed.
+     * @return The number of records removed.
+     */
+    int removeRecordsOlderThan(long minTimestamp) {
+        int numRecordsRemoved = 0;
+
+        Segment previous = null;
+        Segment segment = head;
+        while (segment != null) {
+            Segment next = segment.next;
+            if (segment.minTimestamp >= minTimestamp) {
+                // no record of this segment is too old
+                previous = segment;
+            } else if (segment.maxTimestamp < minTimestamp) {
+                // all records of this segment are too old
+                numBytes -= segment.numBytes;
+                numRecordsRemoved += segment.end - segment.start;
+                segment.discardAll();
+                unlinkSegment(previous, segment);
+            } else {
+                numRecordsRemoved += removeRecordsOlderThan(segment, minTimestamp);
+                if (segment.start == segment.end) {
+                    unlinkSegment(previous, segment);
+                } else {
+                    previous = segment;
+                }
+            }
+            segment = next;
+        }
+
+        size -= numRecordsRemoved;
+
+        return numRecordsRemoved;
+    }
+
+    /**
+     * Remove all records of the given segment which have a timestamp less than {@code minTimestamp}.
+     *
+     * <p>
+     * Retained records are moved towards the segment's end and the segment's timestamp bounds are recomputed.
+     * </p>
+     *
+     * @return The number of records removed.
+     */
+    private int removeRecordsOlderThan(Segment segment, long minTimestamp) {
+        int numRecordsRemoved = 0;
+        long minRetainedTimestamp = Long.MAX_VALUE;
+        long maxRetainedTimestamp = Long.MIN_VALUE;
+
+        int writeIndex = segment.end;
+        for (int readIndex = segment.end - 1; readIndex >= segment.start; readIndex--) {
+            long timestamp = segment.timestamps[readIndex];
+            if (timestamp < minTimestamp) {
+                numBytes -= segment.length(readIndex);
+                segment.numBytes -= segment.length(readIndex);
+                segment.discard(readIndex);
+                numRecordsRemoved++;
+            } else {
+                writeIndex--;
+                segment.move(readIndex, writeIndex);
+                minRetainedTimestamp = Math.min(minRetainedTimestamp, timestamp);
+                maxRetainedTimestamp = Math.max(maxRetainedTimestamp, timestamp);
+            }
+        }
+        for (int i = segment.start; i < writeIndex; i++) {
+            segment.clear(i);
+        }
+        segment.start = writeIndex;
+        segment.minTimestamp = minRetainedTimestamp;
+        segment.maxTimestamp = maxRetainedTimestamp;
+
+        return numRecordsRemoved;
+    }
+
+    /**
+     * Write records from the beginning of this list to the given chunk and mark them for sending.
+     *
+     * <p>
+     * Records are written, as long as the chunk's size is less than or equal to {@code maxSize}.
+     * Records which have already been marked for sending are written again.
+     * The record data is written directly from the list's storage, without intermediate copies for heap data.
+     * </p>
+     *
+     * @param chunk     The stream to which the records are written.
+     * @param chunkSize The number of bytes written to the chunk so far.
+     * @param maxSize   The maximum size in bytes for one chunk.
+     * @param delimiter The encoded delimiter between two records.
+     * @return The number of bytes written to the chunk, including the bytes written before calling this method.
+     * @throws IOException If writing to the chunk fails, in which case no records are marked for sending.
+     */
+    int appendToChunk(OutputStream chunk, int chunkSize, int maxSize, byte[] delimiter) throws IOException {
+        int numRecordsAppended = 0;
+        Segment segment = head;
+        while (segment != null && chunkSize <= maxSize) {
+            for (int i = segment.start; i < segment.end && chunkSize <= maxSize; i++) {
+                chunk.write(delimiter, 0, delimiter.length);
+                segment.writeTo(i, chunk);
+                chunkSize += delimiter.length + segment.length(i);
+                numRecordsAppended++;
+            }
+            segment = segment.next;
+        }
+
+        numRecordsMarkedForSending = Math.max(numRecordsMarkedForSending, numRecordsAppended);
+
+        return chunkSize;
+    }
+
+    /**
+     * Get the number of records, starting at the beginning of this list, which are marked for sending.
+     */
+    int getNumRecordsMarkedForSending() {
+        return numRecordsMarkedForSending;
+    }
+
+    /**
+     * Remove all records that were previously marked for sending.
+     */
+    void removeRecordsMarkedForSending() {
+        removeFirst(numRecordsMarkedForSending);
+    }
+
+    /**
+     * Reset all marks set by {@link #appendToChunk(OutputStream, int, int, byte[])}.
+     */
+    void unsetSendingMarks() {
+        numRecordsMarkedForSending = 0;
+    }
+
+    /**
+     * Remove all records, discard them from the journal and give any direct buffers back to the pool.
+     */
+    void release() {
+        for (Segment segment = head; segment != null; segment = segment.next) {
+            segment.discardAll();
+            segment.release();
+        }
+        clear();
+    }
+
+    /**
+     * Get a snapshot of all records.
+     *
+     * <p>
+     * This method shall only be used for testing purposes.
+     * </p>
+     */
+    List<BeaconCacheRecord> toRecords() {
+        List<BeaconCacheRecord> records = new ArrayList<BeaconCacheRecord>(size);
+        for (Segment segment = head; segment != null; segment = segment.next) {
+            for (int i = segment.start; i < segment.end; i++) {
+                BeaconCacheRecord record = new BeaconCacheRecord(segment.timestamps[i], new String(segment.get(i), BeaconCacheRecord.CHARSET));
+                if (records.size() < numRecordsMarkedForSending) {
+                    record.markForSending();
+                }
+                records.add(record);
+            }
+        }
+
+        return records;
+    }
+
+    private Segment newSegment(int numBytesRequired) {
+        int capacity = tail == null ? MIN_SEGMENT_CAPACITY : Math.min(MAX_SEGMENT_CAPACITY, tail.timestamps.length * 2);
+        if (journaledBeacon != null) {
+            return new JournaledSegment(capacity, journaledBeacon);
+        }
+        if (bufferPool == null) {
+            return new HeapSegment(capacity);
+        }
+
+        // grow the buffers along with the record capacity, but always fit the record to add
+        int bufferSize = tail == null ? DirectByteBufferPool.MIN_BUFFER_SIZE
+            : Math.min(DirectByteBufferPool.MAX_BUFFER_SIZE, ((DirectSegment) tail).buffer.capacity() * 2);
+        return new DirectSegment(capacity, bufferPool, Math.max(bufferSize, numBytesRequired));
+    }
+
+    private void appendSegment(Segment segment) {
+        if (tail == null) {
+            head = segment;
+        } else {
+            tail.next = segment;
+        }
+        tail = segment;
+    }
+
+    private void removeHeadSegment() {
+        unlinkSegment(null, head);
+    }
+
+    private void unlinkSegment(Segment previous, Segment segment) {
+        if (previous == null) {
+            head = segment.next;
+        } else {
+            previous.next = segment.next;
+        }
+        if (tail == segment) {
+            tail = previous;
+        }
+        segment.next = null;
+        segment.release();
+    }
+
+    private void clear() {
+        head = null;
+        tail = null;
+        size = 0;
+        numBytes = 0;
+        numRecordsMarkedForSending = 0;
+    }
+
+    /**
+     * A segment storing up to a fixed number of records.
+     *
+     * <p>
+     * Valid records are stored in the index range [{@link #start}, {@link #end}).
+     * {@link #minTimestamp} and {@link #maxTimestamp} bound the timestamps of the valid records,
+     * but {@link #minTimestamp} is not increased when records are removed from the beginning.
+     * </p>
+     */
+    private abstract static class Segment {
+
+        final long[] timestamps;
+        int start = 0;
+        int end = 0;
+        long numBytes = 0;
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        Segment next = null;
+
+        Segment(int capacity) {
+            timestamps = new long[capacity];
+        }
+
+        /**
+         * Test if a record with {@code numBytes} of data can be appended to this segment.
+         */
+        boolean canAppend(int numBytes) {
+            return end < timestamps.length;
+        }
+
+        /**
+         * Append a record at index {@link #end}.
+         */
+        void append(long timestamp, byte[] data, long entryID) {
+            timestamps[end] = timestamp;
+            storeData(end, data);
+            storeEntryID(end, entryID);
+            end++;
+            numBytes += data.length;
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+        }
+
+        /**
+         * Move the record at index {@code from} to index {@code to}.
+         */
+        void move(int from, int to) {
+            timestamps[to] = timestamps[from];
+            moveData(from, to);
+        }
+
+        /**
+         * Give back any resources held by this segment.
+         */
+        void release() {
+        }
+
+        /**
+         * Store the id of the journal entry persisting the record at {@code index}.
+         */
+        void storeEntryID(int index, long entryID) {
+        }
+
+        /**
+         * Discard the record at {@code index} from the journal, since it's removed from the list.
+         */
+        void discard(int index) {
+        }
+
+        /**
+         * Discard all valid records from the journal, since the whole segment is removed from the list.
+         */
+        void discardAll() {
+        }
+
+        abstract void storeData(int index, byte[] data);
+
+        abstract void moveData(int from, int to);
+
+        /**
+         * Get the number of data bytes of the record at {@code index}.
+         */
+        abstract int length(int index);
+
+        /**
+         * Drop any reference held for the record at {@code index}.
+         */
+        abstract void clear(int index);
+
+        /**
+         * Write the data of the record at {@code index} to {@code out}.
+         */
+        abstract void writeTo(int index, OutputStream out) throws IOException;
+
+        /**
+         * Get a copy of the data of the record at {@code index}.
+         */
+        abstract byte[] get(int index);
+    }
+
+    /**
+     * Segment storing record data in a {@code byte[][]} column on the heap.
+     */
+    private static class HeapSegment extends Segment {
+
+        private final byte[][] data;
+
+        HeapSegment(int capacity) {
+            super(capacity);
+            data = new byte[capacity][];
+        }
+
+        @Override
+        void storeData(int index, byte[] recordData) {
+            data[index] = recordData;
+        }
+
+        @Override
+        void moveData(int from, int to) {
+            data[to] = data[from];
+        }
+
+        @Override
+        int length(int index) {
+            return data[index].length;
+        }
+
+        @Override
+        void clear(int index) {
+            data[index] = null;
+        }
+
+        @Override
+        void writeTo(int index, OutputStream out) throws IOException {
+            out.write(data[index], 0, data[index].length);
+        }
+
+        @Override
+        byte[] get(int index) {
+            return data[index].clone();
+        }
+    }
+
+    /**
+     * Heap segment additionally storing the ids of the journal entries persisting the records.
+     */
+    private static final class JournaledSegment extends HeapSegment {
+
+        private final JournaledBeacon journaledBeacon;
+        private final long[] entryIDs;
+
+        private JournaledSegment(int capacity, JournaledBeacon journaledBeacon) {
+            super(capacity);
+            this.journaledBeacon = journaledBeacon;
+            entryIDs = new long[capacity];
+        }
+
+        @Override
+        void storeEntryID(int index, long entryID) {
+            entryIDs[index] = entryID;
+        }
+
+        @Override
+        void moveData(int from, int to) {
+            super.moveData(from, to);
+            entryIDs[to] = entryIDs[from];
+        }
+
+        @Override
+        void discard(int index) {
+            journaledBeacon.discardRecord(entryIDs[index]);
+        }
+
+        @Override
+        void discardAll() {
+            for (int i = start; i < end; i++) {
+                discard(i);
+            }
+        }
+    }
+
+    /**
+     * Segment storing record data in a direct buffer, with offsets and lengths kept in on-heap columns.
+     *
+     * <p>
+     * Space of removed records is not reused, it's given back, when the whole segment is released.
+     * </p>
+     */
+    private static final class DirectSegment extends Segment {
+
+        private final DirectByteBufferPool bufferPool;
+        private ByteBuffer buffer;
+        private final int[] offsets;
+        private final int[] lengths;
+
+        private DirectSegment(int capacity, DirectByteBufferPool bufferPool, int bufferSize) {
+            super(capacity);
+            this.bufferPool = bufferPool;
+            buffer = bufferPool.acquire(bufferSize);
+            offsets = new int[capacity];
+            lengths = new int[capacity];
+        }
+
+        @Override
+        boolean canAppend(int numBytes) {
+            return super.canAppend(numBytes) && buffer.remaining() >= numBytes;
+        }
+
+        @Override
+        void storeData(int index, byte[] data) {
+            offsets[index] = buffer.position();
+            lengths[index] = data.length;
+            buffer.put(data);
+        }
+
+        @Override
+        void moveData(int from, int to) {
+            offsets[to] = offsets[from];
+            lengths[to] = lengths[from];
+        }
+
+        @Override
+        int length(int index) {
+            return lengths[index];
+        }
+
+        @Override
+        void clear(int index) {
+            lengths[index] = 0;
+        }
+
+        @Override
+        void writeTo(int index, OutputStream out) throws IOException {
+            byte[] data = get(index);
+            out.write(data, 0, data.length);
+        }
+
+        @Override
+        byte[] get(int index) {
+            byte[] data = new byte[lengths[index]];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offsets[index]);
+            view.get(data);
+            return data;
+        }
+
+        @Override
+        void release() {
+            if (buffer != null) {
+                bufferPool.release(buffer);
+                buffer = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of direct {@link ByteBuffer byte buffers} used for storing beacon cache records off-heap.
+ *
+ * <p>
+ * Buffers are handed out in power of two size classes, ranging from {@link #MIN_BUFFER_SIZE}
+ * to {@link #MAX_BUFFER_SIZE}. Released buffers are kept for reuse, as long as the total capacity
+ * of all pooled buffers does not exceed the configured limit. Direct memory is only freed, when
+ * the garbage collector collects a buffer, therefore reusing buffers is essential.
+ *
+ * Requests larger than {@link #MAX_BUFFER_SIZE} are served with a buffer of exactly the requested size,
+ * which is never pooled.
+ * </p>
+ *
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+class DirectByteBufferPool {
+
+    /**
+     * Smallest buffer size handed out by this pool.
+     */
+    static final int MIN_BUFFER_SIZE = 1024;
+    /**
+     * Largest buffer size handed out, and pooled, by this pool.
+     */
+    static final int MAX_BUFFER_SIZE = 64 * 1024;
+    /**
+     * Default limit of the total capacity of buffers kept in the pool.
+     */
+    static final long DEFAULT_MAX_POOLED_BYTES = 4 * 1024 * 1024;
+
+    private static final int NUM_SIZE_CLASSES = Integer.numberOfTrailingZeros(MAX_BUFFER_SIZE)
+        - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE) + 1;
+
+    private final List<Queue<ByteBuffer>> freeBuffers;
+    private final long maxPooledBytes;
+    private final AtomicLong pooledBytes = new AtomicLong(0L);
+
+    /**
+     * Create a pool keeping up to {@link #DEFAULT_MAX_POOLED_BYTES} for reuse.
+     */
+    DirectByteBufferPool() {
+        this(DEFAULT_MAX_POOLED_BYTES);
+    }
+
+    /**
+     * Create a pool.
+     *
+     * @param maxPooledBytes The maximum total capacity of all buffers kept for reuse.
+     */
+    DirectByteBufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        freeBuffers = new ArrayList<Queue<ByteBuffer>>(NUM_SIZE_CLASSES);
+        for (int i = 0; i < NUM_SIZE_CLASSES; i++) {
+            freeBuffers.add(new ConcurrentLinkedQueue<ByteBuffer>());
+        }
+    }
+
+    /**
+     * Get a cleared buffer with a capacity of at least {@code minCapacity} bytes.
+     *
+     * @param minCapacity The minimum required capacity.
+     * @return A direct buffer, which shall be given back via {@link #release(ByteBuffer)} when no longer used.
+     */
+    ByteBuffer acquire(int minCapacity) {
+        if (minCapacity > MAX_BUFFER_SIZE) {
+            return ByteBuffer.allocateDirect(minCapacity);
+        }
+
+        int sizeClass = sizeClassOf(minCapacity);
+        ByteBuffer buffer = freeBuffers.get(sizeClass).poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(MIN_BUFFER_SIZE << sizeClass);
+        }
+
+        pooledBytes.addAndGet(-buffer.capacity());
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Give a buffer, previously retrieved via {@link #acquire(int)}, back to this pool.
+     *
+     * <p>
+     * The buffer must not be used by the caller afterwards.
+     * </p>
+     *
+     * @param buffer The buffer to release.
+     */
+    void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (capacity > MAX_BUFFER_SIZE || Integer.bitCount(capacity) != 1 || capacity < MIN_BUFFER_SIZE) {
+            // not a pooled size class - leave it to the garbage collector
+            return;
+        }
+        if (pooledBytes.addAndGet(capacity) > maxPooledBytes) {
+            // pool is full
+            pooledBytes.addAndGet(-capacity);
+            return;
+        }
+
+        freeBuffers.get(sizeClassOf(capacity)).offer(buffer);
+    }
+
+    /**
+     * Get the total capacity of all buffers currently kept for reuse.
+     */
+    long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    private static int sizeClassOf(int capacity) {
+        if (capacity <= MIN_BUFFER_SIZE) {
+            return 0;
+        }
+        // round up to the next power of two
+        int bufferSize = Integer.highestOneBit(capacity - 1) << 1;
+        return Integer.numberOfTrailingZeros(bufferSize) - Integer.numberOfTrailingZeros(MIN_BUFFER_SIZE);
+    }
+}
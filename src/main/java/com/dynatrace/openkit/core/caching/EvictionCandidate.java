@@ -0,0 +1,88 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+/**
+ * A beacon in the {@link BeaconCacheImpl}, which has records that could be evicted.
+ *
+ * <p>
+ * Candidates are ordered by the timestamp of the beacon's oldest record, therefore the first
+ * candidate of a sorted set is the beacon holding the globally oldest record.
+ * Ties are broken by the beacon id and finally by a sequence number, which is unique per cache,
+ * so that a stale candidate is never equal to a current one.
+ * </p>
+ *
+ * <p>
+ * Instances are immutable. Whenever the oldest record of a beacon changes, the cache replaces its candidate.
+ * </p>
+ */
+final class EvictionCandidate implements Comparable<EvictionCandidate> {
+
+    private final long oldestTimestamp;
+    private final int beaconID;
+    private final long sequenceNumber;
+
+    EvictionCandidate(long oldestTimestamp, int beaconID, long sequenceNumber) {
+        this.oldestTimestamp = oldestTimestamp;
+        this.beaconID = beaconID;
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    /**
+     * Get the timestamp of the beacon's oldest record.
+     */
+    long getOldestTimestamp() {
+        return oldestTimestamp;
+    }
+
+    /**
+     * Get the id of the beacon.
+     */
+    int getBeaconID() {
+        return beaconID;
+    }
+
+    @Override
+    public int compareTo(EvictionCandidate other) {
+        if (oldestTimestamp != other.oldestTimestamp) {
+            return oldestTimestamp < other.oldestTimestamp ? -1 : 1;
+        }
+        if (beaconID != other.beaconID) {
+            return beaconID < other.beaconID ? -1 : 1;
+        }
+        if (sequenceNumber != other.sequenceNumber) {
+            return sequenceNumber < other.sequenceNumber ? -1 : 1;
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        return compareTo((EvictionCandidate) obj) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (sequenceNumber ^ (sequenceNumber >>> 32));
+    }
+}
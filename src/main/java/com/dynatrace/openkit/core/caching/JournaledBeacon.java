@@ -0,0 +1,122 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A beacon whose records are persisted in a {@link BeaconCacheJournal}.
+ *
+ * <p>
+ * Besides the journal wide unique id, this stores everything needed to send the
+ * beacon's records after a restart.
+ * </p>
+ */
+class JournaledBeacon {
+
+    /**
+     * Entry id used for records which could not be written to the journal.
+     */
+    static final long NO_ENTRY = -1L;
+
+    private final BeaconCacheJournal journal;
+    private final long beaconID;
+    private final long sessionStartTime;
+    private final String clientIPAddress;
+    private final String immutableBeaconData;
+
+    JournaledBeacon(BeaconCacheJournal journal, long beaconID, long sessionStartTime, String clientIPAddress, String immutableBeaconData) {
+        this.journal = journal;
+        this.beaconID = beaconID;
+        this.sessionStartTime = sessionStartTime;
+        this.clientIPAddress = clientIPAddress == null ? "" : clientIPAddress;
+        this.immutableBeaconData = immutableBeaconData == null ? "" : immutableBeaconData;
+    }
+
+    /**
+     * Decode a beacon from the body of a beacon entry.
+     */
+    static JournaledBeacon decode(BeaconCacheJournal journal, long beaconID, long sessionStartTime, byte[] body) {
+        ByteBuffer buffer = ByteBuffer.wrap(body);
+        int clientIPAddressLength = buffer.getInt();
+        String clientIPAddress = new String(body, 4, clientIPAddressLength, BeaconCacheRecord.CHARSET);
+        int prefixOffset = 4 + clientIPAddressLength;
+        String immutableBeaconData = new String(body, prefixOffset, body.length - prefixOffset, BeaconCacheRecord.CHARSET);
+
+        return new JournaledBeacon(journal, beaconID, sessionStartTime, clientIPAddress, immutableBeaconData);
+    }
+
+    /**
+     * Encode this beacon into the body of a beacon entry.
+     */
+    byte[] encode() {
+        byte[] encodedClientIPAddress = BeaconCacheRecord.encodeData(clientIPAddress);
+        byte[] encodedBeaconData = BeaconCacheRecord.encodeData(immutableBeaconData);
+
+        return ByteBuffer.allocate(4 + encodedClientIPAddress.length + encodedBeaconData.length)
+            .putInt(encodedClientIPAddress.length)
+            .put(encodedClientIPAddress)
+            .put(encodedBeaconData)
+            .array();
+    }
+
+    /**
+     * Persist a record of this beacon.
+     *
+     * @param type      The record type, either {@link BeaconCacheJournal#TYPE_EVENT} or {@link BeaconCacheJournal#TYPE_ACTION}.
+     * @param timestamp The record's timestamp.
+     * @param data      The record's UTF-8 encoded data.
+     * @return The id of the journal entry or {@link #NO_ENTRY} if the record could not be persisted.
+     */
+    long appendRecord(byte type, long timestamp, byte[] data) {
+        return journal.appendRecord(this, type, timestamp, data);
+    }
+
+    /**
+     * Discard a record previously persisted with {@link #appendRecord(byte, long, byte[])}.
+     *
+     * @param entryID The id of the journal entry.
+     */
+    void discardRecord(long entryID) {
+        if (entryID != NO_ENTRY) {
+            journal.discard(entryID);
+        }
+    }
+
+    /**
+     * Discard this beacon, after all its records have been discarded.
+     */
+    void discard() {
+        journal.discardBeacon(this);
+    }
+
+    long getBeaconID() {
+        return beaconID;
+    }
+
+    long getSessionStartTime() {
+        return sessionStartTime;
+    }
+
+    String getClientIPAddress() {
+        return clientIPAddress;
+    }
+
+    String getImmutableBeaconData() {
+        return immutableBeaconData;
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+import com.dynatrace.openkit.api.Logger;
+
+/**
+ * {@link BeaconCacheImpl} storing the serialized records off-heap.
+ *
+ * <p>
+ * Record data is stored in direct buffers taken from a {@link DirectByteBufferPool} shared by all
+ * cache entries, while timestamps, offsets and lengths are kept in small on-heap index arrays.
+ * Buffers are given back to the pool as soon as all records stored in them have been sent or evicted.
+ * </p>
+ *
+ * <p>
+ * The cache size reported by {@link #getNumBytesInCache()} is the number of record bytes. The direct memory
+ * in use might be higher, since buffers are allocated in size classes and space of single removed records
+ * is only reclaimed with the whole buffer.
+ * </p>
+ */
+public class OffHeapBeaconCacheImpl extends BeaconCacheImpl {
+
+    /**
+     * Create an off-heap BeaconCache.
+     *
+     * @param logger Logger for logging messages.
+     */
+    public OffHeapBeaconCacheImpl(Logger logger) {
+        super(logger, new DirectByteBufferPool());
+    }
+}
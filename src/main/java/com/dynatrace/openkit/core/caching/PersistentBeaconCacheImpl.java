@@ -0,0 +1,86 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+import com.dynatrace.openkit.api.Logger;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * {@link BeaconCacheImpl} persisting the records of registered beacons, so that they survive a restart.
+ *
+ * <p>
+ * Records are kept in memory, like in the default cache, and additionally appended to
+ * memory mapped segment files in the given directory, see {@link BeaconCacheJournal}.
+ * Records which are sent or evicted are discarded from the files.
+ * When a new instance is created on the same directory, the records of the previous process
+ * are made available via {@link #recoverBeacons()}.
+ * </p>
+ *
+ * <p>
+ * Records of beacons currently being sent are only discarded after the server acknowledged them.
+ * If the process dies in between, these records are sent again after the restart.
+ * </p>
+ *
+ * <p>
+ * In write-ahead log mode {@link #addCriticalEventData(Integer, long, String)}, used for crashes and errors,
+ * additionally waits until the record is forced to the storage device, so that it even survives a power loss.
+ * </p>
+ *
+ * <p>
+ * The directory must not be used by more than one cache at the same time.
+ * </p>
+ */
+public class PersistentBeaconCacheImpl extends BeaconCacheImpl {
+
+    /**
+     * Create a persistent BeaconCache.
+     *
+     * @param logger    Logger for logging messages.
+     * @param directory The directory storing the segment files, which is created if it does not exist.
+     * @throws IOException If the directory cannot be created or read.
+     */
+    public PersistentBeaconCacheImpl(Logger logger, File directory) throws IOException {
+        this(logger, directory, false);
+    }
+
+    /**
+     * Create a persistent BeaconCache.
+     *
+     * @param logger               Logger for logging messages.
+     * @param directory            The directory storing the segment files, which is created if it does not exist.
+     * @param writeAheadLogEnabled {@code true} to force critical event data to the storage device before returning.
+     * @throws IOException If the directory cannot be created or read.
+     */
+    public PersistentBeaconCacheImpl(Logger logger, File directory, boolean writeAheadLogEnabled) throws IOException {
+        this(logger, directory, BeaconCacheJournal.DEFAULT_SEGMENT_SIZE, writeAheadLogEnabled);
+    }
+
+    /**
+     * Create a persistent BeaconCache with a custom segment file size.
+     *
+     * @param logger               Logger for logging messages.
+     * @param directory            The directory storing the segment files, which is created if it does not exist.
+     * @param segmentSize          The size of a single segment file.
+     * @param writeAheadLogEnabled {@code true} to force critical event data to the storage device before returning.
+     * @throws IOException If the directory cannot be created or read.
+     */
+    PersistentBeaconCacheImpl(Logger logger, File directory, int segmentSize, boolean writeAheadLogEnabled) throws IOException {
+        super(logger, null, new BeaconCacheJournal(logger, directory, segmentSize), writeAheadLogEnabled);
+    }
+}
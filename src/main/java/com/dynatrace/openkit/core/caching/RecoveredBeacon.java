@@ -0,0 +1,68 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+/**
+ * Beacon whose records have been recovered from persistent storage written by a previous process.
+ *
+ * <p>
+ * The records are available in the {@link BeaconCacheImpl} under {@link #getBeaconID()},
+ * which is always negative, so that it never collides with the session number of a newly created beacon.
+ * </p>
+ */
+public class RecoveredBeacon {
+
+    private final int beaconID;
+    private final long sessionStartTime;
+    private final String clientIPAddress;
+    private final String immutableBeaconData;
+
+    RecoveredBeacon(int beaconID, long sessionStartTime, String clientIPAddress, String immutableBeaconData) {
+        this.beaconID = beaconID;
+        this.sessionStartTime = sessionStartTime;
+        this.clientIPAddress = clientIPAddress;
+        this.immutableBeaconData = immutableBeaconData;
+    }
+
+    /**
+     * Get the id under which the recovered records are stored in the cache.
+     */
+    public int getBeaconID() {
+        return beaconID;
+    }
+
+    /**
+     * Get the start time of the session, which created the records.
+     */
+    public long getSessionStartTime() {
+        return sessionStartTime;
+    }
+
+    /**
+     * Get the client IP address of the session, which created the records.
+     */
+    public String getClientIPAddress() {
+        return clientIPAddress;
+    }
+
+    /**
+     * Get the beacon data, which does not change over time, of the session that created the records.
+     */
+    public String getImmutableBeaconData() {
+        return immutableBeaconData;
+    }
+}
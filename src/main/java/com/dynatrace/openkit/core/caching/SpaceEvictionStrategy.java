@@ -19,11 +19,6 @@ package com.dynatrace.openkit.core.caching;
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
-
 /**
  * Space based eviction strategy for the beacon cache.
  *
@@ -105,41 +100,17 @@ class SpaceEvictionStrategy implements BeaconCacheEvictionStrategy {
 
     /**
      * Performs execution of strategy.
+     *
+     * <p>
+     * The globally oldest records are evicted, until the cache size reaches the lower bound.
+     * </p>
      */
     private void doExecute() {
 
-        Map<Integer, Integer> removedRecordsPerBeacon = new HashMap<Integer, Integer>();
-
-        while (!Thread.currentThread().isInterrupted()
-            && beaconCache.getNumBytesInCache() > configuration.getCacheSizeLowerBound()) {
-
-            Set<Integer> beaconIDs = beaconCache.getBeaconIDs();
-
-            Iterator<Integer> iterator = beaconIDs.iterator();
-            while (!Thread.currentThread().isInterrupted()
-                && iterator.hasNext()
-                && beaconCache.getNumBytesInCache() > configuration.getCacheSizeLowerBound()) {
-
-                Integer beaconID = iterator.next();
-
-                // remove 1 record from Beacon cache for given beaconID
-                // the result is the number of records removed, which might be in range [0, numRecords=1]
-                int numRecordsRemoved = beaconCache.evictRecordsByNumber(beaconID, 1);
-
-                if (logger.isDebugEnabled()) {
-                    if (!removedRecordsPerBeacon.containsKey(beaconID)) {
-                        removedRecordsPerBeacon.put(beaconID, numRecordsRemoved);
-                    } else {
-                        removedRecordsPerBeacon.put(beaconID, removedRecordsPerBeacon.get(beaconID) + numRecordsRemoved);
-                    }
-                }
-            }
-        }
+        int numRecordsRemoved = beaconCache.evictRecordsBySize(configuration.getCacheSizeLowerBound());
 
         if (logger.isDebugEnabled()) {
-            for (Map.Entry<Integer, Integer> entries : removedRecordsPerBeacon.entrySet()) {
-                logger.debug(getClass().getSimpleName() + " doExecute()  - Removed " + entries.getValue() + " records from Beacon with ID " + entries.getKey());
-            }
+            logger.debug(getClass().getSimpleName() + " doExecute() - Removed " + numRecordsRemoved + " records");
         }
     }
 }
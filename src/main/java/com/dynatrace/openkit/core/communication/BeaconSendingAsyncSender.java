@@ -0,0 +1,159 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.core.communication;
+
+import com.dynatrace.openkit.protocol.ResponseCallback;
+import com.dynatrace.openkit.protocol.StatusResponse;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends sessions in parallel using the asynchronous beacon transport, without a thread per session.
+ *
+ * <p>
+ * The beacon sender thread starts sending the sessions and waits until the completion callbacks of all sessions
+ * have been invoked. At most {@code maxSessionsInFlight} sessions are sent at the same time.
+ * If the server responds with "too many requests", no further sessions are started.
+ * </p>
+ *
+ * <p>
+ * If the calling thread is interrupted while waiting, no further sessions are started,
+ * but the callbacks of sessions already in flight are awaited, at most for {@link #SHUTDOWN_TIMEOUT_MILLIS},
+ * so that these sessions are not sent again before they are completed.
+ * If callbacks are lost, the caller gives up waiting after {@link #COMPLETION_TIMEOUT_MILLIS}.
+ * </p>
+ */
+class BeaconSendingAsyncSender implements ParallelSessionSender {
+
+    static final int DEFAULT_MAX_SESSIONS_IN_FLIGHT = 8;
+    static final long COMPLETION_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    static final long SHUTDOWN_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final int maxSessionsInFlight;
+    private final long completionTimeoutMillis;
+
+    /**
+     * Create an asynchronous sender.
+     *
+     * @param maxSessionsInFlight The maximum number of sessions sent at the same time.
+     */
+    BeaconSendingAsyncSender(int maxSessionsInFlight) {
+        this(maxSessionsInFlight, COMPLETION_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Create an asynchronous sender with a custom completion timeout. This constructor is intended for unit testing.
+     *
+     * @param maxSessionsInFlight     The maximum number of sessions sent at the same time.
+     * @param completionTimeoutMillis The maximum time to wait for all sessions of one call being sent.
+     */
+    BeaconSendingAsyncSender(int maxSessionsInFlight, long completionTimeoutMillis) {
+        this.maxSessionsInFlight = maxSessionsInFlight;
+        this.completionTimeoutMillis = completionTimeoutMillis;
+    }
+
+    /**
+     * Get the maximum number of sessions sent at the same time.
+     */
+    int getMaxSessionsInFlight() {
+        return maxSessionsInFlight;
+    }
+
+    @Override
+    public StatusResponse[] sendBeacons(BeaconSendingContext context, List<SessionWrapper> sessions) throws InterruptedException {
+
+        final StatusResponse[] responses = new StatusResponse[sessions.size()];
+        final AtomicBoolean tooManyRequests = new AtomicBoolean(false);
+        final Semaphore inFlight = new Semaphore(maxSessionsInFlight);
+        final CountDownLatch completed = new CountDownLatch(sessions.size());
+
+        long deadline = System.currentTimeMillis() + completionTimeoutMillis;
+        int numSessionsProcessed = 0;
+        try {
+            for (; numSessionsProcessed < sessions.size(); numSessionsProcessed++) {
+                if (!inFlight.tryAcquire(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
+                    break; // callbacks got lost, give up
+                }
+                if (tooManyRequests.get() || context.isSendCycleBudgetExhausted()) {
+                    // server is overloaded or time is up, back off
+                    inFlight.release();
+                    completed.countDown();
+                    continue;
+                }
+
+                final int index = numSessionsProcessed;
+                sessions.get(index).sendBeaconAsync(context.getHTTPClientProvider(), new ResponseCallback() {
+                    @Override
+                    public void onResponse(StatusResponse response) {
+                        // visible to the calling thread, since it waits for the latch
+                        responses[index] = response;
+                        if (BeaconSendingResponseUtil.isTooManyRequestsResponse(response)) {
+                            tooManyRequests.set(true);
+                        }
+                        inFlight.release();
+                        completed.countDown();
+                    }
+                });
+            }
+
+            completed.await(deadline - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // the sessions in flight must not be sent again, before their callbacks have been notified
+            awaitSessionsInFlight(completed, sessions.size() - numSessionsProcessed);
+            throw e;
+        }
+
+        return responses;
+    }
+
+    /**
+     * Wait until the callbacks of all sessions started have been notified.
+     *
+     * <p>
+     * Waiting is not aborted by further interrupts, but it is bounded by {@link #SHUTDOWN_TIMEOUT_MILLIS}.
+     * </p>
+     *
+     * @param completed          Latch counted down for each session completed.
+     * @param numSessionsSkipped The number of sessions not started.
+     */
+    private static void awaitSessionsInFlight(CountDownLatch completed, int numSessionsSkipped) {
+        for (int i = 0; i < numSessionsSkipped; i++) {
+            completed.countDown();
+        }
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+        long remaining = SHUTDOWN_TIMEOUT_MILLIS;
+        while (remaining > 0) {
+            try {
+                completed.await(remaining, TimeUnit.MILLISECONDS);
+                return;
+            } catch (InterruptedException e) {
+                // the caller already handles the interrupt
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        // nothing to release, the transport's I/O thread terminates when idle
+    }
+}
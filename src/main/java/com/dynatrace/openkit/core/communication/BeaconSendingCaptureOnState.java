@@ -17,8 +17,10 @@
 package com.dynatrace.openkit.core.communication;
 
 import com.dynatrace.openkit.core.configuration.BeaconConfiguration;
+import com.dynatrace.openkit.protocol.BeaconChunkBuffer;
 import com.dynatrace.openkit.protocol.StatusResponse;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -41,7 +43,9 @@ class BeaconSendingCaptureOnState extends AbstractBeaconSendingState {
     @Override
     void doExecute(BeaconSendingContext context) throws InterruptedException {
 
-        context.sleep();
+        // wait for the next send cycle or until a session is started or finished
+        context.waitForSendSignal(getWaitTime(context));
+        context.startSendCycle();
 
         // send new session request for all sessions that are new
         StatusResponse newSessionsResponse = sendNewSessionRequests(context);
@@ -51,6 +55,14 @@ class BeaconSendingCaptureOnState extends AbstractBeaconSendingState {
             return;
         }
 
+        // send crashes and errors of open sessions right away
+        StatusResponse criticalSessionsResponse = sendOpenSessionsWithCriticalData(context);
+        if (BeaconSendingResponseUtil.isTooManyRequestsResponse(criticalSessionsResponse)) {
+            // server is currently overloaded, temporarily switch to capture off
+            context.setNextState(new BeaconSendingCaptureOffState(criticalSessionsResponse.getRetryAfterInMilliseconds()));
+            return;
+        }
+
         // send all finished sessions
         StatusResponse finishedSessionsResponse = sendFinishedSessions(context);
         if (BeaconSendingResponseUtil.isTooManyRequestsResponse(finishedSessionsResponse)) {
@@ -73,6 +85,8 @@ class BeaconSendingCaptureOnState extends AbstractBeaconSendingState {
             lastStatusResponse = openSessionsResponse;
         } else if (finishedSessionsResponse != null) {
             lastStatusResponse = finishedSessionsResponse;
+        } else if (criticalSessionsResponse != null) {
+            lastStatusResponse = criticalSessionsResponse;
         }
 
         // handle the last statusResponse received (or null if none was received) from the server
@@ -85,15 +99,53 @@ class BeaconSendingCaptureOnState extends AbstractBeaconSendingState {
     }
 
     /**
-     * Send new session requests for all sessions where we currently don't have a multiplicity configuration.
+     * Get the time to wait for the next send cycle, unless sending is signalled before.
+     *
+     * <p>
+     * Without pending sessions the next cycle starts when open sessions have to be sent.
+     * New session requests and finished sessions which could not be sent yet, as well as open sessions
+     * while the beacon cache is above its send threshold, are retried after {@link BeaconSendingContext#DEFAULT_SLEEP_TIME_MILLISECONDS}.
+     * Crashes and errors which could not be sent are retried when their scheduled retry is due.
+     * </p>
+     *
+     * @param context The state's context
+     * @return The time to wait in milliseconds.
+     */
+    private static long getWaitTime(BeaconSendingContext context) {
+
+        long currentTimestamp = context.getCurrentTimestamp();
+        long waitTime = context.getLastOpenSessionBeaconSendTime() + context.getSendInterval() + 1 - currentTimestamp;
+        if (waitTime <= 0) {
+            // open sessions are overdue, e.g. if the send cycle budget was used up
+            return BeaconSendingContext.DEFAULT_SLEEP_TIME_MILLISECONDS;
+        }
+        if (waitTime > BeaconSendingContext.DEFAULT_SLEEP_TIME_MILLISECONDS
+            && (context.hasNewOrFinishedSessions() || context.isBeaconCacheSendThresholdReached())) {
+            waitTime = BeaconSendingContext.DEFAULT_SLEEP_TIME_MILLISECONDS;
+        }
+        if (context.isCriticalDataRetryScheduled()) {
+            // wake up in time for retrying crashes and errors
+            waitTime = Math.min(waitTime, Math.max(context.getCriticalDataRetryTime() - currentTimestamp, 1));
+        }
+
+        return waitTime;
+    }
+
+    /**
+     * Send a new session request for all sessions where we currently don't have a multiplicity configuration.
+     *
+     * <p>
+     * The response is not session specific, therefore a single request is sent and its multiplicity is applied
+     * to all new sessions. If the request fails, the number of new session requests left is decreased for all of them.
+     * </p>
      *
      * @param context The state context.
-     * @return The last status response received.
+     * @return The status response received or {@code null} if no request was sent.
      */
     private StatusResponse sendNewSessionRequests(BeaconSendingContext context) {
 
-        StatusResponse statusResponse = null;
         List<SessionWrapper> newSessions = context.getAllNewSessions();
+        List<SessionWrapper> sessionsToConfigure = new ArrayList<SessionWrapper>(newSessions.size());
 
         for (SessionWrapper session : newSessions) {
             if (!session.canSendNewSessionRequest()) {
@@ -102,38 +154,107 @@ class BeaconSendingCaptureOnState extends AbstractBeaconSendingState {
                 session.updateBeaconConfiguration(newConfiguration);
                 continue;
             }
+            sessionsToConfigure.add(session);
+        }
+
+        if (sessionsToConfigure.isEmpty()) {
+            return null;
+        }
 
-            statusResponse = context.getHTTPClient().sendNewSessionRequest();
-            if (BeaconSendingResponseUtil.isSuccessfulResponse(statusResponse)) {
-                BeaconConfiguration newConfiguration = new BeaconConfiguration(statusResponse.getMultiplicity());
+        StatusResponse statusResponse = context.getHTTPClient().sendNewSessionRequest();
+        if (BeaconSendingResponseUtil.isSuccessfulResponse(statusResponse)) {
+            BeaconConfiguration newConfiguration = new BeaconConfiguration(statusResponse.getMultiplicity());
+            for (SessionWrapper session : sessionsToConfigure) {
                 session.updateBeaconConfiguration(newConfiguration);
-            } else if (BeaconSendingResponseUtil.isTooManyRequestsResponse(statusResponse)) {
+            }
+        } else if (!BeaconSendingResponseUtil.isTooManyRequestsResponse(statusResponse)) {
+            // any other unsuccessful response
+            for (SessionWrapper session : sessionsToConfigure) {
+                session.decreaseNumNewSessionRequests();
+            }
+        }
+
+        return statusResponse;
+    }
+
+    /**
+     * Send the open sessions holding crashes or errors, which have not been sent yet.
+     *
+     * <p>
+     * Unlike {@link #sendOpenSessions(BeaconSendingContext)} this does not wait for the send interval
+     * and does not update the time when open sessions were sent last.
+     * If crashes or errors could not be sent, a retry is scheduled with increasing delays.
+     * </p>
+     *
+     * @param context The state's context
+     * @return The last status response received.
+     */
+    private static StatusResponse sendOpenSessionsWithCriticalData(BeaconSendingContext context) throws InterruptedException {
+
+        List<SessionWrapper> criticalSessions = context.getOpenSessionsWithCriticalData();
+
+        StatusResponse statusResponse = null;
+        BeaconChunkBuffer chunkBuffer = criticalSessions.isEmpty() ? null : context.newBeaconChunkBuffer();
+        for (SessionWrapper session : criticalSessions) {
+            if (context.isSendCycleBudgetExhausted()) {
+                break; // remaining sessions are sent with the open sessions
+            }
+            if (!session.isDataSendingAllowed()) {
+                continue; // captured data is cleared when sending open sessions
+            }
+            statusResponse = session.sendBeacon(context.getHTTPClientProvider(), chunkBuffer);
+            if (BeaconSendingResponseUtil.isTooManyRequestsResponse(statusResponse)) {
                 // server is currently overloaded, return immediately
                 break;
+            }
+        }
+
+        if (!criticalSessions.isEmpty()) {
+            if (hasUnsentCriticalData(criticalSessions)) {
+                context.scheduleCriticalDataRetry();
             } else {
-                // any other unsuccessful response
-                session.decreaseNumNewSessionRequests();
+                context.resetCriticalDataRetry();
             }
         }
 
         return statusResponse;
     }
 
+    /**
+     * Get a boolean indicating whether any of the given sessions, which may still be sent, holds crashes or errors.
+     */
+    private static boolean hasUnsentCriticalData(List<SessionWrapper> sessions) {
+        for (SessionWrapper session : sessions) {
+            if (session.isDataSendingAllowed() && session.hasCriticalData()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Send all sessions which have been finished previously.
      *
      * @param context The state's context
      * @return The last status response received.
      */
-    private StatusResponse sendFinishedSessions(BeaconSendingContext context) {
+    private StatusResponse sendFinishedSessions(BeaconSendingContext context) throws InterruptedException {
 
         StatusResponse statusResponse = null;
         // check if there's finished Sessions to be sent -> immediately send beacon(s) of finished Sessions
-        List<SessionWrapper> finishedSessions = context.getAllFinishedAndConfiguredSessions();
+        List<SessionWrapper> finishedSessions = BeaconSendingContext.prioritize(context.getAllFinishedAndConfiguredSessions());
+        if (context.getParallelSessionSender() != null && !finishedSessions.isEmpty()) {
+            return sendFinishedSessionsInParallel(context, finishedSessions);
+        }
+
+        BeaconChunkBuffer chunkBuffer = finishedSessions.isEmpty() ? null : context.newBeaconChunkBuffer();
 
         for (SessionWrapper finishedSession : finishedSessions) {
+            if (context.isSendCycleBudgetExhausted()) {
+                break; // remaining sessions are sent with the next cycle
+            }
             if (finishedSession.isDataSendingAllowed()) {
-                statusResponse = finishedSession.sendBeacon(context.getHTTPClientProvider());
+                statusResponse = finishedSession.sendBeacon(context.getHTTPClientProvider(), chunkBuffer);
                 if (!BeaconSendingResponseUtil.isSuccessfulResponse(statusResponse)) {
                     // something went wrong,
                     if (BeaconSendingResponseUtil.isTooManyRequestsResponse(statusResponse) || !finishedSession.isEmpty()) {
@@ -143,33 +264,103 @@ class BeaconSendingCaptureOnState extends AbstractBeaconSendingState {
             }
 
             // session was sent/is not allowed to be sent - so remove it from beacon cache
-            context.removeSession(finishedSession); // remove the finished session from the cache
-            finishedSession.clearCapturedData();
-            finishedSession.getSession().close(); // The session is already closed/ended at this point. This call avoids a static code warning.
+            removeFinishedSession(context, finishedSession);
         }
 
         return statusResponse;
     }
 
+    /**
+     * Send finished sessions in parallel.
+     *
+     * <p>
+     * Unlike sending one after the other, sessions which could not be sent do not prevent sending the remaining ones.
+     * They are kept and retried later, all others are removed.
+     * </p>
+     *
+     * @param context          The state's context
+     * @param finishedSessions The finished sessions.
+     * @return The "too many requests" response, if received, or the response of the last session sent.
+     */
+    private static StatusResponse sendFinishedSessionsInParallel(BeaconSendingContext context, List<SessionWrapper> finishedSessions)
+        throws InterruptedException {
+
+        List<SessionWrapper> sessionsToSend = new ArrayList<SessionWrapper>(finishedSessions.size());
+        for (SessionWrapper finishedSession : finishedSessions) {
+            if (finishedSession.isDataSendingAllowed()) {
+                sessionsToSend.add(finishedSession);
+            } else {
+                removeFinishedSession(context, finishedSession);
+            }
+        }
+
+        StatusResponse[] responses = context.getParallelSessionSender().sendBeacons(context, sessionsToSend);
+        for (int i = 0; i < responses.length; i++) {
+            SessionWrapper finishedSession = sessionsToSend.get(i);
+            if (!BeaconSendingResponseUtil.isSuccessfulResponse(responses[i])
+                && (BeaconSendingResponseUtil.isTooManyRequestsResponse(responses[i]) || !finishedSession.isEmpty())) {
+                // sending did not work or the session was not sent at all, retry it later
+                continue;
+            }
+            removeFinishedSession(context, finishedSession);
+        }
+
+        return lastResponse(responses);
+    }
+
+    private static void removeFinishedSession(BeaconSendingContext context, SessionWrapper finishedSession) {
+        context.removeSession(finishedSession); // remove the finished session from the cache
+        finishedSession.clearCapturedData();
+        finishedSession.getSession().close(); // The session is already closed/ended at this point. This call avoids a static code warning.
+    }
+
+    /**
+     * Get the "too many requests" response, if any, otherwise the last response.
+     */
+    private static StatusResponse lastResponse(StatusResponse[] responses) {
+        for (StatusResponse response : responses) {
+            if (BeaconSendingResponseUtil.isTooManyRequestsResponse(response)) {
+                return response;
+            }
+        }
+        return responses.length == 0 ? null : responses[responses.length - 1];
+    }
+
     /**
      * Check if the send interval (configured by server) has expired and start to send open sessions if it has expired.
      *
      * @param context The state's context
      * @return The last status response received.
      */
-    private StatusResponse sendOpenSessions(BeaconSendingContext context) {
+    private StatusResponse sendOpenSessions(BeaconSendingContext context) throws InterruptedException {
 
         StatusResponse statusResponse = null;
 
         long currentTimestamp = context.getCurrentTimestamp();
         if (currentTimestamp <= context.getLastOpenSessionBeaconSendTime() + context.getSendInterval()) {
-            return null;
+            // not yet time to send open sessions, unless the beacon cache is filling up
+            return context.isBeaconCacheSendThresholdReached() ? sendLargestOpenSessions(context) : null;
+        }
+
+        List<SessionWrapper> openSessions = BeaconSendingContext.prioritize(context.getAllOpenAndConfiguredSessions());
+        if (context.getParallelSessionSender() != null && !openSessions.isEmpty()) {
+            statusResponse = sendOpenSessionsInParallel(context, openSessions);
+            if (!context.isSendCycleBudgetExhausted()) {
+                // otherwise sessions might have been skipped, try again with the next cycle
+                context.setLastOpenSessionBeaconSendTime(currentTimestamp);
+            }
+            return statusResponse;
         }
 
-        List<SessionWrapper> openSessions = context.getAllOpenAndConfiguredSessions();
+        // all open sessions are sent one after the other over the same kept alive connection, sharing one buffer
+        BeaconChunkBuffer chunkBuffer = openSessions.isEmpty() ? null : context.newBeaconChunkBuffer();
         for (SessionWrapper session : openSessions) {
+            if (context.isSendCycleBudgetExhausted()) {
+                // remaining sessions are sent with the next cycle, sessions already sent are skipped if empty
+                return statusResponse;
+            }
             if (session.isDataSendingAllowed()) {
-                statusResponse = session.sendBeacon(context.getHTTPClientProvider());
+                statusResponse = session.sendBeacon(context.getHTTPClientProvider(), chunkBuffer);
                 if (BeaconSendingResponseUtil.isTooManyRequestsResponse(statusResponse)) {
                     // server is currently overloaded, return immediately
                     break;
@@ -184,6 +375,75 @@ class BeaconSendingCaptureOnState extends AbstractBeaconSendingState {
         return statusResponse;
     }
 
+    /**
+     * Send the open sessions holding the most data, until the beacon cache is below its send threshold again.
+     *
+     * <p>
+     * The open sessions are ordered by their priority, so sessions with crashes or errors are sent first,
+     * followed by the sessions holding the most data. Sending stops as soon as the cache is below
+     * its send threshold, or the remaining sessions hold no data.
+     * </p>
+     *
+     * <p>
+     * The time when open sessions were sent last is not updated, so that all open sessions
+     * are still sent when the send interval elapsed.
+     * </p>
+     *
+     * @param context The state's context
+     * @return The last status response received.
+     */
+    private static StatusResponse sendLargestOpenSessions(BeaconSendingContext context) {
+
+        List<SessionWrapper> openSessions = BeaconSendingContext.prioritize(context.getAllOpenAndConfiguredSessions());
+
+        StatusResponse statusResponse = null;
+        BeaconChunkBuffer chunkBuffer = openSessions.isEmpty() ? null : context.newBeaconChunkBuffer();
+        for (SessionWrapper session : openSessions) {
+            if (!context.isBeaconCacheSendThresholdReached() || context.isSendCycleBudgetExhausted()) {
+                break;
+            }
+            if (!session.isDataSendingAllowed()) {
+                session.clearCapturedData();
+                continue;
+            }
+            if (session.getNumBytesInCache() == 0) {
+                if (!session.hasCriticalData()) {
+                    break; // ordered by size, the remaining sessions hold no data either
+                }
+                continue;
+            }
+            statusResponse = session.sendBeacon(context.getHTTPClientProvider(), chunkBuffer);
+            if (BeaconSendingResponseUtil.isTooManyRequestsResponse(statusResponse)) {
+                // server is currently overloaded, return immediately
+                break;
+            }
+        }
+
+        return statusResponse;
+    }
+
+    /**
+     * Send open sessions in parallel.
+     *
+     * @param context      The state's context
+     * @param openSessions The open sessions.
+     * @return The "too many requests" response, if received, or the response of the last session sent.
+     */
+    private static StatusResponse sendOpenSessionsInParallel(BeaconSendingContext context, List<SessionWrapper> openSessions)
+        throws InterruptedException {
+
+        List<SessionWrapper> sessionsToSend = new ArrayList<SessionWrapper>(openSessions.size());
+        for (SessionWrapper session : openSessions) {
+            if (session.isDataSendingAllowed()) {
+                sessionsToSend.add(session);
+            } else {
+                session.clearCapturedData();
+            }
+        }
+
+        return lastResponse(context.getParallelSessionSender().sendBeacons(context, sessionsToSend));
+    }
+
     private static void handleStatusResponse(BeaconSendingContext context, StatusResponse statusResponse) {
 
         if (statusResponse == null) {
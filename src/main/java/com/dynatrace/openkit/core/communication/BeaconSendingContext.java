@@ -17,18 +17,21 @@
 package com.dynatrace.openkit.core.communication;
 
 import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.caching.BeaconCache;
+import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.core.objects.SessionImpl;
+import com.dynatrace.openkit.core.util.CoalescingSignal;
+import com.dynatrace.openkit.protocol.BeaconChunkBuffer;
 import com.dynatrace.openkit.protocol.HTTPClient;
 import com.dynatrace.openkit.protocol.StatusResponse;
 import com.dynatrace.openkit.providers.HTTPClientProvider;
 import com.dynatrace.openkit.providers.TimingProvider;
 
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -42,15 +45,30 @@ public class BeaconSendingContext {
      */
     static final long DEFAULT_SLEEP_TIME_MILLISECONDS = TimeUnit.SECONDS.toMillis(1);
 
+    /**
+     * Delays between consecutive retries of crashes and errors, which could not be sent.
+     */
+    static final long[] CRITICAL_DATA_RETRY_DELAY_MILLISECONDS = {
+        TimeUnit.SECONDS.toMillis(1),
+        TimeUnit.SECONDS.toMillis(5),
+        TimeUnit.SECONDS.toMillis(15),
+        TimeUnit.MINUTES.toMillis(1),
+        TimeUnit.MINUTES.toMillis(5),
+    };
+
     private final Logger logger;
     private final Configuration configuration;
     private final HTTPClientProvider httpClientProvider;
     private final TimingProvider timingProvider;
+    /**
+     * cache holding the data of all sessions or {@code null} if the cache size is not checked
+     */
+    private final BeaconCache beaconCache;
 
     /**
-     * container storing all sessions
+     * container storing all sessions, indexed by their state
      */
-    private final LinkedBlockingQueue<SessionWrapper> sessions = new LinkedBlockingQueue<SessionWrapper>();
+    private final SessionRegistry sessions = new SessionRegistry();
 
     /**
      * boolean indicating whether shutdown was requested or not
@@ -60,6 +78,14 @@ public class BeaconSendingContext {
      * countdown latch updated when init was done - which can either be success or failure
      */
     private final CountDownLatch initCountDownLatch = new CountDownLatch(1);
+    /**
+     * signal waking up the beacon sender thread while it waits for the next send cycle
+     */
+    private final CoalescingSignal sendSignal = new CoalescingSignal();
+    /**
+     * signal set when crashes or errors are added to the beacon cache, consumed when looking for sessions holding them
+     */
+    private final CoalescingSignal criticalDataAdded = new CoalescingSignal();
     /**
      * current state of beacon sender
      */
@@ -80,6 +106,22 @@ public class BeaconSendingContext {
      * boolean indicating whether init was successful or not
      */
     private final AtomicBoolean initSucceeded = new AtomicBoolean(false);
+    /**
+     * sends sessions in parallel, created on first use; only accessed by the beacon sender thread
+     */
+    private ParallelSessionSender parallelSessionSender;
+    /**
+     * time after which no further sessions are sent in the current send cycle; read by parallel senders
+     */
+    private volatile long sendCycleDeadline = Long.MAX_VALUE;
+    /**
+     * timestamp when sending crashes and errors is retried or {@code Long.MAX_VALUE} if no retry is scheduled
+     */
+    private long criticalDataRetryTime = Long.MAX_VALUE;
+    /**
+     * index of the delay used for the next retry of crashes and errors
+     */
+    private int criticalDataRetryDelayIndex = 0;
 
     /**
      * Constructor.
@@ -91,7 +133,22 @@ public class BeaconSendingContext {
     public BeaconSendingContext(Logger logger, Configuration configuration,
                                 HTTPClientProvider httpClientProvider,
                                 TimingProvider timingProvider) {
-        this(logger, configuration, httpClientProvider, timingProvider, new BeaconSendingInitState());
+        this(logger, configuration, httpClientProvider, timingProvider, null, new BeaconSendingInitState());
+    }
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     *     The state is initialized to {@link BeaconSendingInitState}.
+     *     The size of the given beacon cache is checked against the send threshold of the beacon cache configuration.
+     * </p>
+     */
+    public BeaconSendingContext(Logger logger, Configuration configuration,
+                                HTTPClientProvider httpClientProvider,
+                                TimingProvider timingProvider,
+                                BeaconCache beaconCache) {
+        this(logger, configuration, httpClientProvider, timingProvider, beaconCache, new BeaconSendingInitState());
     }
 
     /**
@@ -103,10 +160,28 @@ public class BeaconSendingContext {
      */
     public BeaconSendingContext(Logger logger, Configuration configuration, HTTPClientProvider httpClientProvider,
             TimingProvider timingProvider, AbstractBeaconSendingState initialState) {
+        this(logger, configuration, httpClientProvider, timingProvider, null, initialState);
+    }
+
+    /**
+     * Constructor.
+     *
+     * <p>
+     *     The beacon cache and the initial state are provided. This constructor is intended for unit testing.
+     * </p>
+     */
+    BeaconSendingContext(Logger logger, Configuration configuration, HTTPClientProvider httpClientProvider,
+            TimingProvider timingProvider, BeaconCache beaconCache, AbstractBeaconSendingState initialState) {
         this.logger = logger;
         this.configuration = configuration;
         this.httpClientProvider = httpClientProvider;
         this.timingProvider = timingProvider;
+        this.beaconCache = beaconCache;
+        if (beaconCache != null) {
+            // crashes and errors are sent right away, without waiting for the next send cycle
+            beaconCache.addCriticalDataAddedSignal(sendSignal);
+            beaconCache.addCriticalDataAddedSignal(criticalDataAdded);
+        }
 
         currentState = initialState;
     }
@@ -123,6 +198,10 @@ public class BeaconSendingContext {
                 logger.info(getClass().getSimpleName() + " executeCurrentState() - State change from '" + currentState + "' to '" + nextState + "'");
             }
             currentState = nextState;
+            if (currentState.isTerminalState() && parallelSessionSender != null) {
+                parallelSessionSender.shutdown();
+                parallelSessionSender = null;
+            }
         }
     }
 
@@ -131,6 +210,7 @@ public class BeaconSendingContext {
      */
     public void requestShutdown() {
         shutdown.set(true);
+        sendSignal.signal();
     }
 
     /**
@@ -269,6 +349,75 @@ public class BeaconSendingContext {
         return httpClientProvider.createClient(configuration.getHttpClientConfig());
     }
 
+    /**
+     * Get the sender sending sessions in parallel.
+     *
+     * <p>
+     * With the asynchronous beacon transport, sessions are sent without a thread per session,
+     * otherwise by a pool of workers, if more than one worker is configured.
+     * </p>
+     *
+     * @return The parallel sender or {@code null} if sessions are sent one after the other.
+     */
+    ParallelSessionSender getParallelSessionSender() {
+        if (parallelSessionSender == null && !currentState.isTerminalState()) {
+            int numWorkers = configuration.getBeaconSenderWorkers();
+            if (configuration.getHttpClientConfig().isAsyncTransportEnabled()) {
+                parallelSessionSender = new BeaconSendingAsyncSender(numWorkers > 1
+                    ? numWorkers
+                    : BeaconSendingAsyncSender.DEFAULT_MAX_SESSIONS_IN_FLIGHT);
+            } else if (numWorkers > 1) {
+                parallelSessionSender = new BeaconSendingWorkerPool(numWorkers);
+            }
+        }
+        return parallelSessionSender;
+    }
+
+    /**
+     * Start a new send cycle, whose time budget is {@link Configuration#getSendCycleBudget()}.
+     */
+    void startSendCycle() {
+        long budget = configuration.getSendCycleBudget();
+        sendCycleDeadline = budget == Configuration.NO_SEND_CYCLE_BUDGET ? Long.MAX_VALUE : getCurrentTimestamp() + budget;
+    }
+
+    /**
+     * Check whether the time budget of the current send cycle is used up, so that no further sessions should be sent.
+     *
+     * <p>
+     * This may be called by any thread.
+     * </p>
+     */
+    boolean isSendCycleBudgetExhausted() {
+        long deadline = sendCycleDeadline;
+        return deadline != Long.MAX_VALUE && getCurrentTimestamp() >= deadline;
+    }
+
+    /**
+     * Get a boolean indicating whether the beacon cache has grown to its configured send threshold,
+     * so that open sessions should be sent before their send interval elapsed.
+     *
+     * @return {@code true} if the threshold is reached, {@code false} if not or if no threshold is configured.
+     */
+    boolean isBeaconCacheSendThresholdReached() {
+        if (beaconCache == null) {
+            return false;
+        }
+        BeaconCacheConfiguration beaconCacheConfiguration = configuration.getBeaconCacheConfiguration();
+        return beaconCacheConfiguration != null
+            && beaconCacheConfiguration.getSendThreshold() >= 0
+            && beaconCache.getNumBytesInCache() >= beaconCacheConfiguration.getSendThreshold();
+    }
+
+    /**
+     * Create a buffer for compressed beacon chunks, which is shared by all sessions sent in one go.
+     *
+     * @return A new chunk buffer.
+     */
+    BeaconChunkBuffer newBeaconChunkBuffer() {
+        return new BeaconChunkBuffer(configuration.getHttpClientConfig().getBeaconCompressor());
+    }
+
     /**
      * Gets the current timestamp.
      *
@@ -297,6 +446,65 @@ public class BeaconSendingContext {
         timingProvider.sleep(millis);
     }
 
+    /**
+     * Wait until sending is signalled or the given amount of milliseconds has elapsed.
+     *
+     * @param timeoutMillis The maximum number of milliseconds to wait.
+     * @throws InterruptedException When waiting thread got interrupted.
+     */
+    void waitForSendSignal(long timeoutMillis) throws InterruptedException {
+        sendSignal.await(timeoutMillis);
+    }
+
+    /**
+     * Get the signal waking up the beacon sender thread, so that data is sent without waiting for the next send cycle.
+     *
+     * <p>
+     *     Signalling never blocks and any number of signals before the sender wakes up result in a single wake up.
+     * </p>
+     */
+    public CoalescingSignal getSendSignal() {
+        return sendSignal;
+    }
+
+    /**
+     * Schedule a retry for crashes and errors, which could not be sent.
+     *
+     * <p>
+     *     The delay is increased with every consecutive retry, until {@link #resetCriticalDataRetry()} is called.
+     * </p>
+     */
+    void scheduleCriticalDataRetry() {
+        criticalDataRetryTime = getCurrentTimestamp() + CRITICAL_DATA_RETRY_DELAY_MILLISECONDS[criticalDataRetryDelayIndex];
+        criticalDataRetryDelayIndex = Math.min(criticalDataRetryDelayIndex + 1, CRITICAL_DATA_RETRY_DELAY_MILLISECONDS.length - 1);
+    }
+
+    /**
+     * Cancel a scheduled retry for crashes and errors and start over with the shortest delay.
+     */
+    void resetCriticalDataRetry() {
+        criticalDataRetryTime = Long.MAX_VALUE;
+        criticalDataRetryDelayIndex = 0;
+    }
+
+    /**
+     * Get a boolean indicating whether a retry for crashes and errors, which could not be sent, is scheduled.
+     */
+    boolean isCriticalDataRetryScheduled() {
+        return criticalDataRetryTime != Long.MAX_VALUE;
+    }
+
+    /**
+     * Get timestamp when sending crashes and errors is retried.
+     *
+     * <p>
+     *     Only meaningful if {@link #isCriticalDataRetryScheduled()} returns {@code true}.
+     * </p>
+     */
+    long getCriticalDataRetryTime() {
+        return criticalDataRetryTime;
+    }
+
     /**
      * Get timestamp when open sessions were sent last.
      */
@@ -358,13 +566,10 @@ public class BeaconSendingContext {
      */
     private void clearAllSessionData() {
 
-        // iterate over the elements
-        Iterator<SessionWrapper> iterator = sessions.iterator();
-        while (iterator.hasNext()) {
-            SessionWrapper wrapper = iterator.next();
+        for (SessionWrapper wrapper : sessions.getAllSessions()) {
             wrapper.clearCapturedData();
             if (wrapper.isSessionFinished()) {
-                iterator.remove();
+                sessions.remove(wrapper);
             }
         }
     }
@@ -373,13 +578,15 @@ public class BeaconSendingContext {
      * Start a new session.
      *
      * <p>
-     *     This add the {@code session} to the internal container of sessions.
+     *     This add the {@code session} to the internal container of sessions
+     *     and wakes up the beacon sender, so that the new session request is sent right away.
      * </p>
      *
      * @param session The new session to start.
      */
     public void startSession(SessionImpl session) {
-        sessions.add(new SessionWrapper(session));
+        sessions.add(session);
+        sendSignal.signal(); // new session request
     }
 
     /**
@@ -392,78 +599,108 @@ public class BeaconSendingContext {
      * @return A list of new sessions.
      */
     List<SessionWrapper> getAllNewSessions() {
-
-        List<SessionWrapper> newSessions = new LinkedList<SessionWrapper>();
-
-        for (SessionWrapper sessionWrapper : sessions) {
-            if (!sessionWrapper.isBeaconConfigurationSet()) {
-                newSessions.add(sessionWrapper);
-            }
-        }
-
-        return newSessions;
+        return sessions.getNewSessions();
     }
 
     /**
      * Get a list of all sessions that have been configured and are currently open.
      */
     List<SessionWrapper> getAllOpenAndConfiguredSessions() {
-
-        List<SessionWrapper> openSessions = new LinkedList<SessionWrapper>();
-
-        for (SessionWrapper sessionWrapper : sessions) {
-            if (sessionWrapper.isBeaconConfigurationSet() && !sessionWrapper.isSessionFinished()) {
-                openSessions.add(sessionWrapper);
-            }
-        }
-
-        return openSessions;
+        return sessions.getOpenSessions();
     }
 
     /**
      * Get a list of all sessions that have been configured and are currently finished.
      */
     List<SessionWrapper> getAllFinishedAndConfiguredSessions() {
+        return sessions.getFinishedSessions();
+    }
 
-        List<SessionWrapper> finishedSessions = new LinkedList<SessionWrapper>();
+    /**
+     * Get the open and configured sessions holding crashes or errors which have not been sent yet.
+     *
+     * <p>
+     *     The sessions are only looked up if crashes or errors have been added to the beacon cache
+     *     since the previous call, otherwise an empty list is returned without visiting any session.
+     *     Sessions whose crashes or errors could not be sent are returned again after the next one has been added,
+     *     once the retry scheduled by {@link #scheduleCriticalDataRetry()} is due, or when all open sessions are sent.
+     * </p>
+     *
+     * @return The open sessions with crashes or errors, holding the most data first.
+     */
+    List<SessionWrapper> getOpenSessionsWithCriticalData() throws InterruptedException {
+        boolean retryDue = isCriticalDataRetryScheduled() && getCurrentTimestamp() >= criticalDataRetryTime;
+        if (!criticalDataAdded.await(0) && !retryDue) {
+            return Collections.emptyList();
+        }
 
-        for (SessionWrapper sessionWrapper : sessions) {
-            if (sessionWrapper.isBeaconConfigurationSet() && sessionWrapper.isSessionFinished()) {
-                finishedSessions.add(sessionWrapper);
+        List<SessionWrapper> result = new ArrayList<SessionWrapper>();
+        for (SessionWrapper session : sessions.getOpenSessions()) {
+            if (session.hasCriticalData()) {
+                result.add(session);
             }
         }
-
-        return finishedSessions;
+        return prioritize(result);
     }
 
     /**
-     * Finish a session which has been started previously using {@link #startSession(SessionImpl)}.
+     * Order the given sessions by their priority for sending.
      *
-     * @param session The session to finish.
+     * <p>
+     *     Sessions holding crashes or errors which have not been sent yet come first, followed by the sessions
+     *     holding the most data in the beacon cache. Sessions of the same priority keep their order,
+     *     so that older sessions are sent first.
+     * </p>
+     *
+     * <p>
+     *     The sizes are the ones published by the beacon cache, so ranking does not lock any cache entry.
+     * </p>
+     *
+     * @param sessionsToSend The sessions to order, in the order they were registered.
+     * @return The ordered sessions.
      */
-    public void finishSession(SessionImpl session) {
+    static List<SessionWrapper> prioritize(List<SessionWrapper> sessionsToSend) {
+        if (sessionsToSend.size() < 2) {
+            return sessionsToSend;
+        }
 
-        SessionWrapper sessionWrapper = findSessionWrapper(session);
-        if (sessionWrapper != null) {
-            sessionWrapper.finishSession();
+        // the priority is determined once, since the sessions are still being modified while sorting
+        List<SessionPriority> priorities = new ArrayList<SessionPriority>(sessionsToSend.size());
+        for (SessionWrapper session : sessionsToSend) {
+            priorities.add(new SessionPriority(session, session.hasCriticalData(), session.getNumBytesInCache()));
+        }
+        Collections.sort(priorities); // stable, equal priorities keep the registration order
+
+        List<SessionWrapper> result = new ArrayList<SessionWrapper>(priorities.size());
+        for (SessionPriority priority : priorities) {
+            result.add(priority.session);
         }
+        return result;
     }
 
     /**
-     * Search and find {@link SessionWrapper} for given {@link SessionImpl}.
+     * Get a boolean indicating whether there are new sessions or sessions which have been configured and are finished.
+     */
+    boolean hasNewOrFinishedSessions() {
+        return sessions.hasNewOrFinishedSessions();
+    }
+
+    /**
+     * Finish a session which has been started previously using {@link #startSession(SessionImpl)}.
      *
-     * @param session The session for which to search for appropriate wrapper.
-     * @return Appropriate wrapper or {@code null} if not found.
+     * <p>
+     *     The beacon sender is woken up, so that the finished session is sent right away.
+     * </p>
+     *
+     * @param session The session to finish.
      */
-    private SessionWrapper findSessionWrapper(SessionImpl session) {
+    public void finishSession(SessionImpl session) {
 
-        for (SessionWrapper sessionWrapper : sessions) {
-            if (sessionWrapper.getSession().equals(session)) {
-                return sessionWrapper;
-            }
+        SessionWrapper sessionWrapper = sessions.get(session);
+        if (sessionWrapper != null) {
+            sessionWrapper.finishSession();
+            sendSignal.signal();
         }
-
-        return null;
     }
 
     /**
@@ -474,4 +711,28 @@ public class BeaconSendingContext {
     boolean removeSession(SessionWrapper sessionWrapper) {
         return sessions.remove(sessionWrapper);
     }
+
+    /**
+     * Session and its priority for sending, ordered by descending priority.
+     */
+    private static final class SessionPriority implements Comparable<SessionPriority> {
+
+        private final SessionWrapper session;
+        private final boolean hasCriticalData;
+        private final long numBytes;
+
+        SessionPriority(SessionWrapper session, boolean hasCriticalData, long numBytes) {
+            this.session = session;
+            this.hasCriticalData = hasCriticalData;
+            this.numBytes = numBytes;
+        }
+
+        @Override
+        public int compareTo(SessionPriority other) {
+            if (hasCriticalData != other.hasCriticalData) {
+                return hasCriticalData ? -1 : 1;
+            }
+            return numBytes == other.numBytes ? 0 : (numBytes > other.numBytes ? -1 : 1);
+        }
+    }
 }
@@ -17,6 +17,7 @@
 package com.dynatrace.openkit.core.communication;
 
 import com.dynatrace.openkit.core.configuration.BeaconConfiguration;
+import com.dynatrace.openkit.protocol.BeaconChunkBuffer;
 import com.dynatrace.openkit.protocol.StatusResponse;
 
 import java.util.List;
@@ -55,9 +56,10 @@ class BeaconSendingFlushSessionsState extends AbstractBeaconSendingState {
         // flush already finished (and previously ended) sessions
         boolean tooManyRequestsReceived = false;
         List<SessionWrapper> finishedSessions = context.getAllFinishedAndConfiguredSessions();
+        BeaconChunkBuffer chunkBuffer = finishedSessions.isEmpty() ? null : context.newBeaconChunkBuffer();
         for (SessionWrapper finishedSession : finishedSessions) {
             if (!tooManyRequestsReceived && finishedSession.isDataSendingAllowed()) {
-                StatusResponse response = finishedSession.sendBeacon(context.getHTTPClientProvider());
+                StatusResponse response = finishedSession.sendBeacon(context.getHTTPClientProvider(), chunkBuffer);
                 if (BeaconSendingResponseUtil.isTooManyRequestsResponse(response)) {
                     tooManyRequestsReceived = true;
                 }
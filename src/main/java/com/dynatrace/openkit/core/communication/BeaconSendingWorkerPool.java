@@ -0,0 +1,182 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.communication;
+
+import com.dynatrace.openkit.protocol.BeaconChunkBuffer;
+import com.dynatrace.openkit.protocol.StatusResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of worker threads sending the beacons of several sessions in parallel.
+ *
+ * <p>
+ * The number of workers is the global limit of beacon requests in flight. Sessions are sent in parallel,
+ * but each session is sent by a single worker, so the chunks of one session are still sent in order.
+ * If the server responds with "too many requests", this is signalled to all workers,
+ * which do not start sending any further session of the same call.
+ * </p>
+ *
+ * <p>
+ * Idle workers terminate after {@link #KEEP_ALIVE_MILLIS}, so no threads are kept between long send intervals.
+ * Each worker reuses a chunk buffer for all sessions it sends.
+ * If the calling thread is interrupted while waiting, sending of the remaining sessions is cancelled
+ * and the workers are stopped. Sessions currently being sent are completed before returning,
+ * at most for {@link #SHUTDOWN_TIMEOUT_MILLIS}, so that no session is sent by two threads at the same time.
+ * </p>
+ */
+class BeaconSendingWorkerPool implements ParallelSessionSender {
+
+    static final long KEEP_ALIVE_MILLIS = TimeUnit.SECONDS.toMillis(60);
+    static final long SHUTDOWN_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    private static final String THREAD_NAME_PREFIX = "BeaconSenderWorker-";
+
+    private final ThreadPoolExecutor executor;
+    private final Queue<BeaconChunkBuffer> chunkBuffers = new ConcurrentLinkedQueue<BeaconChunkBuffer>();
+
+    /**
+     * Create a worker pool.
+     *
+     * @param numWorkers The maximum number of sessions sent in parallel.
+     */
+    BeaconSendingWorkerPool(int numWorkers) {
+        executor = new ThreadPoolExecutor(numWorkers, numWorkers, KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get the maximum number of sessions sent in parallel.
+     */
+    int getNumWorkers() {
+        return executor.getMaximumPoolSize();
+    }
+
+    @Override
+    public StatusResponse[] sendBeacons(final BeaconSendingContext context, List<SessionWrapper> sessions) throws InterruptedException {
+
+        final StatusResponse[] responses = new StatusResponse[sessions.size()];
+        final AtomicBoolean tooManyRequests = new AtomicBoolean(false);
+
+        List<Future<?>> futures = new ArrayList<Future<?>>(sessions.size());
+        for (int i = 0; i < sessions.size(); i++) {
+            final int index = i;
+            final SessionWrapper session = sessions.get(i);
+            futures.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (tooManyRequests.get()) {
+                        // server is overloaded, back off
+                        return;
+                    }
+                    if (context.isSendCycleBudgetExhausted()) {
+                        // remaining sessions are sent with the next cycle
+                        return;
+                    }
+                    BeaconChunkBuffer chunkBuffer = chunkBuffers.poll();
+                    if (chunkBuffer == null) {
+                        chunkBuffer = context.newBeaconChunkBuffer();
+                    }
+                    try {
+                        // visible to the calling thread, since it waits for completion of this task
+                        responses[index] = session.sendBeacon(context.getHTTPClientProvider(), chunkBuffer);
+                        if (BeaconSendingResponseUtil.isTooManyRequestsResponse(responses[index])) {
+                            tooManyRequests.set(true);
+                        }
+                    } finally {
+                        chunkBuffers.offer(chunkBuffer);
+                    }
+                }
+            }));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            // sending is not aborted by interrupts, flushing must not start before the workers are done
+            awaitRunningSessions();
+            throw e;
+        } catch (ExecutionException e) {
+            // same behavior as sending sequentially
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw (Error) cause;
+        }
+
+        return responses;
+    }
+
+    /**
+     * Stop all workers and wait until the sessions currently being sent are completed.
+     *
+     * <p>
+     * Waiting is not aborted by further interrupts, but it is bounded by {@link #SHUTDOWN_TIMEOUT_MILLIS}.
+     * </p>
+     */
+    private void awaitRunningSessions() {
+        executor.shutdownNow();
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+        long remaining = SHUTDOWN_TIMEOUT_MILLIS;
+        while (remaining > 0) {
+            try {
+                executor.awaitTermination(remaining, TimeUnit.MILLISECONDS);
+                return;
+            } catch (InterruptedException e) {
+                // the caller already handles the interrupt
+                remaining = deadline - System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Stop all workers, sessions currently being sent are interrupted.
+     */
+    @Override
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger threadNumber = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.core.communication;
+
+import com.dynatrace.openkit.protocol.StatusResponse;
+
+import java.util.List;
+
+/**
+ * Sends the beacons of several sessions at the same time, instead of one after the other.
+ */
+interface ParallelSessionSender {
+
+    /**
+     * Send the beacons of the given sessions and wait until all of them have been sent.
+     *
+     * <p>
+     * Once the server responds with "too many requests", or the send cycle's time budget is exhausted,
+     * no further sessions are sent.
+     * </p>
+     *
+     * @param context  The state context.
+     * @param sessions The sessions to send.
+     * @return The responses in the same order as {@code sessions}. The response is {@code null}, if there was nothing
+     *         to send, or if the session was not sent because the server responded with "too many requests" before
+     *         or the time budget was exhausted.
+     * @throws InterruptedException If the calling thread was interrupted while waiting. No further sessions are started,
+     *                              but sessions already being sent are completed before, so that they can be sent
+     *                              by the calling thread afterwards.
+     */
+    StatusResponse[] sendBeacons(BeaconSendingContext context, List<SessionWrapper> sessions) throws InterruptedException;
+
+    /**
+     * Release all resources, called when the beacon sender terminates.
+     */
+    void shutdown();
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.core.communication;
+
+import com.dynatrace.openkit.core.objects.SessionImpl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registry of all sessions known to the beacon sender, indexed by their state.
+ *
+ * <p>
+ * Sessions are kept in three collections: new sessions without beacon configuration,
+ * open sessions and finished sessions. The {@link SessionWrapper} notifies the registry about state changes,
+ * which move the session from one collection to another in constant time. Therefore getting the sessions
+ * in a certain state only visits these sessions, instead of all sessions.
+ * </p>
+ *
+ * <p>
+ * Within each state the sessions are kept in the order they were added. This class is thread safe.
+ * </p>
+ */
+class SessionRegistry {
+
+    /** all registered sessions, used to find the wrapper of a session */
+    private final Map<SessionImpl, SessionWrapper> sessions = new HashMap<SessionImpl, SessionWrapper>();
+    /** sessions without beacon configuration, no matter whether finished or not */
+    private final Set<SessionWrapper> newSessions = new LinkedHashSet<SessionWrapper>();
+    /** configured sessions which are not finished */
+    private final Set<SessionWrapper> openSessions = new LinkedHashSet<SessionWrapper>();
+    /** configured sessions which are finished */
+    private final Set<SessionWrapper> finishedSessions = new LinkedHashSet<SessionWrapper>();
+
+    /**
+     * Add a new session.
+     *
+     * @param session The session to add.
+     * @return The wrapper of the added session, or the existing wrapper if the session has been added before.
+     */
+    synchronized SessionWrapper add(SessionImpl session) {
+        SessionWrapper sessionWrapper = sessions.get(session);
+        if (sessionWrapper == null) {
+            sessionWrapper = new SessionWrapper(session, this);
+            sessions.put(session, sessionWrapper);
+            getStateIndex(sessionWrapper).add(sessionWrapper);
+        }
+        return sessionWrapper;
+    }
+
+    /**
+     * Get the wrapper of the given session.
+     *
+     * @param session The session for which to get the wrapper.
+     * @return The wrapper or {@code null} if the session is not registered.
+     */
+    synchronized SessionWrapper get(SessionImpl session) {
+        return sessions.get(session);
+    }
+
+    /**
+     * Remove the given session.
+     *
+     * @param sessionWrapper The wrapper of the session to remove.
+     * @return {@code true} if the session was registered, {@code false} otherwise.
+     */
+    synchronized boolean remove(SessionWrapper sessionWrapper) {
+        if (sessions.get(sessionWrapper.getSession()) != sessionWrapper) {
+            return false;
+        }
+        sessions.remove(sessionWrapper.getSession());
+        removeFromStateIndex(sessionWrapper);
+        return true;
+    }
+
+    /**
+     * Move the session to the collection matching its current state.
+     *
+     * <p>
+     * This is called by the {@link SessionWrapper} after its state changed. Concurrent state changes are
+     * handled by reading the current state while holding the lock, so the last call always sees the final state.
+     * </p>
+     *
+     * @param sessionWrapper The session whose state changed.
+     */
+    synchronized void onStateChanged(SessionWrapper sessionWrapper) {
+        if (sessions.get(sessionWrapper.getSession()) != sessionWrapper) {
+            return; // already removed
+        }
+        removeFromStateIndex(sessionWrapper);
+        getStateIndex(sessionWrapper).add(sessionWrapper);
+    }
+
+    /**
+     * Get a snapshot of all sessions.
+     */
+    synchronized List<SessionWrapper> getAllSessions() {
+        return new ArrayList<SessionWrapper>(sessions.values());
+    }
+
+    /**
+     * Get a snapshot of all sessions without beacon configuration.
+     */
+    synchronized List<SessionWrapper> getNewSessions() {
+        return new ArrayList<SessionWrapper>(newSessions);
+    }
+
+    /**
+     * Get a snapshot of all configured sessions which are not finished.
+     */
+    synchronized List<SessionWrapper> getOpenSessions() {
+        return new ArrayList<SessionWrapper>(openSessions);
+    }
+
+    /**
+     * Get a snapshot of all configured sessions which are finished.
+     */
+    synchronized List<SessionWrapper> getFinishedSessions() {
+        return new ArrayList<SessionWrapper>(finishedSessions);
+    }
+
+    /**
+     * Get a boolean indicating whether there are sessions without beacon configuration or finished sessions.
+     */
+    synchronized boolean hasNewOrFinishedSessions() {
+        return !newSessions.isEmpty() || !finishedSessions.isEmpty();
+    }
+
+    private Set<SessionWrapper> getStateIndex(SessionWrapper sessionWrapper) {
+        if (!sessionWrapper.isBeaconConfigurationSet()) {
+            return newSessions;
+        }
+        return sessionWrapper.isSessionFinished() ? finishedSessions : openSessions;
+    }
+
+    private void removeFromStateIndex(SessionWrapper sessionWrapper) {
+        if (!newSessions.remove(sessionWrapper) && !openSessions.remove(sessionWrapper)) {
+            finishedSessions.remove(sessionWrapper);
+        }
+    }
+}
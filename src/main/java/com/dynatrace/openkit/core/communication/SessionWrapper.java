@@ -18,6 +18,8 @@ package com.dynatrace.openkit.core.communication;
 
 import com.dynatrace.openkit.core.configuration.BeaconConfiguration;
 import com.dynatrace.openkit.core.objects.SessionImpl;
+import com.dynatrace.openkit.protocol.BeaconChunkBuffer;
+import com.dynatrace.openkit.protocol.ResponseCallback;
 import com.dynatrace.openkit.protocol.StatusResponse;
 import com.dynatrace.openkit.providers.HTTPClientProvider;
 
@@ -38,6 +40,10 @@ class SessionWrapper {
      * The wrapped {@link SessionImpl}.
      */
     private final SessionImpl session;
+    /**
+     * The registry notified about state changes, or {@code null} if the session is not registered.
+     */
+    private final SessionRegistry registry;
 
     private int numNewSessionRequestsLeft = MAX_NEW_SESSION_REQUESTS;
     private final AtomicBoolean beaconConfigurationSet = new AtomicBoolean(false);
@@ -48,21 +54,34 @@ class SessionWrapper {
      * @param session The wrapped session.
      */
     SessionWrapper(SessionImpl session) {
+        this(session, null);
+    }
+
+    /**
+     * Constructor taking the wrapped {@link SessionImpl} and the registry to notify about state changes.
+     * @param session The wrapped session.
+     * @param registry The registry containing the session.
+     */
+    SessionWrapper(SessionImpl session, SessionRegistry registry) {
         this.session = session;
+        this.registry = registry;
     }
 
     /**
      * Updates the {@link BeaconConfiguration} in the wrapped session.
      *
      * <p>
-     *     Besides updating the beacon configuration this also set the {@link #beaconConfigurationSet flag} to {@code true}.
+     *     Besides updating the beacon configuration this also set the {@link #beaconConfigurationSet flag} to {@code true}
+     *     and, when set for the first time, notifies the registry, if any, to move the session out of the new sessions.
      * </p>
      *
      * @param beaconConfiguration The new beacon configuration to set.
      */
     void updateBeaconConfiguration(BeaconConfiguration beaconConfiguration) {
         session.setBeaconConfiguration(beaconConfiguration);
-        beaconConfigurationSet.set(true);
+        if (!beaconConfigurationSet.getAndSet(true)) {
+            onStateChanged();
+        }
     }
 
     /**
@@ -87,11 +106,19 @@ class SessionWrapper {
      *
      * <p>
      *     This only sets a finished flag to {@code true}, since this will be called by the
-     *     session itself.
+     *     session itself. The registry, if any, is notified to move the session to the finished sessions.
      * </p>
      */
     void finishSession() {
-        sessionFinished.set(true);
+        if (!sessionFinished.getAndSet(true)) {
+            onStateChanged();
+        }
+    }
+
+    private void onStateChanged() {
+        if (registry != null) {
+            registry.onStateChanged(this);
+        }
     }
 
     /**
@@ -127,8 +154,15 @@ class SessionWrapper {
     /**
      * Send beacon forward call.
      */
-    StatusResponse sendBeacon(HTTPClientProvider httpClientProvider) {
-        return session.sendBeacon(httpClientProvider);
+    StatusResponse sendBeacon(HTTPClientProvider httpClientProvider, BeaconChunkBuffer chunkBuffer) {
+        return session.sendBeacon(httpClientProvider, chunkBuffer);
+    }
+
+    /**
+     * Send beacon asynchronously forward call.
+     */
+    void sendBeaconAsync(HTTPClientProvider httpClientProvider, ResponseCallback callback) {
+        session.sendBeaconAsync(httpClientProvider, callback);
     }
 
     /**
@@ -140,6 +174,20 @@ class SessionWrapper {
         return session.isEmpty();
     }
 
+    /**
+     * Get the number of bytes of the wrapped session, which are waiting to be sent.
+     */
+    long getNumBytesInCache() {
+        return session.getNumBytesInCache();
+    }
+
+    /**
+     * Test if crashes or errors of the wrapped session are waiting to be sent.
+     */
+    boolean hasCriticalData() {
+        return session.hasCriticalData();
+    }
+
     /**
      * Ends the session.
      */
@@ -31,10 +31,15 @@ public class BeaconCacheConfiguration {
     public static final long DEFAULT_MAX_RECORD_AGE_IN_MILLIS = TimeUnit.MINUTES.toMillis(105); // 1hour and 45 minutes
     public static final long DEFAULT_UPPER_MEMORY_BOUNDARY_IN_BYTES = 100 * 1024 * 1024;                // 100 MiB
     public static final long DEFAULT_LOWER_MEMORY_BOUNDARY_IN_BYTES = 80 * 1024 * 1024;                 // 80 MiB
+    public static final long SEND_THRESHOLD_DISABLED = -1;
 
     private final long maxRecordAge;
     private final long cacheSizeLowerBound;
     private final long cacheSizeUpperBound;
+    private final boolean offHeapStorageEnabled;
+    private final String persistenceDirectory;
+    private final boolean writeAheadLogEnabled;
+    private final long sendThreshold;
 
     /**
      * Constructor
@@ -44,9 +49,71 @@ public class BeaconCacheConfiguration {
      * @param cacheSizeUpperBound upper memory limit for cache
      */
     public BeaconCacheConfiguration(long maxRecordAge, long cacheSizeLowerBound, long cacheSizeUpperBound) {
+        this(maxRecordAge, cacheSizeLowerBound, cacheSizeUpperBound, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxRecordAge Maximum record age
+     * @param cacheSizeLowerBound lower memory limit for cache
+     * @param cacheSizeUpperBound upper memory limit for cache
+     * @param offHeapStorageEnabled {@code true} if cached data is stored in direct buffers outside the Java heap
+     */
+    public BeaconCacheConfiguration(long maxRecordAge, long cacheSizeLowerBound, long cacheSizeUpperBound, boolean offHeapStorageEnabled) {
+        this(maxRecordAge, cacheSizeLowerBound, cacheSizeUpperBound, offHeapStorageEnabled, null);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxRecordAge Maximum record age
+     * @param cacheSizeLowerBound lower memory limit for cache
+     * @param cacheSizeUpperBound upper memory limit for cache
+     * @param offHeapStorageEnabled {@code true} if cached data is stored in direct buffers outside the Java heap
+     * @param persistenceDirectory directory where cached data is persisted or {@code null} if data is not persisted
+     */
+    public BeaconCacheConfiguration(long maxRecordAge, long cacheSizeLowerBound, long cacheSizeUpperBound, boolean offHeapStorageEnabled,
+                                    String persistenceDirectory) {
+        this(maxRecordAge, cacheSizeLowerBound, cacheSizeUpperBound, offHeapStorageEnabled, persistenceDirectory, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxRecordAge Maximum record age
+     * @param cacheSizeLowerBound lower memory limit for cache
+     * @param cacheSizeUpperBound upper memory limit for cache
+     * @param offHeapStorageEnabled {@code true} if cached data is stored in direct buffers outside the Java heap
+     * @param persistenceDirectory directory where cached data is persisted or {@code null} if data is not persisted
+     * @param writeAheadLogEnabled {@code true} if crashes and errors are forced to the storage device before returning
+     */
+    public BeaconCacheConfiguration(long maxRecordAge, long cacheSizeLowerBound, long cacheSizeUpperBound, boolean offHeapStorageEnabled,
+                                    String persistenceDirectory, boolean writeAheadLogEnabled) {
+        this(maxRecordAge, cacheSizeLowerBound, cacheSizeUpperBound, offHeapStorageEnabled, persistenceDirectory, writeAheadLogEnabled,
+            SEND_THRESHOLD_DISABLED);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param maxRecordAge Maximum record age
+     * @param cacheSizeLowerBound lower memory limit for cache
+     * @param cacheSizeUpperBound upper memory limit for cache
+     * @param offHeapStorageEnabled {@code true} if cached data is stored in direct buffers outside the Java heap
+     * @param persistenceDirectory directory where cached data is persisted or {@code null} if data is not persisted
+     * @param writeAheadLogEnabled {@code true} if crashes and errors are forced to the storage device before returning
+     * @param sendThreshold cache size at which open sessions are sent early or {@link #SEND_THRESHOLD_DISABLED}
+     */
+    public BeaconCacheConfiguration(long maxRecordAge, long cacheSizeLowerBound, long cacheSizeUpperBound, boolean offHeapStorageEnabled,
+                                    String persistenceDirectory, boolean writeAheadLogEnabled, long sendThreshold) {
         this.maxRecordAge = maxRecordAge;
         this.cacheSizeLowerBound = cacheSizeLowerBound;
         this.cacheSizeUpperBound = cacheSizeUpperBound;
+        this.offHeapStorageEnabled = offHeapStorageEnabled;
+        this.persistenceDirectory = persistenceDirectory;
+        this.writeAheadLogEnabled = writeAheadLogEnabled;
+        this.sendThreshold = sendThreshold;
     }
 
     /**
@@ -69,4 +136,33 @@ public class BeaconCacheConfiguration {
     public long getCacheSizeUpperBound() {
         return cacheSizeUpperBound;
     }
+
+    /**
+     * Get a flag indicating whether cached data is stored in direct buffers outside the Java heap.
+     */
+    public boolean isOffHeapStorageEnabled() {
+        return offHeapStorageEnabled;
+    }
+
+    /**
+     * Get the directory where cached data is persisted or {@code null} if data is not persisted.
+     */
+    public String getPersistenceDirectory() {
+        return persistenceDirectory;
+    }
+
+    /**
+     * Get a flag indicating whether crashes and errors are forced to the storage device, before the reporting call returns.
+     */
+    public boolean isWriteAheadLogEnabled() {
+        return writeAheadLogEnabled;
+    }
+
+    /**
+     * Get the cache size at which open sessions are sent before their send interval elapsed,
+     * or {@link #SEND_THRESHOLD_DISABLED} if they are only sent in the send interval.
+     */
+    public long getSendThreshold() {
+        return sendThreshold;
+    }
 }
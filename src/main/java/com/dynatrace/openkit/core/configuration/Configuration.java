@@ -19,6 +19,7 @@ package com.dynatrace.openkit.core.configuration;
 import com.dynatrace.openkit.api.SSLTrustManager;
 import com.dynatrace.openkit.core.objects.Device;
 import com.dynatrace.openkit.core.util.PercentEncoder;
+import com.dynatrace.openkit.protocol.BeaconCompressor;
 import com.dynatrace.openkit.protocol.Response;
 import com.dynatrace.openkit.protocol.StatusResponse;
 import com.dynatrace.openkit.providers.SessionIDProvider;
@@ -40,6 +41,8 @@ public class Configuration {
     private static final int DEFAULT_MAX_BEACON_SIZE = 30 * 1024;                   // default: max 30KB (in B) to send in one beacon
     private static final boolean DEFAULT_CAPTURE_ERRORS = true;                     // default: capture errors on
     private static final boolean DEFAULT_CAPTURE_CRASHES = true;                    // default: capture crashes on
+    public static final int DEFAULT_BEACON_SENDER_WORKERS = 1;                      // default: send sessions one after the other
+    public static final long NO_SEND_CYCLE_BUDGET = 0;                              // default: send all sessions in each cycle
 
     // immutable settings
     private final String applicationName;
@@ -52,7 +55,7 @@ public class Configuration {
     // mutable settings
     private final AtomicBoolean capture;                         // capture on/off; can be written/read by different threads -> atomic
     private int sendInterval;                                    // beacon send interval; is only written/read by beacon sender thread -> non-atomic
-    private int maxBeaconSize;                                   // max beacon size; is only written/read by beacon sender thread -> non-atomic
+    private int maxBeaconSize;                                   // max beacon size; is only written by beacon sender thread, workers read it after being started -> non-atomic
     private final AtomicBoolean captureErrors;                   // capture errors on/off; can be written/read by different threads -> atomic
     private final AtomicBoolean captureCrashes;                  // capture crashes on/off; can be written/read by different threads -> atomic
     private HTTPClientConfiguration httpClientConfiguration;     // the current http client configuration
@@ -69,12 +72,18 @@ public class Configuration {
 
     private final SessionIDProvider sessionIDProvider;
 
+    // sending settings
+    private final int beaconSenderWorkers;
+    private final long sendCycleBudget;
+
     // *** constructors ***
 
     public Configuration(OpenKitType openKitType, String applicationName, String applicationID, String deviceID, String endpointURL,
                          SessionIDProvider sessionIDProvider, SSLTrustManager trustManager, Device device, String applicationVersion,
                          BeaconCacheConfiguration beaconCacheConfiguration, BeaconConfiguration beaconConfiguration,
-                         PrivacyConfiguration privacyConfiguration) {
+                         PrivacyConfiguration privacyConfiguration, boolean chunkedStreamingEnabled, int compressionLevel,
+                         int beaconSenderWorkers, boolean asyncTransportEnabled, HTTPRequestConfiguration requestConfiguration,
+                         long sendCycleBudget) {
 
         this.openKitType = openKitType;
 
@@ -99,7 +108,11 @@ public class Configuration {
                 endpointURL,
                 openKitType.getDefaultServerID(),
                 applicationID,
-                trustManager);
+                trustManager,
+                chunkedStreamingEnabled,
+                new BeaconCompressor(compressionLevel),
+                asyncTransportEnabled,
+                requestConfiguration);
 
         this.applicationVersion = applicationVersion;
 
@@ -110,6 +123,10 @@ public class Configuration {
         this.beaconConfiguration = beaconConfiguration;
 
         this.privacyConfiguration = privacyConfiguration;
+
+        this.beaconSenderWorkers = beaconSenderWorkers;
+
+        this.sendCycleBudget = sendCycleBudget;
     }
 
     // *** public methods ***
@@ -146,7 +163,11 @@ public class Configuration {
                 endpointURL,
                 newServerID,
                 applicationID,
-                httpClientConfiguration.getSSLTrustManager());
+                httpClientConfiguration.getSSLTrustManager(),
+                httpClientConfiguration.isChunkedStreamingEnabled(),
+                httpClientConfiguration.getBeaconCompressor(),
+                httpClientConfiguration.isAsyncTransportEnabled(),
+                httpClientConfiguration.getRequestConfiguration());
         }
 
         // use send interval from beacon response or default
@@ -277,4 +298,19 @@ public class Configuration {
     public PrivacyConfiguration getPrivacyConfiguration() {
         return privacyConfiguration;
     }
+
+    /**
+     * Returns the maximum number of sessions sent in parallel.
+     */
+    public int getBeaconSenderWorkers() {
+        return beaconSenderWorkers;
+    }
+
+    /**
+     * Returns the time in milliseconds, after which no further sessions are sent in one send cycle,
+     * or {@link #NO_SEND_CYCLE_BUDGET}, if all sessions are sent.
+     */
+    public long getSendCycleBudget() {
+        return sendCycleBudget;
+    }
 }
@@ -17,6 +17,7 @@
 package com.dynatrace.openkit.core.configuration;
 
 import com.dynatrace.openkit.api.SSLTrustManager;
+import com.dynatrace.openkit.protocol.BeaconCompressor;
 
 /**
  * The HTTPClientConfiguration holds all http client related settings
@@ -27,12 +28,39 @@ public class HTTPClientConfiguration {
     private final int serverId;
     private final String applicationID;
     private final SSLTrustManager sslTrustManager;
+    private final boolean chunkedStreamingEnabled;
+    private final BeaconCompressor beaconCompressor;
+    private final boolean asyncTransportEnabled;
+    private final HTTPRequestConfiguration requestConfiguration;
 
     public HTTPClientConfiguration(String baseURL, int serverID, String applicationID, SSLTrustManager sslTrustManager) {
+        this(baseURL, serverID, applicationID, sslTrustManager, false,
+            new BeaconCompressor(BeaconCompressor.DEFAULT_COMPRESSION_LEVEL));
+    }
+
+    public HTTPClientConfiguration(String baseURL, int serverID, String applicationID, SSLTrustManager sslTrustManager,
+                                   boolean chunkedStreamingEnabled, BeaconCompressor beaconCompressor) {
+        this(baseURL, serverID, applicationID, sslTrustManager, chunkedStreamingEnabled, beaconCompressor, false);
+    }
+
+    public HTTPClientConfiguration(String baseURL, int serverID, String applicationID, SSLTrustManager sslTrustManager,
+                                   boolean chunkedStreamingEnabled, BeaconCompressor beaconCompressor,
+                                   boolean asyncTransportEnabled) {
+        this(baseURL, serverID, applicationID, sslTrustManager, chunkedStreamingEnabled, beaconCompressor, asyncTransportEnabled,
+            HTTPRequestConfiguration.DEFAULT);
+    }
+
+    public HTTPClientConfiguration(String baseURL, int serverID, String applicationID, SSLTrustManager sslTrustManager,
+                                   boolean chunkedStreamingEnabled, BeaconCompressor beaconCompressor,
+                                   boolean asyncTransportEnabled, HTTPRequestConfiguration requestConfiguration) {
         this.baseURL = baseURL;
         this.serverId = serverID;
         this.applicationID = applicationID;
         this.sslTrustManager = sslTrustManager;
+        this.chunkedStreamingEnabled = chunkedStreamingEnabled;
+        this.beaconCompressor = beaconCompressor;
+        this.asyncTransportEnabled = asyncTransportEnabled;
+        this.requestConfiguration = requestConfiguration;
     }
 
     /**
@@ -68,4 +96,43 @@ public class HTTPClientConfiguration {
     public SSLTrustManager getSSLTrustManager() {
         return sslTrustManager;
     }
+
+    /**
+     * Returns a flag indicating whether beacon data is compressed directly into the request body
+     * using chunked transfer encoding, instead of being compressed into memory first.
+     *
+     * @return {@code true} if chunked streaming is enabled, {@code false} otherwise.
+     */
+    public boolean isChunkedStreamingEnabled() {
+        return chunkedStreamingEnabled;
+    }
+
+    /**
+     * Returns the compressor used for beacon data, which also provides compression statistics.
+     *
+     * <p>
+     * The compressor is shared by all http clients created with this configuration
+     * and with configurations derived from it after a server id change.
+     * </p>
+     */
+    public BeaconCompressor getBeaconCompressor() {
+        return beaconCompressor;
+    }
+
+    /**
+     * Returns a flag indicating whether beacon data is sent without blocking the beacon sender thread,
+     * see {@link com.dynatrace.openkit.protocol.AsyncHTTPClient}.
+     *
+     * @return {@code true} if the asynchronous transport is enabled, {@code false} otherwise.
+     */
+    public boolean isAsyncTransportEnabled() {
+        return asyncTransportEnabled;
+    }
+
+    /**
+     * Returns the timeouts and retry settings for requests sent by the http client.
+     */
+    public HTTPRequestConfiguration getRequestConfiguration() {
+        return requestConfiguration;
+    }
 }
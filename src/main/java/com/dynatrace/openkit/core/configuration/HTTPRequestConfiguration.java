@@ -0,0 +1,95 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.core.configuration;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configuration for timeouts and retries of HTTP requests.
+ */
+public class HTTPRequestConfiguration {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT_IN_MILLIS = (int) TimeUnit.SECONDS.toMillis(5);
+    public static final int DEFAULT_READ_TIMEOUT_IN_MILLIS = (int) TimeUnit.SECONDS.toMillis(30);
+    public static final int DEFAULT_MAX_RETRIES = 2;                      // three attempts in total
+    public static final long DEFAULT_INITIAL_RETRY_DELAY_IN_MILLIS = 200;
+    public static final long DEFAULT_MAX_RETRY_DELAY_IN_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    /**
+     * The default {@link HTTPRequestConfiguration} when user does not override it.
+     */
+    public static final HTTPRequestConfiguration DEFAULT = new HTTPRequestConfiguration(DEFAULT_CONNECT_TIMEOUT_IN_MILLIS,
+        DEFAULT_READ_TIMEOUT_IN_MILLIS, DEFAULT_MAX_RETRIES, DEFAULT_INITIAL_RETRY_DELAY_IN_MILLIS);
+
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int maxRetries;
+    private final long initialRetryDelay;
+    private final long maxRetryDelay;
+
+    /**
+     * Constructor
+     *
+     * @param connectTimeout    timeout in milliseconds for establishing a connection
+     * @param readTimeout       timeout in milliseconds for reading from a connection
+     * @param maxRetries        number of retries after the first attempt failed to connect
+     * @param initialRetryDelay delay in milliseconds before the first retry, which is doubled for every further retry
+     */
+    public HTTPRequestConfiguration(int connectTimeout, int readTimeout, int maxRetries, long initialRetryDelay) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.maxRetries = maxRetries;
+        this.initialRetryDelay = initialRetryDelay;
+        this.maxRetryDelay = Math.max(initialRetryDelay, DEFAULT_MAX_RETRY_DELAY_IN_MILLIS);
+    }
+
+    /**
+     * Get the timeout in milliseconds for establishing a connection.
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Get the timeout in milliseconds for reading from a connection.
+     */
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Get the number of retries after the first attempt failed to connect.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Get the delay in milliseconds before the first retry.
+     */
+    public long getInitialRetryDelay() {
+        return initialRetryDelay;
+    }
+
+    /**
+     * Get the upper limit in milliseconds for the delay between two retries.
+     */
+    public long getMaxRetryDelay() {
+        return maxRetryDelay;
+    }
+}
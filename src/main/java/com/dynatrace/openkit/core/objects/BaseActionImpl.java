@@ -19,6 +19,7 @@ package com.dynatrace.openkit.core.objects;
 import com.dynatrace.openkit.api.Action;
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.api.WebRequestTracer;
+import com.dynatrace.openkit.core.util.LazyLog;
 import com.dynatrace.openkit.protocol.Beacon;
 
 import java.io.IOException;
@@ -100,12 +101,10 @@ public abstract class BaseActionImpl extends OpenKitComposite implements Action
     @Override
     public Action reportEvent(String eventName) {
         if (eventName == null || eventName.isEmpty()) {
-            logger.warning(this + "reportEvent: eventName must not be null or empty");
+            LazyLog.warning(logger, "{}reportEvent: eventName must not be null or empty", this);
             return this;
         }
-        if (logger.isDebugEnabled()) {
-            logger.debug(this + "reportEvent(" + eventName + ")");
-        }
+        LazyLog.debug(logger, "{}reportEvent({})", this, eventName);
         synchronized (lockObject) {
             if (!isActionLeft()) {
                 beacon.reportEvent(getID(), eventName);
@@ -117,9 +116,10 @@ public abstract class BaseActionImpl extends OpenKitComposite implements Action
     @Override
     public Action reportValue(String valueName, int value) {
         if (valueName == null || valueName.isEmpty()) {
-            logger.warning(this + "reportValue (int): valueName must not be null or empty");
+            LazyLog.warning(logger, "{}reportValue (int): valueName must not be null or empty", this);
             return this;
         }
+        // explicit level check, so that the value is not boxed
         if (logger.isDebugEnabled()) {
             logger.debug(this + "reportValue (int) (" + valueName + ", " + value + ")");
         }
@@ -134,9 +134,10 @@ public abstract class BaseActionImpl extends OpenKitComposite implements Action
     @Override
     public Action reportValue(String valueName, double value) {
         if (valueName == null || valueName.isEmpty()) {
-            logger.warning(this + "reportValue (double): valueName must not be null or empty");
+            LazyLog.warning(logger, "{}reportValue (double): valueName must not be null or empty", this);
             return this;
         }
+        // explicit level check, so that the value is not boxed
         if (logger.isDebugEnabled()) {
             logger.debug(this + "reportValue (double) (" + valueName + ", " + value + ")");
         }
@@ -151,12 +152,10 @@ public abstract class BaseActionImpl extends OpenKitComposite implements Action
     @Override
     public Action reportValue(String valueName, String value) {
         if (valueName == null || valueName.isEmpty()) {
-            logger.warning(this + "reportValue (String): valueName must not be null or empty");
+            LazyLog.warning(logger, "{}reportValue (String): valueName must not be null or empty", this);
             return this;
         }
-        if (logger.isDebugEnabled()) {
-            logger.debug(this + "reportValue (String) (" + valueName + ", " + value + ")");
-        }
+        LazyLog.debug(logger, "{}reportValue (String) ({}, {})", this, valueName, value);
         synchronized (lockObject) {
             if (!isActionLeft()) {
                 beacon.reportValue(getID(), valueName, value);
@@ -168,9 +167,10 @@ public abstract class BaseActionImpl extends OpenKitComposite implements Action
     @Override
     public Action reportError(String errorName, int errorCode, String reason) {
         if (errorName == null || errorName.isEmpty()) {
-            logger.warning(this + "reportError: errorName must not be null or empty");
+            LazyLog.warning(logger, "{}reportError: errorName must not be null or empty", this);
             return this;
         }
+        // explicit level check, so that the error code is not boxed
         if (logger.isDebugEnabled()) {
             logger.debug(this + "reportError(" + errorName + ", " + errorCode + ", " + reason + ")");
         }
@@ -185,12 +185,10 @@ public abstract class BaseActionImpl extends OpenKitComposite implements Action
     @Override
     public WebRequestTracer traceWebRequest(URLConnection connection) {
         if (connection == null) {
-            logger.warning(this + "traceWebRequest (URLConnection): connection must not be null");
+            LazyLog.warning(logger, "{}traceWebRequest (URLConnection): connection must not be null", this);
             return NULL_WEB_REQUEST_TRACER;
         }
-        if (logger.isDebugEnabled()) {
-            logger.debug(this + "traceWebRequest (URLConnection) (" + connection + ")");
-        }
+        LazyLog.debug(logger, "{}traceWebRequest (URLConnection) ({})", this, connection);
         synchronized (lockObject) {
             if (!isActionLeft()) {
                 WebRequestTracerBaseImpl webRequestTracer = new WebRequestTracerURLConnection(logger, this, beacon, connection);
@@ -206,16 +204,14 @@ public abstract class BaseActionImpl extends OpenKitComposite implements Action
     @Override
     public WebRequestTracer traceWebRequest(String url) {
         if (url == null || url.isEmpty()) {
-            logger.warning(this + "traceWebRequest (String): url must not be null or empty");
+            LazyLog.warning(logger, "{}traceWebRequest (String): url must not be null or empty", this);
             return NULL_WEB_REQUEST_TRACER;
         }
         if (!WebRequestTracerStringURL.isValidURLScheme(url)) {
-            logger.warning(this + "traceWebRequest (String): url \"" + url + "\" does not have a valid scheme");
+            LazyLog.warning(logger, "{}traceWebRequest (String): url \"{}\" does not have a valid scheme", this, url);
             return NULL_WEB_REQUEST_TRACER;
         }
-        if (logger.isDebugEnabled()) {
-            logger.debug(this + "traceWebRequest (String) (" + url + ")");
-        }
+        LazyLog.debug(logger, "{}traceWebRequest (String) ({})", this, url);
         synchronized (lockObject) {
             if (!isActionLeft()) {
                 WebRequestTracerBaseImpl webRequestTracer = new WebRequestTracerStringURL(logger, this, beacon, url);
@@ -230,9 +226,7 @@ public abstract class BaseActionImpl extends OpenKitComposite implements Action
 
     @Override
     public Action leaveAction() {
-        if (logger.isDebugEnabled()) {
-            logger.debug(this + "leaveAction(" + name + ")");
-        }
+        LazyLog.debug(logger, "{}leaveAction({})", this, name);
         synchronized (lockObject) {
             if (isActionLeft()) {
                 // leaveAction has been called previously
@@ -250,7 +244,7 @@ public abstract class BaseActionImpl extends OpenKitComposite implements Action
                 childObject.close();
             } catch (IOException e) {
                 // should not happen, nevertheless let's log an error
-                logger.error(this + "Caught IOException while closing OpenKitObject (" + childObject + ")", e);
+                LazyLog.error(logger, e, "{}Caught IOException while closing OpenKitObject ({})", this, childObject);
             }
         }
 
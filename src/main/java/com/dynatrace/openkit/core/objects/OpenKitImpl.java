@@ -23,6 +23,10 @@ import com.dynatrace.openkit.api.Session;
 import com.dynatrace.openkit.core.BeaconSender;
 import com.dynatrace.openkit.core.caching.BeaconCacheEvictor;
 import com.dynatrace.openkit.core.caching.BeaconCacheImpl;
+import com.dynatrace.openkit.core.caching.OffHeapBeaconCacheImpl;
+import com.dynatrace.openkit.core.caching.PersistentBeaconCacheImpl;
+import com.dynatrace.openkit.core.caching.RecoveredBeacon;
+import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.protocol.Beacon;
 import com.dynatrace.openkit.providers.DefaultHTTPClientProvider;
@@ -31,6 +35,7 @@ import com.dynatrace.openkit.providers.DefaultTimingProvider;
 import com.dynatrace.openkit.providers.ThreadIDProvider;
 import com.dynatrace.openkit.providers.TimingProvider;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.List;
 
@@ -73,9 +78,13 @@ public class OpenKitImpl extends OpenKitComposite implements OpenKit {
         this.configuration = configuration;
         timingProvider = new DefaultTimingProvider();
         threadIDProvider = new DefaultThreadIDProvider();
-        beaconCache = new BeaconCacheImpl(logger);
+        beaconCache = createBeaconCache(logger, configuration.getBeaconCacheConfiguration());
         beaconCacheEvictor = new BeaconCacheEvictor(logger, beaconCache, configuration.getBeaconCacheConfiguration(), timingProvider);
-        beaconSender = new BeaconSender(logger, configuration, new DefaultHTTPClientProvider(logger), timingProvider);
+        beaconSender = new BeaconSender(logger, configuration, new DefaultHTTPClientProvider(logger), timingProvider, beaconCache);
+        BeaconCacheConfiguration beaconCacheConfiguration = configuration.getBeaconCacheConfiguration();
+        if (beaconCacheConfiguration != null && beaconCacheConfiguration.getSendThreshold() >= 0) {
+            beaconCache.addCacheSizeThresholdSignal(beaconCacheConfiguration.getSendThreshold(), beaconSender.getSendSignal());
+        }
     }
 
     /**
@@ -107,6 +116,31 @@ public class OpenKitImpl extends OpenKitComposite implements OpenKit {
         this.beaconCacheEvictor = beaconCacheEvictor;
     }
 
+    /**
+     * Create the beacon cache, storing data either on the heap or off-heap and optionally persisting it, as configured.
+     *
+     * <p>
+     * If the persistence directory cannot be used, data is only kept in memory.
+     * </p>
+     *
+     * @param logger The logger passed to the cache
+     * @param beaconCacheConfiguration Beacon cache related configuration
+     */
+    private static BeaconCacheImpl createBeaconCache(Logger logger, BeaconCacheConfiguration beaconCacheConfiguration) {
+        if (beaconCacheConfiguration != null && beaconCacheConfiguration.getPersistenceDirectory() != null) {
+            try {
+                return new PersistentBeaconCacheImpl(logger, new File(beaconCacheConfiguration.getPersistenceDirectory()),
+                    beaconCacheConfiguration.isWriteAheadLogEnabled());
+            } catch (IOException e) {
+                logger.error(OpenKitImpl.class.getSimpleName() + " Failed to create persistent beacon cache, data is kept in memory only", e);
+            }
+        }
+        if (beaconCacheConfiguration != null && beaconCacheConfiguration.isOffHeapStorageEnabled()) {
+            return new OffHeapBeaconCacheImpl(logger);
+        }
+        return new BeaconCacheImpl(logger);
+    }
+
     /**
      * Helper class to write a message upon instance creation.
      *
@@ -134,10 +168,25 @@ public class OpenKitImpl extends OpenKitComposite implements OpenKit {
      * </p>
      */
     public void initialize() {
+        recoverSessions();
         beaconCacheEvictor.start();
         beaconSender.initialize();
     }
 
+    /**
+     * Hand beacons recovered by a persistent beacon cache over to the {@link BeaconSender}.
+     *
+     * <p>
+     * The recovered sessions are already ended, therefore they are not added to the list of children.
+     * </p>
+     */
+    private void recoverSessions() {
+        for (RecoveredBeacon recoveredBeacon : beaconCache.recoverBeacons()) {
+            Beacon beacon = new Beacon(logger, beaconCache, configuration, recoveredBeacon, threadIDProvider, timingProvider);
+            SessionImpl.createRecoveredSession(logger, beaconSender, beacon);
+        }
+    }
+
     @Override
     public void close() {
         shutdown();
@@ -208,6 +257,7 @@ public class OpenKitImpl extends OpenKitComposite implements OpenKit {
 
         beaconCacheEvictor.stop();
         beaconSender.shutdown();
+        beaconCache.flush();
     }
 
     @Override
@@ -23,6 +23,8 @@ import com.dynatrace.openkit.api.WebRequestTracer;
 import com.dynatrace.openkit.core.BeaconSender;
 import com.dynatrace.openkit.core.configuration.BeaconConfiguration;
 import com.dynatrace.openkit.protocol.Beacon;
+import com.dynatrace.openkit.protocol.BeaconChunkBuffer;
+import com.dynatrace.openkit.protocol.ResponseCallback;
 import com.dynatrace.openkit.protocol.StatusResponse;
 import com.dynatrace.openkit.providers.HTTPClientProvider;
 
@@ -70,6 +72,38 @@ public class SessionImpl extends OpenKitComposite implements Session {
         beacon.startSession();
     }
 
+    /**
+     * Constructor for an already ended session, sending records recovered by a persistent beacon cache.
+     */
+    private SessionImpl(Logger logger, BeaconSender beaconSender, Beacon beacon) {
+        this.logger = logger;
+        this.parent = null;
+        this.beaconSender = beaconSender;
+        this.beacon = beacon;
+        this.isSessionEnded = true;
+    }
+
+    /**
+     * Create a session for sending records recovered by a persistent beacon cache.
+     *
+     * <p>
+     * The session is already ended and handed over to the {@link BeaconSender}, which sends the records
+     * like those of any other finished session.
+     * </p>
+     *
+     * @param logger Logger for logging messages.
+     * @param beaconSender The sender sending the recovered records.
+     * @param beacon The beacon created for the recovered records.
+     * @return The recovered session.
+     */
+    static SessionImpl createRecoveredSession(Logger logger, BeaconSender beaconSender, Beacon beacon) {
+        SessionImpl session = new SessionImpl(logger, beaconSender, beacon);
+        beaconSender.startSession(session);
+        beaconSender.finishSession(session);
+
+        return session;
+    }
+
     @Override
     public void close() {
         end();
@@ -220,6 +254,16 @@ public class SessionImpl extends OpenKitComposite implements Session {
         return beacon.send(clientProvider);
     }
 
+    // sends the current Beacon state, reusing the given buffer for the compressed chunks
+    public StatusResponse sendBeacon(HTTPClientProvider clientProvider, BeaconChunkBuffer chunkBuffer) {
+        return beacon.send(clientProvider, chunkBuffer);
+    }
+
+    // sends the current Beacon state asynchronously
+    public void sendBeaconAsync(HTTPClientProvider clientProvider, ResponseCallback callback) {
+        beacon.sendAsync(clientProvider, callback);
+    }
+
     // *** getter methods ***
 
     public long getEndTime() {
@@ -250,6 +294,24 @@ public class SessionImpl extends OpenKitComposite implements Session {
         return beacon.isEmpty();
     }
 
+    /**
+     * Get the number of bytes of action and event data of this Session, which are waiting to be sent.
+     *
+     * @return The number of bytes in the beacon cache.
+     */
+    public long getNumBytesInCache() {
+        return beacon.getNumBytesInCache();
+    }
+
+    /**
+     * Test if crashes or errors have been reported in this Session, which have not been sent yet.
+     *
+     * @return {@code true} if crashes or errors are waiting to be sent, {@code false} otherwise.
+     */
+    public boolean hasCriticalData() {
+        return beacon.hasCriticalData();
+    }
+
     /**
      * Test if the session has already been ended.
      *
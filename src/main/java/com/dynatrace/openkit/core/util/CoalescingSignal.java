@@ -0,0 +1,119 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A signal which coalesces any number of {@link #signal()} calls into a single wake up of one waiting thread.
+ *
+ * <p>
+ *     Signalling threads never block and never synchronize with each other. If the signal is already set,
+ *     {@link #signal()} is a single volatile read, otherwise it's a single CAS operation followed
+ *     by unparking the waiting thread.
+ * </p>
+ *
+ * <p>
+ *     Only one thread at a time must wait for the signal.
+ * </p>
+ */
+public class CoalescingSignal {
+
+    /**
+     * Flag indicating whether the signal has been set, but not yet consumed.
+     */
+    private final AtomicBoolean signalled = new AtomicBoolean(false);
+
+    /**
+     * The thread currently waiting for the signal or {@code null} if no thread is waiting.
+     */
+    private volatile Thread waiter = null;
+
+    /**
+     * Set the signal and wake up the waiting thread, if there is one.
+     */
+    public void signal() {
+        if (!signalled.get() && signalled.compareAndSet(false, true)) {
+            Thread waitingThread = waiter;
+            if (waitingThread != null) {
+                LockSupport.unpark(waitingThread);
+            }
+        }
+    }
+
+    /**
+     * Get a boolean indicating whether the signal has been set and was not consumed yet.
+     *
+     * @return {@code true} if the signal is set, {@code false} otherwise.
+     */
+    public boolean isSignalled() {
+        return signalled.get();
+    }
+
+    /**
+     * Wait until the signal is set and consume it.
+     *
+     * @throws InterruptedException When the waiting thread got interrupted.
+     */
+    public void await() throws InterruptedException {
+        waiter = Thread.currentThread();
+        try {
+            while (!signalled.compareAndSet(true, false)) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.park(this);
+            }
+        } finally {
+            waiter = null;
+        }
+    }
+
+    /**
+     * Wait until the signal is set or the given amount of milliseconds has elapsed.
+     *
+     * <p>
+     *     If the signal is set, it's consumed.
+     * </p>
+     *
+     * @param timeoutMillis The maximum number of milliseconds to wait.
+     * @return {@code true} if the signal was set and consumed, {@code false} if the timeout elapsed.
+     * @throws InterruptedException When the waiting thread got interrupted.
+     */
+    public boolean await(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        waiter = Thread.currentThread();
+        try {
+            while (!signalled.compareAndSet(true, false)) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remainingNanos);
+            }
+        } finally {
+            waiter = null;
+        }
+
+        return true;
+    }
+}
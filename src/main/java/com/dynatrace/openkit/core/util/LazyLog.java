@@ -0,0 +1,143 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.util;
+
+import com.dynatrace.openkit.api.Logger;
+
+/**
+ * Logging helper, which builds the log message only if the log level is enabled.
+ *
+ * <p>
+ *     The message is given as pattern, where each {@code {}} placeholder is replaced by the
+ *     string representation of the corresponding argument. Nothing is formatted and no {@code toString()}
+ *     method of any argument is called, if the given {@link Logger} does not print messages of that level.
+ * </p>
+ *
+ * <p>
+ *     {@link Class} arguments are replaced by their simple name, so that the common prefix
+ *     {@code getClass().getSimpleName()} of log messages is only computed when needed.
+ *     Placeholders without argument are kept as they are, surplus arguments are ignored.
+ * </p>
+ */
+public final class LazyLog {
+
+    /**
+     * Placeholder in a message pattern, which is replaced by an argument.
+     */
+    static final String PLACEHOLDER = "{}";
+
+    private LazyLog() {
+    }
+
+    /**
+     * Log with level 'error', if enabled.
+     *
+     * @param logger  the logger to write to
+     * @param pattern the message pattern
+     * @param args    the arguments replacing the placeholders in the pattern
+     */
+    public static void error(Logger logger, String pattern, Object... args) {
+        if (logger.isErrorEnabled()) {
+            logger.error(format(pattern, args));
+        }
+    }
+
+    /**
+     * Log with level 'error' and attach a throwable, if enabled.
+     *
+     * @param logger    the logger to write to
+     * @param throwable an instance of a throwable to be attached to the output
+     * @param pattern   the message pattern
+     * @param args      the arguments replacing the placeholders in the pattern
+     */
+    public static void error(Logger logger, Throwable throwable, String pattern, Object... args) {
+        if (logger.isErrorEnabled()) {
+            logger.error(format(pattern, args), throwable);
+        }
+    }
+
+    /**
+     * Log with level 'warning', if enabled.
+     *
+     * @param logger  the logger to write to
+     * @param pattern the message pattern
+     * @param args    the arguments replacing the placeholders in the pattern
+     */
+    public static void warning(Logger logger, String pattern, Object... args) {
+        if (logger.isWarnEnabled()) {
+            logger.warning(format(pattern, args));
+        }
+    }
+
+    /**
+     * Log with level 'info', if enabled.
+     *
+     * @param logger  the logger to write to
+     * @param pattern the message pattern
+     * @param args    the arguments replacing the placeholders in the pattern
+     */
+    public static void info(Logger logger, String pattern, Object... args) {
+        if (logger.isInfoEnabled()) {
+            logger.info(format(pattern, args));
+        }
+    }
+
+    /**
+     * Log with level 'debug', if enabled.
+     *
+     * @param logger  the logger to write to
+     * @param pattern the message pattern
+     * @param args    the arguments replacing the placeholders in the pattern
+     */
+    public static void debug(Logger logger, String pattern, Object... args) {
+        if (logger.isDebugEnabled()) {
+            logger.debug(format(pattern, args));
+        }
+    }
+
+    /**
+     * Replace the placeholders in the given pattern by the given arguments.
+     *
+     * @param pattern the message pattern
+     * @param args    the arguments replacing the placeholders in the pattern
+     * @return the formatted message
+     */
+    static String format(String pattern, Object... args) {
+        if (args == null || args.length == 0) {
+            return pattern;
+        }
+
+        StringBuilder builder = new StringBuilder(pattern.length() + 16 * args.length);
+        int start = 0;
+        for (Object arg : args) {
+            int index = pattern.indexOf(PLACEHOLDER, start);
+            if (index < 0) {
+                break;
+            }
+            builder.append(pattern, start, index);
+            if (arg instanceof Class) {
+                builder.append(((Class<?>) arg).getSimpleName());
+            } else {
+                builder.append(arg);
+            }
+            start = index + PLACEHOLDER.length();
+        }
+        builder.append(pattern, start, pattern.length());
+
+        return builder.toString();
+    }
+}
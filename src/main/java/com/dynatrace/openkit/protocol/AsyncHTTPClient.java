@@ -0,0 +1,174 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.core.configuration.HTTPRequestConfiguration;
+import com.dynatrace.openkit.core.util.LazyLog;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link HTTPClient} sending beacon requests without blocking the calling thread.
+ *
+ * <p>
+ * Beacon requests to plain HTTP endpoints are sent by a {@link NioHTTPTransport}, which is shared by all
+ * asynchronous clients, so that a single I/O thread keeps the requests of many sessions in flight.
+ * Status and new session requests are sent like with the {@link HTTPClient}, blocking the calling thread.
+ * </p>
+ *
+ * <p>
+ * The transport does not support TLS. If the endpoint uses HTTPS, a warning is logged when the client is created
+ * and beacon requests are sent blocking as well.
+ * </p>
+ *
+ * <p>
+ * Unlike the blocking client, failed beacon requests are not retried immediately.
+ * The beacon data is kept and sent again with the next attempt of the beacon sender.
+ * </p>
+ */
+public class AsyncHTTPClient extends HTTPClient {
+
+    private static final NioHTTPTransport DEFAULT_TRANSPORT = new NioHTTPTransport();
+
+    private final Logger logger;
+    private final NioHTTPTransport transport;
+    private final HTTPRequestConfiguration requestConfiguration;
+    /** the monitor URL, or {@code null} if it cannot be sent by the transport */
+    private final URL plainMonitorURL;
+
+    public AsyncHTTPClient(Logger logger, HTTPClientConfiguration configuration) {
+        this(logger, configuration, DEFAULT_TRANSPORT);
+    }
+
+    AsyncHTTPClient(Logger logger, HTTPClientConfiguration configuration, NioHTTPTransport transport) {
+        super(logger, configuration);
+        this.logger = logger;
+        this.transport = transport;
+        requestConfiguration = configuration.getRequestConfiguration();
+        plainMonitorURL = toPlainURL(getMonitorURL());
+        if (plainMonitorURL == null) {
+            // most likely HTTPS, which is not supported by the transport
+            LazyLog.warning(logger, "{} - asynchronous beacon transport only supports plain HTTP, "
+                + "beacons are sent blocking to {}", getClass(), getMonitorURL());
+        }
+    }
+
+    @Override
+    public void sendBeaconRequestAsync(String clientIPAddress, BeaconRequestBody body, final ResponseCallback callback) {
+        if (plainMonitorURL == null) {
+            // TLS is not supported by the transport
+            super.sendBeaconRequestAsync(clientIPAddress, body, callback);
+            return;
+        }
+
+        LazyLog.debug(logger, "{} sendBeaconRequestAsync() - HTTP {} Request: {}", getClass(),
+            RequestType.BEACON.getRequestName(), plainMonitorURL);
+        byte[] request;
+        try {
+            request = buildRequest(clientIPAddress, body);
+        } catch (IOException e) {
+            LazyLog.error(logger, e, "{} sendBeaconRequestAsync() - ERROR: {} Request failed!", getClass(), RequestType.BEACON);
+            callback.onResponse(unknownErrorResponse());
+            return;
+        }
+
+        NioHTTPTransport.Callback transportCallback = new NioHTTPTransport.Callback() {
+            @Override
+            public void completed(RawHTTPResponse response) {
+                callback.onResponse(toStatusResponse(response));
+            }
+
+            @Override
+            public void failed(IOException exception) {
+                LazyLog.error(logger, exception, "{} sendBeaconRequestAsync() - ERROR: {} Request failed!", getClass(),
+                    RequestType.BEACON);
+                callback.onResponse(unknownErrorResponse());
+            }
+        };
+        transport.send(plainMonitorURL.getHost(), port(plainMonitorURL), request, requestConfiguration.getConnectTimeout(),
+            requestConfiguration.getReadTimeout(), transportCallback);
+    }
+
+    private byte[] buildRequest(String clientIPAddress, BeaconRequestBody body) throws IOException {
+
+        ByteArrayOutputStream bodyData = new ByteArrayOutputStream();
+        if (body != null && body.getContentLength() != 0) {
+            // streamed bodies are buffered, since the transport needs the complete request
+            body.writeTo(bodyData);
+        }
+
+        StringBuilder header = new StringBuilder(256);
+        header.append("POST ").append(plainMonitorURL.getFile()).append(" HTTP/1.1\r\n");
+        header.append("Host: ").append(plainMonitorURL.getHost());
+        if (plainMonitorURL.getPort() != -1) {
+            header.append(':').append(plainMonitorURL.getPort());
+        }
+        header.append("\r\n");
+        header.append("Connection: close\r\n");
+        if (clientIPAddress != null) {
+            header.append("X-Client-IP: ").append(clientIPAddress).append("\r\n");
+        }
+        if (bodyData.size() > 0) {
+            header.append("Content-Encoding: gzip\r\n");
+            LazyLog.debug(logger, "{} sendBeaconRequestAsync() - Beacon Payload: {} bytes compressed", getClass(), bodyData.size());
+        }
+        header.append("Content-Length: ").append(bodyData.size()).append("\r\n\r\n");
+
+        ByteArrayOutputStream request = new ByteArrayOutputStream(header.length() + bodyData.size());
+        request.write(header.toString().getBytes("ISO-8859-1"));
+        bodyData.writeTo(request);
+        return request.toByteArray();
+    }
+
+    private StatusResponse toStatusResponse(RawHTTPResponse response) {
+        String responseBody;
+        try {
+            responseBody = new String(response.getBody(), Beacon.CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            LazyLog.error(logger, e, "{} sendBeaconRequestAsync() - JRE does not support UTF-8", getClass());
+            return unknownErrorResponse();
+        }
+        return (StatusResponse) createResponse(RequestType.BEACON, response.getResponseCode(), responseBody, response.getHeaders());
+    }
+
+    private StatusResponse unknownErrorResponse() {
+        return new StatusResponse(logger, "", Integer.MAX_VALUE, Collections.<String, List<String>>emptyMap());
+    }
+
+    private static URL toPlainURL(String url) {
+        try {
+            URL result = new URL(url);
+            return "http".equalsIgnoreCase(result.getProtocol()) ? result : null;
+        } catch (MalformedURLException e) {
+            // handled by the blocking client, when the request is sent
+            return null;
+        }
+    }
+
+    private static int port(URL url) {
+        return url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+    }
+}
@@ -18,6 +18,7 @@ package com.dynatrace.openkit.protocol;
 
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.core.caching.BeaconCacheImpl;
+import com.dynatrace.openkit.core.caching.RecoveredBeacon;
 import com.dynatrace.openkit.core.configuration.BeaconConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
@@ -31,8 +32,9 @@ import com.dynatrace.openkit.providers.HTTPClientProvider;
 import com.dynatrace.openkit.providers.ThreadIDProvider;
 import com.dynatrace.openkit.providers.TimingProvider;
 
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -127,6 +129,8 @@ public class Beacon {
     private final Logger logger;
 
     private final BeaconCacheImpl beaconCache;
+    // set when a crash or error is added, cleared when sending starts and set again if sending fails
+    private final AtomicBoolean criticalDataPending = new AtomicBoolean(false);
 
     private final AtomicReference<BeaconConfiguration> beaconConfiguration;
 
@@ -188,6 +192,47 @@ public class Beacon {
         privacyConfiguration = configuration.getPrivacyConfiguration();
 
         immutableBasicBeaconData = createImmutableBasicBeaconData();
+
+        beaconCache.registerBeacon(sessionNumber, sessionStartTime, this.clientIPAddress, immutableBasicBeaconData);
+    }
+
+    /**
+     * Constructor for a beacon sending records recovered by a persistent beacon cache.
+     *
+     * <p>
+     * The beacon data is taken from the {@code recoveredBeacon}, therefore such a beacon
+     * shall only be used for sending the recovered records.
+     * </p>
+     *
+     * @param logger Logger for logging messages.
+     * @param beaconCache Cache storing the recovered records.
+     * @param configuration OpenKit related configuration.
+     * @param recoveredBeacon The beacon recovered by the {@code beaconCache}.
+     * @param threadIDProvider Provider for retrieving thread id.
+     * @param timingProvider Provider for time related methods.
+     */
+    public Beacon(Logger logger, BeaconCacheImpl beaconCache, Configuration configuration, RecoveredBeacon recoveredBeacon,
+                  ThreadIDProvider threadIDProvider, TimingProvider timingProvider) {
+        this.logger = logger;
+        this.beaconCache = beaconCache;
+        this.sessionNumber = recoveredBeacon.getBeaconID();
+        this.timingProvider = timingProvider;
+
+        this.configuration = configuration;
+        this.threadIDProvider = threadIDProvider;
+        this.sessionStartTime = recoveredBeacon.getSessionStartTime();
+
+        // the device ID is part of the immutable beacon data and not needed separately
+        this.deviceID = "";
+        this.clientIPAddress = recoveredBeacon.getClientIPAddress();
+
+        this.httpConfiguration = configuration.getHttpClientConfig();
+
+        beaconConfiguration = new AtomicReference<BeaconConfiguration>(configuration.getBeaconConfiguration());
+
+        privacyConfiguration = configuration.getPrivacyConfiguration();
+
+        immutableBasicBeaconData = recoveredBeacon.getImmutableBeaconData();
     }
 
     /**
@@ -343,12 +388,19 @@ public class Beacon {
      *
      * <p>
      *     The serialized data is added to {@link com.dynatrace.openkit.core.caching.BeaconCache}.
+     *     Afterwards no further data is added, therefore the beacon is unregistered from the cache.
      * </p>
      *
      * @param session The session to add.
      */
     public void endSession(SessionImpl session) {
 
+        addSessionEndEvent(session);
+        beaconCache.unregisterBeacon(sessionNumber);
+    }
+
+    private void addSessionEndEvent(SessionImpl session) {
+
         if (isCapturingDisabled()) {
             return;
         }
@@ -517,7 +569,7 @@ public class Beacon {
         addKeyValuePair(eventBuilder, BEACON_KEY_ERROR_CODE, errorCode);
         addKeyValuePairIfNotNull(eventBuilder, BEACON_KEY_ERROR_REASON, reason);
 
-        addEventData(timestamp, eventBuilder);
+        addCriticalEventData(timestamp, eventBuilder);
     }
 
     /**
@@ -552,7 +604,7 @@ public class Beacon {
         addKeyValuePairIfNotNull(eventBuilder, BEACON_KEY_ERROR_REASON, reason);
         addKeyValuePairIfNotNull(eventBuilder, BEACON_KEY_ERROR_STACKTRACE, stacktrace);
 
-        addEventData(timestamp, eventBuilder);
+        addCriticalEventData(timestamp, eventBuilder);
     }
 
     /**
@@ -634,9 +686,34 @@ public class Beacon {
      * @return Returns the last status response retrieved from the server side, or {@code null} if an error occurred.
      */
     public StatusResponse send(HTTPClientProvider provider) {
+        return send(provider, null);
+    }
 
+    /**
+     * Send current state of Beacon, using the given buffer for the compressed chunks.
+     *
+     * <p>
+     *     Sending many beacons in a row with the same buffer avoids allocating and growing a new buffer per beacon.
+     * </p>
+     *
+     * @param provider    Provider for getting an {@link HTTPClient} required to send the data.
+     * @param chunkBuffer Buffer for the compressed chunks, or {@code null} to use a new one.
+     *                    The buffer is not used, if chunked streaming is enabled.
+     *
+     * @return Returns the last status response retrieved from the server side, or {@code null} if an error occurred
+     *         or there was no data to send.
+     */
+    public StatusResponse send(HTTPClientProvider provider, BeaconChunkBuffer chunkBuffer) {
+
+        boolean sendsCriticalData = criticalDataPending.getAndSet(false);
         HTTPClient httpClient = provider.createClient(httpConfiguration);
         StatusResponse response = null;
+        // reused for all chunks, so that the compressed data is only buffered once
+        if (httpConfiguration.isChunkedStreamingEnabled()) {
+            chunkBuffer = null;
+        } else if (chunkBuffer == null) {
+            chunkBuffer = new BeaconChunkBuffer(httpConfiguration.getBeaconCompressor());
+        }
 
         while (true) {
 
@@ -645,28 +722,25 @@ public class Beacon {
             // subtract 1024 to ensure that the chunk does not exceed the send size configured on server side?
             // i guess that was the original intention, but i'm not sure about this
             // TODO stefan.eberl - This is a quite uncool algorithm and should be improved, avoid subtracting some "magic" number
-            String chunk = beaconCache.getNextBeaconChunk(sessionNumber, prefix, configuration.getMaxBeaconSize() - 1024, BEACON_DATA_DELIMITER);
-            if (chunk == null || chunk.isEmpty()) {
-                // no data added so far or no data to send
-                return response;
-            }
-
-            byte[] encodedBeacon;
+            BeaconRequestBody body;
             try {
-                encodedBeacon = chunk.getBytes(CHARSET);
-            } catch (UnsupportedEncodingException e) {
-                // must not happen, as UTF-8 should *really* be supported
-                logger.error(getClass().getSimpleName() + "Required charset \"" + CHARSET + "\" is not supported.", e);
-                beaconCache.resetChunkedData(sessionNumber);
+                body = nextRequestBody(prefix, configuration.getMaxBeaconSize() - 1024, chunkBuffer);
+            } catch (IOException e) {
+                logger.error(getClass().getSimpleName() + " send() - compressing beacon chunk failed", e);
+                onSendFailed(sendsCriticalData);
+                break;
+            }
+            if (body == null) {
+                // no data added so far or no data to send
                 return response;
             }
 
             // send the request
-            response = httpClient.sendBeaconRequest(clientIPAddress, encodedBeacon);
+            response = httpClient.sendBeaconRequest(clientIPAddress, body);
             if (response == null || response.isErroneousResponse()) {
                 // error happened - but don't know what exactly
                 // reset the previously retrieved chunk (restore it in internal cache) & retry another time
-                beaconCache.resetChunkedData(sessionNumber);
+                onSendFailed(sendsCriticalData);
                 break;
             } else {
                 // worked -> remove previously retrieved chunk from cache
@@ -677,6 +751,74 @@ public class Beacon {
         return response;
     }
 
+    /**
+     * Restore the chunk which could not be sent in the cache.
+     *
+     * @param sendsCriticalData {@code true} if crashes or errors were pending when sending started.
+     */
+    private void onSendFailed(boolean sendsCriticalData) {
+        beaconCache.resetChunkedData(sessionNumber);
+        if (sendsCriticalData) {
+            criticalDataPending.set(true);
+        }
+    }
+
+    /**
+     * Send current state of Beacon asynchronously.
+     *
+     * <p>
+     *     The chunks are sent one after the other, the next one is prepared when the response of the previous
+     *     one has been received. Depending on the {@link HTTPClient} this happens on a different thread.
+     *     The beacon must not be sent again, until the callback has been notified.
+     * </p>
+     *
+     * @param provider Provider for getting an {@link HTTPClient} required to send the data.
+     * @param callback Notified with the last status response retrieved from the server side,
+     *                 or {@code null} if an error occurred or there was no data to send.
+     */
+    public void sendAsync(HTTPClientProvider provider, ResponseCallback callback) {
+
+        if (!beaconCache.hasNextBeaconChunk(sessionNumber)) {
+            // nothing to send, skip building the prefix
+            callback.onResponse(null);
+            return;
+        }
+
+        // each beacon in flight needs its own buffer
+        BeaconChunkBuffer chunkBuffer = httpConfiguration.isChunkedStreamingEnabled()
+            ? null
+            : new BeaconChunkBuffer(httpConfiguration.getBeaconCompressor());
+        new AsyncSend(provider.createClient(httpConfiguration), chunkBuffer, callback, criticalDataPending.getAndSet(false))
+            .sendNextChunk();
+    }
+
+    /**
+     * Get the request body for the next chunk of this beacon.
+     *
+     * <p>
+     * The chunk is UTF-8 encoded by the cache and compressed while it is written, either into the given
+     * buffer or, if {@code chunkBuffer} is {@code null}, directly into the request using chunked transfer encoding.
+     * </p>
+     *
+     * @return The request body or {@code null} if there is no more data to send.
+     */
+    private BeaconRequestBody nextRequestBody(String prefix, int maxSize, BeaconChunkBuffer chunkBuffer) throws IOException {
+        if (chunkBuffer == null) {
+            return beaconCache.hasNextBeaconChunk(sessionNumber)
+                ? new StreamingBeaconChunk(httpConfiguration.getBeaconCompressor(), beaconCache, sessionNumber, prefix, maxSize,
+                    BEACON_DATA_DELIMITER)
+                : null;
+        }
+
+        int chunkSize;
+        try {
+            chunkSize = beaconCache.writeNextBeaconChunk(sessionNumber, prefix, maxSize, BEACON_DATA_DELIMITER, chunkBuffer.startChunk());
+        } finally {
+            chunkBuffer.finishChunk();
+        }
+        return chunkSize == 0 ? null : chunkBuffer;
+    }
+
     private String appendMutableBeaconData(String immutableBasicBeaconData) {
 
         StringBuilder mutableBeaconDataBuilder;
@@ -744,6 +886,20 @@ public class Beacon {
         }
     }
 
+    /**
+     * Add previously serialized event data, which must not get lost, like crashes and errors, to the beacon cache.
+     *
+     * @param timestamp The timestamp when the event data occurred.
+     * @param eventBuilder Contains the serialized event data.
+     */
+    private void addCriticalEventData(long timestamp, StringBuilder eventBuilder) {
+
+        if (configuration.isCapture()) {
+            // the cache sets the flag before signalling the sender
+            beaconCache.addCriticalEventData(sessionNumber, timestamp, eventBuilder.toString(), criticalDataPending);
+        }
+    }
+
     /**
      * Clears all previously collected data for this Beacon.
      *
@@ -755,6 +911,7 @@ public class Beacon {
 
         // remove all cached data for this Beacon from the cache
         beaconCache.deleteCacheEntry(sessionNumber);
+        criticalDataPending.set(false);
     }
 
     /**
@@ -1022,6 +1179,24 @@ public class Beacon {
         return beaconCache.isEmpty(sessionNumber);
     }
 
+    /**
+     * Get a boolean indicating whether crashes or errors have been added, which have not been sent yet.
+     *
+     * @return {@code true} if crashes or errors are waiting to be sent, {@code false} otherwise.
+     */
+    public boolean hasCriticalData() {
+        return criticalDataPending.get();
+    }
+
+    /**
+     * Get the number of bytes of action and event data of this beacon, which are stored in the cache.
+     *
+     * @return The number of bytes in the cache.
+     */
+    public long getNumBytesInCache() {
+        return beaconCache.getNumBytesInCache(sessionNumber);
+    }
+
     /**
      * Sets the Beacon configuration.
      *
@@ -1063,4 +1238,57 @@ public class Beacon {
     int getMultiplicity() {
         return getBeaconConfiguration().getMultiplicity();
     }
+
+    /**
+     * Sends the chunks of this beacon, continuing with the next chunk when the previous response has been received.
+     */
+    private final class AsyncSend implements ResponseCallback {
+
+        private final HTTPClient httpClient;
+        private final BeaconChunkBuffer chunkBuffer;
+        private final ResponseCallback callback;
+        private final boolean sendsCriticalData;
+        private StatusResponse lastResponse = null;
+
+        private AsyncSend(HTTPClient httpClient, BeaconChunkBuffer chunkBuffer, ResponseCallback callback, boolean sendsCriticalData) {
+            this.httpClient = httpClient;
+            this.chunkBuffer = chunkBuffer;
+            this.callback = callback;
+            this.sendsCriticalData = sendsCriticalData;
+        }
+
+        private void sendNextChunk() {
+            // same as in send(HTTPClientProvider, BeaconChunkBuffer)
+            String prefix = appendMutableBeaconData(immutableBasicBeaconData);
+            BeaconRequestBody body;
+            try {
+                body = nextRequestBody(prefix, configuration.getMaxBeaconSize() - 1024, chunkBuffer);
+            } catch (IOException e) {
+                logger.error(Beacon.this.getClass().getSimpleName() + " send() - compressing beacon chunk failed", e);
+                onSendFailed(sendsCriticalData);
+                callback.onResponse(lastResponse);
+                return;
+            }
+            if (body == null) {
+                // no more data to send
+                callback.onResponse(lastResponse);
+                return;
+            }
+
+            httpClient.sendBeaconRequestAsync(clientIPAddress, body, this);
+        }
+
+        @Override
+        public void onResponse(StatusResponse response) {
+            lastResponse = response;
+            if (response == null || response.isErroneousResponse()) {
+                // restore the chunk in the cache & retry another time
+                onSendFailed(sendsCriticalData);
+                callback.onResponse(response);
+            } else {
+                beaconCache.removeChunkedData(sessionNumber);
+                sendNextChunk();
+            }
+        }
+    }
 }
@@ -0,0 +1,119 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Reusable buffer holding the gzip compressed body of a single beacon chunk.
+ *
+ * <p>
+ * The uncompressed chunk is written to the stream returned by {@link #startChunk()} and compressed on the fly,
+ * so it is never materialized as a whole. The compressed data is written to the HTTP connection
+ * without copying it again.
+ * </p>
+ *
+ * <p>
+ * The buffer keeps its capacity between chunks, so one instance should be reused for all chunks of a beacon.
+ * This class is not thread safe.
+ * </p>
+ */
+public class BeaconChunkBuffer implements BeaconRequestBody {
+
+    private final BeaconCompressor compressor;
+    private final ByteArrayOutputStream compressedData = new ByteArrayOutputStream();
+    private PooledGZIPOutputStream chunk = null;
+
+    /**
+     * Create a buffer.
+     *
+     * @param compressor The compressor used for compressing the chunks.
+     */
+    public BeaconChunkBuffer(BeaconCompressor compressor) {
+        this.compressor = compressor;
+    }
+
+    /**
+     * Create a buffer containing the compressed {@code data}.
+     *
+     * @param compressor The compressor used for compressing the data.
+     * @param data       The uncompressed data.
+     * @return The buffer containing the compressed data.
+     * @throws IOException If compressing the data fails.
+     */
+    static BeaconChunkBuffer compress(BeaconCompressor compressor, byte[] data) throws IOException {
+        BeaconChunkBuffer buffer = new BeaconChunkBuffer(compressor);
+        try {
+            buffer.startChunk().write(data);
+        } finally {
+            buffer.finishChunk();
+        }
+        return buffer;
+    }
+
+    /**
+     * Discard the previous chunk and start a new one.
+     *
+     * @return The stream to which the uncompressed chunk is written.
+     * @throws IOException If the gzip header cannot be written.
+     */
+    public OutputStream startChunk() throws IOException {
+        if (chunk != null) {
+            // previous chunk has not been finished
+            chunk.release();
+        }
+        compressedData.reset();
+        chunk = compressor.compress(compressedData);
+        return chunk;
+    }
+
+    /**
+     * Finish the chunk started with {@link #startChunk()}, after which it is ready for sending.
+     *
+     * <p>
+     * This must also be called, if writing the chunk failed, so that the compressor's resources are given back.
+     * </p>
+     *
+     * @throws IOException If the remaining compressed data cannot be written.
+     */
+    public void finishChunk() throws IOException {
+        if (chunk != null) {
+            PooledGZIPOutputStream finishedChunk = chunk;
+            chunk = null;
+            finishedChunk.close();
+        }
+    }
+
+    /**
+     * Get the number of compressed bytes in this buffer.
+     */
+    public int size() {
+        return compressedData.size();
+    }
+
+    @Override
+    public int getContentLength() {
+        return size();
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        compressedData.writeTo(out);
+    }
+}
@@ -0,0 +1,196 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip compressor for beacon data, reusing {@link Deflater deflaters} from a bounded pool.
+ *
+ * <p>
+ * Each deflater holds a considerable amount of native memory, which is only freed when the deflater is ended.
+ * Instead of creating a new deflater for every request, deflaters are reset and kept for reuse, as long as
+ * the pool holds less than the configured number of deflaters. Surplus deflaters are ended right away.
+ * </p>
+ *
+ * <p>
+ * The compressor also accumulates the number of uncompressed and compressed bytes and the time spent compressing,
+ * which is measured around the deflate calls of the compressing thread.
+ * </p>
+ *
+ * <p>
+ * This class is thread safe.
+ * </p>
+ */
+public class BeaconCompressor {
+
+    /**
+     * Default compression level, as defined by {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public static final int DEFAULT_COMPRESSION_LEVEL = Deflater.DEFAULT_COMPRESSION;
+    /**
+     * Default number of deflaters kept for reuse.
+     */
+    static final int DEFAULT_MAX_POOLED_DEFLATERS = 4;
+
+    private final int compressionLevel;
+    private final int maxPooledDeflaters;
+    private final Queue<Deflater> freeDeflaters = new ConcurrentLinkedQueue<Deflater>();
+    private final AtomicInteger numPooledDeflaters = new AtomicInteger(0);
+    private final AtomicLong numDeflatersCreated = new AtomicLong(0L);
+
+    private final AtomicLong numUncompressedBytes = new AtomicLong(0L);
+    private final AtomicLong numCompressedBytes = new AtomicLong(0L);
+    private final AtomicLong compressionTimeNanos = new AtomicLong(0L);
+
+    /**
+     * Create a compressor keeping up to {@link #DEFAULT_MAX_POOLED_DEFLATERS} deflaters for reuse.
+     *
+     * @param compressionLevel The compression level, ranging from {@link Deflater#NO_COMPRESSION} to
+     *                         {@link Deflater#BEST_COMPRESSION}, or {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public BeaconCompressor(int compressionLevel) {
+        this(compressionLevel, DEFAULT_MAX_POOLED_DEFLATERS);
+    }
+
+    /**
+     * Create a compressor.
+     *
+     * @param compressionLevel   The compression level.
+     * @param maxPooledDeflaters The maximum number of deflaters kept for reuse.
+     */
+    BeaconCompressor(int compressionLevel, int maxPooledDeflaters) {
+        this.compressionLevel = compressionLevel;
+        this.maxPooledDeflaters = maxPooledDeflaters;
+    }
+
+    /**
+     * Start compressing data written to the returned stream into {@code out}.
+     *
+     * <p>
+     * The deflater used by the returned stream is given back to this compressor, when the stream is finished,
+     * closed or released.
+     * </p>
+     *
+     * @param out The stream to which the compressed data is written.
+     * @return The stream to which the uncompressed data shall be written.
+     * @throws IOException If the gzip header cannot be written.
+     */
+    PooledGZIPOutputStream compress(OutputStream out) throws IOException {
+        Deflater deflater = acquireDeflater();
+        try {
+            return new PooledGZIPOutputStream(out, this, deflater);
+        } catch (IOException e) {
+            releaseDeflater(deflater);
+            throw e;
+        }
+    }
+
+    private Deflater acquireDeflater() {
+        Deflater deflater = freeDeflaters.poll();
+        if (deflater != null) {
+            numPooledDeflaters.decrementAndGet();
+            return deflater;
+        }
+
+        numDeflatersCreated.incrementAndGet();
+        return new Deflater(compressionLevel, true);
+    }
+
+    /**
+     * Give a deflater, previously used by a stream created via {@link #compress(OutputStream)}, back to this compressor.
+     */
+    void releaseDeflater(Deflater deflater) {
+        deflater.reset();
+        if (numPooledDeflaters.incrementAndGet() > maxPooledDeflaters) {
+            // pool is full
+            numPooledDeflaters.decrementAndGet();
+            deflater.end();
+            return;
+        }
+
+        freeDeflaters.offer(deflater);
+    }
+
+    /**
+     * Add the statistics of a finished stream.
+     */
+    void recordCompression(long uncompressedBytes, long compressedBytes, long timeNanos) {
+        numUncompressedBytes.addAndGet(uncompressedBytes);
+        numCompressedBytes.addAndGet(compressedBytes);
+        compressionTimeNanos.addAndGet(timeNanos);
+    }
+
+    /**
+     * Get the compression level used by this compressor.
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Get the total number of bytes passed to this compressor.
+     */
+    public long getNumUncompressedBytes() {
+        return numUncompressedBytes.get();
+    }
+
+    /**
+     * Get the total number of compressed bytes, including gzip headers and trailers, produced by this compressor.
+     */
+    public long getNumCompressedBytes() {
+        return numCompressedBytes.get();
+    }
+
+    /**
+     * Get the ratio of uncompressed to compressed bytes.
+     *
+     * @return The compression ratio, e.g. {@code 4.0} if data has been compressed to a quarter of its size,
+     * or {@code 0.0} if nothing has been compressed yet.
+     */
+    public double getCompressionRatio() {
+        long compressedBytes = numCompressedBytes.get();
+        return compressedBytes == 0 ? 0.0 : (double) numUncompressedBytes.get() / compressedBytes;
+    }
+
+    /**
+     * Get the total time in nanoseconds spent compressing.
+     */
+    public long getCompressionTimeNanos() {
+        return compressionTimeNanos.get();
+    }
+
+    /**
+     * Get the number of deflaters currently kept for reuse.
+     */
+    int getNumPooledDeflaters() {
+        return numPooledDeflaters.get();
+    }
+
+    /**
+     * Get the number of deflaters created by this compressor.
+     */
+    long getNumDeflatersCreated() {
+        return numDeflatersCreated.get();
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The gzip compressed body of a beacon request.
+ */
+public interface BeaconRequestBody {
+
+    /**
+     * Value returned by {@link #getContentLength()} if the length is not known before the body is written.
+     */
+    int UNKNOWN_CONTENT_LENGTH = -1;
+
+    /**
+     * Get the number of compressed bytes of this body.
+     *
+     * @return The number of bytes or {@link #UNKNOWN_CONTENT_LENGTH} if the body is sent using chunked transfer encoding.
+     */
+    int getContentLength();
+
+    /**
+     * Write the compressed body to the given stream.
+     *
+     * <p>
+     * This might be called multiple times, if sending the request is retried.
+     * </p>
+     *
+     * @param out The request's output stream, which is not closed by this method.
+     * @throws IOException If writing to {@code out} fails.
+     */
+    void writeTo(OutputStream out) throws IOException;
+}
@@ -20,15 +20,14 @@ import com.dynatrace.openkit.api.LogLevel;
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.api.SSLTrustManager;
 import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.core.configuration.HTTPRequestConfiguration;
+import com.dynatrace.openkit.core.util.LazyLog;
 import com.dynatrace.openkit.core.util.PercentEncoder;
 import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
 import com.dynatrace.openkit.providers.HttpURLConnectionWrapper;
 
 import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -39,12 +38,11 @@ import java.net.URL;
 import java.security.GeneralSecurityException;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.GZIPOutputStream;
+import java.util.Random;
 
 /**
  * HTTP client helper which abstracts the 2 basic request types:
@@ -86,11 +84,12 @@ public class HTTPClient {
     // additional reserved characters for URL encoding
     private static final char[] QUERY_RESERVED_CHARACTERS = {'_'};
 
-    // connection constants
-    private static final int MAX_SEND_RETRIES = 3;
-    private static final int RETRY_SLEEP_TIME = 200;        // retry sleep time in ms
-    private static final int CONNECT_TIMEOUT = 5000;
-    private static final int READ_TIMEOUT = 30000;
+    // jitter of retry delays, shared by all clients
+    private static final Random RETRY_JITTER = new Random();
+
+    // SSL socket factories shared by all clients, so that TLS sessions and connections are reused
+    private static final SSLTrustManager DEFAULT_TRUST_MANAGER = new SSLStrictTrustManager();
+    private static final SSLSocketFactoryCache SSL_SOCKET_FACTORIES = new SSLSocketFactoryCache(SSLSocketFactoryCache.DEFAULT_MAX_ENTRIES);
 
     // URLs for requests
     private final String monitorURL;
@@ -100,6 +99,11 @@ public class HTTPClient {
 
     private final SSLTrustManager sslTrustManager;
 
+    private final BeaconCompressor compressor;
+
+    private final HTTPRequestConfiguration requestConfiguration;
+    private final RetryBackoff retryBackoff;
+
     private final Logger logger;
 
     // *** constructors ***
@@ -110,6 +114,9 @@ public class HTTPClient {
         monitorURL = buildMonitorURL(configuration.getBaseURL(), configuration.getApplicationID(), serverID);
         newSessionURL = buildNewSessionURL(configuration.getBaseURL(), configuration.getApplicationID(), serverID);
         sslTrustManager = configuration.getSSLTrustManager();
+        compressor = configuration.getBeaconCompressor();
+        requestConfiguration = configuration.getRequestConfiguration();
+        retryBackoff = new RetryBackoff(requestConfiguration, RETRY_JITTER);
     }
 
     // *** public methods ***
@@ -131,25 +138,57 @@ public class HTTPClient {
 
     // sends a beacon send request and returns a status response
     public StatusResponse sendBeaconRequest(String clientIPAddress, byte[] data) {
-        Response response = sendRequest(RequestType.BEACON, monitorURL, clientIPAddress, data, "POST");
+        BeaconChunkBuffer chunk = null;
+        if (data != null && data.length > 0) {
+            // explicit level check, decoding the payload is too expensive to be done upfront
+            if (logger.isDebugEnabled()) {
+                logger.debug(getClass().getSimpleName() + " sendBeaconRequest() - Beacon Payload: " + decodeData(data));
+            }
+            try {
+                chunk = BeaconChunkBuffer.compress(compressor, data);
+            } catch (IOException e) {
+                LazyLog.error(logger, e, "{} sendBeaconRequest() - ERROR: compressing beacon data failed!", getClass());
+                return new StatusResponse(logger, "", Integer.MAX_VALUE, Collections.<String, List<String>>emptyMap());
+            }
+        }
+        return sendBeaconRequest(clientIPAddress, chunk);
+    }
+
+    // sends a compressed beacon request body and returns a status response
+    public StatusResponse sendBeaconRequest(String clientIPAddress, BeaconRequestBody body) {
+        Response response = sendRequest(RequestType.BEACON, monitorURL, clientIPAddress, body, "POST");
         return response == null
             ? new StatusResponse(logger, "", Integer.MAX_VALUE, Collections.<String, List<String>>emptyMap())
             : (StatusResponse)response;
     }
 
+    /**
+     * Send a compressed beacon request body and notify the callback about the response.
+     *
+     * <p>
+     * The body is completely written before this method returns, so it can be reused afterwards.
+     * This implementation blocks until the response has been received, {@link AsyncHTTPClient} does not.
+     * </p>
+     *
+     * @param clientIPAddress The client's IP address.
+     * @param body            The compressed beacon data.
+     * @param callback        The callback receiving the response.
+     */
+    public void sendBeaconRequestAsync(String clientIPAddress, BeaconRequestBody body, ResponseCallback callback) {
+        callback.onResponse(sendBeaconRequest(clientIPAddress, body));
+    }
+
     // *** protected methods ***
 
     // generic request send with some verbose output and exception handling
     // protected because it's overridden by the TestHTTPClient
-    Response sendRequest(RequestType requestType, String url, String clientIPAddress, byte[] data, String method) {
+    Response sendRequest(RequestType requestType, String url, String clientIPAddress, BeaconRequestBody body, String method) {
         try {
-            if (logger.isDebugEnabled()) {
-                logger.debug(getClass().getSimpleName() + " sendRequest() - HTTP " + requestType.getRequestName() + " Request: " + url);
-            }
-            HttpURLConnectionWrapper httpURLConnectionWrapper = new HttpURLConnectionWrapperImpl(url, MAX_SEND_RETRIES);
-            return sendRequestInternal(requestType, httpURLConnectionWrapper, clientIPAddress, data, method);
+            LazyLog.debug(logger, "{} sendRequest() - HTTP {} Request: {}", getClass(), requestType.getRequestName(), url);
+            HttpURLConnectionWrapper httpURLConnectionWrapper = new HttpURLConnectionWrapperImpl(url, requestConfiguration.getMaxRetries() + 1);
+            return sendRequestInternal(requestType, httpURLConnectionWrapper, clientIPAddress, body, method);
         } catch (Exception e) {
-            logger.error(getClass().getSimpleName() + " sendRequest() - ERROR: " + requestType + " Request failed!", e);
+            LazyLog.error(logger, e, "{} sendRequest() - ERROR: {} Request failed!", getClass(), requestType);
         }
         return unknownErrorResponse(requestType);
     }
@@ -157,19 +196,20 @@ public class HTTPClient {
     // *** private methods ***
 
     // only for unit testing the HTTPClient
-    Response sendRequest(RequestType requestType, HttpURLConnectionWrapper httpURLConnectionWrapper, String clientIPAddress, byte[] data,
+    Response sendRequest(RequestType requestType, HttpURLConnectionWrapper httpURLConnectionWrapper, String clientIPAddress, BeaconRequestBody body,
                          String method) {
         try {
-            return sendRequestInternal(requestType, httpURLConnectionWrapper, clientIPAddress, data, method);
+            return sendRequestInternal(requestType, httpURLConnectionWrapper, clientIPAddress, body, method);
         } catch (Exception e) {
-            logger.error(getClass().getSimpleName() + "sendRequest() - ERROR: " + requestType + " Request failed!", e);
+            LazyLog.error(logger, e, "{}sendRequest() - ERROR: {} Request failed!", getClass(), requestType);
         }
         return unknownErrorResponse(requestType);
     }
 
     // generic internal request send
     private Response sendRequestInternal(RequestType requestType, HttpURLConnectionWrapper httpURLConnectionWrapper, String clientIPAddress,
-            byte[] data, String method) throws IOException, GeneralSecurityException {
+            BeaconRequestBody body, String method) throws IOException, GeneralSecurityException {
+        int retry = 0;
         while (true) {
             try {
                 HttpURLConnection connection = httpURLConnectionWrapper.getHttpURLConnection();
@@ -182,12 +222,12 @@ public class HTTPClient {
                 if (clientIPAddress != null) {
                     connection.addRequestProperty("X-Client-IP", clientIPAddress);
                 }
-                connection.setConnectTimeout(CONNECT_TIMEOUT);
-                connection.setReadTimeout(READ_TIMEOUT);
+                connection.setConnectTimeout(requestConfiguration.getConnectTimeout());
+                connection.setReadTimeout(requestConfiguration.getReadTimeout());
                 connection.setRequestMethod(method);
 
                 // write the post body data
-                writePostBodyData(connection, data);
+                writePostBodyData(connection, body);
 
                 return handleResponse(requestType, connection);
 
@@ -200,7 +240,8 @@ public class HTTPClient {
                 logger.log(LogLevel.INFO, "Exception occurred during connection establishment. Retry in progress.", exception);
 
                 try {
-                    Thread.sleep(RETRY_SLEEP_TIME);
+                    // exponential backoff, so that an overloaded server is not hit by retries immediately
+                    Thread.sleep(retryBackoff.getDelay(retry++));
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     return unknownErrorResponse(requestType);
@@ -209,26 +250,25 @@ public class HTTPClient {
         }
     }
 
-    private void writePostBodyData(HttpURLConnection connection, byte[] data) throws IOException {
+    private void writePostBodyData(HttpURLConnection connection, BeaconRequestBody body) throws IOException {
 
-        // gzip beacon data, if available
-        if (data == null || data.length == 0) {
+        // write gzipped beacon data, if available
+        if (body == null || body.getContentLength() == 0) {
             return;
         }
 
-        byte[] gzippedData = gzip(data);
-
-        String decodedData = decodeData(data);
-
-        if (logger.isDebugEnabled()) {
-            logger.debug(getClass().getSimpleName() + " sendRequestInternal() - Beacon Payload: " + decodedData);
-        }
-
         connection.setRequestProperty("Content-Encoding", "gzip");
-        connection.setRequestProperty("Content-Length", String.valueOf(gzippedData.length));
+        if (body.getContentLength() == BeaconRequestBody.UNKNOWN_CONTENT_LENGTH) {
+            // body is compressed while it is written
+            LazyLog.debug(logger, "{} sendRequestInternal() - Beacon Payload: streamed", getClass());
+            connection.setChunkedStreamingMode(0);
+        } else {
+            LazyLog.debug(logger, "{} sendRequestInternal() - Beacon Payload: {} bytes compressed", getClass(), body.getContentLength());
+            connection.setRequestProperty("Content-Length", String.valueOf(body.getContentLength()));
+        }
         connection.setDoOutput(true);
         OutputStream outputStream = connection.getOutputStream();
-        outputStream.write(gzippedData);
+        body.writeTo(outputStream);
         outputStream.close();
     }
 
@@ -236,7 +276,7 @@ public class HTTPClient {
         try {
             return new String(data, Beacon.CHARSET);
         } catch (UnsupportedEncodingException e) {
-            logger.error(getClass().getSimpleName() + " sendRequestInternal() - JRE does not support UTF-8", e);
+            LazyLog.error(logger, e, "{} sendRequestInternal() - JRE does not support UTF-8", getClass());
             return "";
         }
     }
@@ -249,10 +289,14 @@ public class HTTPClient {
             ? readResponse(connection.getErrorStream()) // error stream is closed in readResponse
             : readResponse(connection.getInputStream()); // input stream is closed in readResponse
 
-        if (logger.isDebugEnabled()) {
-            logger.debug(getClass().getSimpleName() + " handleResponse() - HTTP Response: " + response);
-            logger.debug(getClass().getSimpleName() + " handleResponse() - HTTP Response Code: " + responseCode);
-        }
+        return createResponse(requestType, responseCode, response, connection.getHeaderFields());
+    }
+
+    // creates the typed response, shared with the AsyncHTTPClient
+    Response createResponse(RequestType requestType, int responseCode, String response, Map<String, List<String>> headers) {
+
+        LazyLog.debug(logger, "{} handleResponse() - HTTP Response: {}", getClass(), response);
+        LazyLog.debug(logger, "{} handleResponse() - HTTP Response Code: {}", getClass(), responseCode);
 
         // create typed response based on request type and response content
         if ((requestType.getRequestName().equals(RequestType.BEACON.getRequestName()))
@@ -260,10 +304,10 @@ public class HTTPClient {
             || (requestType.getRequestName().equals(RequestType.NEW_SESSION.getRequestName()))) {
             return responseCode >= 400
                 ? new StatusResponse(logger, "", responseCode, Collections.<String, List<String>>emptyMap())
-                : parseStatusResponse(response, responseCode, connection.getHeaderFields());
+                : parseStatusResponse(response, responseCode, headers);
         }
         else {
-            logger.warning(getClass().getSimpleName() + " handleResponse() - Unknown request type " + requestType + " - ignoring response");
+            LazyLog.warning(logger, "{} handleResponse() - Unknown request type {} - ignoring response", getClass(), requestType);
             return unknownErrorResponse(requestType);
         }
     }
@@ -274,13 +318,14 @@ public class HTTPClient {
                 return new StatusResponse(logger, response, responseCode, responseHeadersWithLowerCaseKeys(headers));
             }
             catch (Exception e) {
-                logger.error(getClass().getSimpleName() + " parseStatusResponse() - Failed to parse StatusResponse", e);
+                LazyLog.error(logger, e, "{} parseStatusResponse() - Failed to parse StatusResponse", getClass());
                 return new StatusResponse(logger, "", Integer.MAX_VALUE, Collections.<String, List<String>>emptyMap());
             }
         }
 
         // invalid/unexpected response
-        logger.warning(getClass().getSimpleName() + " parseStatusResponse() - The HTTPResponse \"" + response + "\" is not a valid status response");
+        LazyLog.warning(logger, "{} parseStatusResponse() - The HTTPResponse \"{}\" is not a valid status response",
+            getClass(), response);
         return new StatusResponse(logger, "", Integer.MAX_VALUE, Collections.<String, List<String>>emptyMap());
     }
 
@@ -302,16 +347,14 @@ public class HTTPClient {
     }
 
     private void applySSLTrustManager(HttpsURLConnection connection) throws NoSuchAlgorithmException, KeyManagementException {
-        SSLContext context = SSLContext.getInstance("TLS");
         X509TrustManager x509TrustManager;
         if (sslTrustManager == null || sslTrustManager.getX509TrustManager() == null) {
             // if provided trust manager is null use a strict one by default
-            x509TrustManager = new SSLStrictTrustManager().getX509TrustManager();
+            x509TrustManager = DEFAULT_TRUST_MANAGER.getX509TrustManager();
         } else {
             x509TrustManager = sslTrustManager.getX509TrustManager();
         }
-        context.init(null, new TrustManager[]{x509TrustManager}, new SecureRandom());
-        connection.setSSLSocketFactory(context.getSocketFactory());
+        connection.setSSLSocketFactory(SSL_SOCKET_FACTORIES.getSocketFactory(x509TrustManager));
 
         if (sslTrustManager != null && sslTrustManager.getHostnameVerifier() != null) {
             connection.setHostnameVerifier(sslTrustManager.getHostnameVerifier());
@@ -351,22 +394,16 @@ public class HTTPClient {
         urlBuilder.append(PercentEncoder.encode(value, "UTF-8", QUERY_RESERVED_CHARACTERS));
     }
 
-    // helper method for gzipping beacon data
-    private static byte[] gzip(byte[] data) throws IOException {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream);
-        gzipOutputStream.write(data);
-        gzipOutputStream.close();
-        byteArrayOutputStream.close();
-        return byteArrayOutputStream.toByteArray();
-    }
-
     // *** getter methods ***
 
     int getServerID() {
         return serverID;
     }
 
+    String getMonitorURL() {
+        return monitorURL;
+    }
+
     private static String readResponse(InputStream inputStream) throws IOException {
         StringBuilder responseBuilder = new StringBuilder();
 
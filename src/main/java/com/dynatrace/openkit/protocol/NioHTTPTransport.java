@@ -0,0 +1,381 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking HTTP/1.1 transport, keeping many requests in flight with a single I/O thread.
+ *
+ * <p>
+ * Each request is sent over a new plain (non TLS) connection, which is closed after the response
+ * has been read. The I/O thread is started with the first request and terminates after being idle
+ * for {@link #IDLE_TIMEOUT_MILLIS}.
+ * </p>
+ *
+ * <p>
+ * Host names are resolved by a separate resolver thread, so that neither the calling thread nor the I/O thread
+ * blocks on name resolution. The resolver thread terminates after being idle for {@link #IDLE_TIMEOUT_MILLIS} as well.
+ * </p>
+ *
+ * <p>
+ * Callbacks are invoked on the I/O thread, or on the resolver thread if the host name cannot be resolved,
+ * and therefore must not block.
+ * </p>
+ */
+final class NioHTTPTransport {
+
+    /**
+     * Callback notified about the outcome of a request.
+     */
+    interface Callback {
+
+        /**
+         * Called if a complete response was received.
+         */
+        void completed(RawHTTPResponse response);
+
+        /**
+         * Called if connecting, sending the request or reading the response failed.
+         */
+        void failed(IOException exception);
+    }
+
+    static final long IDLE_TIMEOUT_MILLIS = 60 * 1000;
+    private static final long SELECT_TIMEOUT_MILLIS = 100;
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    private static final String THREAD_NAME = "OpenKit-NioHTTPTransport";
+    private static final String RESOLVER_THREAD_NAME = "OpenKit-NioHTTPTransport-Resolver";
+
+    /** resolves host names one after the other, the JVM caches resolved addresses */
+    private final ThreadPoolExecutor resolver = createResolver();
+
+    /** requests submitted, but not yet registered with the selector */
+    private final Queue<Exchange> pendingExchanges = new ConcurrentLinkedQueue<Exchange>();
+    private final Object lock = new Object();
+    /** selector of the running I/O thread, or {@code null} if no thread is running; guarded by {@link #lock} */
+    private Selector selector = null;
+
+    /**
+     * Send a request without waiting for the response.
+     *
+     * <p>
+     * The host name is resolved by the resolver thread, the connect timeout starts once it has been resolved.
+     * </p>
+     *
+     * @param host           The server's host name.
+     * @param port           The server's port.
+     * @param request        The complete request, including request line and headers.
+     * @param connectTimeout Timeout in milliseconds for establishing the connection.
+     * @param readTimeout    Timeout in milliseconds, for which the server may be inactive while sending or receiving.
+     * @param callback       Notified once the response has been received or the request failed.
+     */
+    void send(final String host, final int port, byte[] request, final int connectTimeout, final int readTimeout,
+              final Callback callback) {
+        final ByteBuffer requestBuffer = ByteBuffer.wrap(request);
+        resolver.execute(new Runnable() {
+            @Override
+            public void run() {
+                InetSocketAddress address = new InetSocketAddress(host, port);
+                if (address.isUnresolved()) {
+                    callback.failed(new UnknownHostException(host));
+                    return;
+                }
+                submit(new Exchange(address, requestBuffer, connectTimeout, readTimeout, callback));
+            }
+        });
+    }
+
+    /**
+     * Hand over the exchange to the I/O thread, which is started if it's not running.
+     */
+    private void submit(Exchange exchange) {
+        Callback callback = exchange.callback;
+        pendingExchanges.offer(exchange);
+        synchronized (lock) {
+            if (selector != null) {
+                selector.wakeup();
+                return;
+            }
+            try {
+                selector = Selector.open();
+            } catch (IOException e) {
+                pendingExchanges.remove(exchange);
+                callback.failed(e);
+                return;
+            }
+            final Selector threadSelector = selector;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    runEventLoop(threadSelector);
+                }
+            }, THREAD_NAME);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    private static ThreadPoolExecutor createResolver() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, RESOLVER_THREAD_NAME);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Check whether the I/O thread is running.
+     */
+    boolean isRunning() {
+        synchronized (lock) {
+            return selector != null;
+        }
+    }
+
+    private void runEventLoop(Selector threadSelector) {
+        long idleSince = System.currentTimeMillis();
+        try {
+            while (true) {
+                registerPendingExchanges(threadSelector);
+
+                long now = System.currentTimeMillis();
+                if (threadSelector.keys().isEmpty()) {
+                    if (now - idleSince >= IDLE_TIMEOUT_MILLIS && stopIfIdle(threadSelector)) {
+                        return;
+                    }
+                } else {
+                    idleSince = now;
+                }
+
+                threadSelector.select(SELECT_TIMEOUT_MILLIS);
+                Iterator<SelectionKey> selectedKeys = threadSelector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    handle(key);
+                }
+
+                failTimedOutExchanges(threadSelector);
+            }
+        } catch (IOException e) {
+            // selector is broken, fail everything in flight and start a new thread with the next request
+            terminate(threadSelector, e);
+        } catch (RuntimeException e) {
+            // a callback failed, don't leave any request behind without an answer
+            terminate(threadSelector, new IOException(e));
+            throw e;
+        }
+    }
+
+    private void terminate(Selector threadSelector, IOException exception) {
+        synchronized (lock) {
+            selector = null;
+        }
+        for (SelectionKey key : new ArrayList<SelectionKey>(threadSelector.keys())) {
+            ((Exchange) key.attachment()).fail(exception);
+        }
+        failPendingExchanges(exception);
+        closeQuietly(threadSelector);
+    }
+
+    private boolean stopIfIdle(Selector threadSelector) {
+        synchronized (lock) {
+            if (!pendingExchanges.isEmpty()) {
+                return false;
+            }
+            selector = null;
+        }
+        closeQuietly(threadSelector);
+        return true;
+    }
+
+    private void registerPendingExchanges(Selector threadSelector) {
+        Exchange exchange;
+        while ((exchange = pendingExchanges.poll()) != null) {
+            exchange.register(threadSelector);
+        }
+    }
+
+    private void failPendingExchanges(IOException exception) {
+        Exchange exchange;
+        while ((exchange = pendingExchanges.poll()) != null) {
+            exchange.fail(exception);
+        }
+    }
+
+    private static void handle(SelectionKey key) {
+        Exchange exchange = (Exchange) key.attachment();
+        try {
+            if (key.isConnectable()) {
+                exchange.finishConnect();
+            } else if (key.isWritable()) {
+                exchange.write();
+            } else if (key.isReadable()) {
+                exchange.read();
+            }
+        } catch (IOException e) {
+            exchange.fail(e);
+        }
+    }
+
+    private static void failTimedOutExchanges(Selector threadSelector) {
+        long now = System.currentTimeMillis();
+        for (SelectionKey key : threadSelector.keys()) {
+            Exchange exchange = (Exchange) key.attachment();
+            if (key.isValid() && exchange.deadline <= now) {
+                exchange.fail(new SocketTimeoutException("HTTP request timed out"));
+            }
+        }
+    }
+
+    private static void closeQuietly(Selector threadSelector) {
+        try {
+            threadSelector.close();
+        } catch (IOException e) {
+            // nothing to do, resources are released anyway
+        }
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing to do, resources are released anyway
+        }
+    }
+
+    /**
+     * A single request and its response, only accessed by the I/O thread after being registered.
+     */
+    private final class Exchange {
+
+        private final InetSocketAddress address;
+        private final ByteBuffer request;
+        private final int connectTimeout;
+        private final int readTimeout;
+        private final Callback callback;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private byte[] responseData = new byte[READ_BUFFER_SIZE];
+        private int responseLength = 0;
+        private SocketChannel channel;
+        private SelectionKey key;
+        private long deadline;
+        private boolean done = false;
+
+        Exchange(InetSocketAddress address, ByteBuffer request, int connectTimeout, int readTimeout, Callback callback) {
+            this.address = address;
+            this.request = request;
+            this.connectTimeout = connectTimeout;
+            this.readTimeout = readTimeout;
+            this.callback = callback;
+        }
+
+        void register(Selector threadSelector) {
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                if (channel.connect(address)) {
+                    key = channel.register(threadSelector, SelectionKey.OP_WRITE, this);
+                    deadline = System.currentTimeMillis() + readTimeout;
+                } else {
+                    key = channel.register(threadSelector, SelectionKey.OP_CONNECT, this);
+                    deadline = System.currentTimeMillis() + connectTimeout;
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        void finishConnect() throws IOException {
+            if (channel.finishConnect()) {
+                key.interestOps(SelectionKey.OP_WRITE);
+                deadline = System.currentTimeMillis() + readTimeout;
+            }
+        }
+
+        void write() throws IOException {
+            if (channel.write(request) > 0) {
+                deadline = System.currentTimeMillis() + readTimeout;
+            }
+            if (!request.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        void read() throws IOException {
+            readBuffer.clear();
+            int numBytes = channel.read(readBuffer);
+            boolean endOfStream = numBytes < 0;
+            if (numBytes > 0) {
+                deadline = System.currentTimeMillis() + readTimeout;
+                if (responseLength + numBytes > responseData.length) {
+                    responseData = Arrays.copyOf(responseData, Math.max(responseData.length * 2, responseLength + numBytes));
+                }
+                System.arraycopy(readBuffer.array(), 0, responseData, responseLength, numBytes);
+                responseLength += numBytes;
+            }
+
+            RawHTTPResponse response = RawHTTPResponse.parse(responseData, responseLength, endOfStream);
+            if (response != null) {
+                close();
+                callback.completed(response);
+            }
+        }
+
+        void fail(IOException exception) {
+            if (!done) {
+                close();
+                callback.failed(exception);
+            }
+        }
+
+        private void close() {
+            done = true;
+            if (key != null) {
+                key.cancel();
+            }
+            if (channel != null) {
+                closeQuietly(channel);
+            }
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Stream writing data in gzip format, using a deflater of a {@link BeaconCompressor}.
+ *
+ * <p>
+ * Unlike {@link java.util.zip.GZIPOutputStream}, which always creates its own deflater,
+ * this stream gives its deflater back to the compressor, as soon as it is finished.
+ * </p>
+ */
+class PooledGZIPOutputStream extends DeflaterOutputStream {
+
+    private static final int BUFFER_SIZE = 512;
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final byte[] HEADER = {
+        (byte) GZIP_MAGIC,          // magic number
+        (byte) (GZIP_MAGIC >> 8),
+        Deflater.DEFLATED,          // compression method
+        0,                          // flags
+        0, 0, 0, 0,                 // modification time
+        0,                          // extra flags
+        0                           // operating system, same as GZIPOutputStream up to Java 15
+    };
+    private static final int TRAILER_SIZE = 8;
+
+    private final BeaconCompressor compressor;
+    private final CRC32 crc = new CRC32();
+
+    private long numUncompressedBytes = 0;
+    private long numCompressedBytes = 0;
+    private long compressionTimeNanos = 0;
+    private boolean released = false;
+
+    PooledGZIPOutputStream(OutputStream out, BeaconCompressor compressor, Deflater deflater) throws IOException {
+        super(out, deflater, BUFFER_SIZE);
+        this.compressor = compressor;
+        out.write(HEADER);
+        numCompressedBytes += HEADER.length;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (released) {
+            throw new IOException("Stream has already been finished");
+        }
+        super.write(b, off, len);
+        crc.update(b, off, len);
+        numUncompressedBytes += len;
+    }
+
+    @Override
+    protected void deflate() throws IOException {
+        long start = System.nanoTime();
+        int numBytes = def.deflate(buf, 0, buf.length);
+        compressionTimeNanos += System.nanoTime() - start;
+        if (numBytes > 0) {
+            out.write(buf, 0, numBytes);
+            numCompressedBytes += numBytes;
+        }
+    }
+
+    /**
+     * Finish writing compressed data, without closing the underlying stream, and give the deflater back.
+     */
+    @Override
+    public void finish() throws IOException {
+        if (released) {
+            return;
+        }
+        try {
+            super.finish();
+            writeTrailer();
+        } finally {
+            release();
+        }
+    }
+
+    private void writeTrailer() throws IOException {
+        byte[] trailer = new byte[TRAILER_SIZE];
+        writeInt((int) crc.getValue(), trailer, 0);
+        writeInt((int) numUncompressedBytes, trailer, 4);
+        out.write(trailer);
+        numCompressedBytes += TRAILER_SIZE;
+    }
+
+    private static void writeInt(int value, byte[] buffer, int offset) {
+        // gzip uses little endian byte order
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) (value >> 16);
+        buffer[offset + 3] = (byte) (value >> 24);
+    }
+
+    /**
+     * Give the deflater back to the compressor, without finishing the compressed data.
+     *
+     * <p>
+     * This must be called, if writing fails, and is a no-op if the stream has already been finished.
+     * </p>
+     */
+    void release() {
+        if (released) {
+            return;
+        }
+        released = true;
+        compressor.recordCompression(numUncompressedBytes, numCompressedBytes, compressionTimeNanos);
+        compressor.releaseDeflater(def);
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTTP/1.1 response read by the {@link NioHTTPTransport}.
+ *
+ * <p>
+ * The body is delimited by the {@code Content-Length} header, by chunked transfer encoding,
+ * or otherwise by the end of the stream.
+ * </p>
+ */
+final class RawHTTPResponse {
+
+    private static final String HEADER_CHARSET = "ISO-8859-1";
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+
+    private final int responseCode;
+    private final Map<String, List<String>> headers;
+    private final byte[] body;
+
+    private RawHTTPResponse(int responseCode, Map<String, List<String>> headers, byte[] body) {
+        this.responseCode = responseCode;
+        this.headers = headers;
+        this.body = body;
+    }
+
+    /**
+     * Parse the response received so far.
+     *
+     * @param data        The received data.
+     * @param length      The number of valid bytes in {@code data}.
+     * @param endOfStream {@code true} if the server closed the connection, so that no more data follows.
+     * @return The response or {@code null}, if more data is needed.
+     * @throws HTTPProtocolException If the data is not a valid HTTP response,
+     *                               or the stream ended before the response was complete.
+     */
+    static RawHTTPResponse parse(byte[] data, int length, boolean endOfStream) throws HTTPProtocolException {
+
+        int headerEnd = indexOf(data, length, HEADER_END, 0);
+        if (headerEnd < 0) {
+            return incomplete(endOfStream);
+        }
+
+        String[] headerLines = decode(data, 0, headerEnd).split("\r\n");
+        int responseCode = parseResponseCode(headerLines[0]);
+        Map<String, List<String>> headers = parseHeaders(headerLines);
+
+        int bodyStart = headerEnd + HEADER_END.length;
+        if (!hasBody(responseCode)) {
+            return new RawHTTPResponse(responseCode, headers, new byte[0]);
+        }
+
+        String transferEncoding = firstHeader(headers, "transfer-encoding");
+        if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+            byte[] body = decodeChunkedBody(data, bodyStart, length);
+            return body == null ? incomplete(endOfStream) : new RawHTTPResponse(responseCode, headers, body);
+        }
+
+        String contentLength = firstHeader(headers, "content-length");
+        if (contentLength != null) {
+            int bodyLength;
+            try {
+                bodyLength = Integer.parseInt(contentLength.trim());
+            } catch (NumberFormatException e) {
+                throw new HTTPProtocolException("Invalid Content-Length " + contentLength);
+            }
+            if (length - bodyStart < bodyLength) {
+                return incomplete(endOfStream);
+            }
+            return new RawHTTPResponse(responseCode, headers, copy(data, bodyStart, bodyLength));
+        }
+
+        // body ends with the connection
+        return endOfStream ? new RawHTTPResponse(responseCode, headers, copy(data, bodyStart, length - bodyStart)) : null;
+    }
+
+    /**
+     * Get the HTTP response code.
+     */
+    int getResponseCode() {
+        return responseCode;
+    }
+
+    /**
+     * Get the response headers, the keys are in lower case.
+     */
+    Map<String, List<String>> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Get the response body, which is already decoded, if chunked transfer encoding was used.
+     */
+    byte[] getBody() {
+        return body;
+    }
+
+    private static RawHTTPResponse incomplete(boolean endOfStream) throws HTTPProtocolException {
+        if (endOfStream) {
+            throw new HTTPProtocolException("Connection closed before the response was complete");
+        }
+        return null;
+    }
+
+    private static boolean hasBody(int responseCode) {
+        return responseCode >= 200 && responseCode != 204 && responseCode != 304;
+    }
+
+    private static int parseResponseCode(String statusLine) throws HTTPProtocolException {
+        // e.g. "HTTP/1.1 200 OK"
+        String[] parts = statusLine.split(" ", 3);
+        if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+            throw new HTTPProtocolException("Invalid status line " + statusLine);
+        }
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            throw new HTTPProtocolException("Invalid status line " + statusLine);
+        }
+    }
+
+    private static Map<String, List<String>> parseHeaders(String[] headerLines) {
+        Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        for (int i = 1; i < headerLines.length; i++) {
+            int separator = headerLines[i].indexOf(':');
+            if (separator <= 0) {
+                continue;
+            }
+            String key = headerLines[i].substring(0, separator).trim().toLowerCase();
+            List<String> values = headers.get(key);
+            if (values == null) {
+                values = new ArrayList<String>(1);
+                headers.put(key, values);
+            }
+            values.add(headerLines[i].substring(separator + 1).trim());
+        }
+        return Collections.unmodifiableMap(headers);
+    }
+
+    private static String firstHeader(Map<String, List<String>> headers, String key) {
+        List<String> values = headers.get(key);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    /**
+     * Decode a chunked body.
+     *
+     * @return The decoded body or {@code null}, if the last chunk has not been received yet.
+     */
+    private static byte[] decodeChunkedBody(byte[] data, int offset, int length) throws HTTPProtocolException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] lineEnd = {'\r', '\n'};
+        int position = offset;
+        while (true) {
+            int sizeLineEnd = indexOf(data, length, lineEnd, position);
+            if (sizeLineEnd < 0) {
+                return null;
+            }
+            String sizeLine = decode(data, position, sizeLineEnd - position);
+            int extension = sizeLine.indexOf(';');
+            if (extension >= 0) {
+                sizeLine = sizeLine.substring(0, extension);
+            }
+            int chunkSize;
+            try {
+                chunkSize = Integer.parseInt(sizeLine.trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new HTTPProtocolException("Invalid chunk size " + sizeLine);
+            }
+            position = sizeLineEnd + lineEnd.length;
+            if (chunkSize == 0) {
+                // ignore trailers, the connection is closed anyway
+                return body.toByteArray();
+            }
+            if (length - position < chunkSize + lineEnd.length) {
+                return null;
+            }
+            body.write(data, position, chunkSize);
+            position += chunkSize + lineEnd.length;
+        }
+    }
+
+    private static int indexOf(byte[] data, int length, byte[] pattern, int fromIndex) {
+        for (int i = fromIndex; i <= length - pattern.length; i++) {
+            int j = 0;
+            while (j < pattern.length && data[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String decode(byte[] data, int offset, int length) {
+        try {
+            return new String(data, offset, length, HEADER_CHARSET);
+        } catch (UnsupportedEncodingException e) {
+            // ISO-8859-1 is supported by every JRE
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] copy(byte[] data, int offset, int length) {
+        byte[] result = new byte[length];
+        System.arraycopy(data, offset, result, 0, length);
+        return result;
+    }
+
+    /**
+     * Thrown if the server's response is not a valid HTTP response.
+     */
+    static final class HTTPProtocolException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        HTTPProtocolException(String message) {
+            super(message);
+        }
+    }
+}
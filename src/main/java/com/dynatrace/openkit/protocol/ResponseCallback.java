@@ -0,0 +1,35 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+/**
+ * Callback receiving the response of a request sent asynchronously.
+ */
+public interface ResponseCallback {
+
+    /**
+     * Called once the request has been completed.
+     *
+     * <p>
+     * This might be called on a different thread than the one sending the request, and must not block.
+     * </p>
+     *
+     * @param response The response received from the server, or {@code null} if nothing has been sent.
+     */
+    void onResponse(StatusResponse response);
+}
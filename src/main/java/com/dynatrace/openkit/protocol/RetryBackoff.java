@@ -0,0 +1,61 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.core.configuration.HTTPRequestConfiguration;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter for retrying HTTP requests.
+ *
+ * <p>
+ * The delay is doubled with every retry, up to the configured maximum. The second half of each delay is randomized,
+ * so that many clients, which failed at the same time, do not retry at the same time.
+ * </p>
+ */
+final class RetryBackoff {
+
+    private final long initialDelay;
+    private final long maxDelay;
+    private final Random random;
+
+    RetryBackoff(HTTPRequestConfiguration configuration, Random random) {
+        initialDelay = configuration.getInitialRetryDelay();
+        maxDelay = configuration.getMaxRetryDelay();
+        this.random = random;
+    }
+
+    /**
+     * Get the delay before the given retry.
+     *
+     * @param retry The number of the retry, starting with {@code 0} for the first retry.
+     * @return The delay in milliseconds.
+     */
+    long getDelay(int retry) {
+        long delay = initialDelay;
+        for (int i = 0; i < retry && delay < maxDelay; i++) {
+            delay *= 2;
+        }
+        delay = Math.min(delay, maxDelay);
+
+        long jitter = delay / 2;
+        // random is thread safe
+        return delay - jitter + (jitter > 0 ? (long) (random.nextDouble() * (jitter + 1)) : 0);
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of {@link SSLSocketFactory} instances, one per {@link X509TrustManager}.
+ *
+ * <p>
+ * Creating an {@link SSLContext} is expensive and every context has its own TLS session cache.
+ * Reusing the socket factory allows resuming TLS sessions and lets {@link javax.net.ssl.HttpsURLConnection}
+ * reuse kept alive connections, which are only shared between connections using the same socket factory.
+ * </p>
+ *
+ * <p>
+ * Trust managers are compared by identity. Only the most recently used trust managers are kept,
+ * so that the cache cannot grow, if a new trust manager is created over and over.
+ * This class is thread safe.
+ * </p>
+ */
+class SSLSocketFactoryCache {
+
+    /** Default number of cached socket factories */
+    static final int DEFAULT_MAX_ENTRIES = 8;
+    /** Maximum number of TLS sessions cached per socket factory */
+    static final int SESSION_CACHE_SIZE = 16;
+
+    private static final String PROTOCOL = "TLS";
+
+    private final Map<X509TrustManager, SSLSocketFactory> socketFactories;
+
+    /**
+     * Create a cache.
+     *
+     * @param maxEntries Maximum number of cached socket factories.
+     */
+    SSLSocketFactoryCache(int maxEntries) {
+        socketFactories = new LeastRecentlyUsedMap<X509TrustManager, SSLSocketFactory>(maxEntries);
+    }
+
+    /**
+     * Get the socket factory for the given trust manager, which is created on first use.
+     *
+     * @param trustManager The trust manager verifying the server certificates.
+     * @return The socket factory.
+     * @throws NoSuchAlgorithmException If TLS is not supported.
+     * @throws KeyManagementException   If the SSL context cannot be initialized.
+     */
+    synchronized SSLSocketFactory getSocketFactory(X509TrustManager trustManager)
+        throws NoSuchAlgorithmException, KeyManagementException {
+
+        SSLSocketFactory socketFactory = socketFactories.get(trustManager);
+        if (socketFactory == null) {
+            socketFactory = createSocketFactory(trustManager);
+            socketFactories.put(trustManager, socketFactory);
+        }
+
+        return socketFactory;
+    }
+
+    /**
+     * Get the number of cached socket factories.
+     */
+    synchronized int size() {
+        return socketFactories.size();
+    }
+
+    private static SSLSocketFactory createSocketFactory(X509TrustManager trustManager)
+        throws NoSuchAlgorithmException, KeyManagementException {
+
+        SSLContext context = SSLContext.getInstance(PROTOCOL);
+        context.init(null, new TrustManager[]{trustManager}, new SecureRandom());
+
+        SSLSessionContext sessionContext = context.getClientSessionContext();
+        if (sessionContext != null) {
+            // bounded session cache, sessions are resumed until they time out
+            sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+        }
+
+        return context.getSocketFactory();
+    }
+
+    /**
+     * Map in access order, which removes the least recently used entry once it holds more than the maximum.
+     */
+    private static final class LeastRecentlyUsedMap<K, V> extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int maxEntries;
+
+        private LeastRecentlyUsedMap(int maxEntries) {
+            super(maxEntries, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
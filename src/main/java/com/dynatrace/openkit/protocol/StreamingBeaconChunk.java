@@ -0,0 +1,67 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.core.caching.BeaconCache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Beacon request body compressing the next chunk of a beacon directly into the request's output stream.
+ *
+ * <p>
+ * Since the compressed length is not known upfront, the body is sent using chunked transfer encoding.
+ * The records are taken from the cache each time the body is written. Records included in a chunk
+ * stay marked for sending until the chunk is removed or reset, so a retried request sends the same records.
+ * </p>
+ */
+class StreamingBeaconChunk implements BeaconRequestBody {
+
+    private final BeaconCompressor compressor;
+    private final BeaconCache beaconCache;
+    private final int beaconID;
+    private final String chunkPrefix;
+    private final int maxSize;
+    private final char delimiter;
+
+    StreamingBeaconChunk(BeaconCompressor compressor, BeaconCache beaconCache, int beaconID, String chunkPrefix, int maxSize,
+                         char delimiter) {
+        this.compressor = compressor;
+        this.beaconCache = beaconCache;
+        this.beaconID = beaconID;
+        this.chunkPrefix = chunkPrefix;
+        this.maxSize = maxSize;
+        this.delimiter = delimiter;
+    }
+
+    @Override
+    public int getContentLength() {
+        return UNKNOWN_CONTENT_LENGTH;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        PooledGZIPOutputStream chunk = compressor.compress(out);
+        try {
+            beaconCache.writeNextBeaconChunk(beaconID, chunkPrefix, maxSize, delimiter, chunk);
+            chunk.finish();
+        } finally {
+            chunk.release();
+        }
+    }
+}
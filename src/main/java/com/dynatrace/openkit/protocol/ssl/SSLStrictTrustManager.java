@@ -40,7 +40,7 @@ public class SSLStrictTrustManager implements SSLTrustManager {
     private String defaultAlgorithm = null;
 
     @Override
-    public X509TrustManager getX509TrustManager() {
+    public synchronized X509TrustManager getX509TrustManager() {
 
         String tmfDefaultAlgorithm = TrustManagerFactory.getDefaultAlgorithm();
         if (defaultAlgorithm == null || !defaultAlgorithm.equals(tmfDefaultAlgorithm)) {
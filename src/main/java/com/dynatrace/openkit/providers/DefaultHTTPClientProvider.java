@@ -18,22 +18,43 @@ package com.dynatrace.openkit.providers;
 
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.protocol.AsyncHTTPClient;
 import com.dynatrace.openkit.protocol.HTTPClient;
 
+import java.util.Map;
+import java.util.WeakHashMap;
+
 /**
  * Implementation of an HTTPClientProvider which creates a HTTP client for executing status check and beacon send requests.
+ *
+ * <p>
+ * One client is created per {@link HTTPClientConfiguration} instance and reused for all requests with that configuration.
+ * When the server id changes, a new configuration and therefore a new client is used. Clients of configurations,
+ * which are no longer referenced, are discarded together with their configuration.
+ * If the asynchronous transport is enabled, an {@link AsyncHTTPClient} is created.
+ * </p>
  */
 public class DefaultHTTPClientProvider implements HTTPClientProvider {
 
     private final Logger logger;
 
+    /** Clients by configuration, configurations are compared by identity */
+    private final Map<HTTPClientConfiguration, HTTPClient> clients = new WeakHashMap<HTTPClientConfiguration, HTTPClient>();
+
     public DefaultHTTPClientProvider(Logger logger) {
         this.logger = logger;
     }
 
     @Override
-    public HTTPClient createClient(HTTPClientConfiguration configuration) {
-        return new HTTPClient(logger, configuration);
+    public synchronized HTTPClient createClient(HTTPClientConfiguration configuration) {
+        HTTPClient client = clients.get(configuration);
+        if (client == null) {
+            client = configuration.isAsyncTransportEnabled()
+                ? new AsyncHTTPClient(logger, configuration)
+                : new HTTPClient(logger, configuration);
+            clients.put(configuration, client);
+        }
+        return client;
     }
 
 }
@@ -26,6 +26,10 @@ public interface HTTPClientProvider {
 
     /**
      * Returns an HTTPClient based on the provided configuration.
+     *
+     * <p>
+     * The same client may be returned for the same configuration, therefore clients must be thread safe.
+     * </p>
      */
     HTTPClient createClient(HTTPClientConfiguration configuration);
 }
@@ -21,16 +21,20 @@ import com.dynatrace.openkit.api.OpenKitConstants;
 import com.dynatrace.openkit.api.SSLTrustManager;
 import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
+import com.dynatrace.openkit.core.configuration.HTTPRequestConfiguration;
 import com.dynatrace.openkit.core.configuration.PrivacyConfiguration;
 import com.dynatrace.openkit.core.util.DefaultLogger;
 import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
 import org.hamcrest.Matchers;
 import org.junit.Test;
 
+import java.util.zip.Deflater;
+
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.mock;
@@ -116,6 +120,12 @@ public class OpenKitBuilderTest {
         assertThat(configuration.getBeaconCacheConfiguration().getMaxRecordAge(), is(BeaconCacheConfiguration.DEFAULT_MAX_RECORD_AGE_IN_MILLIS));
         assertThat(configuration.getBeaconCacheConfiguration().getCacheSizeUpperBound(), is(BeaconCacheConfiguration.DEFAULT_UPPER_MEMORY_BOUNDARY_IN_BYTES));
         assertThat(configuration.getBeaconCacheConfiguration().getCacheSizeLowerBound(), is(BeaconCacheConfiguration.DEFAULT_LOWER_MEMORY_BOUNDARY_IN_BYTES));
+        assertThat(configuration.getBeaconCacheConfiguration().isOffHeapStorageEnabled(), is(false));
+        assertThat(configuration.getBeaconCacheConfiguration().getPersistenceDirectory(), is(nullValue()));
+        assertThat(configuration.getBeaconCacheConfiguration().isWriteAheadLogEnabled(), is(false));
+        assertThat(configuration.getBeaconCacheConfiguration().getSendThreshold(), is(BeaconCacheConfiguration.SEND_THRESHOLD_DISABLED));
+        assertThat(configuration.getHttpClientConfig().isChunkedStreamingEnabled(), is(false));
+        assertThat(configuration.getHttpClientConfig().getBeaconCompressor().getCompressionLevel(), is(Deflater.DEFAULT_COMPRESSION));
         assertThat(configuration.getPrivacyConfiguration().getDataCollectionLevel(), is(PrivacyConfiguration.DEFAULT_DATA_COLLECTION_LEVEL));
         assertThat(configuration.getPrivacyConfiguration().getCrashReportingLevel(), is(PrivacyConfiguration.DEFAULT_CRASH_REPORTING_LEVEL));
     }
@@ -361,6 +371,340 @@ public class OpenKitBuilderTest {
         assertThat(target.getBeaconCacheUpperMemoryBoundary(), is(upperMemoryBoundary));
     }
 
+    @Test
+    public void canEnableBeaconCacheOffHeapStorageForDynatrace() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        AbstractOpenKitBuilder obtained = target.withBeaconCacheOffHeapStorage(true);
+
+        // then
+        assertThat(obtained, is(Matchers.<AbstractOpenKitBuilder>instanceOf(DynatraceOpenKitBuilder.class)));
+        assertThat((DynatraceOpenKitBuilder)obtained, is(sameInstance(target)));
+        assertThat(target.isBeaconCacheOffHeapStorageEnabled(), is(true));
+        assertThat(target.buildConfiguration().getBeaconCacheConfiguration().isOffHeapStorageEnabled(), is(true));
+    }
+
+    @Test
+    public void canEnableBeaconCacheOffHeapStorageForAppMon() {
+
+        // given
+        AppMonOpenKitBuilder target = new AppMonOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        AbstractOpenKitBuilder obtained = target.withBeaconCacheOffHeapStorage(true);
+
+        // then
+        assertThat(obtained, is(Matchers.<AbstractOpenKitBuilder>instanceOf(AppMonOpenKitBuilder.class)));
+        assertThat((AppMonOpenKitBuilder)obtained, is(sameInstance(target)));
+        assertThat(target.isBeaconCacheOffHeapStorageEnabled(), is(true));
+        assertThat(target.buildConfiguration().getBeaconCacheConfiguration().isOffHeapStorageEnabled(), is(true));
+    }
+
+    @Test
+    public void canSetBeaconCachePersistenceDirectoryForDynatrace() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        AbstractOpenKitBuilder obtained = target.withBeaconCachePersistenceDirectory("/var/cache/openkit");
+
+        // then
+        assertThat(obtained, is(Matchers.<AbstractOpenKitBuilder>instanceOf(DynatraceOpenKitBuilder.class)));
+        assertThat((DynatraceOpenKitBuilder)obtained, is(sameInstance(target)));
+        assertThat(target.getBeaconCachePersistenceDirectory(), is("/var/cache/openkit"));
+        assertThat(target.buildConfiguration().getBeaconCacheConfiguration().getPersistenceDirectory(), is("/var/cache/openkit"));
+    }
+
+    @Test
+    public void canSetBeaconCachePersistenceDirectoryForAppMon() {
+
+        // given
+        AppMonOpenKitBuilder target = new AppMonOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        AbstractOpenKitBuilder obtained = target.withBeaconCachePersistenceDirectory("/var/cache/openkit");
+
+        // then
+        assertThat(obtained, is(Matchers.<AbstractOpenKitBuilder>instanceOf(AppMonOpenKitBuilder.class)));
+        assertThat((AppMonOpenKitBuilder)obtained, is(sameInstance(target)));
+        assertThat(target.getBeaconCachePersistenceDirectory(), is("/var/cache/openkit"));
+        assertThat(target.buildConfiguration().getBeaconCacheConfiguration().getPersistenceDirectory(), is("/var/cache/openkit"));
+    }
+
+    @Test
+    public void canEnableBeaconCacheWriteAheadLogForDynatrace() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        AbstractOpenKitBuilder obtained = target.withBeaconCacheWriteAheadLog(true);
+
+        // then
+        assertThat(obtained, is(Matchers.<AbstractOpenKitBuilder>instanceOf(DynatraceOpenKitBuilder.class)));
+        assertThat((DynatraceOpenKitBuilder)obtained, is(sameInstance(target)));
+        assertThat(target.isBeaconCacheWriteAheadLogEnabled(), is(true));
+        assertThat(target.buildConfiguration().getBeaconCacheConfiguration().isWriteAheadLogEnabled(), is(true));
+    }
+
+    @Test
+    public void canSetBeaconCacheSendThreshold() {
+
+        // given
+        AppMonOpenKitBuilder target = new AppMonOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        AbstractOpenKitBuilder obtained = target.withBeaconCacheSendThreshold(1024L * 1024L);
+
+        // then
+        assertThat((AppMonOpenKitBuilder)obtained, is(sameInstance(target)));
+        assertThat(target.getBeaconCacheSendThreshold(), is(1024L * 1024L));
+        assertThat(target.buildConfiguration().getBeaconCacheConfiguration().getSendThreshold(), is(1024L * 1024L));
+    }
+
+    @Test
+    public void negativeBeaconCacheSendThresholdDisablesSendingEarly() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+        target.withBeaconCacheSendThreshold(1024L);
+
+        // when
+        target.withBeaconCacheSendThreshold(-42L);
+
+        // then
+        assertThat(target.buildConfiguration().getBeaconCacheConfiguration().getSendThreshold(),
+            is(BeaconCacheConfiguration.SEND_THRESHOLD_DISABLED));
+    }
+
+    @Test
+    public void canEnableBeaconCacheWriteAheadLogForAppMon() {
+
+        // given
+        AppMonOpenKitBuilder target = new AppMonOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        AbstractOpenKitBuilder obtained = target.withBeaconCacheWriteAheadLog(true);
+
+        // then
+        assertThat(obtained, is(Matchers.<AbstractOpenKitBuilder>instanceOf(AppMonOpenKitBuilder.class)));
+        assertThat((AppMonOpenKitBuilder)obtained, is(sameInstance(target)));
+        assertThat(target.isBeaconCacheWriteAheadLogEnabled(), is(true));
+        assertThat(target.buildConfiguration().getBeaconCacheConfiguration().isWriteAheadLogEnabled(), is(true));
+    }
+
+    @Test
+    public void canEnableChunkedBeaconStreamingForDynatrace() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        AbstractOpenKitBuilder obtained = target.withChunkedBeaconStreaming(true);
+
+        // then
+        assertThat(obtained, is(Matchers.<AbstractOpenKitBuilder>instanceOf(DynatraceOpenKitBuilder.class)));
+        assertThat((DynatraceOpenKitBuilder)obtained, is(sameInstance(target)));
+        assertThat(target.isChunkedBeaconStreamingEnabled(), is(true));
+        assertThat(target.buildConfiguration().getHttpClientConfig().isChunkedStreamingEnabled(), is(true));
+    }
+
+    @Test
+    public void canEnableChunkedBeaconStreamingForAppMon() {
+
+        // given
+        AppMonOpenKitBuilder target = new AppMonOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        AbstractOpenKitBuilder obtained = target.withChunkedBeaconStreaming(true);
+
+        // then
+        assertThat(obtained, is(Matchers.<AbstractOpenKitBuilder>instanceOf(AppMonOpenKitBuilder.class)));
+        assertThat((AppMonOpenKitBuilder)obtained, is(sameInstance(target)));
+        assertThat(target.isChunkedBeaconStreamingEnabled(), is(true));
+        assertThat(target.buildConfiguration().getHttpClientConfig().isChunkedStreamingEnabled(), is(true));
+    }
+
+    @Test
+    public void canSetBeaconCompressionLevel() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        AbstractOpenKitBuilder obtained = target.withBeaconCompressionLevel(Deflater.BEST_SPEED);
+
+        // then
+        assertThat((DynatraceOpenKitBuilder)obtained, is(sameInstance(target)));
+        assertThat(target.getBeaconCompressionLevel(), is(Deflater.BEST_SPEED));
+        assertThat(target.buildConfiguration().getHttpClientConfig().getBeaconCompressor().getCompressionLevel(), is(Deflater.BEST_SPEED));
+    }
+
+    @Test
+    public void invalidBeaconCompressionLevelIsIgnored() {
+
+        // given
+        AppMonOpenKitBuilder target = new AppMonOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+        target.withBeaconCompressionLevel(Deflater.BEST_COMPRESSION);
+
+        // when
+        target.withBeaconCompressionLevel(Deflater.BEST_COMPRESSION + 1);
+        target.withBeaconCompressionLevel(-2);
+
+        // then
+        assertThat(target.getBeaconCompressionLevel(), is(Deflater.BEST_COMPRESSION));
+        assertThat(target.buildConfiguration().getHttpClientConfig().getBeaconCompressor().getCompressionLevel(), is(Deflater.BEST_COMPRESSION));
+    }
+
+    @Test
+    public void defaultBeaconSenderWorkersIsOne() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // then
+        assertThat(target.getBeaconSenderWorkers(), is(1));
+        assertThat(target.buildConfiguration().getBeaconSenderWorkers(), is(Configuration.DEFAULT_BEACON_SENDER_WORKERS));
+    }
+
+    @Test
+    public void canSetBeaconSenderWorkers() {
+
+        // given
+        AppMonOpenKitBuilder target = new AppMonOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        AbstractOpenKitBuilder obtained = target.withBeaconSenderWorkers(4);
+
+        // then
+        assertThat((AppMonOpenKitBuilder)obtained, is(sameInstance(target)));
+        assertThat(target.getBeaconSenderWorkers(), is(4));
+        assertThat(target.buildConfiguration().getBeaconSenderWorkers(), is(4));
+    }
+
+    @Test
+    public void invalidBeaconSenderWorkersAreIgnored() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+        target.withBeaconSenderWorkers(2);
+
+        // when
+        target.withBeaconSenderWorkers(0);
+        target.withBeaconSenderWorkers(-1);
+
+        // then
+        assertThat(target.buildConfiguration().getBeaconSenderWorkers(), is(2));
+    }
+
+    @Test
+    public void canEnableAsyncBeaconTransport() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        AbstractOpenKitBuilder obtained = target.withAsyncBeaconTransport(true);
+
+        // then
+        assertThat((DynatraceOpenKitBuilder)obtained, is(sameInstance(target)));
+        assertThat(target.isAsyncBeaconTransportEnabled(), is(true));
+        assertThat(target.buildConfiguration().getHttpClientConfig().isAsyncTransportEnabled(), is(true));
+    }
+
+    @Test
+    public void asyncBeaconTransportIsDisabledByDefault() {
+
+        // given
+        AppMonOpenKitBuilder target = new AppMonOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // then
+        assertThat(target.isAsyncBeaconTransportEnabled(), is(false));
+        assertThat(target.buildConfiguration().getHttpClientConfig().isAsyncTransportEnabled(), is(false));
+    }
+
+    @Test
+    public void httpRequestConfigurationHasDefaultValues() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        HTTPRequestConfiguration obtained = target.buildConfiguration().getHttpClientConfig().getRequestConfiguration();
+
+        // then
+        assertThat(obtained.getConnectTimeout(), is(HTTPRequestConfiguration.DEFAULT_CONNECT_TIMEOUT_IN_MILLIS));
+        assertThat(obtained.getReadTimeout(), is(HTTPRequestConfiguration.DEFAULT_READ_TIMEOUT_IN_MILLIS));
+        assertThat(obtained.getMaxRetries(), is(HTTPRequestConfiguration.DEFAULT_MAX_RETRIES));
+        assertThat(obtained.getInitialRetryDelay(), is(HTTPRequestConfiguration.DEFAULT_INITIAL_RETRY_DELAY_IN_MILLIS));
+    }
+
+    @Test
+    public void canSetHttpTimeoutsAndRetries() {
+
+        // given
+        AppMonOpenKitBuilder target = new AppMonOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        AbstractOpenKitBuilder obtained = target.withHttpTimeouts(1000, 2000).withHttpRetries(5, 50L);
+
+        // then
+        assertThat((AppMonOpenKitBuilder)obtained, is(sameInstance(target)));
+        HTTPRequestConfiguration requestConfiguration = target.buildConfiguration().getHttpClientConfig().getRequestConfiguration();
+        assertThat(requestConfiguration.getConnectTimeout(), is(1000));
+        assertThat(requestConfiguration.getReadTimeout(), is(2000));
+        assertThat(requestConfiguration.getMaxRetries(), is(5));
+        assertThat(requestConfiguration.getInitialRetryDelay(), is(50L));
+    }
+
+    @Test
+    public void invalidHttpTimeoutsAndRetriesAreIgnored() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+        target.withHttpTimeouts(1000, 2000).withHttpRetries(5, 50L);
+
+        // when
+        target.withHttpTimeouts(0, -1).withHttpRetries(-1, -1L);
+
+        // then
+        HTTPRequestConfiguration requestConfiguration = target.buildConfiguration().getHttpClientConfig().getRequestConfiguration();
+        assertThat(requestConfiguration.getConnectTimeout(), is(1000));
+        assertThat(requestConfiguration.getReadTimeout(), is(2000));
+        assertThat(requestConfiguration.getMaxRetries(), is(5));
+        assertThat(requestConfiguration.getInitialRetryDelay(), is(50L));
+    }
+
+    @Test
+    public void beaconSendCycleBudgetIsUnlimitedByDefault() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // then
+        assertThat(target.getBeaconSendCycleBudget(), is(Configuration.NO_SEND_CYCLE_BUDGET));
+        assertThat(target.buildConfiguration().getSendCycleBudget(), is(Configuration.NO_SEND_CYCLE_BUDGET));
+    }
+
+    @Test
+    public void canSetBeaconSendCycleBudget() {
+
+        // given
+        DynatraceOpenKitBuilder target = new DynatraceOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID);
+
+        // when
+        AbstractOpenKitBuilder obtained = target.withBeaconSendCycleBudget(3000L);
+        target.withBeaconSendCycleBudget(-1L);
+
+        // then
+        assertThat((DynatraceOpenKitBuilder)obtained, is(sameInstance(target)));
+        assertThat(target.buildConfiguration().getSendCycleBudget(), is(3000L));
+    }
+
     @Test
     public void canSetDataCollectionLevelForAppMon() {
         Configuration target = new AppMonOpenKitBuilder(ENDPOINT, APP_ID, DEVICE_ID)
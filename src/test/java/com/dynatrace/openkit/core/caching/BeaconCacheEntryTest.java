@@ -18,8 +18,11 @@ package com.dynatrace.openkit.core.caching;
 
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.equalTo;
@@ -53,7 +56,7 @@ public class BeaconCacheEntryTest {
         BeaconCacheEntry target = new BeaconCacheEntry();
 
         // when adding first record
-        target.addActionData(dataOne);
+        target.addActionData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
 
         // then
         assertThat(target.getActionData(), is(equalTo(Collections.singletonList(dataOne))));
@@ -62,7 +65,7 @@ public class BeaconCacheEntryTest {
         assertThat(target.getActionDataBeingSent(), is(nullValue()));
 
         // and when adding second record
-        target.addActionData(dataTwo);
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
 
         // then
         assertThat(target.getActionData(), is(equalTo(Arrays.asList(dataOne, dataTwo))));
@@ -81,7 +84,7 @@ public class BeaconCacheEntryTest {
         BeaconCacheEntry target = new BeaconCacheEntry();
 
         // when adding first record
-        target.addEventData(dataOne);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
 
         // then
         assertThat(target.getEventData(), is(equalTo(Collections.singletonList(dataOne))));
@@ -90,7 +93,7 @@ public class BeaconCacheEntryTest {
         assertThat(target.getActionDataBeingSent(), is(nullValue()));
 
         // and when adding second record
-        target.addEventData(dataTwo);
+        target.addEventData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
 
         // then
         assertThat(target.getEventData(), is(equalTo(Arrays.asList(dataOne, dataTwo))));
@@ -109,10 +112,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataFour);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
 
         // when copying data for later chunking
         target.copyDataForChunking();
@@ -134,10 +137,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataFour);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
 
         // when, then
         assertThat(target.needsDataCopyBeforeChunking(), is(true));
@@ -153,10 +156,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataFour);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
 
         target.copyDataForChunking();
 
@@ -183,7 +186,7 @@ public class BeaconCacheEntryTest {
     }
 
     @Test
-    public void getChunkMarksRetrievedData() {
+    public void getChunkMarksRetrievedData() throws IOException {
 
         // given
         BeaconCacheRecord dataOne = new BeaconCacheRecord(0L, "One");
@@ -192,29 +195,27 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataFour);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
 
         target.copyDataForChunking();
 
         // when retrieving data
-        String obtained = target.getChunk("prefix", 1024, '&');
+        String obtained = chunkToString(getChunk(target, "prefix", 1024, '&'));
 
         // then
         assertThat(obtained, is("prefix&" + dataOne.getData() + "&" + dataFour.getData() + "&" + dataTwo.getData() + "&" + dataThree
             .getData()));
 
         // and all of them are marked
-        assertThat(dataOne.isMarkedForSending(), is(true));
-        assertThat(dataTwo.isMarkedForSending(), is(true));
-        assertThat(dataThree.isMarkedForSending(), is(true));
-        assertThat(dataFour.isMarkedForSending(), is(true));
+        assertThat(allRecordsMarkedForSending(target.getEventDataBeingSent()), is(true));
+        assertThat(allRecordsMarkedForSending(target.getActionDataBeingSent()), is(true));
     }
 
     @Test
-    public void getChunkGetsChunksFromEventDataBeforeActionData() {
+    public void getChunkGetsChunksFromEventDataBeforeActionData() throws IOException {
 
         // given
         BeaconCacheRecord dataOne = new BeaconCacheRecord(0L, "One");
@@ -223,50 +224,50 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataFour);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
 
         target.copyDataForChunking();
 
         // when getting data to send
-        String obtained = target.getChunk("a", 2, '&');
+        String obtained = chunkToString(getChunk(target, "a", 2, '&'));
 
         // then it's the first event data
         assertThat(obtained, is("a&" + dataOne.getData()));
 
         // and when removing already sent data and getting next chunk
         target.removeDataMarkedForSending();
-        obtained = target.getChunk("a", 2, '&');
+        obtained = chunkToString(getChunk(target, "a", 2, '&'));
 
         // then it's second event data
         assertThat(obtained, is("a&" + dataFour.getData()));
 
         // and when removing already sent data and getting next chunk
         target.removeDataMarkedForSending();
-        obtained = target.getChunk("a", 2, '&');
+        obtained = chunkToString(getChunk(target, "a", 2, '&'));
 
         // then it's the first action data
         assertThat(obtained, is("a&" + dataTwo.getData()));
 
         // and when removing already sent data and getting next chunk
         target.removeDataMarkedForSending();
-        obtained = target.getChunk("a", 2, '&');
+        obtained = chunkToString(getChunk(target, "a", 2, '&'));
 
         // then it's the second action data
         assertThat(obtained, is("a&" + dataThree.getData()));
 
         // and when removing already sent data and getting next chunk
         target.removeDataMarkedForSending();
-        obtained = target.getChunk("a", 2, '&');
+        obtained = chunkToString(getChunk(target, "a", 2, '&'));
 
         // then we get an empty string, since all chunks were sent & deleted
         assertThat(obtained, isEmptyString());
     }
 
     @Test
-    public void getChunkGetsAlreadyMarkedData() {
+    public void getChunkGetsAlreadyMarkedData() throws IOException {
 
         // given
         BeaconCacheRecord dataOne = new BeaconCacheRecord(0L, "One");
@@ -275,36 +276,32 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataFour);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
 
         target.copyDataForChunking();
 
         // when getting data to send
-        String obtained = target.getChunk("a", 100, '&');
+        String obtained = chunkToString(getChunk(target, "a", 100, '&'));
 
         // then
         assertThat(obtained, is("a&One&Four&Two&Three"));
-        assertThat(dataOne.isMarkedForSending(), is(true));
-        assertThat(dataTwo.isMarkedForSending(), is(true));
-        assertThat(dataThree.isMarkedForSending(), is(true));
-        assertThat(dataFour.isMarkedForSending(), is(true));
+        assertThat(allRecordsMarkedForSending(target.getEventDataBeingSent()), is(true));
+        assertThat(allRecordsMarkedForSending(target.getActionDataBeingSent()), is(true));
 
         // when getting data to send once more
-        obtained = target.getChunk("a", 100, '&');
+        obtained = chunkToString(getChunk(target, "a", 100, '&'));
 
         // then
         assertThat(obtained, is("a&One&Four&Two&Three"));
-        assertThat(dataOne.isMarkedForSending(), is(true));
-        assertThat(dataTwo.isMarkedForSending(), is(true));
-        assertThat(dataThree.isMarkedForSending(), is(true));
-        assertThat(dataFour.isMarkedForSending(), is(true));
+        assertThat(allRecordsMarkedForSending(target.getEventDataBeingSent()), is(true));
+        assertThat(allRecordsMarkedForSending(target.getActionDataBeingSent()), is(true));
     }
 
     @Test
-    public void getChunksTakesSizeIntoAccount() {
+    public void getChunksTakesSizeIntoAccount() throws IOException {
 
         // given
         BeaconCacheRecord dataOne = new BeaconCacheRecord(0L, "One");
@@ -313,27 +310,27 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataFour);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
 
         target.copyDataForChunking();
 
         // when requesting first chunk
-        String obtained = target.getChunk("prefix", 1, '&');
+        String obtained = chunkToString(getChunk(target, "prefix", 1, '&'));
 
         // then only prefix is returned, since "prefix".length > maxSize (=1)
         assertThat(obtained, is("prefix"));
 
         // and when retrieving something which is one character longer than "prefix"
-        obtained = target.getChunk("prefix", "prefix".length(), '&');
+        obtained = chunkToString(getChunk(target, "prefix", "prefix".length(), '&'));
 
         // then based on the algorithm prefix and first element are retrieved
         assertThat(obtained, is("prefix&One"));
 
         // and when retrieving another chunk
-        obtained = target.getChunk("prefix", "prefix&One".length(), '&');
+        obtained = chunkToString(getChunk(target, "prefix", "prefix&One".length(), '&'));
 
         // then
         assertThat(obtained, is("prefix&One&Four"));
@@ -349,10 +346,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataFour);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
 
         // when
         target.removeDataMarkedForSending();
@@ -374,10 +371,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataFour);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
 
         // when
         target.resetDataMarkedForSending();
@@ -399,10 +396,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataFour);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
 
         target.copyDataForChunking();
 
@@ -417,7 +414,7 @@ public class BeaconCacheEntryTest {
     }
 
     @Test
-    public void resetDataMarkedForSendingResetsMarkedForSendingFlag() {
+    public void resetDataMarkedForSendingResetsMarkedForSendingFlag() throws IOException {
 
         // given
         BeaconCacheRecord dataOne = new BeaconCacheRecord(0L, "One");
@@ -426,30 +423,26 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataFour);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
 
         target.copyDataForChunking();
 
         // when data is retrieved
-        target.getChunk("", 1024, '&');
+        getChunk(target, "", 1024, '&');
 
         // then all records are marked for sending
-        assertThat(dataOne.isMarkedForSending(), is(true));
-        assertThat(dataTwo.isMarkedForSending(), is(true));
-        assertThat(dataThree.isMarkedForSending(), is(true));
-        assertThat(dataFour.isMarkedForSending(), is(true));
+        assertThat(allRecordsMarkedForSending(target.getEventDataBeingSent()), is(true));
+        assertThat(allRecordsMarkedForSending(target.getActionDataBeingSent()), is(true));
 
         // and when
         target.resetDataMarkedForSending();
 
         // then
-        assertThat(dataOne.isMarkedForSending(), is(false));
-        assertThat(dataTwo.isMarkedForSending(), is(false));
-        assertThat(dataThree.isMarkedForSending(), is(false));
-        assertThat(dataFour.isMarkedForSending(), is(false));
+        assertThat(noRecordMarkedForSending(target.getEventData()), is(true));
+        assertThat(noRecordMarkedForSending(target.getActionData()), is(true));
     }
 
     @Test
@@ -467,26 +460,26 @@ public class BeaconCacheEntryTest {
         assertThat(target.getTotalNumberOfBytes(), is(0L));
 
         // and when adding first entry
-        target.addActionData(dataOne);
+        target.addActionData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
 
         // then
         assertThat(target.getTotalNumberOfBytes(), is(equalTo(dataOne.getDataSizeInBytes())));
 
         // and when adding next entry
-        target.addEventData(dataTwo);
+        target.addEventData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
 
         // then
         assertThat(target.getTotalNumberOfBytes(), is(equalTo(dataOne.getDataSizeInBytes() + dataTwo.getDataSizeInBytes())));
 
         // and when adding next entry
-        target.addEventData(dataThree);
+        target.addEventData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
 
         // then
         assertThat(target.getTotalNumberOfBytes(), is(equalTo(dataOne.getDataSizeInBytes() + dataTwo.getDataSizeInBytes() + dataThree
             .getDataSizeInBytes())));
 
         // and when adding next entry
-        target.addActionData(dataFour);
+        target.addActionData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
 
         // then
         assertThat(target.getTotalNumberOfBytes(), is(equalTo(dataOne.getDataSizeInBytes() + dataTwo.getDataSizeInBytes() + dataThree
@@ -516,10 +509,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1000L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addActionData(dataOne);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
-        target.addActionData(dataFour);
+        target.addActionData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
+        target.addActionData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
 
         // when removing everything older than 3000
         int obtained = target.removeRecordsOlderThan(dataTwo.getTimestamp());
@@ -539,10 +532,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1000L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataTwo);
-        target.addEventData(dataThree);
-        target.addEventData(dataFour);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addEventData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
 
         // when removing everything older than 3000
         int obtained = target.removeRecordsOlderThan(dataTwo.getTimestamp());
@@ -575,10 +568,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1000L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addActionData(dataOne);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
-        target.addActionData(dataFour);
+        target.addActionData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
+        target.addActionData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
 
         // when
         int obtained = target.removeOldestRecords(2);
@@ -598,10 +591,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1000L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataTwo);
-        target.addEventData(dataThree);
-        target.addEventData(dataFour);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addEventData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
 
         // when
         int obtained = target.removeOldestRecords(2);
@@ -621,10 +614,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1200L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
-        target.addEventData(dataFour);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
 
         // when
         int obtained = target.removeOldestRecords(1);
@@ -653,10 +646,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(dataTwo.getTimestamp(), "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataTwo);
-        target.addActionData(dataThree);
-        target.addActionData(dataFour);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
+        target.addActionData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
 
         // when
         int obtained = target.removeOldestRecords(1);
@@ -677,10 +670,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(1000L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataTwo);
-        target.addEventData(dataThree);
-        target.addEventData(dataFour);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addEventData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
 
         // when
         int obtained = target.removeOldestRecords(100);
@@ -701,10 +694,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(2500L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataFour);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
 
         target.copyDataForChunking();
 
@@ -728,10 +721,10 @@ public class BeaconCacheEntryTest {
         BeaconCacheRecord dataFour = new BeaconCacheRecord(2500L, "Four");
 
         BeaconCacheEntry target = new BeaconCacheEntry();
-        target.addEventData(dataOne);
-        target.addEventData(dataFour);
-        target.addActionData(dataTwo);
-        target.addActionData(dataThree);
+        target.addEventData(dataOne.getTimestamp(), BeaconCacheRecord.encodeData(dataOne.getData()));
+        target.addEventData(dataFour.getTimestamp(), BeaconCacheRecord.encodeData(dataFour.getData()));
+        target.addActionData(dataTwo.getTimestamp(), BeaconCacheRecord.encodeData(dataTwo.getData()));
+        target.addActionData(dataThree.getTimestamp(), BeaconCacheRecord.encodeData(dataThree.getData()));
 
         target.copyDataForChunking();
 
@@ -743,4 +736,117 @@ public class BeaconCacheEntryTest {
         assertThat(target.getEventDataBeingSent(), is(equalTo(Arrays.asList(dataOne, dataFour))));
         assertThat(target.getActionDataBeingSent(), is(equalTo(Arrays.asList(dataTwo, dataThree))));
     }
+
+    @Test
+    public void oldestTimestampIsTheOlderOfFirstEventAndFirstAction() {
+
+        // given
+        BeaconCacheEntry target = new BeaconCacheEntry();
+        target.addEventData(2000L, BeaconCacheRecord.encodeData("One"));
+        target.addEventData(500L, BeaconCacheRecord.encodeData("Two"));
+        target.addActionData(1500L, BeaconCacheRecord.encodeData("Three"));
+
+        // then
+        assertThat(target.hasRecords(), is(true));
+        assertThat(target.getOldestTimestamp(), is(1500L));
+    }
+
+    @Test
+    public void entryHasNoRecordsAfterCopyDataForChunking() {
+
+        // given
+        BeaconCacheEntry target = new BeaconCacheEntry();
+        target.addEventData(1000L, BeaconCacheRecord.encodeData("One"));
+
+        // when
+        target.copyDataForChunking();
+
+        // then
+        assertThat(target.hasRecords(), is(false));
+    }
+
+    @Test
+    public void removeOldestRecordsStopsWhenNumberOfBytesIsRemoved() {
+
+        // given
+        BeaconCacheEntry target = new BeaconCacheEntry();
+        target.addEventData(1000L, BeaconCacheRecord.encodeData("One"));
+        target.addActionData(1500L, BeaconCacheRecord.encodeData("Two"));
+        target.addEventData(2000L, BeaconCacheRecord.encodeData("Three"));
+
+        // when
+        int obtained = target.removeOldestRecords(4L, Long.MAX_VALUE);
+
+        // then
+        assertThat(obtained, is(2));
+        assertThat(target.getTotalNumberOfBytes(), is(5L));
+        assertThat(target.getOldestTimestamp(), is(2000L));
+    }
+
+    @Test
+    public void removeOldestRecordsStopsAtRecordNewerThanMaxTimestamp() {
+
+        // given
+        BeaconCacheEntry target = new BeaconCacheEntry();
+        target.addEventData(1000L, BeaconCacheRecord.encodeData("One"));
+        target.addActionData(1500L, BeaconCacheRecord.encodeData("Two"));
+        target.addEventData(2000L, BeaconCacheRecord.encodeData("Three"));
+
+        // when
+        int obtained = target.removeOldestRecords(100L, 1500L);
+
+        // then
+        assertThat(obtained, is(2));
+        assertThat(target.getOldestTimestamp(), is(2000L));
+    }
+
+    private static boolean allRecordsMarkedForSending(List<BeaconCacheRecord> records) {
+        for (BeaconCacheRecord record : records) {
+            if (!record.isMarkedForSending()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean noRecordMarkedForSending(List<BeaconCacheRecord> records) {
+        for (BeaconCacheRecord record : records) {
+            if (record.isMarkedForSending()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] getChunk(BeaconCacheEntry entry, String chunkPrefix, int maxSize, char delimiter) throws IOException {
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+        entry.writeChunk(chunkPrefix, maxSize, delimiter, chunk);
+        return chunk.toByteArray();
+    }
+
+    private static String chunkToString(byte[] chunk) {
+        return new String(chunk, BeaconCacheRecord.CHARSET);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addingEventDataToAReleasedEntryFails() {
+
+        // given
+        BeaconCacheEntry target = new BeaconCacheEntry();
+        target.release();
+
+        // when
+        target.addEventData(1000L, BeaconCacheRecord.encodeData("One"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void addingActionDataToAReleasedEntryFails() {
+
+        // given
+        BeaconCacheEntry target = new BeaconCacheEntry();
+        target.release();
+
+        // when
+        target.addActionData(1000L, BeaconCacheRecord.encodeData("One"));
+    }
 }
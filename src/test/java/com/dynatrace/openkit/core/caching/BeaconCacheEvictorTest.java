@@ -17,14 +17,13 @@
 package com.dynatrace.openkit.core.caching;
 
 import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.util.CoalescingSignal;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
-import java.util.Observable;
-import java.util.Observer;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
@@ -140,19 +139,19 @@ public class BeaconCacheEvictorTest {
     public void triggeringEvictionStrategiesInThread() throws Exception {
 
         // given
-        final Observer[] observers = new Observer[]{null};
-        final CountDownLatch addObserverLatch = new CountDownLatch(1);
+        final CoalescingSignal[] signals = new CoalescingSignal[]{null};
+        final CountDownLatch addSignalLatch = new CountDownLatch(1);
         final CyclicBarrier strategyInvokedBarrier = new CyclicBarrier(2);
 
         doAnswer(new Answer<Void>() {
             @Override
             public Void answer(InvocationOnMock invocation) throws Throwable {
-                observers[0] = (Observer) invocation.getArguments()[0];
-                addObserverLatch.countDown();
+                signals[0] = (CoalescingSignal) invocation.getArguments()[0];
+                addSignalLatch.countDown();
 
                 return null;
             }
-        }).when(mockBeaconCache).addObserver(org.mockito.Matchers.any(Observer.class));
+        }).when(mockBeaconCache).addDataAddedSignal(org.mockito.Matchers.any(CoalescingSignal.class));
 
         doAnswer(new Answer<Void>() {
             @Override
@@ -167,15 +166,15 @@ public class BeaconCacheEvictorTest {
         evictor = new BeaconCacheEvictor(mockLogger, mockBeaconCache, mockStrategyOne, mockStrategyTwo);
         evictor.start();
 
-        // wait until the eviction thread registered itself as observer
-        addObserverLatch.await();
+        // wait until the eviction thread registered its signal
+        addSignalLatch.await();
 
-        // verify the observer was set
-        assertThat(observers[0], is(notNullValue()));
+        // verify the signal was set
+        assertThat(signals[0], is(notNullValue()));
 
         // do some updates
         for (int i = 0; i < 10; i++) {
-            observers[0].update(mock(Observable.class), null);
+            signals[0].signal();
             strategyInvokedBarrier.await();
             strategyInvokedBarrier.reset();
         }
@@ -17,13 +17,17 @@
 package com.dynatrace.openkit.core.caching;
 
 import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.util.CoalescingSignal;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
-import java.util.Observer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
@@ -43,14 +47,14 @@ public class BeaconCacheImplTest {
 
     private Logger logger;
 
-    private Observer observer;
+    private CoalescingSignal dataAddedSignal;
 
     @Before
     public void setUp() {
         logger = mock(Logger.class);
         when(logger.isInfoEnabled()).thenReturn(true);
         when(logger.isDebugEnabled()).thenReturn(true);
-        observer = mock(Observer.class);
+        dataAddedSignal = mock(CoalescingSignal.class);
     }
 
     @Test
@@ -124,25 +128,143 @@ public class BeaconCacheImplTest {
     }
 
     @Test
-    public void addEventDataNotifiesObserver() {
+    public void getNumBytesInCacheForBeacon() {
 
         // given
         BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addEventData(1, 1000L, "a");
+        target.addActionData(1, 1001L, "iii");
+        target.addEventData(2, 1002L, "xyz");
+
+        // then
+        assertThat(target.getNumBytesInCache(1), is(new BeaconCacheRecord(1000L, "a").getDataSizeInBytes()
+            + new BeaconCacheRecord(1001L, "iii").getDataSizeInBytes()));
+        assertThat(target.getNumBytesInCache(2), is(new BeaconCacheRecord(1002L, "xyz").getDataSizeInBytes()));
+        assertThat(target.getNumBytesInCache(3), is(0L));
+    }
+
+    @Test
+    public void cacheSizeThresholdSignalIsSignalledWhenThresholdIsCrossed() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        long recordSize = new BeaconCacheRecord(1000L, "a").getDataSizeInBytes();
+        CoalescingSignal thresholdSignal = mock(CoalescingSignal.class);
+        target.addCacheSizeThresholdSignal(2 * recordSize, thresholdSignal);
+
+        // when staying below the threshold
+        target.addEventData(1, 1000L, "a");
+
+        // then
+        verify(thresholdSignal, times(0)).signal();
+
+        // when reaching the threshold and going above
+        target.addActionData(1, 1001L, "b");
+        target.addEventData(2, 1002L, "c");
+
+        // then the signal is signalled only once
+        verify(thresholdSignal, times(1)).signal();
+    }
 
-        target.addObserver(observer);
+    @Test
+    public void cacheSizeThresholdSignalIsSignalledAgainAfterCacheSizeDroppedBelowThreshold() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        long recordSize = new BeaconCacheRecord(1000L, "a").getDataSizeInBytes();
+        CoalescingSignal thresholdSignal = mock(CoalescingSignal.class);
+        target.addCacheSizeThresholdSignal(recordSize, thresholdSignal);
+        target.addEventData(1, 1000L, "a");
+
+        // when
+        target.deleteCacheEntry(1);
+        target.addEventData(1, 1001L, "b");
+
+        // then
+        verify(thresholdSignal, times(2)).signal();
+    }
+
+    @Test
+    public void criticalDataAddedSignalIsOnlySignalledForCriticalEventData() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        CoalescingSignal criticalDataAddedSignal = mock(CoalescingSignal.class);
+        target.addCriticalDataAddedSignal(criticalDataAddedSignal);
+
+        // when
+        target.addEventData(1, 1000L, "a");
+        target.addActionData(1, 1001L, "b");
+
+        // then
+        verify(criticalDataAddedSignal, times(0)).signal();
+
+        // and when
+        target.addCriticalEventData(1, 1002L, "crash");
+
+        // then
+        verify(criticalDataAddedSignal, times(1)).signal();
+    }
+
+    @Test
+    public void addEventDataSignalsDataAdded() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+
+        target.addDataAddedSignal(dataAddedSignal);
 
         // when adding an element
         target.addEventData(1, 1000L, "a");
 
-        // then verify observer got notified
-        verify(observer, times(1)).update(target, null);
+        // then verify signal was signalled
+        verify(dataAddedSignal, times(1)).signal();
 
         // when adding some more data
         target.addEventData(1, 1100L, "b");
         target.addEventData(666, 1200L, "xyz");
 
-        // then verify observer got notified another two times
-        verify(observer, times(3)).update(target, null);
+        // then verify signal was signalled another two times
+        verify(dataAddedSignal, times(3)).signal();
+    }
+
+    @Test
+    public void concurrentlyAddingDataForTheSameBeaconIdCreatesOnlyOneEntry() throws Exception {
+
+        // given
+        final BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        final int numThreads = 8;
+        final int numRecordsPerThread = 100;
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int record = 0; record < numRecordsPerThread; record++) {
+                        target.addEventData(1, record, "a");
+                    }
+                }
+            });
+            threads[i].start();
+        }
+
+        // when all threads insert at the same time
+        startLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // then
+        assertThat(target.getBeaconIDs(), is(Collections.singleton(1)));
+        assertThat(target.getEvents(1).length, is(equalTo(numThreads * numRecordsPerThread)));
+        assertThat(target.getNumBytesInCache(), is(equalTo(numThreads * numRecordsPerThread * new BeaconCacheRecord(0L, "a").getDataSizeInBytes())));
     }
 
     @Test
@@ -205,25 +327,25 @@ public class BeaconCacheImplTest {
     }
 
     @Test
-    public void addActionDataNotifiesObserver() {
+    public void addActionDataSignalsDataAdded() {
 
         // given
         BeaconCacheImpl target = new BeaconCacheImpl(logger);
 
-        target.addObserver(observer);
+        target.addDataAddedSignal(dataAddedSignal);
 
         // when adding an element
         target.addActionData(1, 1000L, "a");
 
-        // then verify observer got notified
-        verify(observer, times(1)).update(target, null);
+        // then verify signal was signalled
+        verify(dataAddedSignal, times(1)).signal();
 
         // when adding some more data
         target.addActionData(1, 1100L, "b");
         target.addActionData(666, 1200L, "xyz");
 
-        // then verify observer got notified another two times
-        verify(observer, times(3)).update(target, null);
+        // then verify signal was signalled another two times
+        verify(dataAddedSignal, times(3)).signal();
     }
 
     @Test
@@ -266,7 +388,7 @@ public class BeaconCacheImplTest {
     }
 
     @Test
-    public void deleteCacheEntryDoesNotNotifyObservers() {
+    public void deleteCacheEntryDoesNotSignalDataAdded() {
 
         // given
         BeaconCacheImpl target = new BeaconCacheImpl(logger);
@@ -274,14 +396,14 @@ public class BeaconCacheImplTest {
         target.addActionData(42, 1000L, "z");
         target.addEventData(1, 1000L, "iii");
 
-        target.addObserver(observer);
+        target.addDataAddedSignal(dataAddedSignal);
 
         // when deleting both entries
         target.deleteCacheEntry(1);
         target.deleteCacheEntry(42);
 
         // then
-        verifyZeroInteractions(observer);
+        verifyZeroInteractions(dataAddedSignal);
     }
 
     @Test
@@ -293,7 +415,7 @@ public class BeaconCacheImplTest {
         target.addActionData(42, 1000L, "z");
         target.addEventData(1, 1000L, "iii");
 
-        target.addObserver(observer);
+        target.addDataAddedSignal(dataAddedSignal);
 
         long cachedSize = target.getNumBytesInCache();
 
@@ -304,7 +426,7 @@ public class BeaconCacheImplTest {
         assertThat(target.getBeaconIDs(), containsInAnyOrder(1, 42));
         assertThat(target.getNumBytesInCache(), is(equalTo(cachedSize)));
 
-        verifyZeroInteractions(observer);
+        verifyZeroInteractions(dataAddedSignal);
     }
 
     @Test
@@ -317,12 +439,111 @@ public class BeaconCacheImplTest {
         target.addEventData(1, 1000L, "iii");
 
         // when
-        String obtained = target.getNextBeaconChunk(666, "", 1024, '&');
+        byte[] obtained = target.getNextBeaconChunk(666, "", 1024, '&');
 
         // then
         assertThat(obtained, is(nullValue()));
     }
 
+    @Test
+    public void writeNextBeaconChunkWritesNothingIfGivenBeaconIDDoesNotExist() throws IOException {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addActionData(1, 1000L, "a");
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+
+        // when
+        int obtained = target.writeNextBeaconChunk(666, "prefix", 1024, '&', chunk);
+
+        // then
+        assertThat(obtained, is(0));
+        assertThat(chunk.size(), is(0));
+    }
+
+    @Test
+    public void writeNextBeaconChunkWritesChunkToGivenStream() throws IOException {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addActionData(1, 1000L, "a");
+        target.addActionData(1, 1001L, "iii");
+        target.addEventData(1, 1000L, "b");
+        target.addEventData(1, 1001L, "jjj");
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+
+        // when
+        int obtained = target.writeNextBeaconChunk(1, "prefix", 10, '&', chunk);
+
+        // then
+        assertThat(chunkToString(chunk.toByteArray()), is("prefix&b&jjj"));
+        assertThat(obtained, is(chunk.size()));
+        assertThat(target.getNumBytesInCache(), is(0L));
+    }
+
+    @Test
+    public void writeNextBeaconChunkWritesNothingIfAllDataHasBeenSent() throws IOException {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addEventData(1, 1000L, "b");
+        target.writeNextBeaconChunk(1, "prefix", 1024, '&', new ByteArrayOutputStream());
+        target.removeChunkedData(1);
+        ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+
+        // when
+        int obtained = target.writeNextBeaconChunk(1, "prefix", 1024, '&', chunk);
+
+        // then
+        assertThat(obtained, is(0));
+        assertThat(chunk.size(), is(0));
+    }
+
+    @Test
+    public void hasNextBeaconChunkReturnsFalseIfGivenBeaconIDDoesNotExist() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addActionData(1, 1000L, "a");
+
+        // then
+        assertThat(target.hasNextBeaconChunk(666), is(false));
+    }
+
+    @Test
+    public void hasNextBeaconChunkCopiesDataForSending() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addActionData(1, 1000L, "a");
+
+        // when
+        boolean obtained = target.hasNextBeaconChunk(1);
+
+        // then
+        assertThat(obtained, is(true));
+        assertThat(target.getActions(1), is(emptyArray()));
+        assertThat(target.getActionsBeingSent(1), is(equalTo(Collections.singletonList(new BeaconCacheRecord(1000L, "a")))));
+    }
+
+    @Test
+    public void hasNextBeaconChunkReturnsFalseIfAllDataHasBeenSent() throws IOException {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addActionData(1, 1000L, "a");
+        target.writeNextBeaconChunk(1, "prefix", 1024, '&', new ByteArrayOutputStream());
+        target.removeChunkedData(1);
+
+        // when
+        boolean obtained = target.hasNextBeaconChunk(1);
+        target.addActionData(1, 1001L, "b");
+
+        // then
+        assertThat(obtained, is(false));
+        assertThat(target.hasNextBeaconChunk(1), is(true));
+    }
+
     @Test
     public void getNextBeaconChunkCopiesDataForSending() {
 
@@ -335,7 +556,7 @@ public class BeaconCacheImplTest {
         target.addEventData(1, 1001L, "jjj");
 
         // when
-        String obtained = target.getNextBeaconChunk(1, "prefix", 0, '&');
+        String obtained = chunkToString(target.getNextBeaconChunk(1, "prefix", 0, '&'));
 
         // then
         assertThat(obtained, is("prefix"));
@@ -376,7 +597,7 @@ public class BeaconCacheImplTest {
         target.addEventData(1, 1001L, "jjj");
 
         // when retrieving the first chunk
-        String obtained = target.getNextBeaconChunk(1, "prefix", 10, '&');
+        String obtained = chunkToString(target.getNextBeaconChunk(1, "prefix", 10, '&'));
 
         // then
         assertThat(obtained, is("prefix&b&jjj"));
@@ -402,7 +623,7 @@ public class BeaconCacheImplTest {
         target.addEventData(1, 1001L, "jjj");
 
         // when retrieving the first chunk and removing retrieved chunks
-        String obtained = target.getNextBeaconChunk(1, "prefix", 10, '&');
+        String obtained = chunkToString(target.getNextBeaconChunk(1, "prefix", 10, '&'));
         target.removeChunkedData(1);
 
         // then
@@ -412,7 +633,7 @@ public class BeaconCacheImplTest {
         assertThat(target.getEventsBeingSent(1), is(empty()));
 
         // when retrieving the second chunk and removing retrieved chunks
-        obtained = target.getNextBeaconChunk(1, "prefix", 10, '&');
+        obtained = chunkToString(target.getNextBeaconChunk(1, "prefix", 10, '&'));
         target.removeChunkedData(1);
 
         // then
@@ -494,11 +715,11 @@ public class BeaconCacheImplTest {
         target.resetChunkedData(1);
 
         // then
-        assertThat(target.getNumBytesInCache(), is(28L));
+        assertThat(target.getNumBytesInCache(), is(14L));
     }
 
     @Test
-    public void resetChunkedNotifiesObservers() {
+    public void resetChunkedSignalsDataAdded() {
 
         // given
         BeaconCacheImpl target = new BeaconCacheImpl(logger);
@@ -514,13 +735,13 @@ public class BeaconCacheImplTest {
         target.addActionData(1, 6666L, "123");
         target.addEventData(1, 6666L, "987");
 
-        target.addObserver(observer);
+        target.addDataAddedSignal(dataAddedSignal);
 
         // and when resetting the previously copied data
         target.resetChunkedData(1);
 
         // then
-        verify(observer, times(1)).update(target, null);
+        verify(dataAddedSignal, times(1)).signal();
     }
 
     @Test
@@ -540,14 +761,14 @@ public class BeaconCacheImplTest {
         target.addActionData(1, 6666L, "123");
         target.addEventData(1, 6666L, "987");
 
-        target.addObserver(observer);
+        target.addDataAddedSignal(dataAddedSignal);
 
         // and when resetting the previously copied data
         target.resetChunkedData(666);
 
         // then
-        assertThat(target.getNumBytesInCache(), is(12L));
-        verifyZeroInteractions(observer);
+        assertThat(target.getNumBytesInCache(), is(6L));
+        verifyZeroInteractions(dataAddedSignal);
     }
 
     @Test
@@ -582,6 +803,8 @@ public class BeaconCacheImplTest {
 
         // then
         assertThat(obtained, is(2));
+        assertThat(target.getNumBytesInCache(), is(equalTo(new BeaconCacheRecord(1001L, "iii").getDataSizeInBytes()
+            + new BeaconCacheRecord(1001L, "jjj").getDataSizeInBytes())));
     }
 
     @Test
@@ -616,6 +839,82 @@ public class BeaconCacheImplTest {
 
         // then
         assertThat(obtained, is(2));
+        assertThat(target.getNumBytesInCache(), is(equalTo(new BeaconCacheRecord(1001L, "iii").getDataSizeInBytes()
+            + new BeaconCacheRecord(1001L, "jjj").getDataSizeInBytes())));
+    }
+
+    @Test
+    public void evictRecordsBySizeEvictsGloballyOldestRecordsFirst() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addEventData(1, 1000L, "a");
+        target.addActionData(2, 1001L, "b");
+        target.addEventData(1, 1002L, "c");
+        target.addEventData(3, 1003L, "d");
+        target.addActionData(2, 1004L, "e");
+
+        // when
+        int obtained = target.evictRecordsBySize(2L);
+
+        // then
+        assertThat(obtained, is(3));
+        assertThat(target.getNumBytesInCache(), is(2L));
+        assertThat(target.getEvents(1), is(emptyArray()));
+        assertThat(target.getActions(2), is(equalTo(new String[]{"e"})));
+        assertThat(target.getEvents(3), is(equalTo(new String[]{"d"})));
+        assertThat(target.getOldestEvictionCandidate().getBeaconID(), is(3));
+    }
+
+    @Test
+    public void evictRecordsBySizeDoesNothingIfCacheSizeIsBelowLimit() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addEventData(1, 1000L, "a");
+
+        // when
+        int obtained = target.evictRecordsBySize(1L);
+
+        // then
+        assertThat(obtained, is(0));
+        assertThat(target.getEvents(1), is(equalTo(new String[]{"a"})));
+    }
+
+    @Test
+    public void evictRecordsBySizeDoesNotEvictRecordsBeingSent() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addEventData(1, 1000L, "a");
+        target.addEventData(2, 2000L, "b");
+        target.getNextBeaconChunk(1, "prefix", 0, '&');
+        target.addEventData(1, 3000L, "c");
+
+        // when
+        int obtained = target.evictRecordsBySize(0L);
+
+        // then
+        assertThat(obtained, is(2));
+        assertThat(target.getNumBytesInCache(), is(0L));
+        assertThat(target.getEventsBeingSent(1), is(equalTo(Collections.singletonList(new BeaconCacheRecord(1000L, "a")))));
+    }
+
+    @Test
+    public void evictRecordsBySizeStopsIfThreadIsInterrupted() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addEventData(1, 1000L, "a");
+        Thread.currentThread().interrupt();
+
+        // when
+        int obtained = target.evictRecordsBySize(0L);
+
+        // then
+        assertThat(Thread.interrupted(), is(true));
+        assertThat(obtained, is(0));
+        assertThat(target.getEvents(1), is(equalTo(new String[]{"a"})));
     }
 
     @Test
@@ -657,4 +956,144 @@ public class BeaconCacheImplTest {
         // then
         assertThat(target.isEmpty(1), is(true));
     }
+
+    @Test
+    public void oldestEvictionCandidateIsNullIfCacheIsEmpty() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+
+        // then
+        assertThat(target.getOldestEvictionCandidate(), is(nullValue()));
+    }
+
+    @Test
+    public void oldestEvictionCandidateIsTheBeaconWithTheGloballyOldestRecord() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addEventData(1, 2000L, "a");
+        target.addActionData(2, 1500L, "b");
+        target.addEventData(2, 3000L, "c");
+        target.addEventData(3, 1000L, "d");
+
+        // when
+        EvictionCandidate obtained = target.getOldestEvictionCandidate();
+
+        // then
+        assertThat(obtained.getBeaconID(), is(3));
+        assertThat(obtained.getOldestTimestamp(), is(1000L));
+    }
+
+    @Test
+    public void oldestEvictionCandidateIsUpdatedWhenRecordsAreEvicted() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addEventData(1, 1000L, "a");
+        target.addEventData(1, 4000L, "b");
+        target.addEventData(2, 2000L, "c");
+
+        // when
+        target.evictRecordsByNumber(1, 1);
+
+        // then
+        assertThat(target.getOldestEvictionCandidate().getBeaconID(), is(2));
+
+        // and when
+        target.evictRecordsByAge(2, 3000L);
+
+        // then
+        assertThat(target.getOldestEvictionCandidate().getBeaconID(), is(1));
+        assertThat(target.getOldestEvictionCandidate().getOldestTimestamp(), is(4000L));
+    }
+
+    @Test
+    public void recordsBeingSentAreNoEvictionCandidates() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addEventData(1, 1000L, "a");
+        target.addEventData(2, 2000L, "b");
+
+        // when
+        target.getNextBeaconChunk(1, "prefix", 1024, '&');
+
+        // then
+        assertThat(target.getOldestEvictionCandidate().getBeaconID(), is(2));
+
+        // and when sending fails
+        target.resetChunkedData(1);
+
+        // then
+        assertThat(target.getOldestEvictionCandidate().getBeaconID(), is(1));
+    }
+
+    @Test
+    public void deletedBeaconIsNoEvictionCandidate() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addEventData(1, 1000L, "a");
+
+        // when
+        target.deleteCacheEntry(1);
+
+        // then
+        assertThat(target.getOldestEvictionCandidate(), is(nullValue()));
+    }
+
+    @Test
+    public void numBytesOfABeaconFollowAddingChunkingAndResetting() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.addEventData(1, 1000L, "a");
+        target.addActionData(1, 1001L, "bc");
+
+        // when, then
+        assertThat(target.getNumBytesInCache(1), is(3L));
+        target.getNextBeaconChunk(1, "prefix", 1024, '&');
+        assertThat(target.getNumBytesInCache(1), is(0L));
+        target.resetChunkedData(1);
+        assertThat(target.getNumBytesInCache(1), is(3L));
+        target.deleteCacheEntry(1);
+        assertThat(target.getNumBytesInCache(1), is(0L));
+    }
+
+    @Test
+    public void dataAddedWhileDeletingTheCacheEntryIsAccountedFor() throws InterruptedException {
+
+        // given
+        final BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        final AtomicBoolean done = new AtomicBoolean(false);
+        Thread deleter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    target.deleteCacheEntry(1);
+                }
+            }
+        });
+        deleter.start();
+
+        // when
+        try {
+            for (int i = 0; i < 10000; i++) {
+                target.addEventData(1, i, "a");
+                target.addActionData(1, i, "b");
+            }
+        } finally {
+            done.set(true);
+            deleter.join();
+        }
+        target.deleteCacheEntry(1);
+
+        // then no record has been added to a deleted entry without being removed again
+        assertThat(target.getNumBytesInCache(), is(0L));
+    }
+
+    private static String chunkToString(byte[] chunk) {
+        return new String(chunk, BeaconCacheRecord.CHARSET);
+    }
 }
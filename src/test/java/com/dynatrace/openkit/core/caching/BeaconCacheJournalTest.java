@@ -0,0 +1,428 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+import com.dynatrace.openkit.api.Logger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class BeaconCacheJournalTest {
+
+    private static final int SEGMENT_SIZE = 1024;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Logger logger;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        logger = mock(Logger.class);
+        directory = temporaryFolder.newFolder("journal");
+    }
+
+    @Test
+    public void appendedRecordsAreRecoveredByNewJournal() throws IOException {
+
+        // given
+        BeaconCacheJournal journal = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        JournaledBeacon beacon = journal.newBeacon(1234L, "127.0.0.1", "vv=3&ap=app");
+        beacon.appendRecord(BeaconCacheJournal.TYPE_EVENT, 1000L, encode("event"));
+        beacon.appendRecord(BeaconCacheJournal.TYPE_ACTION, 1001L, encode("action"));
+
+        // when
+        RecordingVisitor obtained = recover();
+
+        // then
+        assertThat(obtained.beacons, contains("1234|127.0.0.1|vv=3&ap=app"));
+        assertThat(obtained.records, contains("1234|2|1000|event", "1234|3|1001|action"));
+    }
+
+    @Test
+    public void discardedRecordsAreNotRecovered() throws IOException {
+
+        // given
+        BeaconCacheJournal journal = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        JournaledBeacon beacon = journal.newBeacon(1234L, "", "prefix");
+        long first = beacon.appendRecord(BeaconCacheJournal.TYPE_EVENT, 1000L, encode("a"));
+        beacon.appendRecord(BeaconCacheJournal.TYPE_EVENT, 1001L, encode("b"));
+        beacon.discardRecord(first);
+
+        // when
+        RecordingVisitor obtained = recover();
+
+        // then
+        assertThat(obtained.records, contains("1234|2|1001|b"));
+    }
+
+    @Test
+    public void beaconWithoutLiveRecordsIsNotRecovered() throws IOException {
+
+        // given
+        BeaconCacheJournal journal = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        JournaledBeacon beacon = journal.newBeacon(1234L, "", "prefix");
+        beacon.discardRecord(beacon.appendRecord(BeaconCacheJournal.TYPE_EVENT, 1000L, encode("a")));
+
+        // when
+        RecordingVisitor obtained = recover();
+
+        // then
+        assertThat(obtained.beacons, is(empty()));
+        assertThat(obtained.records, is(empty()));
+    }
+
+    @Test
+    public void recordsOfDiscardedBeaconAreNotRecovered() throws IOException {
+
+        // given
+        BeaconCacheJournal journal = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        JournaledBeacon beacon = journal.newBeacon(1234L, "", "prefix");
+        beacon.appendRecord(BeaconCacheJournal.TYPE_EVENT, 1000L, encode("a"));
+        beacon.discard();
+
+        // when
+        RecordingVisitor obtained = recover();
+
+        // then
+        assertThat(obtained.beacons, is(empty()));
+        assertThat(obtained.records, is(empty()));
+    }
+
+    @Test
+    public void beaconWithoutRecordsIsNotWritten() throws IOException {
+
+        // given
+        BeaconCacheJournal journal = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+
+        // when
+        journal.newBeacon(1234L, "", "prefix");
+
+        // then
+        assertThat(journal.getNumSegments(), is(0));
+        assertThat(directory.list().length, is(0));
+    }
+
+    @Test
+    public void segmentsAreDeletedWhenAllEntriesAreDiscarded() throws IOException {
+
+        // given
+        BeaconCacheJournal journal = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        JournaledBeacon beacon = journal.newBeacon(1234L, "", "prefix");
+        List<Long> entryIDs = new ArrayList<Long>();
+        for (int i = 0; i < 100; i++) {
+            entryIDs.add(beacon.appendRecord(BeaconCacheJournal.TYPE_EVENT, i, encode("record number " + i)));
+        }
+        assertThat(journal.getNumSegments(), is(greaterThan(1)));
+
+        // when
+        for (Long entryID : entryIDs) {
+            beacon.discardRecord(entryID);
+        }
+        beacon.discard();
+
+        // then only the active segment is left
+        assertThat(journal.getNumSegments(), is(1));
+        assertThat(directory.list().length, is(1));
+    }
+
+    @Test
+    public void beaconEntryOfLongLivingBeaconDoesNotKeepOldSegments() throws IOException {
+
+        // given
+        BeaconCacheJournal journal = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        JournaledBeacon beacon = journal.newBeacon(1234L, "", "prefix");
+
+        // when records are sent as soon as they are written
+        for (int i = 0; i < 100; i++) {
+            beacon.discardRecord(beacon.appendRecord(BeaconCacheJournal.TYPE_EVENT, i, encode("record number " + i)));
+        }
+        long last = beacon.appendRecord(BeaconCacheJournal.TYPE_EVENT, 100L, encode("last"));
+
+        // then
+        assertThat(journal.getNumSegments(), is(1));
+        RecordingVisitor obtained = recover();
+        assertThat(obtained.beacons, contains("1234||prefix"));
+        assertThat(obtained.records, contains("1234|2|100|last"));
+        assertThat(last, is(not(JournaledBeacon.NO_ENTRY)));
+    }
+
+    @Test
+    public void recordsLargerThanSegmentSizeAreWritten() throws IOException {
+
+        // given
+        BeaconCacheJournal journal = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        JournaledBeacon beacon = journal.newBeacon(1234L, "", "prefix");
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 2 * SEGMENT_SIZE; i++) {
+            data.append('x');
+        }
+
+        // when
+        beacon.appendRecord(BeaconCacheJournal.TYPE_ACTION, 1000L, encode(data.toString()));
+
+        // then
+        RecordingVisitor obtained = recover();
+        assertThat(obtained.records, contains("1234|3|1000|" + data));
+    }
+
+    @Test
+    public void recoveryStopsAtIncompleteEntry() throws IOException {
+
+        // given
+        BeaconCacheJournal journal = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        JournaledBeacon beacon = journal.newBeacon(1234L, "", "prefix");
+        beacon.appendRecord(BeaconCacheJournal.TYPE_EVENT, 1000L, encode("a"));
+        long second = beacon.appendRecord(BeaconCacheJournal.TYPE_EVENT, 1001L, encode("b"));
+        journal.force();
+
+        // when the checksum of the second record does not match
+        RandomAccessFile file = new RandomAccessFile(directory.listFiles()[0], "rw");
+        try {
+            int offset = (int) second;
+            file.seek(offset + BeaconCacheJournal.ENTRY_HEADER_SIZE);
+            file.write('c');
+        } finally {
+            file.close();
+        }
+
+        // then
+        RecordingVisitor obtained = recover();
+        assertThat(obtained.records, contains("1234|2|1000|a"));
+    }
+
+    @Test
+    public void recoveryIsOnlyDoneOnce() throws IOException {
+
+        // given
+        BeaconCacheJournal journal = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        journal.newBeacon(1234L, "", "prefix").appendRecord(BeaconCacheJournal.TYPE_EVENT, 1000L, encode("a"));
+        BeaconCacheJournal target = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        target.recover(new RecordingVisitor());
+
+        // when
+        RecordingVisitor obtained = new RecordingVisitor();
+        target.recover(obtained);
+
+        // then
+        assertThat(obtained.beacons, is(empty()));
+        assertThat(obtained.records, is(empty()));
+    }
+
+    @Test
+    public void newBeaconsDoNotReuseRecoveredBeaconIDs() throws IOException {
+
+        // given
+        BeaconCacheJournal journal = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        JournaledBeacon recoveredBeacon = journal.newBeacon(1234L, "", "prefix");
+        recoveredBeacon.appendRecord(BeaconCacheJournal.TYPE_EVENT, 1000L, encode("a"));
+        BeaconCacheJournal target = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        target.recover(new RecordingVisitor());
+
+        // when
+        JournaledBeacon obtained = target.newBeacon(5678L, "", "prefix");
+
+        // then
+        assertThat(obtained.getBeaconID(), is(greaterThan(recoveredBeacon.getBeaconID())));
+    }
+
+    @Test
+    public void readReturnsRecordData() throws IOException {
+
+        // given
+        BeaconCacheJournal target = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        long entryID = target.newBeacon(1234L, "", "prefix").appendRecord(BeaconCacheJournal.TYPE_EVENT, 1000L, encode("data"));
+
+        // when
+        byte[] obtained = target.read(entryID, 4);
+
+        // then
+        assertThat(new String(obtained, BeaconCacheRecord.CHARSET), is("data"));
+    }
+
+    @Test
+    public void readDoesNotWaitForTheJournalLock() throws Exception {
+
+        // given
+        final BeaconCacheJournal target = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        final long entryID = target.newBeacon(1234L, "", "prefix").appendRecord(BeaconCacheJournal.TYPE_EVENT, 1000L, encode("data"));
+        final AtomicReference<byte[]> obtained = new AtomicReference<byte[]>();
+        Thread reader = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                obtained.set(target.read(entryID, 4));
+            }
+        });
+
+        // when another thread holds the lock, e.g. while appending
+        synchronized (target) {
+            reader.start();
+            reader.join(5000);
+        }
+
+        // then
+        assertThat(obtained.get(), is(notNullValue()));
+        assertThat(new String(obtained.get(), BeaconCacheRecord.CHARSET), is("data"));
+    }
+
+    @Test
+    public void syncForcesSegmentsRolledSinceTheLastSync() throws IOException {
+
+        // given
+        BeaconCacheJournal target = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        JournaledBeacon beacon = target.newBeacon(1234L, "", "prefix");
+        int numRecords = 0;
+        while (target.getNumSegments() < 3) {
+            beacon.appendRecord(BeaconCacheJournal.TYPE_EVENT, numRecords, encode("record " + numRecords));
+            numRecords++;
+        }
+
+        // when
+        target.sync();
+
+        // then all segments are forced by a single sync
+        assertThat(target.getNumSyncs(), is(1L));
+        assertThat(recover().records.size(), is(numRecords));
+    }
+
+    @Test
+    public void syncWithoutAppendedEntriesDoesNotForce() throws IOException {
+
+        // given
+        BeaconCacheJournal target = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+
+        // when
+        target.sync();
+
+        // then
+        assertThat(target.getNumSyncs(), is(0L));
+    }
+
+    @Test
+    public void syncForcesAppendedEntriesOnlyOnce() throws IOException {
+
+        // given
+        BeaconCacheJournal target = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        target.newBeacon(1234L, "", "prefix").appendRecord(BeaconCacheJournal.TYPE_EVENT, 1000L, encode("a"));
+
+        // when
+        target.sync();
+        target.sync();
+
+        // then
+        assertThat(target.getNumSyncs(), is(1L));
+    }
+
+    @Test
+    public void syncAfterForceDoesNotForceAgain() throws IOException {
+
+        // given
+        BeaconCacheJournal target = new BeaconCacheJournal(logger, directory, SEGMENT_SIZE);
+        target.newBeacon(1234L, "", "prefix").appendRecord(BeaconCacheJournal.TYPE_EVENT, 1000L, encode("a"));
+        target.force();
+
+        // when
+        target.sync();
+
+        // then
+        assertThat(target.getNumSyncs(), is(0L));
+    }
+
+    @Test
+    public void concurrentSyncsShareForceOperations() throws Exception {
+
+        // given
+        final int numThreads = 8;
+        final BeaconCacheJournal target = new BeaconCacheJournal(logger, directory, 64 * SEGMENT_SIZE);
+        final JournaledBeacon beacon = target.newBeacon(1234L, "", "prefix");
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        Thread[] threads = new Thread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            final int threadNumber = i;
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        startLatch.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    beacon.appendRecord(BeaconCacheJournal.TYPE_EVENT, threadNumber, encode("crash " + threadNumber));
+                    target.sync();
+                }
+            });
+            threads[i].start();
+        }
+
+        // when
+        startLatch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // then
+        assertThat(target.getNumSyncs(), is(both(greaterThan(0L)).and(lessThanOrEqualTo((long) numThreads))));
+        assertThat(recover().records.size(), is(numThreads));
+    }
+
+    private RecordingVisitor recover() throws IOException {
+        RecordingVisitor visitor = new RecordingVisitor();
+        new BeaconCacheJournal(logger, directory, SEGMENT_SIZE).recover(visitor);
+        return visitor;
+    }
+
+    private static byte[] encode(String data) {
+        return BeaconCacheRecord.encodeData(data);
+    }
+
+    private static final class RecordingVisitor implements BeaconCacheJournal.RecoveryVisitor {
+
+        private final List<String> beacons = new ArrayList<String>();
+        private final List<String> records = new ArrayList<String>();
+
+        @Override
+        public void onBeacon(JournaledBeacon beacon) {
+            beacons.add(beacon.getSessionStartTime() + "|" + beacon.getClientIPAddress() + "|" + beacon.getImmutableBeaconData());
+        }
+
+        @Override
+        public void onRecord(JournaledBeacon beacon, byte type, long timestamp, byte[] data, long entryID) {
+            records.add(beacon.getSessionStartTime() + "|" + type + "|" + timestamp + "|" + new String(data, BeaconCacheRecord.CHARSET));
+        }
+    }
+}
@@ -0,0 +1,430 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BeaconCacheRecordListTest {
+
+    private static final byte[] DELIMITER = BeaconCacheRecord.encodeData("&");
+
+    @Test
+    public void aDefaultConstructedListIsEmpty() {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList();
+
+        // then
+        assertThat(target.isEmpty(), is(true));
+        assertThat(target.size(), is(0));
+        assertThat(target.getNumBytes(), is(0L));
+        assertThat(target.getNumRecordsMarkedForSending(), is(0));
+        assertThat(target.toRecords(), is(empty()));
+    }
+
+    @Test
+    public void addAppendsRecordsAcrossMultipleSegments() {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList();
+        int numRecords = BeaconCacheRecordList.MIN_SEGMENT_CAPACITY + BeaconCacheRecordList.MAX_SEGMENT_CAPACITY + 1;
+
+        // when
+        for (int i = 0; i < numRecords; i++) {
+            target.add(i, BeaconCacheRecord.encodeData("a"));
+        }
+
+        // then
+        assertThat(target.size(), is(numRecords));
+        assertThat(target.getNumBytes(), is(numRecords * new BeaconCacheRecord(0L, "a").getDataSizeInBytes()));
+        List<BeaconCacheRecord> records = target.toRecords();
+        assertThat(records.size(), is(numRecords));
+        for (int i = 0; i < numRecords; i++) {
+            assertThat(records.get(i), is(new BeaconCacheRecord(i, "a")));
+        }
+    }
+
+    @Test
+    public void moveAllFromAppendsOtherRecordsAndClearsOther() {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList();
+        target.add(1L, BeaconCacheRecord.encodeData("a"));
+        BeaconCacheRecordList other = new BeaconCacheRecordList();
+        other.add(2L, BeaconCacheRecord.encodeData("bb"));
+        other.add(3L, BeaconCacheRecord.encodeData("ccc"));
+
+        // when
+        target.moveAllFrom(other);
+
+        // then
+        assertThat(target.toRecords(), contains(new BeaconCacheRecord(1L, "a"),
+            new BeaconCacheRecord(2L, "bb"),
+            new BeaconCacheRecord(3L, "ccc")));
+        assertThat(target.getNumBytes(), is(6L));
+        assertThat(other.isEmpty(), is(true));
+        assertThat(other.getNumBytes(), is(0L));
+    }
+
+    @Test
+    public void addingToAListAfterMoveAllFromAppendsAtTheEnd() {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList();
+        BeaconCacheRecordList other = new BeaconCacheRecordList();
+        other.add(1L, BeaconCacheRecord.encodeData("a"));
+        target.moveAllFrom(other);
+
+        // when
+        target.add(2L, BeaconCacheRecord.encodeData("b"));
+        other.add(3L, BeaconCacheRecord.encodeData("c"));
+
+        // then
+        assertThat(target.toRecords(), contains(new BeaconCacheRecord(1L, "a"), new BeaconCacheRecord(2L, "b")));
+        assertThat(other.toRecords(), contains(new BeaconCacheRecord(3L, "c")));
+    }
+
+    @Test
+    public void removeFirstRemovesRecordsFromTheBeginning() {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList();
+        for (int i = 0; i < BeaconCacheRecordList.MIN_SEGMENT_CAPACITY + 2; i++) {
+            target.add(i, BeaconCacheRecord.encodeData("a"));
+        }
+
+        // when
+        int obtained = target.removeFirst(BeaconCacheRecordList.MIN_SEGMENT_CAPACITY + 1);
+
+        // then
+        assertThat(obtained, is(BeaconCacheRecordList.MIN_SEGMENT_CAPACITY + 1));
+        assertThat(target.size(), is(1));
+        assertThat(target.getNumBytes(), is(1L));
+        assertThat(target.getFirstTimestamp(), is((long) BeaconCacheRecordList.MIN_SEGMENT_CAPACITY + 1));
+    }
+
+    @Test
+    public void removeFirstDoesNotRemoveMoreRecordsThanAvailable() {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList();
+        target.add(1L, BeaconCacheRecord.encodeData("a"));
+        target.add(2L, BeaconCacheRecord.encodeData("b"));
+
+        // when
+        int obtained = target.removeFirst(5);
+
+        // then
+        assertThat(obtained, is(2));
+        assertThat(target.isEmpty(), is(true));
+        assertThat(target.getNumBytes(), is(0L));
+
+        // and when adding again
+        target.add(3L, BeaconCacheRecord.encodeData("c"));
+
+        // then
+        assertThat(target.toRecords(), contains(new BeaconCacheRecord(3L, "c")));
+    }
+
+    @Test
+    public void removeRecordsOlderThanRetainsOrderOfRemainingRecords() {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList();
+        for (int i = 0; i < 3 * BeaconCacheRecordList.MIN_SEGMENT_CAPACITY; i++) {
+            // alternating old and new timestamps
+            target.add((i & 1) == 0 ? i : 1000L + i, BeaconCacheRecord.encodeData("a"));
+        }
+
+        // when
+        int obtained = target.removeRecordsOlderThan(1000L);
+
+        // then
+        assertThat(obtained, is(3 * BeaconCacheRecordList.MIN_SEGMENT_CAPACITY / 2));
+        assertThat(target.size(), is(3 * BeaconCacheRecordList.MIN_SEGMENT_CAPACITY / 2));
+        assertThat(target.getNumBytes(), is(3L * BeaconCacheRecordList.MIN_SEGMENT_CAPACITY / 2));
+        List<BeaconCacheRecord> records = target.toRecords();
+        for (int i = 0; i < records.size(); i++) {
+            assertThat(records.get(i).getTimestamp(), is(1000L + 2 * i + 1));
+        }
+    }
+
+    @Test
+    public void removeRecordsOlderThanCanRemoveAllRecords() {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList();
+        for (int i = 0; i < 2 * BeaconCacheRecordList.MIN_SEGMENT_CAPACITY; i++) {
+            target.add(i, BeaconCacheRecord.encodeData("a"));
+        }
+
+        // when
+        int obtained = target.removeRecordsOlderThan(Long.MAX_VALUE);
+        target.add(1L, BeaconCacheRecord.encodeData("b"));
+
+        // then
+        assertThat(obtained, is(2 * BeaconCacheRecordList.MIN_SEGMENT_CAPACITY));
+        assertThat(target.toRecords(), contains(new BeaconCacheRecord(1L, "b")));
+        assertThat(target.getNumBytes(), is(1L));
+    }
+
+    @Test
+    public void removeRecordsOlderThanDropsExpiredSegmentsAndKeepsNewerOnes() {
+
+        // given records in timestamp order, spanning three segments
+        BeaconCacheRecordList target = new BeaconCacheRecordList();
+        int numRecords = 2 * BeaconCacheRecordList.MIN_SEGMENT_CAPACITY + 4 * BeaconCacheRecordList.MIN_SEGMENT_CAPACITY;
+        for (int i = 0; i < numRecords; i++) {
+            target.add(i, BeaconCacheRecord.encodeData("ab"));
+        }
+        long minTimestamp = BeaconCacheRecordList.MIN_SEGMENT_CAPACITY * 3 + 2;
+
+        // when
+        int obtained = target.removeRecordsOlderThan(minTimestamp);
+
+        // then
+        assertThat(obtained, is((int) minTimestamp));
+        assertThat(target.size(), is(numRecords - (int) minTimestamp));
+        assertThat(target.getNumBytes(), is(2L * (numRecords - minTimestamp)));
+        assertThat(target.getFirstTimestamp(), is(minTimestamp));
+        assertThat(target.toRecords().get(target.size() - 1).getTimestamp(), is(numRecords - 1L));
+    }
+
+    @Test
+    public void removeRecordsOlderThanFindsOutOfOrderRecordInLaterSegment() {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList();
+        for (int i = 0; i < BeaconCacheRecordList.MIN_SEGMENT_CAPACITY; i++) {
+            target.add(1000L + i, BeaconCacheRecord.encodeData("a"));
+        }
+        target.add(10L, BeaconCacheRecord.encodeData("old"));
+        target.add(2000L, BeaconCacheRecord.encodeData("a"));
+
+        // when
+        int obtained = target.removeRecordsOlderThan(1000L);
+
+        // then
+        assertThat(obtained, is(1));
+        assertThat(target.size(), is(BeaconCacheRecordList.MIN_SEGMENT_CAPACITY + 1));
+        assertThat(target.getNumBytes(), is(BeaconCacheRecordList.MIN_SEGMENT_CAPACITY + 1L));
+    }
+
+    @Test
+    public void removeRecordsOlderThanAfterRemoveFirstKeepsCorrectSize() {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList();
+        for (int i = 0; i < 2 * BeaconCacheRecordList.MIN_SEGMENT_CAPACITY; i++) {
+            target.add(i, BeaconCacheRecord.encodeData("a"));
+        }
+        target.removeFirst(2);
+
+        // when
+        int obtained = target.removeRecordsOlderThan(BeaconCacheRecordList.MIN_SEGMENT_CAPACITY);
+
+        // then
+        assertThat(obtained, is(BeaconCacheRecordList.MIN_SEGMENT_CAPACITY - 2));
+        assertThat(target.size(), is(BeaconCacheRecordList.MIN_SEGMENT_CAPACITY));
+        assertThat(target.getNumBytes(), is((long) BeaconCacheRecordList.MIN_SEGMENT_CAPACITY));
+    }
+
+    @Test
+    public void appendToChunkMarksAppendedRecordsForSending() throws IOException {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList();
+        target.add(1L, BeaconCacheRecord.encodeData("One"));
+        target.add(2L, BeaconCacheRecord.encodeData("Two"));
+        target.add(3L, BeaconCacheRecord.encodeData("Three"));
+        ByteArrayOutputStream chunkBuilder = new ByteArrayOutputStream();
+        chunkBuilder.write(BeaconCacheRecord.encodeData("prefix"), 0, "prefix".length());
+
+        // when
+        target.appendToChunk(chunkBuilder, chunkBuilder.size(), 10, DELIMITER);
+
+        // then
+        assertThat(new String(chunkBuilder.toByteArray(), BeaconCacheRecord.CHARSET), is("prefix&One&Two"));
+        assertThat(target.getNumRecordsMarkedForSending(), is(2));
+
+        BeaconCacheRecord recordOne = new BeaconCacheRecord(1L, "One");
+        recordOne.markForSending();
+        BeaconCacheRecord recordTwo = new BeaconCacheRecord(2L, "Two");
+        recordTwo.markForSending();
+        assertThat(target.toRecords(), contains(recordOne, recordTwo, new BeaconCacheRecord(3L, "Three")));
+    }
+
+    @Test
+    public void removeRecordsMarkedForSendingOnlyRemovesMarkedRecords() throws IOException {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList();
+        target.add(1L, BeaconCacheRecord.encodeData("One"));
+        target.add(2L, BeaconCacheRecord.encodeData("Two"));
+        target.add(3L, BeaconCacheRecord.encodeData("Three"));
+        target.appendToChunk(new ByteArrayOutputStream(), 0, 4, DELIMITER);
+
+        // when
+        target.removeRecordsMarkedForSending();
+
+        // then
+        assertThat(target.toRecords(), contains(new BeaconCacheRecord(3L, "Three")));
+        assertThat(target.getNumRecordsMarkedForSending(), is(0));
+    }
+
+    @Test
+    public void unsetSendingMarksResetsAllMarks() throws IOException {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList();
+        target.add(1L, BeaconCacheRecord.encodeData("One"));
+        target.add(2L, BeaconCacheRecord.encodeData("Two"));
+        target.appendToChunk(new ByteArrayOutputStream(), 0, 100, DELIMITER);
+
+        // when
+        target.unsetSendingMarks();
+        target.removeRecordsMarkedForSending();
+
+        // then
+        assertThat(target.getNumRecordsMarkedForSending(), is(0));
+        assertThat(target.toRecords(), contains(new BeaconCacheRecord(1L, "One"), new BeaconCacheRecord(2L, "Two")));
+    }
+
+    @Test
+    public void offHeapListStoresRecordsAcrossMultipleSegments() {
+
+        // given
+        DirectByteBufferPool bufferPool = new DirectByteBufferPool();
+        BeaconCacheRecordList target = new BeaconCacheRecordList(bufferPool);
+        int numRecords = BeaconCacheRecordList.MIN_SEGMENT_CAPACITY + BeaconCacheRecordList.MAX_SEGMENT_CAPACITY + 1;
+
+        // when
+        for (int i = 0; i < numRecords; i++) {
+            target.add(i, BeaconCacheRecord.encodeData("record" + i));
+        }
+
+        // then
+        assertThat(target.size(), is(numRecords));
+        List<BeaconCacheRecord> records = target.toRecords();
+        for (int i = 0; i < numRecords; i++) {
+            assertThat(records.get(i), is(new BeaconCacheRecord(i, "record" + i)));
+        }
+    }
+
+    @Test
+    public void offHeapListStartsNewSegmentIfRecordDoesNotFitIntoBuffer() {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList(new DirectByteBufferPool());
+        byte[] largeRecord = new byte[DirectByteBufferPool.MAX_BUFFER_SIZE + 1];
+        Arrays.fill(largeRecord, (byte) 'x');
+
+        // when
+        target.add(1L, BeaconCacheRecord.encodeData("a"));
+        target.add(2L, largeRecord);
+        target.add(3L, BeaconCacheRecord.encodeData("b"));
+
+        // then
+        assertThat(target.size(), is(3));
+        assertThat(target.getNumBytes(), is(largeRecord.length + 2L));
+        assertThat(target.toRecords().get(1).getData().length(), is(largeRecord.length));
+        assertThat(target.toRecords().get(2), is(new BeaconCacheRecord(3L, "b")));
+    }
+
+    @Test
+    public void offHeapListAppendsRecordsToChunkAndRemovesThemAfterwards() throws IOException {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList(new DirectByteBufferPool());
+        target.add(1L, BeaconCacheRecord.encodeData("One"));
+        target.add(2L, BeaconCacheRecord.encodeData("Two"));
+        target.add(3L, BeaconCacheRecord.encodeData("Three"));
+        ByteArrayOutputStream chunkBuilder = new ByteArrayOutputStream();
+
+        // when
+        target.appendToChunk(chunkBuilder, 0, 4, DELIMITER);
+        target.removeRecordsMarkedForSending();
+
+        // then
+        assertThat(new String(chunkBuilder.toByteArray(), BeaconCacheRecord.CHARSET), is("&One&Two"));
+        assertThat(target.toRecords(), contains(new BeaconCacheRecord(3L, "Three")));
+        assertThat(target.getNumBytes(), is(5L));
+    }
+
+    @Test
+    public void offHeapListRemoveRecordsOlderThanRetainsData() {
+
+        // given
+        BeaconCacheRecordList target = new BeaconCacheRecordList(new DirectByteBufferPool());
+        target.add(1L, BeaconCacheRecord.encodeData("One"));
+        target.add(1000L, BeaconCacheRecord.encodeData("Two"));
+        target.add(2L, BeaconCacheRecord.encodeData("Three"));
+        target.add(1001L, BeaconCacheRecord.encodeData("Four"));
+
+        // when
+        int obtained = target.removeRecordsOlderThan(1000L);
+
+        // then
+        assertThat(obtained, is(2));
+        assertThat(target.toRecords(), contains(new BeaconCacheRecord(1000L, "Two"), new BeaconCacheRecord(1001L, "Four")));
+        assertThat(target.getNumBytes(), is(7L));
+    }
+
+    @Test
+    public void offHeapListGivesBuffersBackToPoolWhenRecordsAreRemoved() {
+
+        // given
+        DirectByteBufferPool bufferPool = new DirectByteBufferPool();
+        BeaconCacheRecordList target = new BeaconCacheRecordList(bufferPool);
+        target.add(1L, BeaconCacheRecord.encodeData("One"));
+
+        // when
+        target.removeFirst();
+
+        // then
+        assertThat(bufferPool.getPooledBytes(), is((long) DirectByteBufferPool.MIN_BUFFER_SIZE));
+    }
+
+    @Test
+    public void releaseGivesAllBuffersBackToPool() {
+
+        // given
+        DirectByteBufferPool bufferPool = new DirectByteBufferPool();
+        BeaconCacheRecordList target = new BeaconCacheRecordList(bufferPool);
+        for (int i = 0; i < BeaconCacheRecordList.MIN_SEGMENT_CAPACITY + 1; i++) {
+            target.add(i, BeaconCacheRecord.encodeData("a"));
+        }
+
+        // when
+        target.release();
+
+        // then
+        assertThat(target.isEmpty(), is(true));
+        assertThat(target.getNumBytes(), is(0L));
+        assertThat(bufferPool.getPooledBytes(), is(3L * DirectByteBufferPool.MIN_BUFFER_SIZE));
+    }
+}
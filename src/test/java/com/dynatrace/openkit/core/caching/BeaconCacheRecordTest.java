@@ -61,9 +61,11 @@ public class BeaconCacheRecordTest {
         assertThat(new BeaconCacheRecord(0L, "").getDataSizeInBytes(), is(0L));
 
         // and when data is valid, then
-        assertThat(new BeaconCacheRecord(0L, "a").getDataSizeInBytes(), is(2L));
-        assertThat(new BeaconCacheRecord(0L, "ab").getDataSizeInBytes(), is(4L));
-        assertThat(new BeaconCacheRecord(0L, "abc").getDataSizeInBytes(), is(6L));
+        assertThat(new BeaconCacheRecord(0L, "a").getDataSizeInBytes(), is(1L));
+        assertThat(new BeaconCacheRecord(0L, "ab").getDataSizeInBytes(), is(2L));
+        assertThat(new BeaconCacheRecord(0L, "abc").getDataSizeInBytes(), is(3L));
+        assertThat(new BeaconCacheRecord(0L, "\u00e4").getDataSizeInBytes(), is(2L));
+        assertThat(new BeaconCacheRecord(0L, "\u20ac").getDataSizeInBytes(), is(3L));
     }
 
     @Test
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class DirectByteBufferPoolTest {
+
+    @Test
+    public void acquireReturnsDirectBufferRoundedUpToSizeClass() {
+
+        // given
+        DirectByteBufferPool target = new DirectByteBufferPool();
+
+        // then
+        assertThat(target.acquire(1).isDirect(), is(true));
+        assertThat(target.acquire(1).capacity(), is(DirectByteBufferPool.MIN_BUFFER_SIZE));
+        assertThat(target.acquire(DirectByteBufferPool.MIN_BUFFER_SIZE).capacity(), is(DirectByteBufferPool.MIN_BUFFER_SIZE));
+        assertThat(target.acquire(DirectByteBufferPool.MIN_BUFFER_SIZE + 1).capacity(), is(2 * DirectByteBufferPool.MIN_BUFFER_SIZE));
+        assertThat(target.acquire(DirectByteBufferPool.MAX_BUFFER_SIZE).capacity(), is(DirectByteBufferPool.MAX_BUFFER_SIZE));
+    }
+
+    @Test
+    public void acquireReturnsExactlySizedBufferForLargeRequests() {
+
+        // given
+        DirectByteBufferPool target = new DirectByteBufferPool();
+
+        // when
+        ByteBuffer obtained = target.acquire(DirectByteBufferPool.MAX_BUFFER_SIZE + 1);
+
+        // then
+        assertThat(obtained.capacity(), is(DirectByteBufferPool.MAX_BUFFER_SIZE + 1));
+    }
+
+    @Test
+    public void releasedBuffersAreReusedAndCleared() {
+
+        // given
+        DirectByteBufferPool target = new DirectByteBufferPool();
+        ByteBuffer buffer = target.acquire(100);
+        buffer.put(new byte[42]);
+
+        // when
+        target.release(buffer);
+
+        // then
+        assertThat(target.getPooledBytes(), is((long) DirectByteBufferPool.MIN_BUFFER_SIZE));
+
+        // and when
+        ByteBuffer obtained = target.acquire(200);
+
+        // then
+        assertThat(obtained, is(sameInstance(buffer)));
+        assertThat(obtained.position(), is(0));
+        assertThat(obtained.remaining(), is(DirectByteBufferPool.MIN_BUFFER_SIZE));
+        assertThat(target.getPooledBytes(), is(0L));
+    }
+
+    @Test
+    public void releasedBuffersAreOnlyReusedForTheirSizeClass() {
+
+        // given
+        DirectByteBufferPool target = new DirectByteBufferPool();
+        ByteBuffer buffer = target.acquire(100);
+        target.release(buffer);
+
+        // when
+        ByteBuffer obtained = target.acquire(DirectByteBufferPool.MIN_BUFFER_SIZE + 1);
+
+        // then
+        assertThat(obtained, is(not(sameInstance(buffer))));
+        assertThat(target.getPooledBytes(), is((long) DirectByteBufferPool.MIN_BUFFER_SIZE));
+    }
+
+    @Test
+    public void releaseDoesNotPoolMoreThanConfiguredLimit() {
+
+        // given
+        DirectByteBufferPool target = new DirectByteBufferPool(DirectByteBufferPool.MIN_BUFFER_SIZE);
+        ByteBuffer first = target.acquire(1);
+        ByteBuffer second = target.acquire(1);
+
+        // when
+        target.release(first);
+        target.release(second);
+
+        // then
+        assertThat(target.getPooledBytes(), is((long) DirectByteBufferPool.MIN_BUFFER_SIZE));
+        assertThat(target.acquire(1), is(sameInstance(first)));
+        assertThat(target.acquire(1), is(not(sameInstance(second))));
+    }
+
+    @Test
+    public void releaseDoesNotPoolLargeBuffers() {
+
+        // given
+        DirectByteBufferPool target = new DirectByteBufferPool();
+
+        // when
+        target.release(target.acquire(DirectByteBufferPool.MAX_BUFFER_SIZE + 1));
+
+        // then
+        assertThat(target.getPooledBytes(), is(0L));
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+import com.dynatrace.openkit.api.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class OffHeapBeaconCacheImplTest {
+
+    private Logger logger;
+
+    @Before
+    public void setUp() {
+        logger = mock(Logger.class);
+    }
+
+    @Test
+    public void addedDataCanBeRetrieved() {
+
+        // given
+        OffHeapBeaconCacheImpl target = new OffHeapBeaconCacheImpl(logger);
+
+        // when
+        target.addEventData(1, 1000L, "a");
+        target.addActionData(1, 1001L, "iii");
+        target.addEventData(1, 1002L, "b");
+
+        // then
+        assertThat(target.getEvents(1), is(equalTo(new String[]{"a", "b"})));
+        assertThat(target.getActions(1), is(equalTo(new String[]{"iii"})));
+        assertThat(target.getNumBytesInCache(), is(5L));
+    }
+
+    @Test
+    public void chunkedDataCanBeRemoved() {
+
+        // given
+        OffHeapBeaconCacheImpl target = new OffHeapBeaconCacheImpl(logger);
+        target.addEventData(1, 1000L, "a");
+        target.addActionData(1, 1001L, "iii");
+
+        // when
+        byte[] obtained = target.getNextBeaconChunk(1, "prefix", 1024, '&');
+        target.removeChunkedData(1);
+
+        // then
+        assertThat(new String(obtained, BeaconCacheRecord.CHARSET), is("prefix&a&iii"));
+        assertThat(target.getEvents(1), is(emptyArray()));
+        assertThat(target.getActions(1), is(emptyArray()));
+        assertThat(target.getNumBytesInCache(), is(0L));
+    }
+
+    @Test
+    public void resetChunkedDataRestoresData() {
+
+        // given
+        OffHeapBeaconCacheImpl target = new OffHeapBeaconCacheImpl(logger);
+        target.addEventData(1, 1000L, "a");
+        target.addActionData(1, 1001L, "iii");
+        target.getNextBeaconChunk(1, "prefix", 1024, '&');
+
+        // when
+        target.resetChunkedData(1);
+
+        // then
+        assertThat(target.getEvents(1), is(equalTo(new String[]{"a"})));
+        assertThat(target.getActions(1), is(equalTo(new String[]{"iii"})));
+        assertThat(target.getNumBytesInCache(), is(4L));
+    }
+
+    @Test
+    public void deleteCacheEntryRemovesData() {
+
+        // given
+        OffHeapBeaconCacheImpl target = new OffHeapBeaconCacheImpl(logger);
+        target.addEventData(1, 1000L, "a");
+        target.addActionData(1, 1001L, "iii");
+
+        // when
+        target.deleteCacheEntry(1);
+
+        // then
+        assertThat(target.getEvents(1), is(emptyArray()));
+        assertThat(target.getNumBytesInCache(), is(0L));
+    }
+}
@@ -0,0 +1,289 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching;
+
+import com.dynatrace.openkit.api.Logger;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static org.hamcrest.Matchers.emptyArray;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class PersistentBeaconCacheImplTest {
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Logger logger;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        logger = mock(Logger.class);
+        directory = temporaryFolder.newFolder("cache");
+    }
+
+    @Test
+    public void recordsOfRegisteredBeaconAreRecoveredAfterRestart() throws IOException {
+
+        // given
+        PersistentBeaconCacheImpl cache = new PersistentBeaconCacheImpl(logger, directory);
+        cache.registerBeacon(1, 1234L, "127.0.0.1", "vv=3&ap=app");
+        cache.addEventData(1, 1000L, "a");
+        cache.addActionData(1, 1001L, "iii");
+        cache.addEventData(1, 1002L, "b");
+
+        // when
+        PersistentBeaconCacheImpl target = new PersistentBeaconCacheImpl(logger, directory);
+        List<RecoveredBeacon> obtained = target.recoverBeacons();
+
+        // then
+        assertThat(obtained, hasSize(1));
+        RecoveredBeacon recoveredBeacon = obtained.get(0);
+        assertThat(recoveredBeacon.getBeaconID(), is(lessThan(0)));
+        assertThat(recoveredBeacon.getSessionStartTime(), is(1234L));
+        assertThat(recoveredBeacon.getClientIPAddress(), is("127.0.0.1"));
+        assertThat(recoveredBeacon.getImmutableBeaconData(), is("vv=3&ap=app"));
+        assertThat(target.getEvents(recoveredBeacon.getBeaconID()), is(equalTo(new String[]{"a", "b"})));
+        assertThat(target.getActions(recoveredBeacon.getBeaconID()), is(equalTo(new String[]{"iii"})));
+        assertThat(target.getNumBytesInCache(), is(5L));
+    }
+
+    @Test
+    public void sentRecordsAreNotRecovered() throws IOException {
+
+        // given
+        PersistentBeaconCacheImpl cache = new PersistentBeaconCacheImpl(logger, directory);
+        cache.registerBeacon(1, 1234L, "", "prefix");
+        cache.addEventData(1, 1000L, "a");
+        cache.getNextBeaconChunk(1, "prefix", 1024, '&');
+        cache.removeChunkedData(1);
+        cache.addEventData(1, 1001L, "b");
+
+        // when
+        PersistentBeaconCacheImpl target = new PersistentBeaconCacheImpl(logger, directory);
+        List<RecoveredBeacon> obtained = target.recoverBeacons();
+
+        // then
+        assertThat(obtained, hasSize(1));
+        assertThat(target.getEvents(obtained.get(0).getBeaconID()), is(equalTo(new String[]{"b"})));
+    }
+
+    @Test
+    public void recordsBeingSentAreRecovered() throws IOException {
+
+        // given
+        PersistentBeaconCacheImpl cache = new PersistentBeaconCacheImpl(logger, directory);
+        cache.registerBeacon(1, 1234L, "", "prefix");
+        cache.addEventData(1, 1000L, "a");
+        cache.getNextBeaconChunk(1, "prefix", 1024, '&');
+
+        // when
+        PersistentBeaconCacheImpl target = new PersistentBeaconCacheImpl(logger, directory);
+        List<RecoveredBeacon> obtained = target.recoverBeacons();
+
+        // then
+        assertThat(obtained, hasSize(1));
+        assertThat(target.getEvents(obtained.get(0).getBeaconID()), is(equalTo(new String[]{"a"})));
+    }
+
+    @Test
+    public void evictedRecordsAreNotRecovered() throws IOException {
+
+        // given
+        PersistentBeaconCacheImpl cache = new PersistentBeaconCacheImpl(logger, directory);
+        cache.registerBeacon(1, 1234L, "", "prefix");
+        cache.addEventData(1, 1000L, "a");
+        cache.addActionData(1, 1001L, "iii");
+        cache.addEventData(1, 2000L, "b");
+        cache.evictRecordsByAge(1, 1500L);
+
+        // when
+        PersistentBeaconCacheImpl target = new PersistentBeaconCacheImpl(logger, directory);
+        List<RecoveredBeacon> obtained = target.recoverBeacons();
+
+        // then
+        assertThat(obtained, hasSize(1));
+        assertThat(target.getEvents(obtained.get(0).getBeaconID()), is(equalTo(new String[]{"b"})));
+        assertThat(target.getActions(obtained.get(0).getBeaconID()), is(emptyArray()));
+    }
+
+    @Test
+    public void deletedBeaconIsNotRecovered() throws IOException {
+
+        // given
+        PersistentBeaconCacheImpl cache = new PersistentBeaconCacheImpl(logger, directory);
+        cache.registerBeacon(1, 1234L, "", "prefix");
+        cache.addEventData(1, 1000L, "a");
+        cache.deleteCacheEntry(1);
+
+        // when
+        PersistentBeaconCacheImpl target = new PersistentBeaconCacheImpl(logger, directory);
+        List<RecoveredBeacon> obtained = target.recoverBeacons();
+
+        // then
+        assertThat(obtained, hasSize(0));
+        assertThat(target.getNumBytesInCache(), is(0L));
+    }
+
+    @Test
+    public void recordsAddedAfterDeletingTheEntryOfARegisteredBeaconAreRecovered() throws IOException {
+
+        // given
+        PersistentBeaconCacheImpl cache = new PersistentBeaconCacheImpl(logger, directory);
+        cache.registerBeacon(1, 1234L, "", "prefix");
+        cache.addEventData(1, 1000L, "a");
+        cache.deleteCacheEntry(1);
+        cache.addEventData(1, 1001L, "b");
+
+        // when
+        PersistentBeaconCacheImpl target = new PersistentBeaconCacheImpl(logger, directory);
+        List<RecoveredBeacon> obtained = target.recoverBeacons();
+
+        // then
+        assertThat(obtained, hasSize(1));
+        assertThat(obtained.get(0).getImmutableBeaconData(), is("prefix"));
+        assertThat(target.getEvents(obtained.get(0).getBeaconID()), is(equalTo(new String[]{"b"})));
+    }
+
+    @Test
+    public void recordsAddedAfterUnregisteringABeaconAreNotPersisted() throws IOException {
+
+        // given
+        PersistentBeaconCacheImpl cache = new PersistentBeaconCacheImpl(logger, directory);
+        cache.registerBeacon(1, 1234L, "", "prefix");
+        cache.unregisterBeacon(1);
+        cache.addEventData(1, 1000L, "a");
+
+        // when
+        PersistentBeaconCacheImpl target = new PersistentBeaconCacheImpl(logger, directory);
+        List<RecoveredBeacon> obtained = target.recoverBeacons();
+
+        // then
+        assertThat(obtained, hasSize(0));
+        assertThat(cache.getEvents(1), is(equalTo(new String[]{"a"})));
+    }
+
+    @Test
+    public void recordsOfBeaconsNotRegisteredAreNotPersisted() throws IOException {
+
+        // given
+        PersistentBeaconCacheImpl cache = new PersistentBeaconCacheImpl(logger, directory);
+        cache.addEventData(1, 1000L, "a");
+
+        // when
+        PersistentBeaconCacheImpl target = new PersistentBeaconCacheImpl(logger, directory);
+        List<RecoveredBeacon> obtained = target.recoverBeacons();
+
+        // then
+        assertThat(obtained, hasSize(0));
+        assertThat(cache.getEvents(1), is(equalTo(new String[]{"a"})));
+    }
+
+    @Test
+    public void recoveredBeaconsCanBeSentAndDeleted() throws IOException {
+
+        // given
+        PersistentBeaconCacheImpl cache = new PersistentBeaconCacheImpl(logger, directory);
+        cache.registerBeacon(1, 1234L, "", "prefix");
+        cache.addEventData(1, 1000L, "a");
+        PersistentBeaconCacheImpl target = new PersistentBeaconCacheImpl(logger, directory);
+        int beaconID = target.recoverBeacons().get(0).getBeaconID();
+
+        // when
+        byte[] obtained = target.getNextBeaconChunk(beaconID, "prefix", 1024, '&');
+        target.removeChunkedData(beaconID);
+        target.deleteCacheEntry(beaconID);
+
+        // then
+        assertThat(new String(obtained, BeaconCacheRecord.CHARSET), is("prefix&a"));
+        assertThat(new PersistentBeaconCacheImpl(logger, directory).recoverBeacons(), hasSize(0));
+    }
+
+    @Test
+    public void criticalEventDataIsRecoveredAfterRestart() throws IOException {
+
+        // given
+        PersistentBeaconCacheImpl cache = new PersistentBeaconCacheImpl(logger, directory, true);
+        cache.registerBeacon(1, 1234L, "", "prefix");
+        cache.addEventData(1, 1000L, "a");
+        cache.addCriticalEventData(1, 1001L, "crash");
+
+        // when
+        PersistentBeaconCacheImpl target = new PersistentBeaconCacheImpl(logger, directory);
+        List<RecoveredBeacon> obtained = target.recoverBeacons();
+
+        // then
+        assertThat(obtained, hasSize(1));
+        assertThat(target.getEvents(obtained.get(0).getBeaconID()), is(equalTo(new String[]{"a", "crash"})));
+    }
+
+    @Test
+    public void criticalEventDataIsSyncedInWriteAheadLogMode() throws IOException {
+
+        // given
+        BeaconCacheJournal journal = new BeaconCacheJournal(logger, directory, BeaconCacheJournal.DEFAULT_SEGMENT_SIZE);
+        BeaconCacheImpl target = new BeaconCacheImpl(logger, null, journal, true);
+        target.registerBeacon(1, 1234L, "", "prefix");
+
+        // when
+        target.addEventData(1, 1000L, "a");
+        target.addCriticalEventData(1, 1001L, "crash");
+
+        // then
+        assertThat(journal.getNumSyncs(), is(1L));
+    }
+
+    @Test
+    public void criticalEventDataIsNotSyncedWithoutWriteAheadLogMode() throws IOException {
+
+        // given
+        BeaconCacheJournal journal = new BeaconCacheJournal(logger, directory, BeaconCacheJournal.DEFAULT_SEGMENT_SIZE);
+        BeaconCacheImpl target = new BeaconCacheImpl(logger, null, journal, false);
+        target.registerBeacon(1, 1234L, "", "prefix");
+
+        // when
+        target.addCriticalEventData(1, 1001L, "crash");
+
+        // then
+        assertThat(journal.getNumSyncs(), is(0L));
+        assertThat(target.getEvents(1), is(equalTo(new String[]{"crash"})));
+    }
+
+    @Test
+    public void inMemoryCacheDoesNotRecoverBeacons() {
+
+        // given
+        BeaconCacheImpl target = new BeaconCacheImpl(logger);
+        target.registerBeacon(1, 1234L, "", "prefix");
+
+        // then
+        assertThat(target.recoverBeacons(), hasSize(0));
+        assertThat(target.getBeaconIDs().isEmpty(), is(true));
+    }
+}
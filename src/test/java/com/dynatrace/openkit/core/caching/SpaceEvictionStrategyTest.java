@@ -20,17 +20,12 @@ import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.invocation.InvocationOnMock;
-import org.mockito.stubbing.Answer;
-
-import java.util.Arrays;
-import java.util.HashSet;
 
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyString;
-import static org.mockito.Mockito.anyInt;
-import static org.mockito.Mockito.eq;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -194,27 +189,21 @@ public class SpaceEvictionStrategyTest {
     }
 
     @Test
-    public void executeEvictionCallsCacheMethodForEachBeacon() {
+    public void executeEvictionEvictsRecordsUntilLowerBoundIsReached() {
 
         // given
         BeaconCacheConfiguration configuration = new BeaconCacheConfiguration(1000L, 1000L, 2000L);
         SpaceEvictionStrategy target = new SpaceEvictionStrategy(mockLogger, mockBeaconCache, configuration);
 
-        when(mockBeaconCache.getNumBytesInCache()).thenReturn(configuration.getCacheSizeUpperBound() + 1,
-            configuration.getCacheSizeUpperBound() + 1,
-            configuration.getCacheSizeUpperBound() + 1,
-            configuration.getCacheSizeUpperBound() + 1,
-            0L);
-        when(mockBeaconCache.getBeaconIDs()).thenReturn(new HashSet<Integer>(Arrays.asList(42, 1)));
-
+        when(mockBeaconCache.getNumBytesInCache()).thenReturn(configuration.getCacheSizeUpperBound() + 1);
 
         // when executing the first time
         target.execute();
 
         // then
-        verify(mockBeaconCache, times(5)).getNumBytesInCache();
-        verify(mockBeaconCache, times(1)).evictRecordsByNumber(1, 1);
-        verify(mockBeaconCache, times(1)).evictRecordsByNumber(42, 1);
+        verify(mockBeaconCache, times(1)).getNumBytesInCache();
+        verify(mockBeaconCache, times(1)).evictRecordsBySize(configuration.getCacheSizeLowerBound());
+        verifyNoMoreInteractions(mockBeaconCache);
     }
 
     @Test
@@ -224,14 +213,8 @@ public class SpaceEvictionStrategyTest {
         BeaconCacheConfiguration configuration = new BeaconCacheConfiguration(1000L, 1000L, 2000L);
         SpaceEvictionStrategy target = new SpaceEvictionStrategy(mockLogger, mockBeaconCache, configuration);
 
-        when(mockBeaconCache.getNumBytesInCache()).thenReturn(configuration.getCacheSizeUpperBound() + 1,
-            configuration.getCacheSizeUpperBound() + 1,
-            configuration.getCacheSizeUpperBound() + 1,
-            configuration.getCacheSizeUpperBound() + 1,
-            0L);
-        when(mockBeaconCache.getBeaconIDs()).thenReturn(new HashSet<Integer>(Arrays.asList(42, 1)));
-        when(mockBeaconCache.evictRecordsByNumber(eq(1), anyInt())).thenReturn(5);
-        when(mockBeaconCache.evictRecordsByNumber(eq(42), anyInt())).thenReturn(1);
+        when(mockBeaconCache.getNumBytesInCache()).thenReturn(configuration.getCacheSizeUpperBound() + 1);
+        when(mockBeaconCache.evictRecordsBySize(anyLong())).thenReturn(6);
 
         when(mockLogger.isDebugEnabled()).thenReturn(true);
 
@@ -239,9 +222,8 @@ public class SpaceEvictionStrategyTest {
         target.execute();
 
         // then
-        verify(mockLogger, times(3)).isDebugEnabled();
-        verify(mockLogger, times(1)).debug("SpaceEvictionStrategy doExecute()  - Removed 5 records from Beacon with ID 1");
-        verify(mockLogger, times(1)).debug("SpaceEvictionStrategy doExecute()  - Removed 1 records from Beacon with ID 42");
+        verify(mockLogger, times(1)).isDebugEnabled();
+        verify(mockLogger, times(1)).debug("SpaceEvictionStrategy doExecute() - Removed 6 records");
         verifyNoMoreInteractions(mockLogger);
     }
 
@@ -252,14 +234,8 @@ public class SpaceEvictionStrategyTest {
         BeaconCacheConfiguration configuration = new BeaconCacheConfiguration(1000L, 1000L, 2000L);
         SpaceEvictionStrategy target = new SpaceEvictionStrategy(mockLogger, mockBeaconCache, configuration);
 
-        when(mockBeaconCache.getNumBytesInCache()).thenReturn(configuration.getCacheSizeUpperBound() + 1,
-            configuration.getCacheSizeUpperBound() + 1,
-            configuration.getCacheSizeUpperBound() + 1,
-            configuration.getCacheSizeUpperBound() + 1,
-            0L);
-        when(mockBeaconCache.getBeaconIDs()).thenReturn(new HashSet<Integer>(Arrays.asList(42, 1)));
-        when(mockBeaconCache.evictRecordsByNumber(eq(1), anyInt())).thenReturn(5);
-        when(mockBeaconCache.evictRecordsByNumber(eq(42), anyInt())).thenReturn(1);
+        when(mockBeaconCache.getNumBytesInCache()).thenReturn(configuration.getCacheSizeUpperBound() + 1);
+        when(mockBeaconCache.evictRecordsBySize(anyLong())).thenReturn(6);
 
         when(mockLogger.isDebugEnabled()).thenReturn(false);
 
@@ -267,96 +243,45 @@ public class SpaceEvictionStrategyTest {
         target.execute();
 
         // then
-        verify(mockLogger, times(3)).isDebugEnabled();
+        verify(mockLogger, times(1)).isDebugEnabled();
         verifyNoMoreInteractions(mockLogger);
     }
 
     @Test
-    public void executeEvictionRunsUntilTheCacheSizeIsLessThanOrEqualToLowerBound() {
-
-        // given
-        BeaconCacheConfiguration configuration = new BeaconCacheConfiguration(1000L, 1000L, 2000L);
-        SpaceEvictionStrategy target = new SpaceEvictionStrategy(mockLogger, mockBeaconCache, configuration);
-
-        when(mockBeaconCache.getNumBytesInCache()).thenReturn(configuration.getCacheSizeUpperBound() + 1, // shouldRun method
-            configuration.getCacheSizeUpperBound(), // first iteration
-            configuration.getCacheSizeUpperBound(), // first iteration
-            configuration.getCacheSizeUpperBound(), // first iteration
-            (configuration.getCacheSizeUpperBound() + configuration.getCacheSizeLowerBound()) / 2, // second iteration
-            (configuration.getCacheSizeUpperBound() + configuration.getCacheSizeLowerBound()) / 2, // second iteration
-            (configuration.getCacheSizeUpperBound() + configuration.getCacheSizeLowerBound()) / 2, // second iteration
-            configuration.getCacheSizeLowerBound(), // stops already
-            0L); // just for safety
-        when(mockBeaconCache.getBeaconIDs()).thenReturn(new HashSet<Integer>(Arrays.asList(42, 1)));
-
-
-        // when executing the first time
-        target.execute();
-
-        // then
-        verify(mockBeaconCache, times(8)).getNumBytesInCache();
-        verify(mockBeaconCache, times(2)).evictRecordsByNumber(1, 1);
-        verify(mockBeaconCache, times(2)).evictRecordsByNumber(42, 1);
-    }
-
-    @Test
-    public void executeEvictionStopsIfThreadGetsInterruptedBetweenTwoBeacons() {
+    public void executeEvictionDoesNotEvictIfCacheSizeIsNotAboveUpperBound() {
 
         // given
         BeaconCacheConfiguration configuration = new BeaconCacheConfiguration(1000L, 1000L, 2000L);
         SpaceEvictionStrategy target = new SpaceEvictionStrategy(mockLogger, mockBeaconCache, configuration);
 
-        when(mockBeaconCache.getNumBytesInCache()).thenReturn(configuration.getCacheSizeUpperBound() + 1, // shouldRun method
-            configuration.getCacheSizeUpperBound(), // first iteration
-            configuration.getCacheSizeUpperBound(), // first iteration
-            configuration.getCacheSizeUpperBound(), // first iteration
-            (configuration.getCacheSizeUpperBound() + configuration.getCacheSizeLowerBound()) / 2, // second iteration
-            (configuration.getCacheSizeUpperBound() + configuration.getCacheSizeLowerBound()) / 2, // second iteration
-            (configuration.getCacheSizeUpperBound() + configuration.getCacheSizeLowerBound()) / 2, // second iteration
-            configuration.getCacheSizeLowerBound(), // stops already
-            0L); // just for safety
-        when(mockBeaconCache.getBeaconIDs()).thenReturn(new HashSet<Integer>(Arrays.asList(42, 1)));
-        when(mockBeaconCache.evictRecordsByNumber(anyInt(), eq(1))).then(new Answer<Integer>() {
-            @Override
-            public Integer answer(InvocationOnMock invocation) {
-                Thread.currentThread().interrupt(); // interrupt current thread - just to test, if it stopped
-                return 5;
-            }
-        });
+        when(mockBeaconCache.getNumBytesInCache()).thenReturn(configuration.getCacheSizeUpperBound());
 
         // when executing the first time
         target.execute();
 
         // then
-        verify(mockBeaconCache, times(3)).getNumBytesInCache();
-        verify(mockBeaconCache, times(1)).evictRecordsByNumber(anyInt(), eq(1));
-
-        // and verify that the thread interrupted flag is still set
-        assertThat(Thread.interrupted(), is(true)); // will also clear the interrupted flag, which we definitely want
+        verify(mockBeaconCache, times(1)).getNumBytesInCache();
+        verifyNoMoreInteractions(mockBeaconCache);
     }
 
     @Test
-    public void executeEvictionStopsIfNumBytesInCacheFallsBelowLowerBoundBetweenTwoBeacons() {
+    public void executeEvictionEvictsGloballyOldestRecordsFromBeaconCache() {
 
         // given
-        BeaconCacheConfiguration configuration = new BeaconCacheConfiguration(1000L, 1000L, 2000L);
-        SpaceEvictionStrategy target = new SpaceEvictionStrategy(mockLogger, mockBeaconCache, configuration);
-
-        when(mockBeaconCache.getNumBytesInCache()).thenReturn(configuration.getCacheSizeUpperBound() + 1, // shouldRun method
-            configuration.getCacheSizeUpperBound(), // first iteration
-            configuration.getCacheSizeUpperBound(), // first iteration
-            configuration.getCacheSizeUpperBound(), // first iteration
-            (configuration.getCacheSizeUpperBound() + configuration.getCacheSizeLowerBound()) / 2, // second iteration
-            (configuration.getCacheSizeUpperBound() + configuration.getCacheSizeLowerBound()) / 2, // second iteration
-            configuration.getCacheSizeLowerBound(), // second iteration
-            0L); // just for safety
-        when(mockBeaconCache.getBeaconIDs()).thenReturn(new HashSet<Integer>(Arrays.asList(42, 1)));
-
-        // when executing the first time
+        BeaconCacheImpl beaconCache = new BeaconCacheImpl(mockLogger);
+        beaconCache.addEventData(1, 1000L, "aaaa");
+        beaconCache.addEventData(2, 2000L, "bbbb");
+        beaconCache.addEventData(1, 3000L, "cccc");
+        beaconCache.addEventData(2, 4000L, "dddd");
+        BeaconCacheConfiguration configuration = new BeaconCacheConfiguration(1000L, 8L, 12L);
+        SpaceEvictionStrategy target = new SpaceEvictionStrategy(mockLogger, beaconCache, configuration);
+
+        // when
         target.execute();
 
         // then
-        verify(mockBeaconCache, times(8)).getNumBytesInCache();
-        verify(mockBeaconCache, times(3)).evictRecordsByNumber(anyInt(), eq(1));
+        assertThat(beaconCache.getNumBytesInCache(), is(8L));
+        assertThat(beaconCache.getEvents(1), is(equalTo(new String[]{"cccc"})));
+        assertThat(beaconCache.getEvents(2), is(equalTo(new String[]{"dddd"})));
     }
 }
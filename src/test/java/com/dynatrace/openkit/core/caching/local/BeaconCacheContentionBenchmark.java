@@ -0,0 +1,117 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.caching.local;
+
+import com.dynatrace.openkit.api.LogLevel;
+import com.dynatrace.openkit.core.caching.BeaconCacheImpl;
+import com.dynatrace.openkit.core.util.DefaultLogger;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Contention benchmark for {@link BeaconCacheImpl}.
+ *
+ * <p>
+ * Each thread simulates a stream of sessions, inserting event and action records into the cache
+ * and deleting the session's cache entry after {@link #RECORDS_PER_SESSION} records, so that the
+ * insert path for new beacons is exercised as well.
+ * </p>
+ *
+ * <p>
+ * This is not a unit test and therefore not executed by the build. Run it manually via
+ * {@code java -cp <classpath> com.dynatrace.openkit.core.caching.local.BeaconCacheContentionBenchmark [threads...]}.
+ * </p>
+ */
+public class BeaconCacheContentionBenchmark {
+
+    private static final int[] DEFAULT_THREAD_COUNTS = {1, 8, 32, 64};
+    private static final int RECORDS_PER_SESSION = 1000;
+    private static final long WARMUP_MILLIS = TimeUnit.SECONDS.toMillis(1);
+    private static final long MEASUREMENT_MILLIS = TimeUnit.SECONDS.toMillis(3);
+    private static final String RECORD_DATA = "et=10&na=benchmark%20record&it=1&ca=1&pa=0&s0=1&t0=0&s1=2&t1=10";
+
+    public static void main(String[] args) throws InterruptedException {
+        int[] threadCounts = DEFAULT_THREAD_COUNTS;
+        if (args.length > 0) {
+            threadCounts = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                threadCounts[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println("available processors: " + Runtime.getRuntime().availableProcessors());
+        for (int numThreads : threadCounts) {
+            // warm up with a throw away cache, then measure
+            runBenchmark(numThreads, WARMUP_MILLIS);
+            long numOperations = runBenchmark(numThreads, MEASUREMENT_MILLIS);
+            long operationsPerSecond = numOperations * TimeUnit.SECONDS.toMillis(1) / MEASUREMENT_MILLIS;
+            System.out.println(String.format("threads=%3d  inserts/s=%,12d", numThreads, operationsPerSecond));
+        }
+    }
+
+    private static long runBenchmark(int numThreads, long durationMillis) throws InterruptedException {
+
+        final BeaconCacheImpl beaconCache = new BeaconCacheImpl(new DefaultLogger(LogLevel.WARN));
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong numOperations = new AtomicLong(0);
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch finishedLatch = new CountDownLatch(numThreads);
+
+        for (int i = 0; i < numThreads; i++) {
+            final int threadIndex = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    long operations = 0;
+                    int sessionNumber = threadIndex << 20;
+                    try {
+                        startLatch.await();
+                        while (running.get()) {
+                            for (int record = 0; record < RECORDS_PER_SESSION; record++) {
+                                if ((record & 1) == 0) {
+                                    beaconCache.addEventData(sessionNumber, record, RECORD_DATA);
+                                } else {
+                                    beaconCache.addActionData(sessionNumber, record, RECORD_DATA);
+                                }
+                            }
+                            operations += RECORDS_PER_SESSION;
+                            beaconCache.deleteCacheEntry(sessionNumber);
+                            sessionNumber++;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        numOperations.addAndGet(operations);
+                        finishedLatch.countDown();
+                    }
+                }
+            }, "BeaconCacheBenchmark-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        startLatch.countDown();
+        Thread.sleep(durationMillis);
+        running.set(false);
+        finishedLatch.await();
+
+        return numOperations.get();
+    }
+}
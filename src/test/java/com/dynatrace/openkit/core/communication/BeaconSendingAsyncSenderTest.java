@@ -0,0 +1,230 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.core.communication;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.protocol.Response;
+import com.dynatrace.openkit.protocol.ResponseCallback;
+import com.dynatrace.openkit.protocol.StatusResponse;
+import com.dynatrace.openkit.providers.HTTPClientProvider;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BeaconSendingAsyncSenderTest {
+
+    private BeaconSendingContext context;
+    private HTTPClientProvider httpClientProvider;
+
+    @Before
+    public void setUp() {
+        httpClientProvider = mock(HTTPClientProvider.class);
+        context = mock(BeaconSendingContext.class);
+        when(context.getHTTPClientProvider()).thenReturn(httpClientProvider);
+    }
+
+    @Test
+    public void allSessionsAreSentAndResponsesAreReturnedInOrder() throws InterruptedException {
+        // given
+        BeaconSendingAsyncSender target = new BeaconSendingAsyncSender(2);
+        StatusResponse response1 = statusResponse(200);
+        StatusResponse response3 = statusResponse(200);
+        SessionWrapper session1 = sessionRespondingWith(response1);
+        SessionWrapper session2 = sessionRespondingWith(null);
+        SessionWrapper session3 = sessionRespondingWith(response3);
+
+        // when
+        StatusResponse[] obtained = target.sendBeacons(context, Arrays.asList(session1, session2, session3));
+
+        // then
+        assertThat(obtained, is(arrayWithSize(3)));
+        assertThat(obtained[0], is(sameInstance(response1)));
+        assertThat(obtained[1], is(nullValue()));
+        assertThat(obtained[2], is(sameInstance(response3)));
+        verify(session1, times(1)).sendBeaconAsync(eq(httpClientProvider), any(ResponseCallback.class));
+        verify(session2, times(1)).sendBeaconAsync(eq(httpClientProvider), any(ResponseCallback.class));
+        verify(session3, times(1)).sendBeaconAsync(eq(httpClientProvider), any(ResponseCallback.class));
+    }
+
+    @Test
+    public void numberOfSessionsInFlightIsLimited() throws Exception {
+        // given sessions, which complete when the test invokes their callback
+        final BeaconSendingAsyncSender target = new BeaconSendingAsyncSender(2);
+        final BlockingQueue<ResponseCallback> callbacks = new LinkedBlockingQueue<ResponseCallback>();
+        final List<SessionWrapper> sessions = Arrays.asList(
+            sessionCollectingCallback(callbacks), sessionCollectingCallback(callbacks), sessionCollectingCallback(callbacks));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            // when
+            Future<StatusResponse[]> obtained = executor.submit(new Callable<StatusResponse[]>() {
+                @Override
+                public StatusResponse[] call() throws InterruptedException {
+                    return target.sendBeacons(context, sessions);
+                }
+            });
+
+            // then only two sessions are started
+            ResponseCallback first = callbacks.poll(10, TimeUnit.SECONDS);
+            ResponseCallback second = callbacks.poll(10, TimeUnit.SECONDS);
+            assertThat(first, is(notNullValue()));
+            assertThat(second, is(notNullValue()));
+            assertThat(callbacks.poll(100, TimeUnit.MILLISECONDS), is(nullValue()));
+
+            // and the third one, once the first one has been completed
+            first.onResponse(statusResponse(200));
+            ResponseCallback third = callbacks.poll(10, TimeUnit.SECONDS);
+            assertThat(third, is(notNullValue()));
+            second.onResponse(statusResponse(200));
+            third.onResponse(statusResponse(200));
+            assertThat(obtained.get(10, TimeUnit.SECONDS), is(arrayWithSize(3)));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void noFurtherSessionsAreSentAfterTooManyRequestsResponse() throws InterruptedException {
+        // given
+        BeaconSendingAsyncSender target = new BeaconSendingAsyncSender(1);
+        StatusResponse tooManyRequests = statusResponse(Response.HTTP_TOO_MANY_REQUESTS);
+        SessionWrapper session1 = sessionRespondingWith(tooManyRequests);
+        SessionWrapper session2 = sessionRespondingWith(statusResponse(200));
+
+        // when
+        StatusResponse[] obtained = target.sendBeacons(context, Arrays.asList(session1, session2));
+
+        // then
+        assertThat(obtained[0], is(sameInstance(tooManyRequests)));
+        assertThat(obtained[1], is(nullValue()));
+        verify(session2, never()).sendBeaconAsync(any(HTTPClientProvider.class), any(ResponseCallback.class));
+    }
+
+    @Test
+    public void interruptedCallerWaitsForSessionsInFlightAndDoesNotStartFurtherSessions() throws Exception {
+        // given
+        final BeaconSendingAsyncSender target = new BeaconSendingAsyncSender(1);
+        final BlockingQueue<ResponseCallback> callbacks = new LinkedBlockingQueue<ResponseCallback>();
+        SessionWrapper session2 = sessionCollectingCallback(callbacks);
+        final List<SessionWrapper> sessions = Arrays.asList(sessionCollectingCallback(callbacks), session2);
+        final AtomicBoolean completedWhenInterrupted = new AtomicBoolean(false);
+        final AtomicBoolean completed = new AtomicBoolean(false);
+        Thread caller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    target.sendBeacons(context, sessions);
+                } catch (InterruptedException e) {
+                    completedWhenInterrupted.set(completed.get());
+                }
+            }
+        });
+        caller.start();
+        ResponseCallback first = callbacks.poll(10, TimeUnit.SECONDS);
+        assertThat(first, is(notNullValue()));
+
+        // when
+        caller.interrupt();
+        caller.join(100);
+
+        // then the caller still waits for the first session
+        assertThat(caller.isAlive(), is(true));
+
+        // and when
+        completed.set(true);
+        first.onResponse(statusResponse(200));
+        caller.join(TimeUnit.SECONDS.toMillis(5));
+
+        // then
+        assertThat(caller.isAlive(), is(false));
+        assertThat(completedWhenInterrupted.get(), is(true));
+        verify(session2, never()).sendBeaconAsync(any(HTTPClientProvider.class), any(ResponseCallback.class));
+    }
+
+    @Test
+    public void callerGivesUpWaitingIfCallbackIsLost() throws InterruptedException {
+        // given
+        BeaconSendingAsyncSender target = new BeaconSendingAsyncSender(1, 100);
+        BlockingQueue<ResponseCallback> callbacks = new LinkedBlockingQueue<ResponseCallback>();
+        SessionWrapper session2 = sessionCollectingCallback(callbacks);
+
+        // when
+        StatusResponse[] obtained = target.sendBeacons(context, Arrays.asList(sessionCollectingCallback(callbacks), session2));
+
+        // then
+        assertThat(obtained[0], is(nullValue()));
+        assertThat(obtained[1], is(nullValue()));
+        verify(session2, never()).sendBeaconAsync(any(HTTPClientProvider.class), any(ResponseCallback.class));
+    }
+
+    private static SessionWrapper sessionRespondingWith(final StatusResponse response) {
+        SessionWrapper session = mock(SessionWrapper.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((ResponseCallback) invocation.getArguments()[1]).onResponse(response);
+                return null;
+            }
+        }).when(session).sendBeaconAsync(any(HTTPClientProvider.class), any(ResponseCallback.class));
+        return session;
+    }
+
+    private static SessionWrapper sessionCollectingCallback(final BlockingQueue<ResponseCallback> callbacks) {
+        SessionWrapper session = mock(SessionWrapper.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                callbacks.add((ResponseCallback) invocation.getArguments()[1]);
+                return null;
+            }
+        }).when(session).sendBeaconAsync(any(HTTPClientProvider.class), any(ResponseCallback.class));
+        return session;
+    }
+
+    private static StatusResponse statusResponse(int responseCode) {
+        return new StatusResponse(mock(Logger.class), "", responseCode, Collections.<String, List<String>>emptyMap());
+    }
+}
@@ -19,6 +19,7 @@ package com.dynatrace.openkit.core.communication;
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.core.configuration.BeaconConfiguration;
 import com.dynatrace.openkit.core.objects.SessionImpl;
+import com.dynatrace.openkit.protocol.BeaconChunkBuffer;
 import com.dynatrace.openkit.protocol.HTTPClient;
 import com.dynatrace.openkit.protocol.Response;
 import com.dynatrace.openkit.protocol.StatusResponse;
@@ -26,6 +27,7 @@ import com.dynatrace.openkit.providers.HTTPClientProvider;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 
 import java.util.Arrays;
 import java.util.Collections;
@@ -36,6 +38,9 @@ import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -62,8 +67,8 @@ public class BeaconSendingCaptureOnStateTest {
         mockSession4Finished = mock(SessionWrapper.class);
         mockSession5New = mock(SessionWrapper.class);
         mockSession6New = mock(SessionWrapper.class);
-        when(mockSession1Open.sendBeacon(any(HTTPClientProvider.class))).thenReturn(new StatusResponse(mock(Logger.class), "", 200, Collections.<String, List<String>>emptyMap()));
-        when(mockSession2Open.sendBeacon(any(HTTPClientProvider.class))).thenReturn(new StatusResponse(mock(Logger.class), "", 404, Collections.<String, List<String>>emptyMap()));
+        when(mockSession1Open.sendBeacon(any(HTTPClientProvider.class), any(BeaconChunkBuffer.class))).thenReturn(new StatusResponse(mock(Logger.class), "", 200, Collections.<String, List<String>>emptyMap()));
+        when(mockSession2Open.sendBeacon(any(HTTPClientProvider.class), any(BeaconChunkBuffer.class))).thenReturn(new StatusResponse(mock(Logger.class), "", 404, Collections.<String, List<String>>emptyMap()));
         when(mockSession1Open.isDataSendingAllowed()).thenReturn(true);
         when(mockSession1Open.getSession()).thenReturn(mock(SessionImpl.class));
         when(mockSession2Open.getSession()).thenReturn(mock(SessionImpl.class));
@@ -111,7 +116,7 @@ public class BeaconSendingCaptureOnStateTest {
     }
 
     @Test
-    public void newSessionRequestsAreMadeForAllNewSessions() {
+    public void oneNewSessionRequestIsMadeForAllNewSessions() {
         // given
         BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
 
@@ -121,8 +126,7 @@ public class BeaconSendingCaptureOnStateTest {
         when(mockContext.getHTTPClient()).thenReturn(mockClient);
         when(mockContext.getAllNewSessions()).thenReturn(Arrays.asList(mockSession5New, mockSession6New));
         when(mockClient.sendNewSessionRequest())
-            .thenReturn(new StatusResponse(mock(Logger.class), "mp=5", 200, Collections.<String, List<String>>emptyMap())) // first response valid
-            .thenReturn(new StatusResponse(mock(Logger.class), "", Response.HTTP_BAD_REQUEST, Collections.<String, List<String>>emptyMap())); // second response invalid
+            .thenReturn(new StatusResponse(mock(Logger.class), "mp=5", 200, Collections.<String, List<String>>emptyMap()));
         when(mockSession5New.canSendNewSessionRequest()).thenReturn(true);
         when(mockSession5New.getBeaconConfiguration()).thenReturn(defaultConfiguration);
         when(mockSession6New.canSendNewSessionRequest()).thenReturn(true);
@@ -133,14 +137,64 @@ public class BeaconSendingCaptureOnStateTest {
         // when
         target.execute(mockContext);
 
-        // verify for both new sessions a new session request has been made
-        verify(mockClient, times(2)).sendNewSessionRequest();
+        // verify a single new session request has been made
+        verify(mockClient, times(1)).sendNewSessionRequest();
 
-        // verify first has been updated, second decreased
+        // verify both sessions have been updated with the multiplicity of the response
         verify(mockSession5New, times(1)).updateBeaconConfiguration(beaconConfigurationArgumentCaptor.capture());
+        verify(mockSession6New, times(1)).updateBeaconConfiguration(beaconConfigurationArgumentCaptor.capture());
         assertThat(beaconConfigurationArgumentCaptor.getAllValues().get(0).getMultiplicity(), is(equalTo(5)));
+        assertThat(beaconConfigurationArgumentCaptor.getAllValues().get(1).getMultiplicity(), is(equalTo(5)));
+        verify(mockSession5New, times(0)).decreaseNumNewSessionRequests();
+        verify(mockSession6New, times(0)).decreaseNumNewSessionRequests();
+    }
 
-        // verify for beacon 6 only the number of tries was decreased
+    @Test
+    public void numberOfNewSessionRequestsIsDecreasedForAllNewSessionsIfRequestFails() {
+        // given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+
+        HTTPClient mockClient = mock(HTTPClient.class);
+        when(mockContext.getHTTPClient()).thenReturn(mockClient);
+        when(mockContext.getAllNewSessions()).thenReturn(Arrays.asList(mockSession5New, mockSession6New));
+        when(mockClient.sendNewSessionRequest())
+            .thenReturn(new StatusResponse(mock(Logger.class), "", Response.HTTP_BAD_REQUEST, Collections.<String, List<String>>emptyMap()));
+        when(mockSession5New.canSendNewSessionRequest()).thenReturn(true);
+        when(mockSession6New.canSendNewSessionRequest()).thenReturn(true);
+
+        // when
+        target.execute(mockContext);
+
+        // then
+        verify(mockClient, times(1)).sendNewSessionRequest();
+        verify(mockSession5New, times(1)).decreaseNumNewSessionRequests();
+        verify(mockSession6New, times(1)).decreaseNumNewSessionRequests();
+        verify(mockSession5New, times(0)).updateBeaconConfiguration(org.mockito.Matchers.any(BeaconConfiguration.class));
+        verify(mockSession6New, times(0)).updateBeaconConfiguration(org.mockito.Matchers.any(BeaconConfiguration.class));
+    }
+
+    @Test
+    public void newSessionRequestIsOnlyMadeForSessionsWithRequestsLeft() {
+        // given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+
+        HTTPClient mockClient = mock(HTTPClient.class);
+        when(mockContext.getHTTPClient()).thenReturn(mockClient);
+        when(mockContext.getAllNewSessions()).thenReturn(Arrays.asList(mockSession5New, mockSession6New));
+        when(mockClient.sendNewSessionRequest())
+            .thenReturn(new StatusResponse(mock(Logger.class), "", Response.HTTP_BAD_REQUEST, Collections.<String, List<String>>emptyMap()));
+        when(mockSession5New.canSendNewSessionRequest()).thenReturn(false);
+        when(mockSession6New.canSendNewSessionRequest()).thenReturn(true);
+
+        ArgumentCaptor<BeaconConfiguration> beaconConfigurationArgumentCaptor = ArgumentCaptor.forClass(BeaconConfiguration.class);
+
+        // when
+        target.execute(mockContext);
+
+        // then session 5 is disabled and only session 6 counts the failed request
+        verify(mockSession5New, times(1)).updateBeaconConfiguration(beaconConfigurationArgumentCaptor.capture());
+        assertThat(beaconConfigurationArgumentCaptor.getValue().getMultiplicity(), is(equalTo(0)));
+        verify(mockSession5New, times(0)).decreaseNumNewSessionRequests();
         verify(mockSession6New, times(1)).decreaseNumNewSessionRequests();
     }
 
@@ -204,15 +258,13 @@ public class BeaconSendingCaptureOnStateTest {
         // when
         target.execute(mockContext);
 
-        // verify for first new sessions a new session request has been made
+        // verify a single new session request has been made
         verify(mockClient, times(1)).sendNewSessionRequest();
 
-        // verify no changes on first
+        // verify no changes on the new sessions
         verify(mockSession5New, times(1)).canSendNewSessionRequest();
-        verifyNoMoreInteractions(mockSession5New);
-
-        // verify second new session was not used at all
-        verifyZeroInteractions(mockSession6New);
+        verify(mockSession6New, times(1)).canSendNewSessionRequest();
+        verifyNoMoreInteractions(mockSession5New, mockSession6New);
 
         // verify any other session was not invoked
         verifyZeroInteractions(mockSession1Open, mockSession2Open, mockSession3Finished, mockSession4Finished);
@@ -224,6 +276,49 @@ public class BeaconSendingCaptureOnStateTest {
         assertThat(argumentCaptor.getAllValues().get(0).sleepTimeInMilliseconds, is(equalTo(6543L)));
     }
 
+    @Test
+    public void waitsUntilOpenSessionsHaveToBeSentIfNoSessionsArePending() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getAllFinishedAndConfiguredSessions()).thenReturn(Collections.<SessionWrapper>emptyList());
+        when(mockContext.getLastOpenSessionBeaconSendTime()).thenReturn(40L);
+        when(mockContext.getSendInterval()).thenReturn(5000);
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then
+        verify(mockContext, times(1)).waitForSendSignal(4999L);
+    }
+
+    @Test
+    public void waitsDefaultSleepTimeIfSessionsArePending() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.hasNewOrFinishedSessions()).thenReturn(true);
+        when(mockContext.getLastOpenSessionBeaconSendTime()).thenReturn(40L);
+        when(mockContext.getSendInterval()).thenReturn(5000);
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then
+        verify(mockContext, times(1)).waitForSendSignal(BeaconSendingContext.DEFAULT_SLEEP_TIME_MILLISECONDS);
+    }
+
+    @Test
+    public void waitsDefaultSleepTimeIfOpenSessionsAreOverdue() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getAllFinishedAndConfiguredSessions()).thenReturn(Collections.<SessionWrapper>emptyList());
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then
+        verify(mockContext, times(1)).waitForSendSignal(BeaconSendingContext.DEFAULT_SLEEP_TIME_MILLISECONDS);
+    }
+
     @Test
     public void aBeaconSendingCaptureOnStateSendsFinishedSessions() {
         //given
@@ -233,16 +328,16 @@ public class BeaconSendingCaptureOnStateTest {
         when(statusResponse.getResponseCode()).thenReturn(Response.HTTP_OK);
         when(statusResponse.isErroneousResponse()).thenReturn(false);
 
-        when(mockSession3Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class))).thenReturn(statusResponse);
-        when(mockSession4Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class))).thenReturn(statusResponse);
+        when(mockSession3Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class))).thenReturn(statusResponse);
+        when(mockSession4Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class))).thenReturn(statusResponse);
         when(mockSession3Finished.isDataSendingAllowed()).thenReturn(true);
         when(mockSession4Finished.isDataSendingAllowed()).thenReturn(true);
 
         //when calling execute
         target.execute(mockContext);
 
-        verify(mockSession3Finished, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class));
-        verify(mockSession4Finished, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class));
+        verify(mockSession3Finished, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession4Finished, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
 
         // also verify that the session are removed
         verify(mockContext, times(1)).removeSession(mockSession3Finished);
@@ -254,16 +349,16 @@ public class BeaconSendingCaptureOnStateTest {
         //given
         BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
 
-        when(mockSession3Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class))).thenReturn(mock(StatusResponse.class));
-        when(mockSession4Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class))).thenReturn(mock(StatusResponse.class));
+        when(mockSession3Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class))).thenReturn(mock(StatusResponse.class));
+        when(mockSession4Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class))).thenReturn(mock(StatusResponse.class));
         when(mockSession3Finished.isDataSendingAllowed()).thenReturn(false);
         when(mockSession4Finished.isDataSendingAllowed()).thenReturn(false);
 
         //when calling execute
         target.execute(mockContext);
 
-        verify(mockSession3Finished, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class));
-        verify(mockSession4Finished, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class));
+        verify(mockSession3Finished, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession4Finished, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
 
         // also verify that the session are removed
         verify(mockContext, times(1)).removeSession(mockSession3Finished);
@@ -279,8 +374,8 @@ public class BeaconSendingCaptureOnStateTest {
         when(statusResponse.getResponseCode()).thenReturn(Response.HTTP_BAD_REQUEST);
         when(statusResponse.isErroneousResponse()).thenReturn(true);
 
-        when(mockSession3Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class))).thenReturn(statusResponse);
-        when(mockSession4Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class))).thenReturn(mock(StatusResponse.class));
+        when(mockSession3Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class))).thenReturn(statusResponse);
+        when(mockSession4Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class))).thenReturn(mock(StatusResponse.class));
         when(mockSession3Finished.isEmpty()).thenReturn(false);
         when(mockSession3Finished.isDataSendingAllowed()).thenReturn(true);
         when(mockSession4Finished.isDataSendingAllowed()).thenReturn(true);
@@ -288,8 +383,8 @@ public class BeaconSendingCaptureOnStateTest {
         //when calling execute
         target.execute(mockContext);
 
-        verify(mockSession3Finished, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class));
-        verify(mockSession4Finished, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class));
+        verify(mockSession3Finished, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession4Finished, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
 
         verify(mockContext, times(1)).getAllFinishedAndConfiguredSessions();
         verify(mockContext, times(0)).removeSession(any(SessionWrapper.class));
@@ -308,8 +403,8 @@ public class BeaconSendingCaptureOnStateTest {
         when(statusResponse.getResponseCode()).thenReturn(Response.HTTP_OK);
         when(statusResponse.isErroneousResponse()).thenReturn(false);
 
-        when(mockSession3Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class))).thenReturn(erroneousStatusResponse);
-        when(mockSession4Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class))).thenReturn(statusResponse);
+        when(mockSession3Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class))).thenReturn(erroneousStatusResponse);
+        when(mockSession4Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class))).thenReturn(statusResponse);
         when(mockSession3Finished.isEmpty()).thenReturn(true);
         when(mockSession3Finished.isDataSendingAllowed()).thenReturn(true);
         when(mockSession4Finished.isDataSendingAllowed()).thenReturn(true);
@@ -317,8 +412,8 @@ public class BeaconSendingCaptureOnStateTest {
         //when calling execute
         target.execute(mockContext);
 
-        verify(mockSession3Finished, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class));
-        verify(mockSession4Finished, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class));
+        verify(mockSession3Finished, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession4Finished, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
         verify(mockSession3Finished, times(1)).clearCapturedData();
         verify(mockSession4Finished, times(1)).clearCapturedData();
 
@@ -337,19 +432,23 @@ public class BeaconSendingCaptureOnStateTest {
         when(statusResponse.isErroneousResponse()).thenReturn(true);
         when(statusResponse.getRetryAfterInMilliseconds()).thenReturn(12345L);
 
-        when(mockSession3Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class))).thenReturn(statusResponse);
-        when(mockSession4Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class))).thenReturn(statusResponse);
+        when(mockSession3Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class))).thenReturn(statusResponse);
+        when(mockSession4Finished.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class))).thenReturn(statusResponse);
         when(mockSession3Finished.isDataSendingAllowed()).thenReturn(true);
         when(mockSession4Finished.isDataSendingAllowed()).thenReturn(true);
 
         //when calling execute
         target.execute(mockContext);
+        verify(mockSession3Finished, times(1)).hasCriticalData();
+        verify(mockSession3Finished, times(1)).getNumBytesInCache();
         verify(mockSession3Finished, times(1)).isDataSendingAllowed();
-        verify(mockSession3Finished, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class));
+        verify(mockSession3Finished, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
         verifyNoMoreInteractions(mockSession3Finished);
 
-        // verify no interaction with second finished session
-        verifyZeroInteractions(mockSession4Finished);
+        // verify the second finished session was only prioritized, but not sent
+        verify(mockSession4Finished, times(1)).hasCriticalData();
+        verify(mockSession4Finished, times(1)).getNumBytesInCache();
+        verifyNoMoreInteractions(mockSession4Finished);
 
         // verify no interactions with open sessions
         verifyZeroInteractions(mockSession1Open, mockSession2Open);
@@ -374,11 +473,248 @@ public class BeaconSendingCaptureOnStateTest {
         //when calling execute
         target.execute(mockContext);
 
-        verify(mockSession1Open, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class));
-        verify(mockSession2Open, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class));
+        verify(mockSession1Open, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession2Open, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
         verify(mockContext, times(1)).setLastOpenSessionBeaconSendTime(org.mockito.Matchers.anyLong());
     }
 
+    @Test
+    public void finishedSessionsAreNotSentIfSendCycleBudgetIsExhausted() {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.isSendCycleBudgetExhausted()).thenReturn(true);
+        when(mockSession3Finished.isDataSendingAllowed()).thenReturn(true);
+        when(mockSession4Finished.isDataSendingAllowed()).thenReturn(true);
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then sending is postponed to the next cycle
+        verify(mockContext, times(1)).startSendCycle();
+        verify(mockSession3Finished, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession4Finished, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockContext, times(0)).removeSession(org.mockito.Matchers.any(SessionWrapper.class));
+    }
+
+    @Test
+    public void openSessionSendTimeIsNotUpdatedIfSendCycleBudgetIsExhausted() {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.isSendCycleBudgetExhausted()).thenReturn(true);
+        when(mockSession1Open.isDataSendingAllowed()).thenReturn(true);
+        when(mockSession2Open.isDataSendingAllowed()).thenReturn(true);
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then open sessions are sent again with the next cycle
+        verify(mockSession1Open, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession2Open, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockContext, times(0)).setLastOpenSessionBeaconSendTime(org.mockito.Matchers.anyLong());
+    }
+
+    @Test
+    public void openSessionsAreSentInPriorityOrderBeforeSendIntervalIfBeaconCacheSendThresholdIsReached() {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getLastOpenSessionBeaconSendTime()).thenReturn(40L);
+        when(mockContext.getSendInterval()).thenReturn(5000);
+        when(mockContext.getAllOpenAndConfiguredSessions()).thenReturn(Arrays.asList(mockSession2Open, mockSession1Open));
+        when(mockContext.getAllFinishedAndConfiguredSessions()).thenReturn(Collections.<SessionWrapper>emptyList());
+        when(mockContext.isBeaconCacheSendThresholdReached()).thenReturn(true, true, true, false);
+        when(mockSession2Open.isDataSendingAllowed()).thenReturn(true);
+        when(mockSession1Open.getNumBytesInCache()).thenReturn(100L);
+        when(mockSession2Open.getNumBytesInCache()).thenReturn(200L);
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then only the first session is sent, afterwards the cache is below the threshold
+        verify(mockSession2Open, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession1Open, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockContext, times(0)).setLastOpenSessionBeaconSendTime(org.mockito.Matchers.anyLong());
+    }
+
+    @Test
+    public void openSessionsAreNotSentBeforeSendIntervalIfBeaconCacheSendThresholdIsNotReached() {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getLastOpenSessionBeaconSendTime()).thenReturn(40L);
+        when(mockContext.getSendInterval()).thenReturn(5000);
+        when(mockSession2Open.isDataSendingAllowed()).thenReturn(true);
+        when(mockSession1Open.getNumBytesInCache()).thenReturn(100L);
+        when(mockSession2Open.getNumBytesInCache()).thenReturn(200L);
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then
+        verify(mockSession1Open, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession2Open, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+    }
+
+    @Test
+    public void emptyOpenSessionsAreNotSentIfBeaconCacheSendThresholdIsReached() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getLastOpenSessionBeaconSendTime()).thenReturn(40L);
+        when(mockContext.getSendInterval()).thenReturn(5000);
+        when(mockContext.getAllFinishedAndConfiguredSessions()).thenReturn(Collections.<SessionWrapper>emptyList());
+        when(mockContext.isBeaconCacheSendThresholdReached()).thenReturn(true);
+        when(mockSession2Open.isDataSendingAllowed()).thenReturn(true);
+        when(mockSession1Open.getNumBytesInCache()).thenReturn(100L);
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then
+        verify(mockSession1Open, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession2Open, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockContext, times(1)).waitForSendSignal(BeaconSendingContext.DEFAULT_SLEEP_TIME_MILLISECONDS);
+    }
+
+    @Test
+    public void sendingLargestOpenSessionsStopsAtTheFirstSessionWithoutData() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getLastOpenSessionBeaconSendTime()).thenReturn(40L);
+        when(mockContext.getSendInterval()).thenReturn(5000);
+        when(mockContext.getAllOpenAndConfiguredSessions()).thenReturn(Arrays.asList(mockSession1Open, mockSession2Open));
+        when(mockContext.getAllFinishedAndConfiguredSessions()).thenReturn(Collections.<SessionWrapper>emptyList());
+        when(mockContext.isBeaconCacheSendThresholdReached()).thenReturn(true);
+        when(mockSession1Open.isDataSendingAllowed()).thenReturn(true);
+        when(mockSession2Open.isDataSendingAllowed()).thenReturn(true);
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then the sessions after the first empty one are not looked at
+        verify(mockSession1Open, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession2Open, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession2Open, times(0)).isDataSendingAllowed();
+    }
+
+    @Test
+    public void openSessionsWithCriticalDataAreSentBeforeSendInterval() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getLastOpenSessionBeaconSendTime()).thenReturn(40L);
+        when(mockContext.getSendInterval()).thenReturn(5000);
+        when(mockContext.getOpenSessionsWithCriticalData()).thenReturn(Collections.singletonList(mockSession1Open));
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then only the session with the crash is sent, open sessions are still sent when the interval elapsed
+        verify(mockSession1Open, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession2Open, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockContext, times(0)).setLastOpenSessionBeaconSendTime(org.mockito.Matchers.anyLong());
+    }
+
+    @Test
+    public void openSessionsWithCriticalDataAreSentBeforeFinishedSessions() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getOpenSessionsWithCriticalData()).thenReturn(Collections.singletonList(mockSession1Open));
+        when(mockSession3Finished.isDataSendingAllowed()).thenReturn(true);
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then
+        InOrder inOrder = inOrder(mockSession1Open, mockSession3Finished);
+        inOrder.verify(mockSession1Open, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        inOrder.verify(mockSession3Finished, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+    }
+
+    @Test
+    public void sendingCriticalDataIsAbortedImmediatelyWhenTooManyRequestsResponseIsReceived() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        StatusResponse statusResponse = mock(StatusResponse.class);
+        when(statusResponse.getResponseCode()).thenReturn(Response.HTTP_TOO_MANY_REQUESTS);
+        when(statusResponse.isErroneousResponse()).thenReturn(true);
+        when(statusResponse.getRetryAfterInMilliseconds()).thenReturn(6543L);
+        when(mockSession1Open.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class)))
+            .thenReturn(statusResponse);
+        when(mockContext.getOpenSessionsWithCriticalData()).thenReturn(Collections.singletonList(mockSession1Open));
+        ArgumentCaptor<BeaconSendingCaptureOffState> argumentCaptor = ArgumentCaptor.forClass(BeaconSendingCaptureOffState.class);
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then finished and open sessions are not sent
+        verify(mockContext, times(1)).setNextState(argumentCaptor.capture());
+        assertThat(argumentCaptor.getAllValues().get(0).sleepTimeInMilliseconds, is(equalTo(6543L)));
+        verify(mockSession3Finished, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession2Open, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+    }
+
+    @Test
+    public void retryIsScheduledWhenCriticalDataCouldNotBeSent() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getOpenSessionsWithCriticalData()).thenReturn(Collections.singletonList(mockSession1Open));
+        when(mockSession1Open.isDataSendingAllowed()).thenReturn(true);
+        when(mockSession1Open.hasCriticalData()).thenReturn(true);
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then
+        verify(mockContext, times(1)).scheduleCriticalDataRetry();
+        verify(mockContext, times(0)).resetCriticalDataRetry();
+    }
+
+    @Test
+    public void retryIsResetWhenCriticalDataWasSent() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getOpenSessionsWithCriticalData()).thenReturn(Collections.singletonList(mockSession1Open));
+        when(mockSession1Open.isDataSendingAllowed()).thenReturn(true);
+        when(mockSession1Open.hasCriticalData()).thenReturn(false);
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then
+        verify(mockContext, times(1)).resetCriticalDataRetry();
+        verify(mockContext, times(0)).scheduleCriticalDataRetry();
+    }
+
+    @Test
+    public void waitTimeIsLimitedByTheScheduledCriticalDataRetry() throws InterruptedException {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        when(mockContext.getLastOpenSessionBeaconSendTime()).thenReturn(40L);
+        when(mockContext.getSendInterval()).thenReturn(5000);
+        when(mockContext.getCurrentTimestamp()).thenReturn(100L);
+        when(mockContext.isCriticalDataRetryScheduled()).thenReturn(true);
+        when(mockContext.getCriticalDataRetryTime()).thenReturn(400L);
+
+        //when calling execute
+        target.execute(mockContext);
+
+        // then
+        verify(mockContext, times(1)).waitForSendSignal(300L);
+    }
+
+    @Test
+    public void openSessionsAreSentWithTheSameChunkBuffer() {
+        //given
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+        BeaconChunkBuffer chunkBuffer = mock(BeaconChunkBuffer.class);
+        when(mockContext.newBeaconChunkBuffer()).thenReturn(chunkBuffer);
+        when(mockSession1Open.isDataSendingAllowed()).thenReturn(true);
+        when(mockSession2Open.isDataSendingAllowed()).thenReturn(true);
+
+        //when calling execute
+        target.execute(mockContext);
+
+        verify(mockSession1Open, times(1)).sendBeacon(any(HTTPClientProvider.class), eq(chunkBuffer));
+        verify(mockSession2Open, times(1)).sendBeacon(any(HTTPClientProvider.class), eq(chunkBuffer));
+    }
+
     @Test
     public void aBeaconSendingCaptureOnStateClearsOpenSessionDataIfSendingIsNotAllowed() {
         //given
@@ -389,8 +725,8 @@ public class BeaconSendingCaptureOnStateTest {
         //when calling execute
         target.execute(mockContext);
 
-        verify(mockSession1Open, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class));
-        verify(mockSession2Open, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class));
+        verify(mockSession1Open, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
+        verify(mockSession2Open, times(0)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
         verify(mockSession1Open, times(1)).clearCapturedData();
         verify(mockSession2Open, times(1)).clearCapturedData();
         verify(mockContext, times(1)).setLastOpenSessionBeaconSendTime(org.mockito.Matchers.anyLong());
@@ -404,8 +740,8 @@ public class BeaconSendingCaptureOnStateTest {
         when(statusResponse.isErroneousResponse()).thenReturn(true);
         when(statusResponse.getRetryAfterInMilliseconds()).thenReturn(12345L);
 
-        when(mockSession1Open.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class))).thenReturn(statusResponse);
-        when(mockSession2Open.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class))).thenReturn(statusResponse);
+        when(mockSession1Open.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class))).thenReturn(statusResponse);
+        when(mockSession2Open.sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class))).thenReturn(statusResponse);
         when(mockSession1Open.isDataSendingAllowed()).thenReturn(true);
         when(mockSession2Open.isDataSendingAllowed()).thenReturn(true);
 
@@ -414,12 +750,16 @@ public class BeaconSendingCaptureOnStateTest {
         //when calling execute
         target.execute(mockContext);
 
-        verify(mockSession1Open, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class));
+        verify(mockSession1Open, times(1)).sendBeacon(org.mockito.Matchers.any(HTTPClientProvider.class), org.mockito.Matchers.any(BeaconChunkBuffer.class));
         verify(mockSession1Open, times(1)).isDataSendingAllowed();
+        verify(mockSession1Open, times(1)).hasCriticalData();
+        verify(mockSession1Open, times(1)).getNumBytesInCache();
         verifyNoMoreInteractions(mockSession1Open);
 
-        // ensure that second session was not invoked at all
-        verifyZeroInteractions(mockSession2Open);
+        // ensure that second session was only prioritized, but not sent
+        verify(mockSession2Open, times(1)).hasCriticalData();
+        verify(mockSession2Open, times(1)).getNumBytesInCache();
+        verifyNoMoreInteractions(mockSession2Open);
 
         // ensure also transition to CaptureOffState
         ArgumentCaptor<BeaconSendingCaptureOffState> argumentCaptor = ArgumentCaptor.forClass(BeaconSendingCaptureOffState.class);
@@ -443,4 +783,101 @@ public class BeaconSendingCaptureOnStateTest {
 
         verify(mockContext, times(1)).setNextState(org.mockito.Matchers.any(BeaconSendingCaptureOffState.class));
     }
+
+    @Test
+    public void finishedSessionsAreSentInParallelIfAvailable() throws InterruptedException {
+        //given
+        ParallelSessionSender mockParallelSender = mock(ParallelSessionSender.class);
+        StatusResponse errorResponse = mock(StatusResponse.class);
+        when(errorResponse.getResponseCode()).thenReturn(Response.HTTP_BAD_REQUEST);
+        when(errorResponse.isErroneousResponse()).thenReturn(true);
+        when(mockParallelSender.sendBeacons(eq(mockContext), anyListOf(SessionWrapper.class)))
+            .thenReturn(new StatusResponse[]{errorResponse, mock(StatusResponse.class)});
+        when(mockContext.getParallelSessionSender()).thenReturn(mockParallelSender);
+        when(mockContext.getAllOpenAndConfiguredSessions()).thenReturn(Collections.<SessionWrapper>emptyList());
+        when(mockSession3Finished.isDataSendingAllowed()).thenReturn(true);
+        when(mockSession3Finished.isEmpty()).thenReturn(false);
+        when(mockSession4Finished.isDataSendingAllowed()).thenReturn(true);
+
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+
+        //when calling execute
+        target.execute(mockContext);
+
+        //then the unsuccessful session is kept, the other one is removed
+        verify(mockParallelSender, times(1)).sendBeacons(mockContext, Arrays.asList(mockSession3Finished, mockSession4Finished));
+        verify(mockContext, times(0)).removeSession(mockSession3Finished);
+        verify(mockContext, times(1)).removeSession(mockSession4Finished);
+        verify(mockSession3Finished, times(0)).sendBeacon(any(HTTPClientProvider.class), any(BeaconChunkBuffer.class));
+        verify(mockSession4Finished, times(0)).sendBeacon(any(HTTPClientProvider.class), any(BeaconChunkBuffer.class));
+    }
+
+    @Test
+    public void finishedSessionsNotAllowedToSendAreRemovedWithoutSendingInParallel() throws InterruptedException {
+        //given
+        ParallelSessionSender mockParallelSender = mock(ParallelSessionSender.class);
+        when(mockParallelSender.sendBeacons(eq(mockContext), anyListOf(SessionWrapper.class))).thenReturn(new StatusResponse[]{mock(StatusResponse.class)});
+        when(mockContext.getParallelSessionSender()).thenReturn(mockParallelSender);
+        when(mockContext.getAllOpenAndConfiguredSessions()).thenReturn(Collections.<SessionWrapper>emptyList());
+        when(mockSession3Finished.isDataSendingAllowed()).thenReturn(false);
+        when(mockSession4Finished.isDataSendingAllowed()).thenReturn(true);
+
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+
+        //when calling execute
+        target.execute(mockContext);
+
+        //then
+        verify(mockParallelSender, times(1)).sendBeacons(mockContext, Collections.singletonList(mockSession4Finished));
+        verify(mockContext, times(1)).removeSession(mockSession3Finished);
+        verify(mockContext, times(1)).removeSession(mockSession4Finished);
+    }
+
+    @Test
+    public void openSessionsAreSentInParallelIfAvailable() throws InterruptedException {
+        //given
+        ParallelSessionSender mockParallelSender = mock(ParallelSessionSender.class);
+        when(mockParallelSender.sendBeacons(eq(mockContext), anyListOf(SessionWrapper.class))).thenReturn(new StatusResponse[]{mock(StatusResponse.class)});
+        when(mockContext.getParallelSessionSender()).thenReturn(mockParallelSender);
+        when(mockContext.getAllFinishedAndConfiguredSessions()).thenReturn(Collections.<SessionWrapper>emptyList());
+        when(mockSession2Open.isDataSendingAllowed()).thenReturn(false);
+
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+
+        //when calling execute
+        target.execute(mockContext);
+
+        //then
+        verify(mockParallelSender, times(1)).sendBeacons(mockContext, Collections.singletonList(mockSession1Open));
+        verify(mockSession2Open, times(1)).clearCapturedData();
+        verify(mockSession1Open, times(0)).sendBeacon(any(HTTPClientProvider.class), any(BeaconChunkBuffer.class));
+        verify(mockContext, times(1)).setLastOpenSessionBeaconSendTime(42L);
+    }
+
+    @Test
+    public void tooManyRequestsResponseFromParallelSenderTransitionsToCaptureOffState() throws InterruptedException {
+        //given
+        StatusResponse statusResponse = mock(StatusResponse.class);
+        when(statusResponse.getResponseCode()).thenReturn(Response.HTTP_TOO_MANY_REQUESTS);
+        when(statusResponse.isErroneousResponse()).thenReturn(true);
+        when(statusResponse.getRetryAfterInMilliseconds()).thenReturn(12345L);
+
+        ParallelSessionSender mockParallelSender = mock(ParallelSessionSender.class);
+        when(mockParallelSender.sendBeacons(eq(mockContext), anyListOf(SessionWrapper.class))).thenReturn(new StatusResponse[]{statusResponse, null});
+        when(mockContext.getParallelSessionSender()).thenReturn(mockParallelSender);
+        when(mockSession3Finished.isDataSendingAllowed()).thenReturn(true);
+        when(mockSession4Finished.isDataSendingAllowed()).thenReturn(true);
+
+        BeaconSendingCaptureOnState target = new BeaconSendingCaptureOnState();
+
+        //when calling execute
+        target.execute(mockContext);
+
+        //then both sessions are kept and open sessions are not sent
+        verify(mockContext, times(0)).removeSession(any(SessionWrapper.class));
+        verify(mockParallelSender, times(1)).sendBeacons(eq(mockContext), anyListOf(SessionWrapper.class));
+        ArgumentCaptor<BeaconSendingCaptureOffState> argumentCaptor = ArgumentCaptor.forClass(BeaconSendingCaptureOffState.class);
+        verify(mockContext, times(1)).setNextState(argumentCaptor.capture());
+        assertThat(argumentCaptor.getAllValues().get(0).sleepTimeInMilliseconds, is(equalTo(12345L)));
+    }
 }
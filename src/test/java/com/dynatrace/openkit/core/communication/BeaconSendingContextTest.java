@@ -17,30 +17,42 @@
 package com.dynatrace.openkit.core.communication;
 
 import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.caching.BeaconCache;
+import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
 import com.dynatrace.openkit.core.configuration.BeaconConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
 import com.dynatrace.openkit.core.objects.SessionImpl;
+import com.dynatrace.openkit.core.util.CoalescingSignal;
+import com.dynatrace.openkit.protocol.BeaconChunkBuffer;
 import com.dynatrace.openkit.protocol.HTTPClient;
 import com.dynatrace.openkit.protocol.StatusResponse;
 import com.dynatrace.openkit.providers.HTTPClientProvider;
 import com.dynatrace.openkit.providers.TimingProvider;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -62,9 +74,10 @@ public class BeaconSendingContextTest {
         when(logger.isInfoEnabled()).thenReturn(true);
         when(logger.isDebugEnabled()).thenReturn(true);
         configuration = mock(Configuration.class);
+        when(configuration.getHttpClientConfig()).thenReturn(mock(HTTPClientConfiguration.class));
         final HTTPClient httpClient = mock(HTTPClient.class);
         final StatusResponse statusResponse = new StatusResponse(logger, "", 200, Collections.<String, List<String>>emptyMap());
-        when(httpClient.sendBeaconRequest(isA(String.class), any(byte[].class))).thenReturn(statusResponse);
+        when(httpClient.sendBeaconRequest(isA(String.class), any(BeaconChunkBuffer.class))).thenReturn(statusResponse);
         httpClientProvider = mock(HTTPClientProvider.class);
         when(httpClientProvider.createClient(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
         timingProvider = mock(TimingProvider.class);
@@ -81,6 +94,71 @@ public class BeaconSendingContextTest {
         assertThat(target.getCurrentState(), instanceOf(BeaconSendingInitState.class));
     }
 
+    @Test
+    public void noWorkerPoolIsCreatedForASingleWorker() {
+
+        when(configuration.getBeaconSenderWorkers()).thenReturn(1);
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+                timingProvider, mockState);
+
+        assertThat(target.getParallelSessionSender(), is(nullValue()));
+    }
+
+    @Test
+    public void workerPoolIsCreatedOnceForMultipleWorkers() {
+
+        when(configuration.getBeaconSenderWorkers()).thenReturn(4);
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+                timingProvider, mockState);
+
+        ParallelSessionSender obtained = target.getParallelSessionSender();
+
+        assertThat(obtained, is(notNullValue()));
+        assertThat(obtained, is(instanceOf(BeaconSendingWorkerPool.class)));
+        assertThat(((BeaconSendingWorkerPool) obtained).getNumWorkers(), is(4));
+        assertThat(target.getParallelSessionSender(), is(sameInstance(obtained)));
+        obtained.shutdown();
+    }
+
+    @Test
+    public void asyncSenderIsCreatedIfAsyncTransportIsEnabled() {
+
+        HTTPClientConfiguration httpClientConfiguration = mock(HTTPClientConfiguration.class);
+        when(httpClientConfiguration.isAsyncTransportEnabled()).thenReturn(true);
+        when(configuration.getHttpClientConfig()).thenReturn(httpClientConfiguration);
+        when(configuration.getBeaconSenderWorkers()).thenReturn(1);
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+                timingProvider, mockState);
+
+        ParallelSessionSender obtained = target.getParallelSessionSender();
+
+        assertThat(obtained, is(instanceOf(BeaconSendingAsyncSender.class)));
+        assertThat(((BeaconSendingAsyncSender) obtained).getMaxSessionsInFlight(),
+                is(BeaconSendingAsyncSender.DEFAULT_MAX_SESSIONS_IN_FLIGHT));
+    }
+
+    @Test
+    public void workerPoolIsReleasedWhenTerminalStateIsReached() {
+
+        when(configuration.getBeaconSenderWorkers()).thenReturn(4);
+        final AbstractBeaconSendingState terminalState = mock(AbstractBeaconSendingState.class);
+        when(terminalState.isTerminalState()).thenReturn(true);
+        final BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+                timingProvider, mockState);
+        assertThat(target.getParallelSessionSender(), is(notNullValue()));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                target.setNextState(terminalState);
+                return null;
+            }
+        }).when(mockState).execute(target);
+
+        target.executeCurrentState();
+
+        assertThat(target.getParallelSessionSender(), is(nullValue()));
+    }
+
     @Test
     public void setCurrentStateChangesState() {
 
@@ -186,6 +264,93 @@ public class BeaconSendingContextTest {
         assertThat(obtained, is(false));
     }
 
+    @Test
+    public void sendCycleBudgetIsNeverExhaustedWithoutBudget() {
+
+        // given
+        when(configuration.getSendCycleBudget()).thenReturn(Configuration.NO_SEND_CYCLE_BUDGET);
+        when(timingProvider.provideTimestampInMilliseconds()).thenReturn(1000L, Long.MAX_VALUE - 1);
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+                timingProvider);
+
+        // when
+        target.startSendCycle();
+
+        // then
+        assertThat(target.isSendCycleBudgetExhausted(), is(false));
+    }
+
+    @Test
+    public void sendCycleBudgetIsExhaustedWhenBudgetElapsed() {
+
+        // given
+        when(configuration.getSendCycleBudget()).thenReturn(500L);
+        when(timingProvider.provideTimestampInMilliseconds()).thenReturn(1000L, 1499L, 1500L);
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+                timingProvider);
+
+        // when
+        target.startSendCycle();
+
+        // then
+        assertThat(target.isSendCycleBudgetExhausted(), is(false));
+        assertThat(target.isSendCycleBudgetExhausted(), is(true));
+    }
+
+    @Test
+    public void sendCycleBudgetIsNotExhaustedBeforeFirstSendCycle() {
+
+        // given
+        when(timingProvider.provideTimestampInMilliseconds()).thenReturn(Long.MAX_VALUE - 1);
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+                timingProvider);
+
+        // then
+        assertThat(target.isSendCycleBudgetExhausted(), is(false));
+    }
+
+    @Test
+    public void beaconCacheSendThresholdIsNotReachedWithoutBeaconCache() {
+
+        // given
+        when(configuration.getBeaconCacheConfiguration()).thenReturn(new BeaconCacheConfiguration(0L, 1L, 2L, false, null, false, 0L));
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+                timingProvider);
+
+        // then
+        assertThat(target.isBeaconCacheSendThresholdReached(), is(false));
+    }
+
+    @Test
+    public void beaconCacheSendThresholdIsNotReachedIfDisabled() {
+
+        // given
+        BeaconCache beaconCache = mock(BeaconCache.class);
+        when(beaconCache.getNumBytesInCache()).thenReturn(Long.MAX_VALUE);
+        when(configuration.getBeaconCacheConfiguration()).thenReturn(new BeaconCacheConfiguration(0L, 1L, 2L));
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+                timingProvider, beaconCache);
+
+        // then
+        assertThat(target.isBeaconCacheSendThresholdReached(), is(false));
+    }
+
+    @Test
+    public void beaconCacheSendThresholdIsReachedIfCacheSizeIsEqualOrGreater() {
+
+        // given
+        BeaconCache beaconCache = mock(BeaconCache.class);
+        when(beaconCache.getNumBytesInCache()).thenReturn(999L, 1000L, 1001L);
+        when(configuration.getBeaconCacheConfiguration()).thenReturn(new BeaconCacheConfiguration(0L, 1L, 2L, false, null, false, 1000L));
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+                timingProvider, beaconCache);
+
+        // then
+        assertThat(target.isBeaconCacheSendThresholdReached(), is(false));
+        assertThat(target.isBeaconCacheSendThresholdReached(), is(true));
+        assertThat(target.isBeaconCacheSendThresholdReached(), is(true));
+    }
+
     @Test
     public void aDefaultConstructedContextIsNotInitialized() {
 
@@ -217,7 +382,7 @@ public class BeaconSendingContextTest {
         // given
         BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
                 timingProvider);
-        AbstractBeaconSendingState terminalState = mock(AbstractBeaconSendingState.class);
+        final AbstractBeaconSendingState terminalState = mock(AbstractBeaconSendingState.class);
         when(terminalState.isTerminalState()).thenReturn(true);
 
         // then (context starts with InitState)
@@ -429,6 +594,54 @@ public class BeaconSendingContextTest {
         assertThat(target.getAllFinishedAndConfiguredSessions(), is(empty()));
     }
 
+    @Test
+    public void startingAndFinishingSessionsSignalsSending() throws InterruptedException {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+                timingProvider);
+        SessionImpl mockSession = mock(SessionImpl.class);
+
+        // when
+        target.startSession(mockSession);
+
+        // then
+        assertThat(target.getSendSignal().isSignalled(), is(true));
+
+        // when consuming the signal and finishing the session
+        target.waitForSendSignal(0L);
+        target.finishSession(mockSession);
+
+        // then
+        assertThat(target.getSendSignal().isSignalled(), is(true));
+    }
+
+    @Test
+    public void requestingShutdownSignalsSending() {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+                timingProvider);
+
+        // when
+        target.requestShutdown();
+
+        // then
+        assertThat(target.getSendSignal().isSignalled(), is(true));
+    }
+
+    @Test
+    public void waitForSendSignalReturnsAfterTimeout() throws InterruptedException {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+                timingProvider);
+
+        // when, then (returns)
+        target.waitForSendSignal(1L);
+        assertThat(target.getSendSignal().isSignalled(), is(false));
+    }
+
     @Test
     public void disableCapture() {
 
@@ -639,6 +852,145 @@ public class BeaconSendingContextTest {
         assertThat(getAllFinishedAndConfiguredSessions(target), containsInAnyOrder(mockSessionOne, mockSessionTwo));
     }
 
+    @Test
+    public void prioritizedOpenSessionsAreOrderedByCriticalDataAndSize() {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+            timingProvider);
+        SessionImpl mockSessionOne = mock(SessionImpl.class);
+        SessionImpl mockSessionTwo = mock(SessionImpl.class);
+        SessionImpl mockSessionThree = mock(SessionImpl.class);
+        SessionImpl mockSessionFour = mock(SessionImpl.class);
+        when(mockSessionTwo.getNumBytesInCache()).thenReturn(100L);
+        when(mockSessionThree.hasCriticalData()).thenReturn(true);
+        when(mockSessionFour.getNumBytesInCache()).thenReturn(100L);
+
+        // when
+        target.startSession(mockSessionOne);
+        target.startSession(mockSessionTwo);
+        target.startSession(mockSessionThree);
+        target.startSession(mockSessionFour);
+        for (SessionWrapper session : target.getAllNewSessions()) {
+            session.updateBeaconConfiguration(mock(BeaconConfiguration.class));
+        }
+
+        // then sessions with crashes or errors come first, sessions of the same size keep their order
+        assertThat(extractSessionImpl(BeaconSendingContext.prioritize(target.getAllOpenAndConfiguredSessions())), contains(mockSessionThree, mockSessionTwo, mockSessionFour, mockSessionOne));
+    }
+
+    @Test
+    public void prioritizedFinishedSessionsWithCriticalDataComeFirst() {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+            timingProvider);
+        SessionImpl mockSessionOne = mock(SessionImpl.class);
+        SessionImpl mockSessionTwo = mock(SessionImpl.class);
+        when(mockSessionTwo.hasCriticalData()).thenReturn(true);
+
+        // when
+        target.startSession(mockSessionOne);
+        target.startSession(mockSessionTwo);
+        target.finishSession(mockSessionOne);
+        target.finishSession(mockSessionTwo);
+        for (SessionWrapper session : target.getAllNewSessions()) {
+            session.updateBeaconConfiguration(mock(BeaconConfiguration.class));
+        }
+
+        // then
+        assertThat(extractSessionImpl(BeaconSendingContext.prioritize(target.getAllFinishedAndConfiguredSessions())),
+            contains(mockSessionTwo, mockSessionOne));
+    }
+
+    @Test
+    public void openSessionsWithCriticalDataAreOnlyLookedUpAfterCriticalDataWasAdded() throws InterruptedException {
+
+        // given
+        BeaconCache beaconCache = mock(BeaconCache.class);
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+            timingProvider, beaconCache);
+        SessionImpl mockSessionOne = mock(SessionImpl.class);
+        SessionImpl mockSessionTwo = mock(SessionImpl.class);
+        when(mockSessionTwo.hasCriticalData()).thenReturn(true);
+        target.startSession(mockSessionOne);
+        target.startSession(mockSessionTwo);
+        for (SessionWrapper session : target.getAllNewSessions()) {
+            session.updateBeaconConfiguration(mock(BeaconConfiguration.class));
+        }
+        ArgumentCaptor<CoalescingSignal> signalCaptor = ArgumentCaptor.forClass(CoalescingSignal.class);
+        verify(beaconCache, times(2)).addCriticalDataAddedSignal(signalCaptor.capture());
+        assertThat(signalCaptor.getAllValues(), hasItem(sameInstance(target.getSendSignal())));
+
+        // when no crash or error was added, then
+        assertThat(target.getOpenSessionsWithCriticalData(), is(empty()));
+
+        // and when a crash was added
+        for (CoalescingSignal signal : signalCaptor.getAllValues()) {
+            signal.signal();
+        }
+
+        // then only the session holding it is returned, once
+        List<SessionWrapper> obtained = target.getOpenSessionsWithCriticalData();
+        assertThat(obtained.size(), is(1));
+        assertThat(obtained.get(0).getSession(), is(sameInstance(mockSessionTwo)));
+        assertThat(target.getOpenSessionsWithCriticalData(), is(empty()));
+    }
+
+    @Test
+    public void openSessionsWithCriticalDataAreLookedUpAgainWhenTheScheduledRetryIsDue() throws InterruptedException {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+            timingProvider, mock(BeaconCache.class));
+        SessionImpl mockSession = mock(SessionImpl.class);
+        when(mockSession.hasCriticalData()).thenReturn(true);
+        target.startSession(mockSession);
+        target.getAllNewSessions().get(0).updateBeaconConfiguration(mock(BeaconConfiguration.class));
+        when(timingProvider.provideTimestampInMilliseconds()).thenReturn(1000L);
+
+        // when
+        target.scheduleCriticalDataRetry();
+
+        // then the session is not looked up before the retry is due
+        assertThat(target.isCriticalDataRetryScheduled(), is(true));
+        assertThat(target.getCriticalDataRetryTime(),
+            is(equalTo(1000L + BeaconSendingContext.CRITICAL_DATA_RETRY_DELAY_MILLISECONDS[0])));
+        assertThat(target.getOpenSessionsWithCriticalData(), is(empty()));
+
+        // and when the retry is due
+        when(timingProvider.provideTimestampInMilliseconds())
+            .thenReturn(1000L + BeaconSendingContext.CRITICAL_DATA_RETRY_DELAY_MILLISECONDS[0]);
+
+        // then
+        List<SessionWrapper> obtained = target.getOpenSessionsWithCriticalData();
+        assertThat(obtained.size(), is(1));
+        assertThat(obtained.get(0).getSession(), is(sameInstance(mockSession)));
+    }
+
+    @Test
+    public void criticalDataRetryDelayIncreasesUntilTheRetryIsReset() {
+
+        // given
+        BeaconSendingContext target = new BeaconSendingContext(logger, configuration, httpClientProvider,
+            timingProvider, mock(BeaconCache.class));
+        long[] delays = BeaconSendingContext.CRITICAL_DATA_RETRY_DELAY_MILLISECONDS;
+
+        // when retried more often than there are delays, then the last delay is kept
+        for (int i = 0; i <= delays.length; i++) {
+            target.scheduleCriticalDataRetry();
+            assertThat(target.getCriticalDataRetryTime(), is(equalTo(delays[Math.min(i, delays.length - 1)])));
+        }
+
+        // and when the retry is reset
+        target.resetCriticalDataRetry();
+
+        // then
+        assertThat(target.isCriticalDataRetryScheduled(), is(false));
+        target.scheduleCriticalDataRetry();
+        assertThat(target.getCriticalDataRetryTime(), is(equalTo(delays[0])));
+    }
+
 
     private static List<SessionImpl> getAllNewSessions(BeaconSendingContext target) {
         return extractSessionImpl(target.getAllNewSessions());
@@ -0,0 +1,223 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.communication;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.protocol.BeaconChunkBuffer;
+import com.dynatrace.openkit.protocol.Response;
+import com.dynatrace.openkit.protocol.StatusResponse;
+import com.dynatrace.openkit.providers.HTTPClientProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class BeaconSendingWorkerPoolTest {
+
+    private BeaconSendingContext context;
+    private HTTPClientProvider httpClientProvider;
+    private BeaconSendingWorkerPool target;
+
+    @Before
+    public void setUp() {
+        httpClientProvider = mock(HTTPClientProvider.class);
+        context = mock(BeaconSendingContext.class);
+        when(context.getHTTPClientProvider()).thenReturn(httpClientProvider);
+        when(context.newBeaconChunkBuffer()).thenReturn(mock(BeaconChunkBuffer.class));
+    }
+
+    @After
+    public void tearDown() {
+        if (target != null) {
+            target.shutdown();
+        }
+    }
+
+    @Test
+    public void allSessionsAreSentAndResponsesAreReturnedInOrder() throws InterruptedException {
+        // given
+        target = new BeaconSendingWorkerPool(2);
+        SessionWrapper session1 = mock(SessionWrapper.class);
+        SessionWrapper session2 = mock(SessionWrapper.class);
+        SessionWrapper session3 = mock(SessionWrapper.class);
+        StatusResponse response1 = statusResponse(200);
+        StatusResponse response3 = statusResponse(200);
+        when(session1.sendBeacon(any(HTTPClientProvider.class), any(BeaconChunkBuffer.class))).thenReturn(response1);
+        when(session3.sendBeacon(any(HTTPClientProvider.class), any(BeaconChunkBuffer.class))).thenReturn(response3);
+
+        // when
+        StatusResponse[] obtained = target.sendBeacons(context, Arrays.asList(session1, session2, session3));
+
+        // then
+        assertThat(obtained, is(arrayWithSize(3)));
+        assertThat(obtained[0], is(sameInstance(response1)));
+        assertThat(obtained[1], is(nullValue()));
+        assertThat(obtained[2], is(sameInstance(response3)));
+        verify(session1, times(1)).sendBeacon(eq(httpClientProvider), any(BeaconChunkBuffer.class));
+        verify(session2, times(1)).sendBeacon(eq(httpClientProvider), any(BeaconChunkBuffer.class));
+        verify(session3, times(1)).sendBeacon(eq(httpClientProvider), any(BeaconChunkBuffer.class));
+    }
+
+    @Test
+    public void sessionsAreSentInParallel() throws InterruptedException {
+        // given
+        target = new BeaconSendingWorkerPool(2);
+        final CountDownLatch bothSending = new CountDownLatch(2);
+        Answer<StatusResponse> waitForOtherSession = new Answer<StatusResponse>() {
+            @Override
+            public StatusResponse answer(InvocationOnMock invocation) throws Throwable {
+                bothSending.countDown();
+                // only completes, if the other session is sent at the same time
+                return bothSending.await(5, TimeUnit.SECONDS) ? statusResponse(200) : null;
+            }
+        };
+        SessionWrapper session1 = mock(SessionWrapper.class);
+        SessionWrapper session2 = mock(SessionWrapper.class);
+        when(session1.sendBeacon(any(HTTPClientProvider.class), any(BeaconChunkBuffer.class))).thenAnswer(waitForOtherSession);
+        when(session2.sendBeacon(any(HTTPClientProvider.class), any(BeaconChunkBuffer.class))).thenAnswer(waitForOtherSession);
+
+        // when
+        StatusResponse[] obtained = target.sendBeacons(context, Arrays.asList(session1, session2));
+
+        // then
+        assertThat(obtained[0].getResponseCode(), is(200));
+        assertThat(obtained[1].getResponseCode(), is(200));
+    }
+
+    @Test
+    public void noFurtherSessionsAreSentAfterTooManyRequestsResponse() throws InterruptedException {
+        // given
+        target = new BeaconSendingWorkerPool(1);
+        SessionWrapper session1 = mock(SessionWrapper.class);
+        SessionWrapper session2 = mock(SessionWrapper.class);
+        StatusResponse tooManyRequests = statusResponse(Response.HTTP_TOO_MANY_REQUESTS);
+        when(session1.sendBeacon(any(HTTPClientProvider.class), any(BeaconChunkBuffer.class))).thenReturn(tooManyRequests);
+
+        // when
+        StatusResponse[] obtained = target.sendBeacons(context, Arrays.asList(session1, session2));
+
+        // then
+        assertThat(obtained[0], is(sameInstance(tooManyRequests)));
+        assertThat(obtained[1], is(nullValue()));
+        verify(session2, never()).sendBeacon(any(HTTPClientProvider.class), any(BeaconChunkBuffer.class));
+    }
+
+    @Test
+    public void chunkBuffersAreReusedByWorkers() throws InterruptedException {
+        // given
+        target = new BeaconSendingWorkerPool(1);
+        SessionWrapper session1 = mock(SessionWrapper.class);
+        SessionWrapper session2 = mock(SessionWrapper.class);
+
+        // when
+        target.sendBeacons(context, Arrays.asList(session1, session2));
+
+        // then
+        verify(context, times(1)).newBeaconChunkBuffer();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void runtimeExceptionsArePropagated() throws InterruptedException {
+        // given
+        target = new BeaconSendingWorkerPool(1);
+        SessionWrapper session = mock(SessionWrapper.class);
+        when(session.sendBeacon(any(HTTPClientProvider.class), any(BeaconChunkBuffer.class))).thenThrow(new IllegalStateException());
+
+        // when, then
+        target.sendBeacons(context, Collections.singletonList(session));
+    }
+
+    @Test
+    public void interruptedCallerWaitsForSessionsBeingSent() throws InterruptedException {
+        // given
+        target = new BeaconSendingWorkerPool(1);
+        final CountDownLatch sending = new CountDownLatch(1);
+        final CountDownLatch responseReceived = new CountDownLatch(1);
+        final AtomicBoolean sessionSent = new AtomicBoolean(false);
+        final SessionWrapper session = mock(SessionWrapper.class);
+        when(session.sendBeacon(any(HTTPClientProvider.class), any(BeaconChunkBuffer.class))).thenAnswer(new Answer<StatusResponse>() {
+            @Override
+            public StatusResponse answer(InvocationOnMock invocation) throws Throwable {
+                sending.countDown();
+                // like a blocking HTTP request, which ignores interrupts
+                boolean received = false;
+                while (!received) {
+                    try {
+                        received = responseReceived.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        // keep waiting
+                    }
+                }
+                sessionSent.set(true);
+                return statusResponse(200);
+            }
+        });
+        final AtomicBoolean sessionSentWhenInterrupted = new AtomicBoolean(false);
+        Thread caller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    target.sendBeacons(context, Collections.singletonList(session));
+                } catch (InterruptedException e) {
+                    sessionSentWhenInterrupted.set(sessionSent.get());
+                }
+            }
+        });
+        caller.start();
+        assertThat(sending.await(5, TimeUnit.SECONDS), is(true));
+
+        // when
+        caller.interrupt();
+        caller.join(100);
+
+        // then the caller still waits for the session
+        assertThat(caller.isAlive(), is(true));
+
+        // and when
+        responseReceived.countDown();
+        caller.join(TimeUnit.SECONDS.toMillis(5));
+
+        // then
+        assertThat(caller.isAlive(), is(false));
+        assertThat(sessionSentWhenInterrupted.get(), is(true));
+    }
+
+    private static StatusResponse statusResponse(int responseCode) {
+        return new StatusResponse(mock(Logger.class), "", responseCode, Collections.<String, List<String>>emptyMap());
+    }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.core.communication;
+
+import com.dynatrace.openkit.core.configuration.BeaconConfiguration;
+import com.dynatrace.openkit.core.objects.SessionImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class SessionRegistryTest {
+
+    private SessionImpl sessionOne;
+    private SessionImpl sessionTwo;
+    private SessionImpl sessionThree;
+
+    @Before
+    public void setUp() {
+        sessionOne = mock(SessionImpl.class);
+        sessionTwo = mock(SessionImpl.class);
+        sessionThree = mock(SessionImpl.class);
+    }
+
+    @Test
+    public void addedSessionsAreNewInOrderOfAdding() {
+
+        // given
+        SessionRegistry target = new SessionRegistry();
+
+        // when
+        SessionWrapper wrapperOne = target.add(sessionOne);
+        SessionWrapper wrapperTwo = target.add(sessionTwo);
+        SessionWrapper wrapperThree = target.add(sessionThree);
+
+        // then
+        assertThat(target.getNewSessions(), contains(wrapperOne, wrapperTwo, wrapperThree));
+        assertThat(target.getOpenSessions(), is(empty()));
+        assertThat(target.getFinishedSessions(), is(empty()));
+        assertThat(target.hasNewOrFinishedSessions(), is(true));
+    }
+
+    @Test
+    public void addingSessionTwiceReturnsExistingWrapper() {
+
+        // given
+        SessionRegistry target = new SessionRegistry();
+        SessionWrapper wrapper = target.add(sessionOne);
+
+        // when
+        SessionWrapper obtained = target.add(sessionOne);
+
+        // then
+        assertThat(obtained, is(sameInstance(wrapper)));
+        assertThat(target.getAllSessions(), contains(wrapper));
+        assertThat(target.get(sessionOne), is(sameInstance(wrapper)));
+    }
+
+    @Test
+    public void configuredSessionsAreMovedToOpenSessions() {
+
+        // given
+        SessionRegistry target = new SessionRegistry();
+        SessionWrapper wrapperOne = target.add(sessionOne);
+        SessionWrapper wrapperTwo = target.add(sessionTwo);
+
+        // when
+        wrapperTwo.updateBeaconConfiguration(new BeaconConfiguration(1));
+
+        // then
+        assertThat(target.getNewSessions(), contains(wrapperOne));
+        assertThat(target.getOpenSessions(), contains(wrapperTwo));
+        assertThat(target.getFinishedSessions(), is(empty()));
+    }
+
+    @Test
+    public void finishedSessionsAreMovedToFinishedSessionsOnceConfigured() {
+
+        // given
+        SessionRegistry target = new SessionRegistry();
+        SessionWrapper wrapperOne = target.add(sessionOne);
+        SessionWrapper wrapperTwo = target.add(sessionTwo);
+        wrapperOne.updateBeaconConfiguration(new BeaconConfiguration(1));
+
+        // when
+        wrapperOne.finishSession();
+        wrapperTwo.finishSession();
+
+        // then unconfigured sessions are still new
+        assertThat(target.getNewSessions(), contains(wrapperTwo));
+        assertThat(target.getOpenSessions(), is(empty()));
+        assertThat(target.getFinishedSessions(), contains(wrapperOne));
+
+        // when
+        wrapperTwo.updateBeaconConfiguration(new BeaconConfiguration(1));
+
+        // then
+        assertThat(target.getNewSessions(), is(empty()));
+        assertThat(target.getFinishedSessions(), contains(wrapperOne, wrapperTwo));
+    }
+
+    @Test
+    public void removedSessionsAreNotReAddedByStateChanges() {
+
+        // given
+        SessionRegistry target = new SessionRegistry();
+        SessionWrapper wrapperOne = target.add(sessionOne);
+        SessionWrapper wrapperTwo = target.add(sessionTwo);
+        wrapperOne.updateBeaconConfiguration(new BeaconConfiguration(1));
+
+        // when
+        boolean obtained = target.remove(wrapperOne);
+        wrapperOne.finishSession();
+
+        // then
+        assertThat(obtained, is(true));
+        assertThat(target.remove(wrapperOne), is(false));
+        assertThat(target.get(sessionOne), is(nullValue()));
+        assertThat(target.getAllSessions(), containsInAnyOrder(wrapperTwo));
+        assertThat(target.getOpenSessions(), is(empty()));
+        assertThat(target.getFinishedSessions(), is(empty()));
+    }
+
+    @Test
+    public void noNewOrFinishedSessionsIfAllSessionsAreOpen() {
+
+        // given
+        SessionRegistry target = new SessionRegistry();
+        target.add(sessionOne).updateBeaconConfiguration(new BeaconConfiguration(1));
+
+        // then
+        assertThat(target.hasNewOrFinishedSessions(), is(false));
+    }
+}
@@ -18,6 +18,7 @@ package com.dynatrace.openkit.core.communication;
 
 import com.dynatrace.openkit.core.configuration.BeaconConfiguration;
 import com.dynatrace.openkit.core.objects.SessionImpl;
+import com.dynatrace.openkit.protocol.BeaconChunkBuffer;
 import com.dynatrace.openkit.providers.HTTPClientProvider;
 import org.junit.Before;
 import org.junit.Test;
@@ -168,13 +169,14 @@ public class SessionWrapperTest {
         // given
         SessionWrapper target = new SessionWrapper(mockSessionImpl);
         HTTPClientProvider mockClientProvider = mock(HTTPClientProvider.class);
-        when(target.sendBeacon(any(HTTPClientProvider.class))).thenReturn(null);
+        BeaconChunkBuffer mockChunkBuffer = mock(BeaconChunkBuffer.class);
+        when(target.sendBeacon(any(HTTPClientProvider.class), any(BeaconChunkBuffer.class))).thenReturn(null);
 
         // when
-        assertThat(target.sendBeacon(mockClientProvider), is(nullValue()));
+        assertThat(target.sendBeacon(mockClientProvider, mockChunkBuffer), is(nullValue()));
 
         // verify forwarded calls
-        verify(mockSessionImpl, times(1)).sendBeacon(mockClientProvider);
+        verify(mockSessionImpl, times(1)).sendBeacon(mockClientProvider, mockChunkBuffer);
         verifyNoMoreInteractions(mockSessionImpl);
     }
 
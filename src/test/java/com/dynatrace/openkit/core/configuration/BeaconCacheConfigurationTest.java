@@ -19,6 +19,7 @@ package com.dynatrace.openkit.core.configuration;
 import org.junit.Test;
 
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class BeaconCacheConfigurationTest {
@@ -58,4 +59,46 @@ public class BeaconCacheConfigurationTest {
         assertThat(new BeaconCacheConfiguration(0L, 1, 2).getCacheSizeUpperBound(),
             is(2L));
     }
+
+    @Test
+    public void isOffHeapStorageEnabled() {
+
+        // then
+        assertThat(new BeaconCacheConfiguration(0L, 1, 2).isOffHeapStorageEnabled(),
+            is(false));
+        assertThat(new BeaconCacheConfiguration(0L, 1, 2, false).isOffHeapStorageEnabled(),
+            is(false));
+        assertThat(new BeaconCacheConfiguration(0L, 1, 2, true).isOffHeapStorageEnabled(),
+            is(true));
+    }
+
+    @Test
+    public void getPersistenceDirectory() {
+
+        // then
+        assertThat(new BeaconCacheConfiguration(0L, 1, 2).getPersistenceDirectory(),
+            is(nullValue()));
+        assertThat(new BeaconCacheConfiguration(0L, 1, 2, false, "/var/cache/openkit").getPersistenceDirectory(),
+            is("/var/cache/openkit"));
+    }
+
+    @Test
+    public void isWriteAheadLogEnabled() {
+
+        // then
+        assertThat(new BeaconCacheConfiguration(0L, 1, 2, false, "/var/cache/openkit").isWriteAheadLogEnabled(),
+            is(false));
+        assertThat(new BeaconCacheConfiguration(0L, 1, 2, false, "/var/cache/openkit", true).isWriteAheadLogEnabled(),
+            is(true));
+    }
+
+    @Test
+    public void getSendThreshold() {
+
+        // then
+        assertThat(new BeaconCacheConfiguration(0L, 1, 2, false, null, false).getSendThreshold(),
+            is(BeaconCacheConfiguration.SEND_THRESHOLD_DISABLED));
+        assertThat(new BeaconCacheConfiguration(0L, 1, 2, false, null, false, 1234L).getSendThreshold(),
+            is(1234L));
+    }
 }
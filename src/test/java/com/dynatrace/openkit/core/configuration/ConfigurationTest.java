@@ -17,6 +17,7 @@
 package com.dynatrace.openkit.core.configuration;
 
 import com.dynatrace.openkit.core.objects.Device;
+import com.dynatrace.openkit.protocol.BeaconCompressor;
 import com.dynatrace.openkit.protocol.StatusResponse;
 import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
 import com.dynatrace.openkit.test.providers.TestSessionIDProvider;
@@ -126,6 +127,28 @@ public class ConfigurationTest {
         assertThat(target.isCapture(), is(false));
     }
 
+    @Test
+    public void chunkedStreamingIsRetainedIfServerIDChanges() {
+
+        // given
+        TestConfiguration target = new TestConfiguration();
+
+        StatusResponse response = mock(StatusResponse.class);
+        when(response.isCapture()).thenReturn(true);
+        when(response.getResponseCode()).thenReturn(200);
+        when(response.getServerID()).thenReturn(42);
+
+        BeaconCompressor compressor = target.getHttpClientConfig().getBeaconCompressor();
+
+        // when
+        target.updateSettings(response);
+
+        // then
+        assertThat(target.getHttpClientConfig().getServerID(), is(42));
+        assertThat(target.getHttpClientConfig().isChunkedStreamingEnabled(), is(true));
+        assertThat(target.getHttpClientConfig().getBeaconCompressor(), is(sameInstance(compressor)));
+    }
+
     @Test
     public void getBeaconCacheConfiguration() {
 
@@ -193,7 +216,9 @@ public class ConfigurationTest {
                 new TestSessionIDProvider(), new SSLStrictTrustManager(),
                 new Device("", "", ""), "",
                 beaconCacheConfiguration,
-                beaconConfiguration, privacyConfiguration);
+                beaconConfiguration, privacyConfiguration, true, BeaconCompressor.DEFAULT_COMPRESSION_LEVEL,
+                Configuration.DEFAULT_BEACON_SENDER_WORKERS, false, HTTPRequestConfiguration.DEFAULT,
+                Configuration.NO_SEND_CYCLE_BUDGET);
         }
     }
 }
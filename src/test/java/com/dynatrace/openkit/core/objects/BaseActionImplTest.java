@@ -73,6 +73,8 @@ public class BaseActionImplTest {
         logger = mock(Logger.class);
         when(logger.isInfoEnabled()).thenReturn(true);
         when(logger.isDebugEnabled()).thenReturn(true);
+        when(logger.isWarnEnabled()).thenReturn(true);
+        when(logger.isErrorEnabled()).thenReturn(true);
 
         nextBeaconId = ID_BASE_OFFSET;
         beacon = mock(Beacon.class);
@@ -21,6 +21,7 @@ import com.dynatrace.openkit.api.Session;
 import com.dynatrace.openkit.core.BeaconSender;
 import com.dynatrace.openkit.core.caching.BeaconCacheEvictor;
 import com.dynatrace.openkit.core.caching.BeaconCacheImpl;
+import com.dynatrace.openkit.core.caching.RecoveredBeacon;
 import com.dynatrace.openkit.core.configuration.BeaconConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.core.configuration.PrivacyConfiguration;
@@ -28,6 +29,7 @@ import com.dynatrace.openkit.providers.ThreadIDProvider;
 import com.dynatrace.openkit.providers.TimingProvider;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -116,6 +118,25 @@ public class OpenKitImplTest {
         verifyNoMoreInteractions(beaconSender);
     }
 
+    @Test
+    public void initializeHandsRecoveredBeaconsOverToBeaconSender() {
+        // given
+        RecoveredBeacon recoveredBeacon = mock(RecoveredBeacon.class);
+        when(recoveredBeacon.getBeaconID()).thenReturn(-1);
+        when(beaconCache.recoverBeacons()).thenReturn(Collections.singletonList(recoveredBeacon));
+        OpenKitImpl target = new OpenKitImpl(logger, configuration, timingProvider, threadIDProvider, beaconCache, beaconSender, beaconCacheEvictor);
+
+        // when
+        target.initialize();
+
+        // then
+        ArgumentCaptor<SessionImpl> sessionCaptor = ArgumentCaptor.forClass(SessionImpl.class);
+        verify(beaconSender, times(1)).startSession(sessionCaptor.capture());
+        verify(beaconSender, times(1)).finishSession(sessionCaptor.getValue());
+        assertThat(sessionCaptor.getValue().isSessionEnded(), is(true));
+        assertThat(target.getCopyOfChildObjects(), is(empty()));
+    }
+
     @Test
     public void waitForInitCompletionForwardsTheCallToTheBeaconSender() {
         // given
@@ -221,6 +242,18 @@ public class OpenKitImplTest {
         verifyNoMoreInteractions(beaconSender);
     }
 
+    @Test
+    public void shutdownFlushesTheBeaconCache() {
+        // given
+        OpenKitImpl target = new OpenKitImpl(logger, configuration, timingProvider, threadIDProvider, beaconCache, beaconSender, beaconCacheEvictor);
+
+        // when
+        target.shutdown();
+
+        // then
+        verify(beaconCache, times(1)).flush();
+    }
+
     @Test
     public void shutdownClosesAllChildObjects() throws IOException {
         // given
@@ -22,6 +22,7 @@ import com.dynatrace.openkit.api.WebRequestTracer;
 import com.dynatrace.openkit.core.BeaconSender;
 import com.dynatrace.openkit.core.configuration.BeaconConfiguration;
 import com.dynatrace.openkit.protocol.Beacon;
+import com.dynatrace.openkit.protocol.BeaconChunkBuffer;
 import com.dynatrace.openkit.providers.HTTPClientProvider;
 import org.junit.Before;
 import org.junit.Test;
@@ -411,6 +412,22 @@ public class SessionImplTest {
         verifyNoMoreInteractions(mockBeacon);
     }
 
+    @Test
+    public void sendBeaconWithChunkBufferForwardsCallToBeacon() {
+        // given
+        SessionImpl target = new SessionImpl(mockLogger, mockParent, mockBeaconSender, mockBeacon);
+        HTTPClientProvider clientProvider = mock(HTTPClientProvider.class);
+        BeaconChunkBuffer chunkBuffer = mock(BeaconChunkBuffer.class);
+
+        // when
+        target.sendBeacon(clientProvider, chunkBuffer);
+
+        // then verify the proper methods being called
+        verify(mockBeacon, times(1)).startSession();
+        verify(mockBeacon, times(1)).send(clientProvider, chunkBuffer);
+        verifyNoMoreInteractions(mockBeacon);
+    }
+
     @Test
     public void clearCapturedDataForwardsCallToBeacon() {
         // given
@@ -439,6 +456,38 @@ public class SessionImplTest {
         verifyNoMoreInteractions(mockBeacon);
     }
 
+    @Test
+    public void getNumBytesInCacheForwardsCallToBeacon() {
+        // given
+        SessionImpl target = new SessionImpl(mockLogger, mockParent, mockBeaconSender, mockBeacon);
+        when(mockBeacon.getNumBytesInCache()).thenReturn(42L);
+
+        // when
+        long obtained = target.getNumBytesInCache();
+
+        // then verify the proper methods being called
+        assertThat(obtained, is(42L));
+        verify(mockBeacon, times(1)).startSession();
+        verify(mockBeacon, times(1)).getNumBytesInCache();
+        verifyNoMoreInteractions(mockBeacon);
+    }
+
+    @Test
+    public void hasCriticalDataForwardsCallToBeacon() {
+        // given
+        SessionImpl target = new SessionImpl(mockLogger, mockParent, mockBeaconSender, mockBeacon);
+        when(mockBeacon.hasCriticalData()).thenReturn(true);
+
+        // when
+        boolean obtained = target.hasCriticalData();
+
+        // then verify the proper methods being called
+        assertThat(obtained, is(true));
+        verify(mockBeacon, times(1)).startSession();
+        verify(mockBeacon, times(1)).hasCriticalData();
+        verifyNoMoreInteractions(mockBeacon);
+    }
+
     @Test
     public void setBeaconConfigurationForwardsCallToBeacon() {
         // given
@@ -0,0 +1,152 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CoalescingSignalTest {
+
+    @Test
+    public void aDefaultConstructedSignalIsNotSignalled() {
+
+        // given
+        CoalescingSignal target = new CoalescingSignal();
+
+        // then
+        assertThat(target.isSignalled(), is(false));
+    }
+
+    @Test
+    public void signalSetsTheSignal() {
+
+        // given
+        CoalescingSignal target = new CoalescingSignal();
+
+        // when
+        target.signal();
+
+        // then
+        assertThat(target.isSignalled(), is(true));
+    }
+
+    @Test
+    public void awaitReturnsImmediatelyAndConsumesSignalIfAlreadySignalled() throws InterruptedException {
+
+        // given
+        CoalescingSignal target = new CoalescingSignal();
+        target.signal();
+
+        // when
+        target.await();
+
+        // then
+        assertThat(target.isSignalled(), is(false));
+    }
+
+    @Test
+    public void multipleSignalsAreCoalescedIntoOne() throws InterruptedException {
+
+        // given
+        CoalescingSignal target = new CoalescingSignal();
+        target.signal();
+        target.signal();
+        target.signal();
+
+        // when
+        boolean first = target.await(0);
+        boolean second = target.await(0);
+
+        // then
+        assertThat(first, is(true));
+        assertThat(second, is(false));
+    }
+
+    @Test
+    public void awaitWithTimeoutReturnsFalseIfNotSignalled() throws InterruptedException {
+
+        // given
+        CoalescingSignal target = new CoalescingSignal();
+
+        // when
+        boolean obtained = target.await(10);
+
+        // then
+        assertThat(obtained, is(false));
+    }
+
+    @Test
+    public void awaitWakesUpWhenSignalledFromAnotherThread() throws InterruptedException {
+
+        // given
+        final CoalescingSignal target = new CoalescingSignal();
+        final CountDownLatch awaitReturnedLatch = new CountDownLatch(1);
+        Thread waitingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    target.await();
+                    awaitReturnedLatch.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        waitingThread.start();
+
+        // when
+        target.signal();
+
+        // then
+        assertThat(awaitReturnedLatch.await(1, TimeUnit.MINUTES), is(true));
+        waitingThread.join();
+        assertThat(target.isSignalled(), is(false));
+    }
+
+    @Test
+    public void awaitThrowsInterruptedExceptionWhenWaitingThreadIsInterrupted() throws InterruptedException {
+
+        // given
+        final CoalescingSignal target = new CoalescingSignal();
+        final AtomicBoolean interruptedExceptionThrown = new AtomicBoolean(false);
+        Thread waitingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    target.await();
+                } catch (InterruptedException e) {
+                    interruptedExceptionThrown.set(true);
+                }
+            }
+        });
+        waitingThread.start();
+
+        // when
+        waitingThread.interrupt();
+        waitingThread.join(TimeUnit.MINUTES.toMillis(1));
+
+        // then
+        assertThat(waitingThread.isAlive(), is(false));
+        assertThat(interruptedExceptionThrown.get(), is(true));
+    }
+}
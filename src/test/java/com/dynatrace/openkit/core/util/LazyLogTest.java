@@ -0,0 +1,130 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.core.util;
+
+import com.dynatrace.openkit.api.Logger;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+public class LazyLogTest {
+
+    private Logger logger;
+
+    @Before
+    public void setUp() {
+        logger = mock(Logger.class);
+    }
+
+    @Test
+    public void formatReplacesPlaceholdersByArguments() {
+        // when
+        String obtained = LazyLog.format("a={}, b={}, c={}", 1, "two", null);
+
+        // then
+        assertThat(obtained, is("a=1, b=two, c=null"));
+    }
+
+    @Test
+    public void formatReplacesClassArgumentsBySimpleName() {
+        // when
+        String obtained = LazyLog.format("{} log()", LazyLogTest.class);
+
+        // then
+        assertThat(obtained, is("LazyLogTest log()"));
+    }
+
+    @Test
+    public void formatKeepsPlaceholdersWithoutArguments() {
+        // when
+        String obtained = LazyLog.format("a={}, b={}", 1);
+
+        // then
+        assertThat(obtained, is("a=1, b={}"));
+    }
+
+    @Test
+    public void formatIgnoresSurplusArguments() {
+        // when
+        String obtained = LazyLog.format("a={}", 1, 2);
+
+        // then
+        assertThat(obtained, is("a=1"));
+    }
+
+    @Test
+    public void formatReturnsPatternWithoutArguments() {
+        // when
+        String obtained = LazyLog.format("{} no arguments");
+
+        // then
+        assertThat(obtained, is("{} no arguments"));
+    }
+
+    @Test
+    public void messagesAreLoggedIfLevelIsEnabled() {
+        // given
+        when(logger.isErrorEnabled()).thenReturn(true);
+        when(logger.isWarnEnabled()).thenReturn(true);
+        when(logger.isInfoEnabled()).thenReturn(true);
+        when(logger.isDebugEnabled()).thenReturn(true);
+        Exception exception = new Exception("test");
+
+        // when
+        LazyLog.error(logger, "error {}", 1);
+        LazyLog.error(logger, exception, "error {}", 2);
+        LazyLog.warning(logger, "warning {}", 3);
+        LazyLog.info(logger, "info {}", 4);
+        LazyLog.debug(logger, "debug {}", 5);
+
+        // then
+        verify(logger).error("error 1");
+        verify(logger).error("error 2", exception);
+        verify(logger).warning("warning 3");
+        verify(logger).info("info 4");
+        verify(logger).debug("debug 5");
+    }
+
+    @Test
+    public void argumentsAreNotFormattedIfLevelIsDisabled() {
+        // given
+        Object argument = mock(Object.class);
+
+        // when
+        LazyLog.error(logger, "error {}", argument);
+        LazyLog.error(logger, new Exception("test"), "error {}", argument);
+        LazyLog.warning(logger, "warning {}", argument);
+        LazyLog.info(logger, "info {}", argument);
+        LazyLog.debug(logger, "debug {}", argument);
+
+        // then
+        verify(logger, times(2)).isErrorEnabled();
+        verify(logger).isWarnEnabled();
+        verify(logger).isInfoEnabled();
+        verify(logger).isDebugEnabled();
+        verifyNoMoreInteractions(logger);
+        verifyZeroInteractions(argument);
+    }
+}
@@ -0,0 +1,256 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.core.configuration.HTTPRequestConfiguration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class AsyncHTTPClientTest {
+
+    private static final String APPLICATION_ID = "appID";
+    private static final int SERVER_ID = 1;
+    private static final int NUM_SERVER_THREADS = 8;
+
+    private Logger logger;
+    private StubHTTPServer server;
+    private NioHTTPTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        logger = mock(Logger.class);
+        server = new StubHTTPServer(NUM_SERVER_THREADS);
+        transport = new NioHTTPTransport();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    public void beaconIsSentAndStatusResponseIsReceived() throws Exception {
+        // given
+        AsyncHTTPClient target = createClient(server.getBaseURL());
+        ResponseCollector collector = new ResponseCollector(1);
+
+        // when
+        target.sendBeaconRequestAsync("10.0.0.1", compress("vv=3&va=7.0"), collector);
+
+        // then
+        collector.await();
+        assertThat(collector.responses.get(0).getResponseCode(), is(200));
+        assertThat(collector.responses.get(0).isErroneousResponse(), is(false));
+        assertThat(server.getRequests(), hasSize(1));
+        StubHTTPServer.ReceivedRequest request = server.getRequests().get(0);
+        assertThat(request.method, is("POST"));
+        assertThat(request.uri, startsWith("/mbeacon?type=m&srvid=1&app=appID"));
+        assertThat(request.headers.getFirst("X-Client-IP"), is("10.0.0.1"));
+        assertThat(request.body, is("vv=3&va=7.0"));
+    }
+
+    @Test
+    public void streamedBeaconIsSentWithContentLength() throws Exception {
+        // given
+        AsyncHTTPClient target = createClient(server.getBaseURL());
+        ResponseCollector collector = new ResponseCollector(1);
+        final BeaconChunkBuffer chunk = compress("vv=3");
+        BeaconRequestBody streamedBody = new BeaconRequestBody() {
+            @Override
+            public int getContentLength() {
+                return UNKNOWN_CONTENT_LENGTH;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                chunk.writeTo(out);
+            }
+        };
+
+        // when
+        target.sendBeaconRequestAsync(null, streamedBody, collector);
+
+        // then
+        collector.await();
+        assertThat(collector.responses.get(0).getResponseCode(), is(200));
+        assertThat(server.getRequests().get(0).body, is("vv=3"));
+        assertThat(server.getRequests().get(0).headers.getFirst("Content-Length"), is(String.valueOf(chunk.size())));
+    }
+
+    @Test
+    public void manyRequestsAreInFlightAtTheSameTime() throws Exception {
+        // given the server only responds after all requests have been received
+        AsyncHTTPClient target = createClient(server.getBaseURL());
+        server.respondAfterRequests(NUM_SERVER_THREADS);
+        ResponseCollector collector = new ResponseCollector(NUM_SERVER_THREADS);
+
+        // when sending all requests from the same thread
+        for (int i = 0; i < NUM_SERVER_THREADS; i++) {
+            target.sendBeaconRequestAsync(null, compress("vv=3&nr=" + i), collector);
+        }
+
+        // then
+        collector.await();
+        assertThat(collector.responses, hasSize(NUM_SERVER_THREADS));
+        for (StatusResponse response : collector.responses) {
+            assertThat(response.getResponseCode(), is(200));
+        }
+    }
+
+    @Test
+    public void tooManyRequestsResponseIsReceived() throws Exception {
+        // given
+        AsyncHTTPClient target = createClient(server.getBaseURL());
+        server.setResponse(Response.HTTP_TOO_MANY_REQUESTS, "");
+        ResponseCollector collector = new ResponseCollector(1);
+
+        // when
+        target.sendBeaconRequestAsync(null, compress("vv=3"), collector);
+
+        // then
+        collector.await();
+        assertThat(collector.responses.get(0).getResponseCode(), is(Response.HTTP_TOO_MANY_REQUESTS));
+        assertThat(collector.responses.get(0).isErroneousResponse(), is(true));
+    }
+
+    @Test
+    public void failedConnectionResultsInErroneousResponse() throws Exception {
+        // given a port nobody is listening on
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+        AsyncHTTPClient target = createClient("http://127.0.0.1:" + port + "/mbeacon");
+        ResponseCollector collector = new ResponseCollector(1);
+
+        // when
+        target.sendBeaconRequestAsync(null, compress("vv=3"), collector);
+
+        // then
+        collector.await();
+        assertThat(collector.responses.get(0).getResponseCode(), is(Integer.MAX_VALUE));
+        assertThat(collector.responses.get(0).isErroneousResponse(), is(true));
+    }
+
+    @Test
+    public void unresolvableHostResultsInErroneousResponse() throws Exception {
+        // given
+        AsyncHTTPClient target = createClient("http://openkit.invalid/mbeacon");
+        ResponseCollector collector = new ResponseCollector(1);
+
+        // when
+        target.sendBeaconRequestAsync(null, compress("vv=3"), collector);
+
+        // then
+        collector.await();
+        assertThat(collector.responses.get(0).getResponseCode(), is(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void warningIsLoggedIfTheEndpointUsesHTTPS() {
+        // given
+        when(logger.isWarnEnabled()).thenReturn(true);
+
+        // when
+        createClient("https://localhost/mbeacon");
+
+        // then
+        verify(logger, times(1)).warning(org.mockito.Matchers.contains("only supports plain HTTP"));
+    }
+
+    @Test
+    public void noWarningIsLoggedIfTheEndpointUsesPlainHTTP() {
+        // given
+        when(logger.isWarnEnabled()).thenReturn(true);
+
+        // when
+        createClient(server.getBaseURL());
+
+        // then
+        verify(logger, times(0)).warning(org.mockito.Matchers.anyString());
+    }
+
+    @Test
+    public void requestTimesOutIfServerDoesNotRespond() throws Exception {
+        // given
+        AsyncHTTPClient target = createClient(server.getBaseURL(), new HTTPRequestConfiguration(
+            HTTPRequestConfiguration.DEFAULT_CONNECT_TIMEOUT_IN_MILLIS, 200, 0, 0));
+        server.setResponseDelay(2000);
+        ResponseCollector collector = new ResponseCollector(1);
+
+        // when
+        target.sendBeaconRequestAsync(null, compress("vv=3"), collector);
+
+        // then
+        collector.await();
+        assertThat(collector.responses.get(0).getResponseCode(), is(Integer.MAX_VALUE));
+    }
+
+    private AsyncHTTPClient createClient(String baseURL) {
+        return createClient(baseURL, HTTPRequestConfiguration.DEFAULT);
+    }
+
+    private AsyncHTTPClient createClient(String baseURL, HTTPRequestConfiguration requestConfiguration) {
+        HTTPClientConfiguration configuration = new HTTPClientConfiguration(baseURL, SERVER_ID, APPLICATION_ID, null, false,
+            new BeaconCompressor(BeaconCompressor.DEFAULT_COMPRESSION_LEVEL), true, requestConfiguration);
+        return new AsyncHTTPClient(logger, configuration, transport);
+    }
+
+    private static BeaconChunkBuffer compress(String data) throws IOException {
+        return BeaconChunkBuffer.compress(new BeaconCompressor(BeaconCompressor.DEFAULT_COMPRESSION_LEVEL), data.getBytes("UTF-8"));
+    }
+
+    private static final class ResponseCollector implements ResponseCallback {
+
+        private final List<StatusResponse> responses = new CopyOnWriteArrayList<StatusResponse>();
+        private final CountDownLatch completed;
+
+        private ResponseCollector(int numResponses) {
+            completed = new CountDownLatch(numResponses);
+        }
+
+        @Override
+        public void onResponse(StatusResponse response) {
+            responses.add(response);
+            completed.countDown();
+        }
+
+        private void await() throws InterruptedException {
+            assertThat(completed.await(10, TimeUnit.SECONDS), is(true));
+        }
+    }
+}
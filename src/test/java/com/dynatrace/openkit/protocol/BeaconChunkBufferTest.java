@@ -0,0 +1,101 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BeaconChunkBufferTest {
+
+    @Test
+    public void emptyBufferHasSizeZero() {
+
+        // given
+        BeaconChunkBuffer target = new BeaconChunkBuffer(new BeaconCompressor(BeaconCompressor.DEFAULT_COMPRESSION_LEVEL));
+
+        // then
+        assertThat(target.size(), is(0));
+    }
+
+    @Test
+    public void finishedChunkContainsCompressedData() throws IOException {
+
+        // given
+        BeaconChunkBuffer target = new BeaconChunkBuffer(new BeaconCompressor(BeaconCompressor.DEFAULT_COMPRESSION_LEVEL));
+
+        // when
+        target.startChunk().write("prefix&a&b".getBytes(Beacon.CHARSET));
+        target.finishChunk();
+
+        // then
+        assertThat(gunzip(target), is("prefix&a&b"));
+    }
+
+    @Test
+    public void startingNewChunkDiscardsPreviousChunk() throws IOException {
+
+        // given
+        BeaconChunkBuffer target = new BeaconChunkBuffer(new BeaconCompressor(BeaconCompressor.DEFAULT_COMPRESSION_LEVEL));
+        target.startChunk().write("first".getBytes(Beacon.CHARSET));
+        target.finishChunk();
+
+        // when
+        target.startChunk().write("second".getBytes(Beacon.CHARSET));
+        target.finishChunk();
+
+        // then
+        assertThat(gunzip(target), is("second"));
+    }
+
+    @Test
+    public void sizeIsNumberOfCompressedBytes() throws IOException {
+
+        // given
+        BeaconChunkBuffer target = BeaconChunkBuffer.compress(new BeaconCompressor(BeaconCompressor.DEFAULT_COMPRESSION_LEVEL), "type=m".getBytes(Beacon.CHARSET));
+
+        // when
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        target.writeTo(out);
+
+        // then
+        assertThat(target.size(), is(out.size()));
+    }
+
+    private static String gunzip(BeaconChunkBuffer chunk) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        chunk.writeTo(compressed);
+
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()));
+        ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int numBytes;
+        while ((numBytes = in.read(buffer)) != -1) {
+            uncompressed.write(buffer, 0, numBytes);
+        }
+        in.close();
+
+        return new String(uncompressed.toByteArray(), Beacon.CHARSET);
+    }
+}
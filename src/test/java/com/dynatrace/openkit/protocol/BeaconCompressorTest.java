@@ -0,0 +1,201 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BeaconCompressorTest {
+
+    private static final String DATA = "vv=3&va=7.0.0000&ap=appID&an=appName&et=1&na=action&it=1&ca=1&pa=0&s0=1&t0=0&s1=2&t1=3";
+
+    @Test
+    public void compressedDataCanBeDecompressed() throws IOException {
+
+        // given
+        BeaconCompressor target = new BeaconCompressor(Deflater.DEFAULT_COMPRESSION);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        PooledGZIPOutputStream stream = target.compress(out);
+        stream.write(DATA.getBytes(Beacon.CHARSET));
+        stream.finish();
+
+        // then
+        assertThat(gunzip(out.toByteArray()), is(DATA));
+    }
+
+    @Test
+    public void deflaterIsReusedAfterStreamIsFinished() throws IOException {
+
+        // given
+        BeaconCompressor target = new BeaconCompressor(Deflater.DEFAULT_COMPRESSION);
+
+        // when
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            PooledGZIPOutputStream stream = target.compress(out);
+            stream.write(DATA.getBytes(Beacon.CHARSET));
+            stream.close();
+
+            assertThat(gunzip(out.toByteArray()), is(DATA));
+        }
+
+        // then
+        assertThat(target.getNumDeflatersCreated(), is(1L));
+        assertThat(target.getNumPooledDeflaters(), is(1));
+    }
+
+    @Test
+    public void deflaterIsReusedAfterStreamIsReleased() throws IOException {
+
+        // given
+        BeaconCompressor target = new BeaconCompressor(Deflater.DEFAULT_COMPRESSION);
+        PooledGZIPOutputStream stream = target.compress(new ByteArrayOutputStream());
+        stream.write(DATA.getBytes(Beacon.CHARSET));
+
+        // when
+        stream.release();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PooledGZIPOutputStream nextStream = target.compress(out);
+        nextStream.write(DATA.getBytes(Beacon.CHARSET));
+        nextStream.finish();
+
+        // then
+        assertThat(target.getNumDeflatersCreated(), is(1L));
+        assertThat(gunzip(out.toByteArray()), is(DATA));
+    }
+
+    @Test
+    public void numberOfPooledDeflatersIsBounded() throws IOException {
+
+        // given
+        BeaconCompressor target = new BeaconCompressor(Deflater.DEFAULT_COMPRESSION, 2);
+        PooledGZIPOutputStream[] streams = new PooledGZIPOutputStream[3];
+        for (int i = 0; i < streams.length; i++) {
+            streams[i] = target.compress(new ByteArrayOutputStream());
+        }
+
+        // when
+        for (PooledGZIPOutputStream stream : streams) {
+            stream.finish();
+        }
+
+        // then
+        assertThat(target.getNumDeflatersCreated(), is(3L));
+        assertThat(target.getNumPooledDeflaters(), is(2));
+    }
+
+    @Test
+    public void writingToFinishedStreamFails() throws IOException {
+
+        // given
+        BeaconCompressor target = new BeaconCompressor(Deflater.DEFAULT_COMPRESSION);
+        PooledGZIPOutputStream stream = target.compress(new ByteArrayOutputStream());
+        stream.finish();
+
+        // when
+        try {
+            stream.write(1);
+        } catch (IOException e) {
+            // then
+            return;
+        }
+        throw new AssertionError("IOException expected");
+    }
+
+    @Test
+    public void compressionStatisticsAreRecorded() throws IOException {
+
+        // given
+        BeaconCompressor target = new BeaconCompressor(Deflater.BEST_COMPRESSION);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] data = repeat(DATA, 10).getBytes(Beacon.CHARSET);
+
+        // when
+        PooledGZIPOutputStream stream = target.compress(out);
+        stream.write(data);
+        stream.finish();
+
+        // then
+        assertThat(target.getNumUncompressedBytes(), is((long) data.length));
+        assertThat(target.getNumCompressedBytes(), is((long) out.size()));
+        assertThat(target.getCompressionRatio(), is((double) data.length / out.size()));
+        assertThat(target.getCompressionRatio(), is(greaterThan(1.0)));
+        assertThat(target.getCompressionTimeNanos(), is(greaterThan(0L)));
+    }
+
+    @Test
+    public void compressionRatioIsZeroIfNothingHasBeenCompressed() {
+
+        // given
+        BeaconCompressor target = new BeaconCompressor(Deflater.DEFAULT_COMPRESSION);
+
+        // then
+        assertThat(target.getCompressionRatio(), is(0.0));
+    }
+
+    @Test
+    public void noCompressionLevelIsApplied() throws IOException {
+
+        // given
+        BeaconCompressor target = new BeaconCompressor(Deflater.NO_COMPRESSION);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] data = repeat(DATA, 10).getBytes(Beacon.CHARSET);
+
+        // when
+        PooledGZIPOutputStream stream = target.compress(out);
+        stream.write(data);
+        stream.finish();
+
+        // then
+        assertThat(target.getCompressionLevel(), is(Deflater.NO_COMPRESSION));
+        assertThat(out.size(), is(greaterThan(data.length)));
+        assertThat(gunzip(out.toByteArray()), is(repeat(DATA, 10)));
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(s);
+        }
+        return builder.toString();
+    }
+
+    private static String gunzip(byte[] compressed) throws IOException {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int numBytes;
+        while ((numBytes = in.read(buffer)) != -1) {
+            uncompressed.write(buffer, 0, numBytes);
+        }
+        in.close();
+
+        return new String(uncompressed.toByteArray(), Beacon.CHARSET);
+    }
+}
@@ -20,6 +20,7 @@ import com.dynatrace.openkit.CrashReportingLevel;
 import com.dynatrace.openkit.DataCollectionLevel;
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.core.caching.BeaconCacheImpl;
+import com.dynatrace.openkit.core.caching.RecoveredBeacon;
 import com.dynatrace.openkit.core.configuration.BeaconConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
 import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
@@ -32,30 +33,49 @@ import com.dynatrace.openkit.core.objects.SessionImpl;
 import com.dynatrace.openkit.core.objects.WebRequestTracerBaseImpl;
 import com.dynatrace.openkit.core.objects.WebRequestTracerStringURL;
 import com.dynatrace.openkit.core.objects.WebRequestTracerURLConnection;
+import com.dynatrace.openkit.core.util.CoalescingSignal;
 import com.dynatrace.openkit.providers.HTTPClientProvider;
 import com.dynatrace.openkit.providers.ThreadIDProvider;
 import com.dynatrace.openkit.providers.TimingProvider;
 import org.junit.Before;
 import org.junit.Test;
-
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.hamcrest.Matchers.arrayWithSize;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.emptyArray;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isEmptyString;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.startsWith;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -94,6 +114,7 @@ public class BeaconTest {
 
         HTTPClientConfiguration mockHTTPClientConfiguration = mock(HTTPClientConfiguration.class);
         when(mockHTTPClientConfiguration.getServerID()).thenReturn(SERVER_ID);
+        when(mockHTTPClientConfiguration.getBeaconCompressor()).thenReturn(new BeaconCompressor(BeaconCompressor.DEFAULT_COMPRESSION_LEVEL));
         when(configuration.getHttpClientConfig()).thenReturn(mockHTTPClientConfiguration);
 
         BeaconConfiguration beaconConfiguration = new BeaconConfiguration(1);
@@ -650,7 +671,7 @@ public class BeaconTest {
         HTTPClientProvider httpClientProvider = mock(HTTPClientProvider.class);
         HTTPClient httpClient = mock(HTTPClient.class);
         int responseCode = 200;
-        when(httpClient.sendBeaconRequest(any(String.class), any(byte[].class))).thenReturn(new StatusResponse(logger, "", responseCode, Collections.<String, List<String>>emptyMap()));
+        when(httpClient.sendBeaconRequest(any(String.class), any(BeaconChunkBuffer.class))).thenReturn(new StatusResponse(logger, "", responseCode, Collections.<String, List<String>>emptyMap()));
         when(httpClientProvider.createClient(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
 
         // when (add data and try to send it)
@@ -660,7 +681,250 @@ public class BeaconTest {
         // then
         assertThat(response, notNullValue());
         assertThat(response.getResponseCode(), is(responseCode));
-        verify(httpClient, times(1)).sendBeaconRequest(eq(ipAddress), any(byte[].class));
+        verify(httpClient, times(1)).sendBeaconRequest(eq(ipAddress), any(BeaconChunkBuffer.class));
+    }
+
+    @Test
+    public void sendUsesGivenChunkBuffer() throws IOException {
+        // given
+        Beacon beacon = new Beacon(logger, new BeaconCacheImpl(logger), configuration, "127.0.0.1", threadIDProvider, timingProvider);
+        HTTPClientProvider httpClientProvider = mock(HTTPClientProvider.class);
+        HTTPClient httpClient = mock(HTTPClient.class);
+        when(httpClient.sendBeaconRequest(any(String.class), any(BeaconChunkBuffer.class)))
+            .thenReturn(new StatusResponse(logger, "", 200, Collections.<String, List<String>>emptyMap()));
+        when(httpClientProvider.createClient(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
+        BeaconChunkBuffer chunkBuffer = new BeaconChunkBuffer(new BeaconCompressor(BeaconCompressor.DEFAULT_COMPRESSION_LEVEL));
+
+        // when
+        beacon.reportCrash("errorName", "errorReason", "errorStackTrace");
+        StatusResponse response = beacon.send(httpClientProvider, chunkBuffer);
+
+        // then
+        assertThat(response, notNullValue());
+        verify(httpClient, times(1)).sendBeaconRequest("127.0.0.1", chunkBuffer);
+    }
+
+    @Test
+    public void sendAsyncSendsAllChunksAndNotifiesCallback() {
+        // given
+        Beacon beacon = new Beacon(logger, new BeaconCacheImpl(logger), configuration, "127.0.0.1", threadIDProvider, timingProvider);
+        when(configuration.getMaxBeaconSize()).thenReturn(1024 + 200);
+        HTTPClientProvider httpClientProvider = mock(HTTPClientProvider.class);
+        HTTPClient httpClient = mock(HTTPClient.class);
+        final StatusResponse successResponse = new StatusResponse(logger, "", 200, Collections.<String, List<String>>emptyMap());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((ResponseCallback) invocation.getArguments()[2]).onResponse(successResponse);
+                return null;
+            }
+        }).when(httpClient).sendBeaconRequestAsync(any(String.class), any(BeaconRequestBody.class), any(ResponseCallback.class));
+        when(httpClientProvider.createClient(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
+        ResponseCallback callback = mock(ResponseCallback.class);
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            beacon.reportCrash("errorName", "errorReason", "errorStackTrace");
+        }
+        beacon.sendAsync(httpClientProvider, callback);
+
+        // then all data is sent in more than one chunk
+        verify(httpClient, atLeast(2)).sendBeaconRequestAsync(eq("127.0.0.1"), any(BeaconRequestBody.class), any(ResponseCallback.class));
+        verify(callback, times(1)).onResponse(successResponse);
+        assertThat(beacon.isEmpty(), is(true));
+    }
+
+    @Test
+    public void sendAsyncStopsAfterErroneousResponse() {
+        // given
+        Beacon beacon = new Beacon(logger, new BeaconCacheImpl(logger), configuration, "127.0.0.1", threadIDProvider, timingProvider);
+        when(configuration.getMaxBeaconSize()).thenReturn(1024 + 200);
+        HTTPClientProvider httpClientProvider = mock(HTTPClientProvider.class);
+        HTTPClient httpClient = mock(HTTPClient.class);
+        final StatusResponse errorResponse = new StatusResponse(logger, "", 400, Collections.<String, List<String>>emptyMap());
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                ((ResponseCallback) invocation.getArguments()[2]).onResponse(errorResponse);
+                return null;
+            }
+        }).when(httpClient).sendBeaconRequestAsync(any(String.class), any(BeaconRequestBody.class), any(ResponseCallback.class));
+        when(httpClientProvider.createClient(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
+        ResponseCallback callback = mock(ResponseCallback.class);
+
+        // when
+        for (int i = 0; i < 10; i++) {
+            beacon.reportCrash("errorName", "errorReason", "errorStackTrace");
+        }
+        beacon.sendAsync(httpClientProvider, callback);
+
+        // then the data is kept for the next attempt
+        verify(httpClient, times(1)).sendBeaconRequestAsync(eq("127.0.0.1"), any(BeaconRequestBody.class), any(ResponseCallback.class));
+        verify(callback, times(1)).onResponse(errorResponse);
+        assertThat(beacon.isEmpty(), is(false));
+    }
+
+    @Test
+    public void sendAsyncWithoutDataNotifiesCallbackWithoutCreatingClient() {
+        // given
+        Beacon beacon = new Beacon(logger, new BeaconCacheImpl(logger), configuration, "127.0.0.1", threadIDProvider, timingProvider);
+        HTTPClientProvider httpClientProvider = mock(HTTPClientProvider.class);
+        ResponseCallback callback = mock(ResponseCallback.class);
+
+        // when
+        beacon.sendAsync(httpClientProvider, callback);
+
+        // then
+        verify(callback, times(1)).onResponse(null);
+        verifyZeroInteractions(httpClientProvider);
+    }
+
+    @Test
+    public void beaconIsRegisteredAtTheBeaconCache() {
+        // given
+        BeaconCacheImpl beaconCache = mock(BeaconCacheImpl.class);
+
+        // when
+        new Beacon(logger, beaconCache, configuration, "127.0.0.1", threadIDProvider, timingProvider);
+
+        // then
+        verify(beaconCache, times(1)).registerBeacon(eq(0), eq(0L), eq("127.0.0.1"), any(String.class));
+    }
+
+    @Test
+    public void beaconIsUnregisteredAfterTheSessionEndEventHasBeenAdded() {
+        // given
+        BeaconCacheImpl beaconCache = mock(BeaconCacheImpl.class);
+        Beacon target = new Beacon(logger, beaconCache, configuration, "127.0.0.1", threadIDProvider, timingProvider);
+
+        // when
+        target.endSession(mock(SessionImpl.class));
+
+        // then
+        InOrder inOrder = inOrder(beaconCache);
+        inOrder.verify(beaconCache, times(1)).addEventData(eq(0), anyLong(), any(String.class));
+        inOrder.verify(beaconCache, times(1)).unregisterBeacon(0);
+    }
+
+    @Test
+    public void errorsAndCrashesAreAddedAsCriticalEventData() {
+        // given
+        BeaconCacheImpl beaconCache = mock(BeaconCacheImpl.class);
+        Beacon target = new Beacon(logger, beaconCache, configuration, "127.0.0.1", threadIDProvider, timingProvider);
+
+        // when
+        target.reportError(ACTION_ID, "SomeError", -123, "SomeReason");
+        target.reportCrash("SomeCrash", "SomeReason", "SomeStacktrace");
+
+        // then
+        verify(beaconCache, times(2)).addCriticalEventData(eq(0), eq(0L), any(String.class), any(AtomicBoolean.class));
+        verify(beaconCache, times(0)).addEventData(anyInt(), anyLong(), any(String.class));
+    }
+
+    @Test
+    public void senderWokenUpByCriticalDataSignalObservesCriticalData() throws Exception {
+        // given
+        final CountDownLatch senderChecked = new CountDownLatch(1);
+        final CoalescingSignal criticalDataAdded = new CoalescingSignal() {
+            @Override
+            public void signal() {
+                super.signal();
+                try {
+                    // keep the reporting thread here, until the sender has checked the beacon
+                    senderChecked.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        BeaconCacheImpl beaconCache = new BeaconCacheImpl(logger);
+        beaconCache.addCriticalDataAddedSignal(criticalDataAdded);
+        final Beacon target = new Beacon(logger, beaconCache, configuration, "127.0.0.1", threadIDProvider, timingProvider);
+
+        final AtomicBoolean observedCriticalData = new AtomicBoolean(false);
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    criticalDataAdded.await();
+                    observedCriticalData.set(target.hasCriticalData());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    senderChecked.countDown();
+                }
+            }
+        });
+        sender.start();
+
+        // when
+        target.reportError(ACTION_ID, "SomeError", -123, "SomeReason");
+        sender.join(5000);
+
+        // then
+        assertThat(observedCriticalData.get(), is(true));
+    }
+
+    @Test
+    public void recoveredBeaconSendsRecoveredDataWithRecoveredBeaconData() throws IOException {
+        // given
+        RecoveredBeacon recoveredBeacon = mock(RecoveredBeacon.class);
+        when(recoveredBeacon.getBeaconID()).thenReturn(-3);
+        when(recoveredBeacon.getSessionStartTime()).thenReturn(1234L);
+        when(recoveredBeacon.getClientIPAddress()).thenReturn("10.0.0.1");
+        when(recoveredBeacon.getImmutableBeaconData()).thenReturn("vv=3&ap=recovered");
+        BeaconCacheImpl beaconCache = mock(BeaconCacheImpl.class);
+        when(beaconCache.hasNextBeaconChunk(-3)).thenReturn(true);
+        when(beaconCache.writeNextBeaconChunk(eq(-3), any(String.class), anyInt(), eq('&'), any(OutputStream.class)))
+            .thenReturn(1, 0);
+        HTTPClientProvider httpClientProvider = mock(HTTPClientProvider.class);
+        HTTPClient httpClient = mock(HTTPClient.class);
+        when(httpClient.sendBeaconRequest(any(String.class), any(BeaconChunkBuffer.class))).thenReturn(new StatusResponse(logger, "", 200, Collections.<String, List<String>>emptyMap()));
+        when(httpClientProvider.createClient(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
+        Beacon target = new Beacon(logger, beaconCache, configuration, recoveredBeacon, threadIDProvider, timingProvider);
+
+        // when
+        target.send(httpClientProvider);
+
+        // then
+        ArgumentCaptor<String> prefixCaptor = ArgumentCaptor.forClass(String.class);
+        verify(beaconCache, times(2)).writeNextBeaconChunk(eq(-3), prefixCaptor.capture(), anyInt(), eq('&'), any(OutputStream.class));
+        assertThat(prefixCaptor.getValue(), startsWith("vv=3&ap=recovered&"));
+        assertThat(prefixCaptor.getValue(), containsString("&tv=1234"));
+        verify(beaconCache, times(1)).removeChunkedData(-3);
+        verify(httpClient, times(1)).sendBeaconRequest(eq("10.0.0.1"), any(BeaconChunkBuffer.class));
+        verify(configuration, times(0)).createSessionNumber();
+    }
+
+    @Test
+    public void sendStreamsDataIfChunkedStreamingIsEnabled() {
+        // given
+        when(configuration.getHttpClientConfig().isChunkedStreamingEnabled()).thenReturn(true);
+        BeaconCacheImpl beaconCache = new BeaconCacheImpl(logger);
+        Beacon beacon = new Beacon(logger, beaconCache, configuration, "127.0.0.1", threadIDProvider, timingProvider);
+        HTTPClientProvider httpClientProvider = mock(HTTPClientProvider.class);
+        HTTPClient httpClient = mock(HTTPClient.class);
+        when(httpClient.sendBeaconRequest(any(String.class), any(BeaconRequestBody.class))).thenAnswer(new Answer<StatusResponse>() {
+            @Override
+            public StatusResponse answer(InvocationOnMock invocation) throws Throwable {
+                // the body is written, like the real client does
+                ((BeaconRequestBody)invocation.getArguments()[1]).writeTo(new ByteArrayOutputStream());
+                return new StatusResponse(logger, "", 200, Collections.<String, List<String>>emptyMap());
+            }
+        });
+        when(httpClientProvider.createClient(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
+
+        // when (add data and try to send it)
+        beacon.reportCrash("errorName", "errorReason", "errorStackTrace");
+        StatusResponse response = beacon.send(httpClientProvider);
+
+        // then
+        assertThat(response.getResponseCode(), is(200));
+        ArgumentCaptor<BeaconRequestBody> bodyCaptor = ArgumentCaptor.forClass(BeaconRequestBody.class);
+        verify(httpClient, times(1)).sendBeaconRequest(eq("127.0.0.1"), bodyCaptor.capture());
+        assertThat(bodyCaptor.getValue(), is(instanceOf(StreamingBeaconChunk.class)));
+        assertThat(bodyCaptor.getValue().getContentLength(), is(BeaconRequestBody.UNKNOWN_CONTENT_LENGTH));
+        assertThat(beaconCache.getEvents(0), is(emptyArray()));
     }
 
     @Test
@@ -671,7 +935,7 @@ public class BeaconTest {
         HTTPClientProvider httpClientProvider = mock(HTTPClientProvider.class);
         HTTPClient httpClient = mock(HTTPClient.class);
         int responseCode = 418;
-        when(httpClient.sendBeaconRequest(any(String.class), any(byte[].class))).thenReturn(new StatusResponse(logger, "", responseCode, Collections.<String, List<String>>emptyMap()));
+        when(httpClient.sendBeaconRequest(any(String.class), any(BeaconChunkBuffer.class))).thenReturn(new StatusResponse(logger, "", responseCode, Collections.<String, List<String>>emptyMap()));
         when(httpClientProvider.createClient(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
 
         // when (add data and try to send it)
@@ -681,7 +945,52 @@ public class BeaconTest {
         // then
         assertThat(response, notNullValue());
         assertThat(response.getResponseCode(), is(responseCode));
-        verify(httpClient, times(1)).sendBeaconRequest(eq(ipAddress), any(byte[].class));
+        verify(httpClient, times(1)).sendBeaconRequest(eq(ipAddress), any(BeaconChunkBuffer.class));
+    }
+
+    @Test
+    public void criticalDataIsPendingUntilItHasBeenSent() {
+        // given
+        Beacon beacon = new Beacon(logger, new BeaconCacheImpl(logger), configuration, "127.0.0.1", threadIDProvider, timingProvider);
+        HTTPClientProvider httpClientProvider = mock(HTTPClientProvider.class);
+        HTTPClient httpClient = mock(HTTPClient.class);
+        when(httpClient.sendBeaconRequest(any(String.class), any(BeaconChunkBuffer.class))).thenReturn(new StatusResponse(logger, "", 200, Collections.<String, List<String>>emptyMap()));
+        when(httpClientProvider.createClient(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
+
+        // when
+        beacon.reportEvent(ACTION_ID, "SomeEvent");
+
+        // then
+        assertThat(beacon.hasCriticalData(), is(false));
+
+        // and when
+        beacon.reportError(ACTION_ID, "SomeError", -123, "SomeReason");
+
+        // then
+        assertThat(beacon.hasCriticalData(), is(true));
+
+        // and when
+        beacon.send(httpClientProvider);
+
+        // then
+        assertThat(beacon.hasCriticalData(), is(false));
+    }
+
+    @Test
+    public void criticalDataIsStillPendingIfSendingFails() {
+        // given
+        Beacon beacon = new Beacon(logger, new BeaconCacheImpl(logger), configuration, "127.0.0.1", threadIDProvider, timingProvider);
+        HTTPClientProvider httpClientProvider = mock(HTTPClientProvider.class);
+        HTTPClient httpClient = mock(HTTPClient.class);
+        when(httpClient.sendBeaconRequest(any(String.class), any(BeaconChunkBuffer.class))).thenReturn(new StatusResponse(logger, "", 418, Collections.<String, List<String>>emptyMap()));
+        when(httpClientProvider.createClient(any(HTTPClientConfiguration.class))).thenReturn(httpClient);
+
+        // when
+        beacon.reportCrash("errorName", "errorReason", "errorStackTrace");
+        beacon.send(httpClientProvider);
+
+        // then
+        assertThat(beacon.hasCriticalData(), is(true));
     }
 
     @Test
@@ -710,6 +1019,7 @@ public class BeaconTest {
         String[] actions = beacon.getActions();
         assertThat(actions, emptyArray());
         assertThat(beacon.isEmpty(), is(true));
+        assertThat(beacon.hasCriticalData(), is(false));
     }
 
     @Test
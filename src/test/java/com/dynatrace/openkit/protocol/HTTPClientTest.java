@@ -18,10 +18,12 @@ package com.dynatrace.openkit.protocol;
 
 import com.dynatrace.openkit.api.Logger;
 import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.core.configuration.HTTPRequestConfiguration;
 import com.dynatrace.openkit.protocol.HTTPClient.RequestType;
 import com.dynatrace.openkit.providers.HttpURLConnectionWrapper;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
 import java.io.BufferedReader;
@@ -30,6 +32,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.util.Arrays;
@@ -62,6 +65,7 @@ public class HTTPClientTest {
     private static final String BASE_URL = "http://127.0.0.1:12345";
 
     private HTTPClientConfiguration configuration;
+    private BeaconCompressor compressor;
     private HttpURLConnectionWrapper httpURLConnectionWrapper;
 
     private Logger logger;
@@ -72,6 +76,9 @@ public class HTTPClientTest {
         when(configuration.getApplicationID()).thenReturn(APP_ID);
         when(configuration.getServerID()).thenReturn(SERVER_ID);
         when(configuration.getBaseURL()).thenReturn(BASE_URL);
+        compressor = new BeaconCompressor(BeaconCompressor.DEFAULT_COMPRESSION_LEVEL);
+        when(configuration.getBeaconCompressor()).thenReturn(compressor);
+        when(configuration.getRequestConfiguration()).thenReturn(HTTPRequestConfiguration.DEFAULT);
 
         httpURLConnectionWrapper = mock(HttpURLConnectionWrapper.class);
 
@@ -113,6 +120,24 @@ public class HTTPClientTest {
         assertThat(response.getResponseCode(), is(equalTo(Integer.MAX_VALUE)));
     }
 
+    @Test
+    public void configuredTimeoutsAreUsedForConnection() throws IOException {
+        // given
+        when(configuration.getRequestConfiguration()).thenReturn(new HTTPRequestConfiguration(1234, 5678, 0, 0));
+        HTTPClient client = new HTTPClient(logger, configuration);
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(httpURLConnectionWrapper.getHttpURLConnection()).thenReturn(connection);
+        when(connection.getResponseCode()).thenReturn(200);
+        when(connection.getInputStream()).thenReturn(new ByteArrayInputStream(new byte[0]));
+
+        // when
+        client.sendRequest(RequestType.STATUS, httpURLConnectionWrapper, null, null, "GET");
+
+        // then
+        verify(connection, times(1)).setConnectTimeout(1234);
+        verify(connection, times(1)).setReadTimeout(5678);
+    }
+
     @Test
     public void sendStatusRequestAndReadErrorResponse() throws IOException {
         // given
@@ -274,7 +299,7 @@ public class HTTPClientTest {
         String data = "type=m";
 
         // when
-        Response response = client.sendRequest(RequestType.BEACON, httpURLConnectionWrapper, "127.0.0.1", data.getBytes(), "POST");
+        Response response = client.sendRequest(RequestType.BEACON, httpURLConnectionWrapper, "127.0.0.1", BeaconChunkBuffer.compress(compressor, data.getBytes()), "POST");
 
         // then
         assertThat(response.getResponseCode(), is(200));
@@ -297,7 +322,7 @@ public class HTTPClientTest {
         when(connection.getOutputStream()).thenReturn(os);
 
         // when
-        Response response = client.sendRequest(RequestType.BEACON, httpURLConnectionWrapper, "127.0.0.1", uncompressedText, "POST");
+        Response response = client.sendRequest(RequestType.BEACON, httpURLConnectionWrapper, "127.0.0.1", BeaconChunkBuffer.compress(compressor, uncompressedText), "POST");
 
         // then
         // first ensure text length and compressed text length are not equal
@@ -307,11 +332,45 @@ public class HTTPClientTest {
         verify(connection, times(1)).setRequestProperty("Content-Encoding", "gzip");
         verify(connection, times(1)).setRequestProperty("Content-Length", Integer.toString(compressedText.length));
 
-        // ensure that the message body is as expected
-        assertThat(os.toByteArray(), is(equalTo(compressedText)));
+        // ensure that the message body is as expected, the gzip header's OS byte depends on the Java version
+        assertThat(os.size(), is(compressedText.length));
+        assertThat(gunzip(os.toByteArray()), is(new String(uncompressedText, CHARSET)));
         assertThat(response.isErroneousResponse(), is(false));
     }
 
+    @Test
+    public void sendBeaconRequestWithUnknownContentLengthUsesChunkedStreaming() throws IOException {
+        // given
+        HTTPClient client = new HTTPClient(logger, configuration);
+        HttpURLConnection connection = mock(HttpURLConnection.class);
+        when(httpURLConnectionWrapper.getHttpURLConnection()).thenReturn(connection);
+        when(connection.getResponseCode()).thenReturn(200);
+        when(connection.getInputStream()).thenReturn(new ByteArrayInputStream("type=m".getBytes(CHARSET)));
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        when(connection.getOutputStream()).thenReturn(os);
+        BeaconRequestBody body = new BeaconRequestBody() {
+            @Override
+            public int getContentLength() {
+                return UNKNOWN_CONTENT_LENGTH;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                out.write(gzip("type=m".getBytes(CHARSET)));
+            }
+        };
+
+        // when
+        Response response = client.sendRequest(RequestType.BEACON, httpURLConnectionWrapper, "127.0.0.1", body, "POST");
+
+        // then
+        assertThat(response.getResponseCode(), is(200));
+        verify(connection, times(1)).setRequestProperty("Content-Encoding", "gzip");
+        verify(connection, times(1)).setChunkedStreamingMode(0);
+        verify(connection, times(0)).setRequestProperty(Mockito.eq("Content-Length"), anyString());
+        assertThat(gunzip(os.toByteArray()), is("type=m"));
+    }
+
     /**
      * Local helper function to decompress a GZIP compressed byte array
      */
@@ -359,7 +418,7 @@ public class HTTPClientTest {
         when(connection.getHeaderFields()).thenReturn(headerFields);
 
         // when
-        Response response = client.sendRequest(RequestType.BEACON, httpURLConnectionWrapper, "127.0.0.1", "type=m".getBytes(), "POST");
+        Response response = client.sendRequest(RequestType.BEACON, httpURLConnectionWrapper, "127.0.0.1", BeaconChunkBuffer.compress(compressor, "type=m".getBytes()), "POST");
 
         // then verify header field keys are transformed to lower case
         assertThat(response, notNullValue());
@@ -392,7 +451,7 @@ public class HTTPClientTest {
         String data = "type=m";
 
         // when
-        Response response = client.sendRequest(RequestType.BEACON, httpURLConnectionWrapper, "127.0.0.1", data.getBytes(), "POST");
+        Response response = client.sendRequest(RequestType.BEACON, httpURLConnectionWrapper, "127.0.0.1", BeaconChunkBuffer.compress(compressor, data.getBytes()), "POST");
 
         // then
         verify(httpURLConnectionWrapper, times(3)).getHttpURLConnection();
@@ -417,7 +476,7 @@ public class HTTPClientTest {
         String data = "type=m";
 
         // when
-        Response response = client.sendRequest(RequestType.BEACON, httpURLConnectionWrapper, "127.0.0.1", data.getBytes(), "POST");
+        Response response = client.sendRequest(RequestType.BEACON, httpURLConnectionWrapper, "127.0.0.1", BeaconChunkBuffer.compress(compressor, data.getBytes()), "POST");
 
         // then
         assertThat(response, is(notNullValue()));
@@ -481,7 +540,7 @@ public class HTTPClientTest {
         String data = "type=m";
 
         // when
-        Response response = client.sendRequest(RequestType.BEACON, httpURLConnectionWrapper, "127.0.0.1", data.getBytes(), "POST");
+        Response response = client.sendRequest(RequestType.BEACON, httpURLConnectionWrapper, "127.0.0.1", BeaconChunkBuffer.compress(compressor, data.getBytes()), "POST");
 
         // then
         assertThat(response, is(notNullValue()));
@@ -492,7 +551,7 @@ public class HTTPClientTest {
     public void sendStatusRequestDoesNotReturnNull() {
         // given
         HTTPClient target = spy(new HTTPClient(logger, configuration));
-        doReturn(null).when(target).sendRequest(Mockito.any(RequestType.class), anyString(), anyString(), Mockito.any(byte[].class), anyString());
+        doReturn(null).when(target).sendRequest(Mockito.any(RequestType.class), anyString(), anyString(), Mockito.any(BeaconChunkBuffer.class), anyString());
 
         // when
         StatusResponse obtained = target.sendStatusRequest();
@@ -506,7 +565,7 @@ public class HTTPClientTest {
     public void sendNewSessionRequestDoesNotReturnNull() {
         // given
         HTTPClient target = spy(new HTTPClient(logger, configuration));
-        doReturn(null).when(target).sendRequest(Mockito.any(RequestType.class), anyString(), anyString(), Mockito.any(byte[].class), anyString());
+        doReturn(null).when(target).sendRequest(Mockito.any(RequestType.class), anyString(), anyString(), Mockito.any(BeaconChunkBuffer.class), anyString());
 
         // when
         StatusResponse obtained = target.sendNewSessionRequest();
@@ -520,7 +579,7 @@ public class HTTPClientTest {
     public void sendBeaconRequestDoesNotReturnNull() throws UnsupportedEncodingException {
         // given
         HTTPClient target = spy(new HTTPClient(logger, configuration));
-        doReturn(null).when(target).sendRequest(Mockito.any(RequestType.class), anyString(), anyString(), Mockito.any(byte[].class), anyString());
+        doReturn(null).when(target).sendRequest(Mockito.any(RequestType.class), anyString(), anyString(), Mockito.any(BeaconChunkBuffer.class), anyString());
 
         // when
         StatusResponse obtained = target.sendBeaconRequest("127.0.0.1", "".getBytes(CHARSET));
@@ -529,4 +588,21 @@ public class HTTPClientTest {
         assertThat(obtained, is(notNullValue()));
         assertThat(obtained.getResponseCode(), is(equalTo(Integer.MAX_VALUE)));
     }
+
+    @Test
+    public void sendBeaconRequestCompressesGivenData() throws IOException {
+        // given
+        HTTPClient target = spy(new HTTPClient(logger, configuration));
+        doReturn(null).when(target).sendRequest(Mockito.any(RequestType.class), anyString(), anyString(), Mockito.any(BeaconChunkBuffer.class), anyString());
+
+        // when
+        target.sendBeaconRequest("127.0.0.1", "type=m".getBytes(CHARSET));
+
+        // then
+        ArgumentCaptor<BeaconChunkBuffer> chunkCaptor = ArgumentCaptor.forClass(BeaconChunkBuffer.class);
+        verify(target, times(1)).sendRequest(Mockito.eq(RequestType.BEACON), anyString(), Mockito.eq("127.0.0.1"), chunkCaptor.capture(), Mockito.eq("POST"));
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        chunkCaptor.getValue().writeTo(compressed);
+        assertThat(gunzip(compressed.toByteArray()), is("type=m"));
+    }
 }
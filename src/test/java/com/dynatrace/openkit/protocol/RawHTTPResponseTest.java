@@ -0,0 +1,140 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class RawHTTPResponseTest {
+
+    @Test
+    public void responseWithContentLengthIsParsed() throws Exception {
+        // given
+        byte[] data = bytes("HTTP/1.1 200 OK\r\nContent-Length: 6\r\nRetry-After: 10\r\n\r\ntype=m");
+
+        // when
+        RawHTTPResponse obtained = RawHTTPResponse.parse(data, data.length, false);
+
+        // then
+        assertThat(obtained, is(notNullValue()));
+        assertThat(obtained.getResponseCode(), is(200));
+        assertThat(obtained.getHeaders().get("retry-after"), contains("10"));
+        assertThat(new String(obtained.getBody(), "UTF-8"), is("type=m"));
+    }
+
+    @Test
+    public void responseWithIncompleteBodyNeedsMoreData() throws Exception {
+        // given
+        byte[] data = bytes("HTTP/1.1 200 OK\r\nContent-Length: 6\r\n\r\ntype");
+
+        // then
+        assertThat(RawHTTPResponse.parse(data, data.length, false), is(nullValue()));
+    }
+
+    @Test
+    public void responseWithIncompleteHeaderNeedsMoreData() throws Exception {
+        // given
+        byte[] data = bytes("HTTP/1.1 200 OK\r\nContent-Len");
+
+        // then
+        assertThat(RawHTTPResponse.parse(data, data.length, false), is(nullValue()));
+    }
+
+    @Test
+    public void onlyValidBytesAreParsed() throws Exception {
+        // given
+        byte[] data = bytes("HTTP/1.1 200 OK\r\nContent-Length: 6\r\n\r\ntype=m");
+
+        // then
+        assertThat(RawHTTPResponse.parse(data, data.length - 1, false), is(nullValue()));
+    }
+
+    @Test
+    public void chunkedResponseIsDecoded() throws Exception {
+        // given
+        byte[] data = bytes("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n4\r\ntype\r\n2;ext=1\r\n=m\r\n0\r\n\r\n");
+
+        // when
+        RawHTTPResponse obtained = RawHTTPResponse.parse(data, data.length, false);
+
+        // then
+        assertThat(obtained, is(notNullValue()));
+        assertThat(new String(obtained.getBody(), "UTF-8"), is("type=m"));
+    }
+
+    @Test
+    public void chunkedResponseWithoutLastChunkNeedsMoreData() throws Exception {
+        // given
+        byte[] data = bytes("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n4\r\ntype\r\n");
+
+        // then
+        assertThat(RawHTTPResponse.parse(data, data.length, false), is(nullValue()));
+    }
+
+    @Test
+    public void responseWithoutLengthEndsWithTheStream() throws Exception {
+        // given
+        byte[] data = bytes("HTTP/1.0 200 OK\r\n\r\ntype=m");
+
+        // then
+        assertThat(RawHTTPResponse.parse(data, data.length, false), is(nullValue()));
+        assertThat(new String(RawHTTPResponse.parse(data, data.length, true).getBody(), "UTF-8"), is("type=m"));
+    }
+
+    @Test
+    public void noContentResponseHasNoBody() throws Exception {
+        // given
+        byte[] data = bytes("HTTP/1.1 204 No Content\r\n\r\n");
+
+        // when
+        RawHTTPResponse obtained = RawHTTPResponse.parse(data, data.length, false);
+
+        // then
+        assertThat(obtained.getResponseCode(), is(204));
+        assertThat(obtained.getBody().length, is(0));
+    }
+
+    @Test(expected = RawHTTPResponse.HTTPProtocolException.class)
+    public void truncatedResponseIsRejected() throws Exception {
+        // given
+        byte[] data = bytes("HTTP/1.1 200 OK\r\nContent-Length: 6\r\n\r\ntype");
+
+        // when
+        RawHTTPResponse.parse(data, data.length, true);
+    }
+
+    @Test(expected = RawHTTPResponse.HTTPProtocolException.class)
+    public void invalidStatusLineIsRejected() throws Exception {
+        // given
+        byte[] data = bytes("SSH-2.0-OpenSSH\r\n\r\n");
+
+        // when
+        RawHTTPResponse.parse(data, data.length, false);
+    }
+
+    private static byte[] bytes(String data) throws UnsupportedEncodingException {
+        return data.getBytes("ISO-8859-1");
+    }
+}
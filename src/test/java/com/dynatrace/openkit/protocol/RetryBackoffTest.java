@@ -0,0 +1,83 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.core.configuration.HTTPRequestConfiguration;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RetryBackoffTest {
+
+    private Random random;
+
+    @Before
+    public void setUp() {
+        random = mock(Random.class);
+    }
+
+    @Test
+    public void delayIsDoubledForEveryRetry() {
+        // given
+        when(random.nextDouble()).thenReturn(0.9999);
+        RetryBackoff target = new RetryBackoff(new HTTPRequestConfiguration(1000, 1000, 5, 200), random);
+
+        // then
+        assertThat(target.getDelay(0), is(200L));
+        assertThat(target.getDelay(1), is(400L));
+        assertThat(target.getDelay(2), is(800L));
+        assertThat(target.getDelay(3), is(1600L));
+    }
+
+    @Test
+    public void secondHalfOfDelayIsRandomized() {
+        // given
+        when(random.nextDouble()).thenReturn(0.0);
+        RetryBackoff target = new RetryBackoff(new HTTPRequestConfiguration(1000, 1000, 5, 200), random);
+
+        // then
+        assertThat(target.getDelay(0), is(100L));
+        assertThat(target.getDelay(2), is(400L));
+    }
+
+    @Test
+    public void delayIsLimited() {
+        // given
+        when(random.nextDouble()).thenReturn(0.9999);
+        RetryBackoff target = new RetryBackoff(new HTTPRequestConfiguration(1000, 1000, 100, 200), random);
+
+        // then
+        assertThat(target.getDelay(10), is(HTTPRequestConfiguration.DEFAULT_MAX_RETRY_DELAY_IN_MILLIS));
+        assertThat(target.getDelay(Integer.MAX_VALUE), is(HTTPRequestConfiguration.DEFAULT_MAX_RETRY_DELAY_IN_MILLIS));
+    }
+
+    @Test
+    public void zeroDelayIsNotRandomized() {
+        // given
+        RetryBackoff target = new RetryBackoff(new HTTPRequestConfiguration(1000, 1000, 3, 0), random);
+
+        // then
+        assertThat(target.getDelay(2), is(0L));
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.X509TrustManager;
+import java.security.GeneralSecurityException;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class SSLSocketFactoryCacheTest {
+
+    private X509TrustManager trustManager;
+
+    @Before
+    public void setUp() {
+        trustManager = mock(X509TrustManager.class);
+    }
+
+    @Test
+    public void socketFactoryIsCreatedOnFirstUse() throws GeneralSecurityException {
+        // given
+        SSLSocketFactoryCache target = new SSLSocketFactoryCache(SSLSocketFactoryCache.DEFAULT_MAX_ENTRIES);
+
+        // when
+        SSLSocketFactory obtained = target.getSocketFactory(trustManager);
+
+        // then
+        assertThat(obtained, is(notNullValue()));
+        assertThat(target.size(), is(1));
+    }
+
+    @Test
+    public void socketFactoryIsReusedForSameTrustManager() throws GeneralSecurityException {
+        // given
+        SSLSocketFactoryCache target = new SSLSocketFactoryCache(SSLSocketFactoryCache.DEFAULT_MAX_ENTRIES);
+        SSLSocketFactory first = target.getSocketFactory(trustManager);
+
+        // when
+        SSLSocketFactory obtained = target.getSocketFactory(trustManager);
+
+        // then
+        assertThat(obtained, is(sameInstance(first)));
+        assertThat(target.size(), is(1));
+    }
+
+    @Test
+    public void differentTrustManagersGetDifferentSocketFactories() throws GeneralSecurityException {
+        // given
+        SSLSocketFactoryCache target = new SSLSocketFactoryCache(SSLSocketFactoryCache.DEFAULT_MAX_ENTRIES);
+        SSLSocketFactory first = target.getSocketFactory(trustManager);
+
+        // when
+        SSLSocketFactory obtained = target.getSocketFactory(mock(X509TrustManager.class));
+
+        // then
+        assertThat(obtained, is(not(sameInstance(first))));
+        assertThat(target.size(), is(2));
+    }
+
+    @Test
+    public void leastRecentlyUsedSocketFactoryIsDiscardedIfCacheIsFull() throws GeneralSecurityException {
+        // given
+        SSLSocketFactoryCache target = new SSLSocketFactoryCache(2);
+        X509TrustManager otherTrustManager = mock(X509TrustManager.class);
+        SSLSocketFactory first = target.getSocketFactory(trustManager);
+        SSLSocketFactory other = target.getSocketFactory(otherTrustManager);
+        target.getSocketFactory(trustManager);
+
+        // when
+        target.getSocketFactory(mock(X509TrustManager.class));
+
+        // then
+        assertThat(target.size(), is(2));
+        assertThat(target.getSocketFactory(trustManager), is(sameInstance(first)));
+        assertThat(target.getSocketFactory(otherTrustManager), is(not(sameInstance(other))));
+    }
+}
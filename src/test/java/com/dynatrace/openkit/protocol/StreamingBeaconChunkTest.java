@@ -0,0 +1,98 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.caching.BeaconCacheImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class StreamingBeaconChunkTest {
+
+    private BeaconCompressor compressor;
+    private BeaconCacheImpl beaconCache;
+
+    @Before
+    public void setUp() {
+        compressor = new BeaconCompressor(BeaconCompressor.DEFAULT_COMPRESSION_LEVEL);
+        beaconCache = new BeaconCacheImpl(mock(Logger.class));
+        beaconCache.addEventData(1, 1000L, "a");
+        beaconCache.addActionData(1, 1001L, "b");
+    }
+
+    @Test
+    public void contentLengthIsUnknown() {
+
+        // given
+        StreamingBeaconChunk target = new StreamingBeaconChunk(compressor, beaconCache, 1, "prefix", 1024, '&');
+
+        // then
+        assertThat(target.getContentLength(), is(BeaconRequestBody.UNKNOWN_CONTENT_LENGTH));
+    }
+
+    @Test
+    public void writeToCompressesNextChunk() throws IOException {
+
+        // given
+        StreamingBeaconChunk target = new StreamingBeaconChunk(compressor, beaconCache, 1, "prefix", 1024, '&');
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        target.writeTo(out);
+
+        // then
+        assertThat(gunzip(out.toByteArray()), is("prefix&a&b"));
+    }
+
+    @Test
+    public void writeToWritesSameChunkAgainWhenRetried() throws IOException {
+
+        // given
+        StreamingBeaconChunk target = new StreamingBeaconChunk(compressor, beaconCache, 1, "prefix", 1024, '&');
+        target.writeTo(new ByteArrayOutputStream());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // when
+        target.writeTo(out);
+
+        // then
+        assertThat(gunzip(out.toByteArray()), is("prefix&a&b"));
+    }
+
+    private static String gunzip(byte[] compressed) throws IOException {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int numBytes;
+        while ((numBytes = in.read(buffer)) != -1) {
+            uncompressed.write(buffer, 0, numBytes);
+        }
+        in.close();
+
+        return new String(uncompressed.toByteArray(), Beacon.CHARSET);
+    }
+}
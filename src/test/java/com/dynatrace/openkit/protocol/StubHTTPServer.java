@@ -0,0 +1,157 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.dynatrace.openkit.protocol;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Local HTTP server answering beacon requests with a configurable response, for testing the HTTP clients.
+ */
+class StubHTTPServer {
+
+    /**
+     * A request received by the server.
+     */
+    static final class ReceivedRequest {
+
+        final String method;
+        final String uri;
+        final Headers headers;
+        final String body;
+
+        private ReceivedRequest(String method, String uri, Headers headers, String body) {
+            this.method = method;
+            this.uri = uri;
+            this.headers = headers;
+            this.body = body;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<ReceivedRequest> requests = new CopyOnWriteArrayList<ReceivedRequest>();
+
+    private volatile int responseCode = 200;
+    private volatile String responseBody = "type=m";
+    private volatile long responseDelayMillis = 0;
+    private volatile CountDownLatch responseBarrier = null;
+
+    /**
+     * Create and start a server on a free local port.
+     *
+     * @param numThreads The number of requests handled in parallel.
+     */
+    StubHTTPServer(int numThreads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0), 0);
+        executor = Executors.newFixedThreadPool(numThreads);
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleRequest(exchange);
+            }
+        });
+        server.start();
+    }
+
+    String getBaseURL() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/mbeacon";
+    }
+
+    List<ReceivedRequest> getRequests() {
+        return requests;
+    }
+
+    void setResponse(int responseCode, String responseBody) {
+        this.responseCode = responseCode;
+        this.responseBody = responseBody;
+    }
+
+    void setResponseDelay(long delayMillis) {
+        this.responseDelayMillis = delayMillis;
+    }
+
+    /**
+     * Hold back all responses, until the given number of requests has been received.
+     */
+    void respondAfterRequests(int numRequests) {
+        responseBarrier = new CountDownLatch(numRequests);
+    }
+
+    void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handleRequest(HttpExchange exchange) throws IOException {
+        try {
+            requests.add(new ReceivedRequest(exchange.getRequestMethod(), exchange.getRequestURI().toString(),
+                exchange.getRequestHeaders(), readBody(exchange)));
+
+            CountDownLatch barrier = responseBarrier;
+            if (barrier != null) {
+                barrier.countDown();
+                barrier.await(10, TimeUnit.SECONDS);
+            }
+            if (responseDelayMillis > 0) {
+                Thread.sleep(responseDelayMillis);
+            }
+
+            byte[] response = responseBody.getBytes("UTF-8");
+            exchange.sendResponseHeaders(responseCode, response.length);
+            OutputStream out = exchange.getResponseBody();
+            out.write(response);
+            out.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static String readBody(HttpExchange exchange) throws IOException {
+        InputStream in = exchange.getRequestBody();
+        if ("gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            in = new GZIPInputStream(in);
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+        while ((length = in.read(buffer)) > 0) {
+            body.write(buffer, 0, length);
+        }
+        return body.toString("UTF-8");
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.protocol.local;
+
+import com.dynatrace.openkit.api.LogLevel;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.core.util.DefaultLogger;
+import com.dynatrace.openkit.protocol.HTTPClient;
+import com.dynatrace.openkit.protocol.StatusResponse;
+import com.dynatrace.openkit.protocol.ssl.SSLBlindTrustManager;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for status requests sent by {@link HTTPClient} to a local HTTPS stub server.
+ *
+ * <p>
+ * The client, which reuses its SSL socket factory, is compared to a baseline creating a new
+ * {@link SSLContext} per request, like {@link HTTPClient} used to do.
+ * </p>
+ *
+ * <p>
+ * This is not a unit test and therefore not executed by the build. The stub server needs a key store,
+ * which can be created via
+ * {@code keytool -genkeypair -alias stub -keyalg RSA -keystore stub.jks -storepass changeit -keypass changeit -dname CN=localhost}.
+ * Run it manually via
+ * {@code java -cp <classpath> com.dynatrace.openkit.protocol.local.HTTPClientTLSBenchmark <keystore> [password]}.
+ * </p>
+ */
+public class HTTPClientTLSBenchmark {
+
+    private static final String DEFAULT_PASSWORD = "changeit";
+    private static final long WARMUP_MILLIS = TimeUnit.SECONDS.toMillis(2);
+    private static final long MEASUREMENT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final byte[] STATUS_RESPONSE = {'t', 'y', 'p', 'e', '=', 'm'};
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("usage: HTTPClientTLSBenchmark <keystore> [password]");
+            System.exit(1);
+        }
+        char[] password = (args.length > 1 ? args[1] : DEFAULT_PASSWORD).toCharArray();
+
+        HttpsServer server = startServer(args[0], password);
+        try {
+            String baseURL = "https://localhost:" + server.getAddress().getPort() + "/mbeacon";
+            SSLBlindTrustManager trustManager = new SSLBlindTrustManager();
+            final HTTPClient client = new HTTPClient(new DefaultLogger(LogLevel.WARN),
+                new HTTPClientConfiguration(baseURL, 1, "benchmark", trustManager));
+            final URL url = new URL(baseURL + "?type=m&srvid=1&app=benchmark");
+            final TrustManager[] trustManagers = {trustManager.getX509TrustManager()};
+
+            Request cached = new Request() {
+                @Override
+                public boolean send() {
+                    StatusResponse response = client.sendStatusRequest();
+                    return response.getResponseCode() < 400;
+                }
+            };
+            Request uncached = new Request() {
+                @Override
+                public boolean send() throws IOException, GeneralSecurityException {
+                    HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
+                    SSLContext context = SSLContext.getInstance("TLS");
+                    context.init(null, trustManagers, new SecureRandom());
+                    connection.setSSLSocketFactory(context.getSocketFactory());
+                    connection.setHostnameVerifier(new SSLBlindTrustManager().getHostnameVerifier());
+                    int responseCode = connection.getResponseCode();
+                    InputStream in = connection.getInputStream();
+                    while (in.read() != -1) {
+                        // drain the response, so that the connection can be kept alive
+                    }
+                    in.close();
+                    return responseCode < 400;
+                }
+            };
+
+            report("new SSLContext per request", uncached);
+            report("cached SSLSocketFactory", cached);
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void report(String name, Request request) throws Exception {
+        runBenchmark(request, WARMUP_MILLIS);
+        long numRequests = runBenchmark(request, MEASUREMENT_MILLIS);
+        long requestsPerSecond = numRequests * TimeUnit.SECONDS.toMillis(1) / MEASUREMENT_MILLIS;
+        System.out.println(String.format("%-28s requests/s=%,8d", name, requestsPerSecond));
+    }
+
+    private static long runBenchmark(Request request, long durationMillis) throws Exception {
+        long numRequests = 0;
+        long end = System.currentTimeMillis() + durationMillis;
+        while (System.currentTimeMillis() < end) {
+            if (!request.send()) {
+                throw new IllegalStateException("request failed");
+            }
+            numRequests++;
+        }
+        return numRequests;
+    }
+
+    private static HttpsServer startServer(String keyStoreFile, char[] password) throws IOException, GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        FileInputStream in = new FileInputStream(keyStoreFile);
+        try {
+            keyStore.load(in, password);
+        } finally {
+            in.close();
+        }
+        KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagerFactory.init(keyStore, password);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(keyManagerFactory.getKeyManagers(), null, new SecureRandom());
+
+        HttpsServer server = HttpsServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setHttpsConfigurator(new HttpsConfigurator(context));
+        server.createContext("/mbeacon", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                exchange.sendResponseHeaders(200, STATUS_RESPONSE.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(STATUS_RESPONSE);
+                out.close();
+            }
+        });
+        server.start();
+
+        return server;
+    }
+
+    private interface Request {
+        boolean send() throws Exception;
+    }
+}
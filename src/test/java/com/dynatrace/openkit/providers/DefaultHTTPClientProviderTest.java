@@ -0,0 +1,98 @@
+/**
+ * Copyright 2018-2019 Dynatrace LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.dynatrace.openkit.providers;
+
+import com.dynatrace.openkit.api.Logger;
+import com.dynatrace.openkit.core.configuration.HTTPClientConfiguration;
+import com.dynatrace.openkit.protocol.AsyncHTTPClient;
+import com.dynatrace.openkit.protocol.BeaconCompressor;
+import com.dynatrace.openkit.protocol.HTTPClient;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.mock;
+
+public class DefaultHTTPClientProviderTest {
+
+    private static final String BASE_URL = "https://localhost:9999/1";
+    private static final String APPLICATION_ID = "appID";
+
+    private DefaultHTTPClientProvider target;
+
+    @Before
+    public void setUp() {
+        target = new DefaultHTTPClientProvider(mock(Logger.class));
+    }
+
+    @Test
+    public void clientIsCreatedForConfiguration() {
+        // given
+        HTTPClientConfiguration configuration = new HTTPClientConfiguration(BASE_URL, 1, APPLICATION_ID, null);
+
+        // when
+        HTTPClient obtained = target.createClient(configuration);
+
+        // then
+        assertThat(obtained, is(notNullValue()));
+    }
+
+    @Test
+    public void clientIsReusedForSameConfiguration() {
+        // given
+        HTTPClientConfiguration configuration = new HTTPClientConfiguration(BASE_URL, 1, APPLICATION_ID, null);
+        HTTPClient first = target.createClient(configuration);
+
+        // when
+        HTTPClient obtained = target.createClient(configuration);
+
+        // then
+        assertThat(obtained, is(sameInstance(first)));
+    }
+
+    @Test
+    public void newClientIsCreatedForChangedConfiguration() {
+        // given
+        HTTPClientConfiguration configuration = new HTTPClientConfiguration(BASE_URL, 1, APPLICATION_ID, null);
+        HTTPClient first = target.createClient(configuration);
+
+        // when
+        HTTPClient obtained = target.createClient(new HTTPClientConfiguration(BASE_URL, 2, APPLICATION_ID, null));
+
+        // then
+        assertThat(obtained, is(not(sameInstance(first))));
+        assertThat(target.createClient(configuration), is(sameInstance(first)));
+    }
+
+    @Test
+    public void asyncClientIsCreatedIfAsyncTransportIsEnabled() {
+        // given
+        HTTPClientConfiguration configuration = new HTTPClientConfiguration(BASE_URL, 1, APPLICATION_ID, null, false,
+            new BeaconCompressor(BeaconCompressor.DEFAULT_COMPRESSION_LEVEL), true);
+
+        // when
+        HTTPClient obtained = target.createClient(configuration);
+
+        // then
+        assertThat(obtained, is(instanceOf(AsyncHTTPClient.class)));
+    }
+}
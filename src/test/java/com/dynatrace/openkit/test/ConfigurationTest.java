@@ -21,9 +21,11 @@ import com.dynatrace.openkit.DataCollectionLevel;
 import com.dynatrace.openkit.core.configuration.BeaconCacheConfiguration;
 import com.dynatrace.openkit.core.configuration.BeaconConfiguration;
 import com.dynatrace.openkit.core.configuration.Configuration;
+import com.dynatrace.openkit.core.configuration.HTTPRequestConfiguration;
 import com.dynatrace.openkit.core.configuration.OpenKitType;
 import com.dynatrace.openkit.core.configuration.PrivacyConfiguration;
 import com.dynatrace.openkit.core.objects.Device;
+import com.dynatrace.openkit.protocol.BeaconCompressor;
 import com.dynatrace.openkit.protocol.ssl.SSLStrictTrustManager;
 import com.dynatrace.openkit.providers.DefaultSessionIDProvider;
 import org.junit.Test;
@@ -50,6 +52,12 @@ public class ConfigurationTest {
                 new DefaultSessionIDProvider(), new SSLStrictTrustManager(), new Device("", "", ""), applicationVersion,
             new BeaconCacheConfiguration(-1, -1, -1),
             new BeaconConfiguration(1),
-            new PrivacyConfiguration(DataCollectionLevel.OFF, CrashReportingLevel.OFF));
+            new PrivacyConfiguration(DataCollectionLevel.OFF, CrashReportingLevel.OFF),
+            false,
+            BeaconCompressor.DEFAULT_COMPRESSION_LEVEL,
+            Configuration.DEFAULT_BEACON_SENDER_WORKERS,
+            false,
+            HTTPRequestConfiguration.DEFAULT,
+            Configuration.NO_SEND_CYCLE_BUDGET);
     }
 }